@@ -0,0 +1,73 @@
+import socket
+import struct
+import time
+
+# client of aim4.sim.control.ControlServer
+OP_CLOSE = 0
+OP_RESET = 1
+OP_STEP = 2
+OP_SET_PHASE = 3
+OP_OBSERVE = 4
+OP_LATENCY = 5
+OP_SNAPSHOT = 6
+OP_RESTORE = 7
+NUM_OF_OPCODES = 8
+
+class Aim_Client:
+    def __init__(self, host='127.0.0.1', port=5599):
+        self._sock = socket.create_connection((host, port))
+        self._sock.setsockopt(socket.IPPROTO_TCP, socket.TCP_NODELAY, 1)
+        self._file = self._sock.makefile('rb')
+        self.round_trip_times = []  # in seconds, one per call
+
+    def _call(self, request, reply_format):
+        start = time.perf_counter()
+        self._sock.sendall(request)
+        status = self._file.read(1)[0]
+        if status != 0:
+            size = struct.unpack('>H', self._file.read(2))[0]
+            raise RuntimeError(self._file.read(size).decode('utf-8'))
+        reply = struct.unpack(reply_format, self._file.read(struct.calcsize(reply_format)))
+        self.round_trip_times.append(time.perf_counter() - start)
+        return reply
+
+    def reset(self, seed):
+        # returns (number of intersections, number of columns)
+        return self._call(struct.pack('>bq', OP_RESET, seed), '>ii')
+
+    def step(self, steps=1):
+        # returns (time in steps, number of completed vehicles)
+        return self._call(struct.pack('>bi', OP_STEP, steps), '>ii')
+
+    def set_phase(self, intersection, signals):
+        data = signals.encode('ascii')
+        self._call(struct.pack('>bih', OP_SET_PHASE, intersection, len(data)) + data, '>')
+
+    def observe(self):
+        # returns (queue lengths, wait times), each a list of lists
+        # indexed by intersection and column
+        n, columns = self._call(struct.pack('>b', OP_OBSERVE), '>ii')
+        size = n * columns
+        data = struct.unpack('>%di%df' % (size, size), self._file.read(8 * size))
+        queues = [list(data[i * columns:(i + 1) * columns]) for i in range(n)]
+        waits = [list(data[size + i * columns:size + (i + 1) * columns]) for i in range(n)]
+        return queues, waits
+
+    def latency(self):
+        # returns the server-side (calls, mean us, max us) of each opcode
+        data = self._call(struct.pack('>b', OP_LATENCY), '>' + 'qdd' * NUM_OF_OPCODES)
+        return [data[3 * i:3 * i + 3] for i in range(NUM_OF_OPCODES)]
+
+    def snapshot(self):
+        # returns the id of a snapshot of the simulator; the snapshots are
+        # dropped by the next reset
+        return self._call(struct.pack('>b', OP_SNAPSHOT), '>i')[0]
+
+    def restore(self, snapshot_id):
+        # returns (time in steps, number of completed vehicles)
+        return self._call(struct.pack('>bi', OP_RESTORE, snapshot_id), '>ii')
+
+    def close(self):
+        self._sock.sendall(struct.pack('>b', OP_CLOSE))
+        self._file.close()
+        self._sock.close()
@@ -0,0 +1,47 @@
+import mmap
+import struct
+
+# layout of the state ring file written by aim4.sim.StateExporter
+MAGIC = 0x41494D53
+HEADER = struct.Struct('<iiiiiiqqiiq')
+RECORD = struct.Struct('<qiiffhhhh')
+ROAD_TABLE_OFFSET = 64
+ROAD_NAME_SIZE = 8
+
+class State_Reader:
+    def __init__(self, file_name):
+        self._file = open(file_name, 'rb')
+        self._map = mmap.mmap(self._file.fileno(), 0, access=mmap.ACCESS_READ)
+        magic, _, self._header_size, self._record_size, self._capacity, \
+            num_roads = HEADER.unpack_from(self._map, 0)[:6]
+        if magic != MAGIC:
+            raise ValueError('not a state ring file: ' + file_name)
+        self.roads = []
+        for i in range(num_roads):
+            offset = ROAD_TABLE_OFFSET + i * ROAD_NAME_SIZE
+            name = self._map[offset:offset + ROAD_NAME_SIZE]
+            self.roads.append(name.rstrip(b'\0').decode('ascii'))
+
+    def latest(self):
+        # returns (time, records); each record is
+        # (vin, distance, wait time, spawn road, destination, lane index)
+        while True:
+            seq, start, count, time = HEADER.unpack_from(self._map, 0)[6:10]
+            if seq % 2 == 1:
+                continue
+            records = []
+            valid = True
+            for i in range(start, start + count):
+                offset = self._header_size + (i % self._capacity) * self._record_size
+                r = RECORD.unpack_from(self._map, offset)
+                if r[0] != seq - 1:
+                    valid = False
+                    break
+                records.append((r[2], r[3], r[4], self.roads[r[5]],
+                                self.roads[r[6]], r[7]))
+            if valid and HEADER.unpack_from(self._map, 0)[6] == seq:
+                return time, records
+
+    def close(self):
+        self._map.close()
+        self._file.close()
@@ -0,0 +1,207 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import aim4.config.SimConfig;
+import aim4.sim.SimContext;
+import aim4.sim.Simulator;
+import aim4.sim.runner.SimSetupFactory;
+import aim4.sim.setup.TrafficSignalSimSetup;
+
+/**
+ * The JMH benchmark of {@link Simulator#step(double)}.  A simulator is
+ * built for every combination of the grid size, the traffic level and the
+ * number of lanes per road, and is run untimed until the network has
+ * filled up, so that the measured steps are in the steady state.  The
+ * throughput is the number of steps per second; the sample-time mode gives
+ * the percentiles of the latency of a step.  Run with {@code -prof gc} (as
+ * {@link #main(String[])} does) for the allocation per step, reported as
+ * {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+public class SimulatorStepBenchmark {
+
+  /////////////////////////////////
+  // PARAMETERS
+  /////////////////////////////////
+
+  /** The number of columns and rows of the grid */
+  @Param({ "1", "3", "5" })
+  public int gridSize;
+
+  /** The traffic level */
+  @Param({ "0.1", "0.28", "0.6" })
+  public double trafficLevel;
+
+  /** The number of lanes per road */
+  @Param({ "1", "2", "3" })
+  public int lanesPerRoad;
+
+  /**
+   * The length of the untimed run before the measurement, in simulated
+   * seconds
+   */
+  @Param({ "60" })
+  public double fillTime;
+
+  /** The random seed */
+  @Param({ "1" })
+  public long seed;
+
+  /**
+   * Whether the states of the vehicles are kept in one structure-of-arrays
+   * store; compare with {@code -p vehicleStateStore=false,true}
+   */
+  @Param({ "false" })
+  public boolean vehicleStateStore;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The simulator */
+  private Simulator sim;
+
+  /////////////////////////////////
+  // SETUP
+  /////////////////////////////////
+
+  /**
+   * Build the simulator and run it until the network has filled up.
+   *
+   * @throws IOException if the simulator fails to read its input
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    TrafficSignalSimSetup simSetup =
+      SimSetupFactory.makeSimSetup(gridSize, gridSize, lanesPerRoad,
+                                   trafficLevel);
+    simSetup.setStateFileName(null);
+    simSetup.setVehicleStateStoreEnabled(vehicleStateStore);
+    sim = simSetup.getSimulator(new SimContext(seed));
+    long steps = Math.round(fillTime / SimConfig.TIME_STEP);
+    for(long i = 0; i < steps; i++) {
+      sim.step(SimConfig.TIME_STEP);
+    }
+  }
+
+  /**
+   * Release the resources held by the simulator.
+   *
+   * @throws IOException if the simulator fails to close its output
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    sim.close();
+  }
+
+  /////////////////////////////////
+  // BENCHMARKS
+  /////////////////////////////////
+
+  /**
+   * Measure the number of steps per second.
+   *
+   * @return the result of the step
+   * @throws IOException if the simulator fails to write its output
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public Simulator.SimStepResult throughput() throws IOException {
+    return sim.step(SimConfig.TIME_STEP);
+  }
+
+  /**
+   * Measure the distribution of the latency of a step.
+   *
+   * @return the result of the step
+   * @throws IOException if the simulator fails to write its output
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Simulator.SimStepResult latency() throws IOException {
+    return sim.step(SimConfig.TIME_STEP);
+  }
+
+  /////////////////////////////////
+  // THE MAIN FUNCTION
+  /////////////////////////////////
+
+  /**
+   * Run the benchmarks with the GC profiler, such that the allocation per
+   * step is reported along with the throughput and the latency.  The usual
+   * JMH command-line options apply, e.g. "-p gridSize=3 -p lanesPerRoad=3"
+   * to measure only some of the scenarios.
+   *
+   * @param args  the JMH command-line options
+   * @throws RunnerException if a benchmark fails
+   * @throws CommandLineOptionException if the options cannot be parsed
+   */
+  public static void main(String[] args)
+    throws RunnerException, CommandLineOptionException {
+    Options options =
+      new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .include(SimulatorStepBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
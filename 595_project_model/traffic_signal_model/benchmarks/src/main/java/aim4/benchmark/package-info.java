@@ -0,0 +1,4 @@
+/**
+ * This package contains the JMH benchmarks of the simulator.
+ */
+package aim4.benchmark;
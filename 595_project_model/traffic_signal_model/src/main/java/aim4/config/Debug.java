@@ -36,19 +36,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-import aim4.map.BasicMap;
 
 /**
  * The configuration for debugging purposes.
  */
 public class Debug {
 
-  /**
-   * A global variable referring to the global map.
-   */
-  public static BasicMap currentMap;
-
-
   ////////////////////////////////////////////////////////////
   // INFORMATION DISPLAY SETTINGS FOR ONE PARTICULAR VEHICLE
   ////////////////////////////////////////////////////////////
@@ -0,0 +1,227 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.config;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import aim4.util.Util;
+
+/**
+ * A traffic signal plan.  A plan is a list of entries, each of which gives
+ * the signals of all entry lanes of an intersection until a given step.
+ * The plan is precomputed into a schedule keyed by the discrete simulation
+ * time such that the signals at any step can be looked up in constant time.
+ * The plan repeats itself after the last entry.
+ * <p>
+ * In the plan file, each entry takes two lines: the step at which the entry
+ * ends, and the signals of the lanes as a string of 'G', 'Y' and 'R'.  The
+ * string is divided evenly among the roads in the order of
+ * {@link #ROAD_NAMES}; the i-th character of a road's part is the signal of
+ * the lane whose index on the road is i.
+ */
+public class TrafficSignalPlan {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The names of the roads in the order they appear in a plan entry */
+  public static final String[] ROAD_NAMES = { "E", "W", "N", "S" };
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The number of signals of each road in an entry */
+  private int lanesPerRoad;
+  /** The signals of each step in a cycle of the plan */
+  private TrafficSignal[][] schedule;
+
+
+  /////////////////////////////////
+  // CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a traffic signal plan.
+   *
+   * @param endSteps  the step at which each entry ends, in increasing order
+   * @param signals   the signal string of each entry
+   */
+  public TrafficSignalPlan(int[] endSteps, String[] signals) {
+    if (endSteps.length == 0 || endSteps.length != signals.length) {
+      throw new IllegalArgumentException("Invalid traffic signal plan");
+    }
+    lanesPerRoad = signals[0].length() / ROAD_NAMES.length;
+    schedule = new TrafficSignal[endSteps[endSteps.length - 1]][];
+    int step = 0;
+    for(int i = 0; i < endSteps.length; i++) {
+      if (signals[i].length() != lanesPerRoad * ROAD_NAMES.length) {
+        throw new IllegalArgumentException("Invalid signal string: " +
+                                           signals[i]);
+      }
+      TrafficSignal[] row = new TrafficSignal[signals[i].length()];
+      for(int j = 0; j < row.length; j++) {
+        row[j] = charToTrafficSignal(signals[i].charAt(j));
+      }
+      for(; step < endSteps[i]; step++) {
+        schedule[step] = row;
+      }
+    }
+    if (schedule.length == 0) {
+      throw new IllegalArgumentException("Empty traffic signal plan");
+    }
+  }
+
+
+  /////////////////////////////////
+  // PUBLIC STATIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Create a traffic signal plan from a file.  The file is looked up in the
+   * file system first and then on the class path.
+   *
+   * @param fileName  the name of the plan file
+   * @return the traffic signal plan
+   * @throws IOException if the file cannot be read
+   */
+  public static TrafficSignalPlan makeFromFile(String fileName)
+      throws IOException {
+    List<String> strs;
+    File file = new File(fileName);
+    if (file.exists()) {
+      strs = new ArrayList<String>();
+      BufferedReader br = new BufferedReader(new FileReader(file));
+      try {
+        for(String line = br.readLine(); line != null; line = br.readLine()) {
+          strs.add(line);
+        }
+      } finally {
+        br.close();
+      }
+    } else {
+      strs = Util.readFileToStrArray(fileName);
+    }
+
+    List<String> lines = new ArrayList<String>(strs.size());
+    for(String s : strs) {
+      if (s.trim().length() > 0) {
+        lines.add(s.trim());
+      }
+    }
+    int n = lines.size() / 2;
+    int[] endSteps = new int[n];
+    String[] signals = new String[n];
+    for(int i = 0; i < n; i++) {
+      endSteps[i] = (int)Double.parseDouble(lines.get(2 * i));
+      signals[i] = lines.get(2 * i + 1);
+    }
+    return new TrafficSignalPlan(endSteps, signals);
+  }
+
+  /**
+   * Convert a character in a plan file to a traffic signal.
+   *
+   * @param c  the character
+   * @return the traffic signal
+   */
+  public static TrafficSignal charToTrafficSignal(char c) {
+    switch(c) {
+    case 'G':
+      return TrafficSignal.GREEN;
+    case 'Y':
+      return TrafficSignal.YELLOW;
+    case 'R':
+      return TrafficSignal.RED;
+    default:
+      throw new IllegalArgumentException("Unknown traffic signal: " + c);
+    }
+  }
+
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the number of steps in a cycle of the plan.
+   *
+   * @return the number of steps in a cycle of the plan
+   */
+  public int getCycleLength() {
+    return schedule.length;
+  }
+
+  /**
+   * Get the number of signals of each road in an entry.
+   *
+   * @return the number of signals of each road
+   */
+  public int getLanesPerRoad() {
+    return lanesPerRoad;
+  }
+
+  /**
+   * Get the column of a lane in the signals of an entry.
+   *
+   * @param roadName   the name of the road of the lane
+   * @param laneIndex  the index of the lane on the road
+   * @return the column of the lane; -1 if the lane is not in the plan
+   */
+  public int getColumn(String roadName, int laneIndex) {
+    if (laneIndex < 0 || laneIndex >= lanesPerRoad) {
+      return -1;
+    }
+    for(int i = 0; i < ROAD_NAMES.length; i++) {
+      if (ROAD_NAMES[i].equals(roadName)) {
+        return i * lanesPerRoad + laneIndex;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Get the signals of all columns at a given step.  The returned array
+   * must not be modified.
+   *
+   * @param step  the step
+   * @return the signals at the step
+   */
+  public TrafficSignal[] getSignals(long step) {
+    return schedule[(int)(step % schedule.length)];
+  }
+}
@@ -34,6 +34,7 @@ import java.awt.geom.Area;
 import aim4.driver.coordinator.NoIntersectionCoordinator;
 import aim4.driver.coordinator.V2ICoordinator;
 import aim4.driver.coordinator.Coordinator;
+import aim4.driver.pilot.V2IPilot;
 import aim4.im.IntersectionManager;
 import aim4.map.BasicMap;
 import aim4.vehicle.AutoVehicleDriverView;
@@ -46,6 +47,8 @@ import aim4.vehicle.AutoVehicleDriverView;
  */
 public class AutoDriver extends Driver implements AutoDriverCoordinatorView, AutoDriverPilotView {
 
+  private static final long serialVersionUID = 1L;
+
   /////////////////////////////////
   // PRIVATE FIELDS
   /////////////////////////////////
@@ -56,6 +59,18 @@ public class AutoDriver extends Driver implements AutoDriverCoordinatorView, Aut
   /** The sub-agent that controls coordination */
   private Coordinator coordinator;
 
+  /**
+   * The V2I coordinator that is reused for every intersection; null if no
+   * V2I coordinator has been created yet
+   */
+  private V2ICoordinator v2iCoordinator;
+
+  /**
+   * The coordinator that is reused when there is no intersection; null if no
+   * such coordinator has been created yet
+   */
+  private NoIntersectionCoordinator noIntersectionCoordinator;
+
   /** The map */
   private BasicMap basicMap;
 
@@ -64,6 +79,12 @@ public class AutoDriver extends Driver implements AutoDriverCoordinatorView, Aut
    */
   private IntersectionManager currentIM;
 
+  /**
+   * The shortest distance before an intersection at which the vehicle stops
+   * if it can't enter the intersection immediately
+   */
+  private double stopDistBeforeIntersection;
+
   // Memoization Caches - big D double so they can be null
 
   private transient Double memoDistanceToNextIntersection;
@@ -84,6 +105,8 @@ public class AutoDriver extends Driver implements AutoDriverCoordinatorView, Aut
     this.basicMap = basicMap;
     coordinator = null;
     currentIM = null;
+    stopDistBeforeIntersection =
+      V2IPilot.DEFAULT_STOP_DISTANCE_BEFORE_INTERSECTION;
   }
 
 
@@ -91,6 +114,17 @@ public class AutoDriver extends Driver implements AutoDriverCoordinatorView, Aut
   // PUBLIC METHODS
   /////////////////////////////////
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset() {
+    super.reset();
+    coordinator = null;
+    currentIM = null;
+    clearMemoizationCaches();
+  }
+
   /**
    * Take control actions for driving the agent's Vehicle.  This allows
    * both the Coordinator and the Pilot to act (in that order).
@@ -105,10 +139,20 @@ public class AutoDriver extends Driver implements AutoDriverCoordinatorView, Aut
       // TODO: need to check type of intersection
       if (im != null) {
         currentIM = im;
-        coordinator = new V2ICoordinator(vehicle, this, basicMap);
+        // the previous V2I coordinator, if any, has terminated
+        if (v2iCoordinator == null) {
+          v2iCoordinator = new V2ICoordinator(vehicle, this, basicMap);
+        } else {
+          v2iCoordinator.reset();
+        }
+        coordinator = v2iCoordinator;
       } else {
         currentIM = null;
-        coordinator = new NoIntersectionCoordinator(vehicle, this);
+        if (noIntersectionCoordinator == null) {
+          noIntersectionCoordinator =
+            new NoIntersectionCoordinator(vehicle, this);
+        }
+        coordinator = noIntersectionCoordinator;
       }
     }
     // the newly created coordinator can be called immediately.
@@ -160,6 +204,27 @@ public class AutoDriver extends Driver implements AutoDriverCoordinatorView, Aut
     return currentIM;
   }
 
+  // stopping distance
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getStopDistBeforeIntersection() {
+    return stopDistBeforeIntersection;
+  }
+
+  /**
+   * Set the shortest distance before an intersection at which the vehicle
+   * stops if it can't enter the intersection immediately.
+   *
+   * @param stopDistBeforeIntersection  the stopping distance before
+   *                                    intersection
+   */
+  public void setStopDistBeforeIntersection(double stopDistBeforeIntersection) {
+    this.stopDistBeforeIntersection = stopDistBeforeIntersection;
+  }
+
 
   /////////////////////////////////
   // PUBLIC METHODS
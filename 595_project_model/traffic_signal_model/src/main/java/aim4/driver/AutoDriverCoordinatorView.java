@@ -129,5 +129,13 @@ public interface AutoDriverCoordinatorView {
    */
   boolean inCurrentIntersection();
 
+  /**
+   * Get the shortest distance before an intersection at which the vehicle
+   * stops if it can't enter the intersection immediately.
+   *
+   * @return the stopping distance before intersection
+   */
+  double getStopDistBeforeIntersection();
+
 
 }
@@ -32,8 +32,8 @@ package aim4.driver;
 
 import java.awt.geom.Point2D;
 
-import aim4.config.Debug;
 import aim4.driver.pilot.V2IPilot;
+import aim4.im.Intersection;
 import aim4.map.lane.Lane;
 import aim4.vehicle.AutoVehicleDriverView;
 
@@ -42,6 +42,8 @@ import aim4.vehicle.AutoVehicleDriverView;
  */
 public class CrashTestDummy extends Driver {
 
+  private static final long serialVersionUID = 1L;
+
   /////////////////////////////////
   // PRIVATE FIELDS
   /////////////////////////////////
@@ -52,6 +54,9 @@ public class CrashTestDummy extends Driver {
   /** The Lane in which the vehicle should exit the intersection. */
   private Lane departureLane;
 
+  /** The intersection the vehicle traverses. */
+  private Intersection intersection;
+
 
   /////////////////////////////////
   // CLASS CONSTRUCTORS
@@ -66,12 +71,15 @@ public class CrashTestDummy extends Driver {
    *                      intersection
    * @param departureLane the Lane in which the vehicle should depart the
    *                      intersection
+   * @param intersection  the intersection the vehicle traverses
    */
   public CrashTestDummy(AutoVehicleDriverView vehicle,
-                        Lane arrivalLane, Lane departureLane) {
+                        Lane arrivalLane, Lane departureLane,
+                        Intersection intersection) {
     this.vehicle = vehicle;
     setCurrentLane(arrivalLane);
     this.departureLane = departureLane;
+    this.intersection = intersection;
   }
 
   /////////////////////////////////
@@ -88,7 +96,8 @@ public class CrashTestDummy extends Driver {
     // If we're not already in the departure lane
     if(getCurrentLane() != departureLane) {
       // If we're changing to a different Road
-      if(Debug.currentMap.getRoad(getCurrentLane()) != Debug.currentMap.getRoad(departureLane)) {
+      if(intersection.getRoad(getCurrentLane()) !=
+         intersection.getRoad(departureLane)) {
         // If we're close enough...
         if(departureLane.nearestDistance(getVehicle().gaugePosition()) <
            calculateTraversingLaneChangeDistance()) {
@@ -31,6 +31,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package aim4.driver;
 
 import java.awt.Color;
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -48,7 +49,9 @@ import aim4.vehicle.VehicleDriverView;
 /**
  * An agent that drives a {@link AutoVehicleDriverView}.
  */
-public abstract class Driver implements DriverSimView {
+public abstract class Driver implements DriverSimView, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /////////////////////////////////
   // CONSTANTS
@@ -96,6 +99,18 @@ public abstract class Driver implements DriverSimView {
   // PUBLIC METHODS
   /////////////////////////////////
 
+  /**
+   * Reset the driver to the state it has right after it is constructed,
+   * such that it can drive its vehicle on a new trip.
+   */
+  public void reset() {
+    currentLane = null;
+    currentRoad = null;
+    currentlyOccupiedLanes = null;
+    spawnPoint = null;
+    destination = null;
+  }
+
   /**
    * Take control actions for driving the agent's Vehicle.  This includes
    * physical manipulation of the Vehicle as well as sending any messages
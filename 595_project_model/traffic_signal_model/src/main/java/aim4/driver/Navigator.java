@@ -31,6 +31,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package aim4.driver;
 
 import java.awt.geom.Point2D;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -38,7 +39,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 
-import aim4.config.Debug;
 import aim4.im.IntersectionManager;
 import aim4.map.BasicMap;
 import aim4.map.Road;
@@ -49,7 +49,9 @@ import aim4.vehicle.VehicleUtil;
 /**
  * A base class for an agent that chooses which way a vehicle should go.
  */
-public class Navigator {
+public class Navigator implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /////////////////////////////////
   // NESTED CLASSES
@@ -58,7 +60,7 @@ public class Navigator {
   /**
    * A node in the A* search.
    */
-  private static class Node implements Comparable<Node> {
+  private class Node implements Comparable<Node> {
 
     /////////////////////////////////
     // PRIVATE FIELDS
@@ -202,7 +204,7 @@ public class Navigator {
      * @return the road of the last node
      */
     public Road getLastRoad() {
-      return Debug.currentMap.getRoad(path.get(path.size() - 1));
+      return basicMap.getRoad(path.get(path.size() - 1));
     }
 
     /**
@@ -257,6 +259,14 @@ public class Navigator {
   /////////////////////////////////
   // PUBLIC METHODS
   /////////////////////////////////
+
+  /**
+   * Forget the cached paths.
+   */
+  public void reset() {
+    fastestMap.clear();
+  }
+
   public Road navigate(Road current, IntersectionManager im, Road destination) {
     return fastestPath(current, im, destination);
   }
@@ -286,7 +296,7 @@ public class Navigator {
         List<Integer> currKey =
           Arrays.asList(path.get(i-1), pathIMs.get(i-1),
                         destinationRoad.getIndexLane().getId());
-        fastestMap.put(currKey, Debug.currentMap.getRoad(path.get(i)));
+        fastestMap.put(currKey, basicMap.getRoad(path.get(i)));
       }
     }
     return fastestMap.get(key);
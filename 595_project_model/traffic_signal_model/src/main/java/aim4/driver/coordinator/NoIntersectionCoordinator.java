@@ -30,6 +30,8 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.driver.coordinator;
 
+import java.io.Serializable;
+
 import aim4.driver.AutoDriver;
 import aim4.driver.pilot.V2IPilot;
 import aim4.vehicle.AutoVehicleDriverView;
@@ -37,7 +39,9 @@ import aim4.vehicle.AutoVehicleDriverView;
 /**
  * The coordinator when there is no intersection.
  */
-public class NoIntersectionCoordinator implements Coordinator {
+public class NoIntersectionCoordinator implements Coordinator, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /////////////////////////////////
   // PRIVATE FIELDS
@@ -30,6 +30,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.driver.coordinator;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
@@ -70,7 +71,9 @@ import aim4.vehicle.VehicleUtil;
  * alters the state of the CoordinatingDriverAgent of which it is a part to
  * reflect the current reservation status.
  */
-public class V2ICoordinator implements Coordinator {
+public class V2ICoordinator implements Coordinator, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /////////////////////////////////
   // CONSTANTS
@@ -148,7 +151,7 @@ public class V2ICoordinator implements Coordinator {
   /**
    * An interface of the state handler.
    */
-  private interface StateHandler {
+  private interface StateHandler extends Serializable {
     /**
      * Perform the action defined by the state handler at the driver state.
      *
@@ -228,7 +231,9 @@ public class V2ICoordinator implements Coordinator {
 
   // lane change controller
 
-  private static class LaneChangeController {
+  private static class LaneChangeController implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /////////////////////////////////
     // CONSTANTS
@@ -368,6 +373,19 @@ public class V2ICoordinator implements Coordinator {
     // PUBLIC METHODS
     /////////////////////////////////
 
+    /**
+     * Restore the controller to the state it has right after it is
+     * constructed.
+     */
+    public void clear() {
+      state = null;
+      turnDirection = null;
+      hasBegun = false;
+      shouldChangeLane = false;
+      initiateTimeLimit = 0.0;
+      isLaneChangeSuccessful = false;
+    }
+
     /**
      * Reset the controller.
      */
@@ -476,7 +494,7 @@ public class V2ICoordinator implements Coordinator {
     private TurnDirection getTurnDirection(Navigator navigator) {
       IntersectionManager im = driver.nextIntersectionManager();
       Lane currentLane = driver.getCurrentLane();
-      Road currentRoad = Debug.currentMap.getRoad(currentLane);
+      Road currentRoad = im.getIntersection().getRoad(currentLane);
       Road departureRoad =
         navigator.navigate(currentRoad, im, driver.getDestination());
       Lane departureLane = departureRoad.getIndexLane();
@@ -491,6 +509,8 @@ public class V2ICoordinator implements Coordinator {
      */
     private class LcWaitingLaneChangeStateHandler implements StateHandler {
 
+      private static final long serialVersionUID = 1L;
+
       /**
        * Determine the vehicle can change lane immediately.
        */
@@ -565,6 +585,8 @@ public class V2ICoordinator implements Coordinator {
      */
     private class LcChangingLaneStateHandler implements StateHandler {
 
+      private static final long serialVersionUID = 1L;
+
       @Override
       public boolean perform() {
         // check to see if the vehicle has moved into the target lane
@@ -627,7 +649,9 @@ public class V2ICoordinator implements Coordinator {
   /**
    * Postprocessing the reservation parameters
    */
-  public static class ReservationParameter {
+  public static class ReservationParameter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * The Lane in which the Vehicle should arrive at the intersection.
@@ -681,12 +705,15 @@ public class V2ICoordinator implements Coordinator {
 
     /**
      * Create a reservation parameter object
+     *
+     * @param msg       the confirm message
+     * @param basicMap  the map
      */
-    public ReservationParameter(Confirm msg) {
+    public ReservationParameter(Confirm msg, BasicMap basicMap) {
       this.arrivalLane =
-        Debug.currentMap.getLaneRegistry().get(msg.getArrivalLaneID());
+        basicMap.getLaneRegistry().get(msg.getArrivalLaneID());
       this.departureLane =
-        Debug.currentMap.getLaneRegistry().get(msg.getDepartureLaneID());
+        basicMap.getLaneRegistry().get(msg.getDepartureLaneID());
       this.arrivalTime = msg.getArrivalTime();
       this.earlyError = msg.getEarlyError();
       this.lateError = msg.getLateError();
@@ -808,6 +835,9 @@ public class V2ICoordinator implements Coordinator {
   /** The driver of which this coordinator is a part. */
   private AutoDriverCoordinatorView driver;
 
+  /** The map */
+  private BasicMap basicMap;
+
   /** The navigator that will choose which way to go. */
   private Navigator navigator;
 
@@ -884,6 +914,7 @@ public class V2ICoordinator implements Coordinator {
                         BasicMap basicMap) {
     this.vehicle = vehicle;
     this.driver = driver;
+    this.basicMap = basicMap;
     this.pilot = new V2IPilot(vehicle, driver);
     this.navigator = new Navigator(vehicle.getSpec(), basicMap);
 
@@ -893,6 +924,38 @@ public class V2ICoordinator implements Coordinator {
 
     initStateHandlers();
 
+    init();
+  }
+
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Reset the coordinator to the state it has right after it is constructed,
+   * such that the driver can reuse it for the next intersection or for the
+   * next trip of the vehicle.
+   */
+  public void reset() {
+    navigator.reset();
+
+    isDebugging = Debug.isTargetVIN(vehicle.getVIN());
+
+    lcController.clear();
+
+    init();
+  }
+
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Initialize the state of the coordinator.
+   */
+  private void init() {
     assert (driver.nextIntersectionManager() != null);
 
     // We don't have a reservation yet
@@ -1230,6 +1293,9 @@ public class V2ICoordinator implements Coordinator {
    * The state handler for the planning state.
    */
   private class V2IPlanningStateHandler implements StateHandler {
+
+    private static final long serialVersionUID = 1L;
+
     /**
      * {@inheritDoc}
      */
@@ -1249,7 +1315,7 @@ public class V2ICoordinator implements Coordinator {
       if (vehicle.gaugeTime() >= nextAllowedSendingRequestTime) {
         if (!SimConfig.MUST_STOP_BEFORE_INTERSECTION ||
             driver.distanceToNextIntersection() <=
-            V2IPilot.DEFAULT_STOP_DISTANCE_BEFORE_INTERSECTION +
+            driver.getStopDistBeforeIntersection() +
             SimConfig.ADDITIONAL_STOP_DIST_BEFORE_INTERSECTION) {
           // prepare reservation
           setState(State.V2I_PREPARING_RESERVATION);
@@ -1269,6 +1335,9 @@ public class V2ICoordinator implements Coordinator {
    * The state handler for the lane changing state.
    */
   private class V2ILaneChangeStateHandler implements StateHandler {
+
+    private static final long serialVersionUID = 1L;
+
     /**
      * {@inheritDoc}
      */
@@ -1299,6 +1368,9 @@ public class V2ICoordinator implements Coordinator {
    * The state handler for the default driving behavior state.
    */
   private class V2IDefaultDrivingBehaviorStateHandler implements StateHandler {
+
+    private static final long serialVersionUID = 1L;
+
     /**
      * {@inheritDoc}
      */
@@ -1319,6 +1391,8 @@ public class V2ICoordinator implements Coordinator {
    */
   private class V2IPreparingReservationStateHandler implements StateHandler {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Estimates the arrival parameters at the intersection given a maximum
      * velocity.
@@ -1519,7 +1593,7 @@ public class V2ICoordinator implements Coordinator {
       List<Lane> departureLanes =
         new ArrayList<Lane>(MAX_LANES_TO_TRY_PER_ROAD);
       Road departureRoad =
-        navigator.navigate(Debug.currentMap.getRoad(driver.getCurrentLane()),
+        navigator.navigate(basicMap.getRoad(driver.getCurrentLane()),
                            driver.getCurrentIM(),
                            driver.getDestination());
       // Let's just take the highest priority Lane from each Road
@@ -1566,7 +1640,7 @@ public class V2ICoordinator implements Coordinator {
         if (isDebugging) {
           double dTotal =
             driver.distanceToNextIntersection()
-            - V2IPilot.DEFAULT_STOP_DISTANCE_BEFORE_INTERSECTION;
+            - driver.getStopDistBeforeIntersection();
           if (dTotal < 0.0) {
             System.err.printf("vin %d passed point of no return\n",
                               vehicle.getVIN());
@@ -1612,6 +1686,9 @@ public class V2ICoordinator implements Coordinator {
    * The state handler for the awaiting response state.
    */
   private class V2IAwaitingResponseStateHandler implements StateHandler {
+
+    private static final long serialVersionUID = 1L;
+
     /**
      * {@inheritDoc}
      */
@@ -1657,6 +1734,9 @@ public class V2ICoordinator implements Coordinator {
    * The state handler for the maintaining reservation state.
    */
   private class V2IMaintainingReservationStateHandler implements StateHandler {
+
+    private static final long serialVersionUID = 1L;
+
     /**
      * Check whether it is possible for the vehicle to arrive at the
      * intersection at the arrival time in accordance with its reservation
@@ -1758,6 +1838,9 @@ public class V2ICoordinator implements Coordinator {
    * The state handler for the traversing state.
    */
   private class V2ITraversingStateHandler implements StateHandler {
+
+    private static final long serialVersionUID = 1L;
+
     /**
      * {@inheritDoc}
      */
@@ -1788,6 +1871,9 @@ public class V2ICoordinator implements Coordinator {
    * The state handler for the clearing state.
    */
   private class V2IClearingStateHandler implements StateHandler {
+
+    private static final long serialVersionUID = 1L;
+
     /**
      * {@inheritDoc}
      */
@@ -1900,7 +1986,7 @@ public class V2ICoordinator implements Coordinator {
    * @param msg  the confirm message
    */
   private void setReservationParameter(Confirm msg) {
-    rparameter = new ReservationParameter(msg);
+    rparameter = new ReservationParameter(msg, basicMap);
   }
 
   /**
@@ -1950,7 +2036,7 @@ public class V2ICoordinator implements Coordinator {
     double d2 = VehicleUtil.distanceToCarInFront(vehicle);
     if (d2 >= Double.MAX_VALUE) return true;  // no car in front
     double d3 = d1 - d2;
-    return (d3 <= V2IPilot.DEFAULT_STOP_DISTANCE_BEFORE_INTERSECTION);
+    return (d3 <= driver.getStopDistBeforeIntersection());
   }
 
 
@@ -1965,7 +2051,7 @@ public class V2ICoordinator implements Coordinator {
    */
   private AccelSchedule decelToStopAtIntersection() {
     // stop at the buffer distance before intersection
-    double dTotal = driver.distanceToNextIntersection() - V2IPilot.DEFAULT_STOP_DISTANCE_BEFORE_INTERSECTION;
+    double dTotal = driver.distanceToNextIntersection() - driver.getStopDistBeforeIntersection();
 
     if (dTotal > 0.0) {
       double time1 = vehicle.gaugeTime();
@@ -32,6 +32,7 @@ package aim4.driver.pilot;
 
 import java.awt.Color;
 import java.awt.geom.Point2D;
+import java.io.Serializable;
 
 import aim4.config.Debug;
 import aim4.config.DebugPoint;
@@ -42,7 +43,9 @@ import aim4.vehicle.VehicleDriverView;
 /**
  * The basic pilot agent.
  */
-public abstract class BasicPilot {
+public abstract class BasicPilot implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /////////////////////////////////
   // PUBLIC METHODS
@@ -33,7 +33,7 @@ package aim4.driver.pilot;
 import java.util.Iterator;
 import java.util.Queue;
 
-import aim4.config.Debug;
+import aim4.im.Intersection;
 import aim4.config.SimConfig;
 import aim4.driver.AutoDriver;
 import aim4.driver.DriverUtil;
@@ -48,6 +48,8 @@ import aim4.vehicle.VehicleUtil;
  */
 public class V2IPilot extends BasicPilot {
 
+  private static final long serialVersionUID = 1L;
+
   // ///////////////////////////////
   // CONSTANTS
   // ///////////////////////////////
@@ -60,9 +62,11 @@ public class V2IPilot extends BasicPilot {
 
   /**
    * The default shortest distance before an intersection at which the vehicle
-   * stops if the vehicle can't enter the intersection immediately.
+   * stops if the vehicle can't enter the intersection immediately.  Each
+   * simulation sets its own distance in its {@link aim4.sim.SimContext}.
+   * {@value} meters.
    */
-  public static double DEFAULT_STOP_DISTANCE_BEFORE_INTERSECTION = 1.0;
+  public static final double DEFAULT_STOP_DISTANCE_BEFORE_INTERSECTION = 1.0;
 
   /**
    * The distance, expressed in units of the Vehicle's velocity, at which to
@@ -128,8 +132,9 @@ public class V2IPilot extends BasicPilot {
     // If we're not already in the departure lane
     if (driver.getCurrentLane() != rp.getDepartureLane()) {
       // If we're changing to a different Road
-      if (Debug.currentMap.getRoad(driver.getCurrentLane()) !=
-        Debug.currentMap.getRoad(rp.getDepartureLane())) {
+      Intersection intersection = driver.getCurrentIM().getIntersection();
+      if (intersection.getRoad(driver.getCurrentLane()) !=
+          intersection.getRoad(rp.getDepartureLane())) {
         // Find out how far from it we are
         double distToLane =
           rp.getDepartureLane().nearestDistance(vehicle.gaugePosition());
@@ -272,7 +277,7 @@ public class V2IPilot extends BasicPilot {
   private void dontEnterIntersection() {
     double stoppingDistance = distIfStopNextTimeStep();
     double minDistanceToIntersection =
-      stoppingDistance + DEFAULT_STOP_DISTANCE_BEFORE_INTERSECTION;
+      stoppingDistance + driver.getStopDistBeforeIntersection();
     if (vehicle.getDriver().distanceToNextIntersection() <
         minDistanceToIntersection) {
       vehicle.slowToStop();
@@ -67,8 +67,6 @@ import aim4.driver.coordinator.V2ICoordinator;
 import aim4.im.IntersectionManager;
 import aim4.im.v2i.RequestHandler;
 import aim4.im.v2i.V2IManager;
-import aim4.im.v2i.policy.BasePolicy;
-import aim4.im.v2i.policy.Policy;
 import aim4.map.DataCollectionLine;
 import aim4.map.BasicMap;
 import aim4.map.Road;
@@ -689,7 +687,7 @@ public class Canvas extends JPanel implements ComponentListener,
       }
       // draw simulation time.
       if (isShowSimulationTime) {
-        drawSimulationTime(displayBuffer, viewer.time);
+        drawSimulationTime(displayBuffer, sim.getSimulationTime());
       }
       // lastly, draw the vehicles' information string
       for (VehicleSimView v : sim.getActiveVehicles()) {
@@ -849,36 +847,32 @@ public class Canvas extends JPanel implements ComponentListener,
    */
   private void drawTrafficLights(Graphics2D buffer, IntersectionManager im) {
     if (im instanceof V2IManager) {
-      Policy policy = ((V2IManager) im).getPolicy();
-      if (policy instanceof BasePolicy) {
-        BasePolicy basePolicy = (BasePolicy) policy;
-        if (basePolicy.getRequestHandler() instanceof RequestHandler) {
-          RequestHandler requestHandler = (RequestHandler) basePolicy.getRequestHandler();
-          for (Lane entryLane : im.getIntersection().getEntryLanes()) {
-              switch (requestHandler.getSignal(entryLane.getId())) {
-            case GREEN:
-              buffer.setPaint(Color.GREEN);break;
-            case YELLOW:
-              buffer.setPaint(Color.YELLOW);break;
-            case RED:
-              buffer.setPaint(Color.RED);break;
-            default:
-              throw new RuntimeException("Unknown traffic signals.\n");
-            }
-            // Now create the shape we will use to draw the light
-            // For some reason, Java's angles increase to the right instead of to the left
-            Arc2D lightShape = new Arc2D.Double(im.getIntersection().getEntryPoint(entryLane).getX()
-                - TRAFFIC_LIGHT_RADIUS, // x
-                im.getIntersection().getEntryPoint(entryLane).getY()
-                - TRAFFIC_LIGHT_RADIUS, // y
-                TRAFFIC_LIGHT_RADIUS * 2, // width
-                TRAFFIC_LIGHT_RADIUS * 2, // height
-                90 - // start
-                Math.toDegrees(im.getIntersection().getEntryHeading(entryLane)), 180.0, // extent
-                Arc2D.PIE); // type
-            // Now draw it!
-            buffer.fill(lightShape);
+      RequestHandler requestHandler = ((V2IManager) im).getRequestHandler();
+      if (requestHandler != null) {
+        for (Lane entryLane : im.getIntersection().getEntryLanes()) {
+            switch (requestHandler.getSignal(entryLane.getId())) {
+          case GREEN:
+            buffer.setPaint(Color.GREEN);break;
+          case YELLOW:
+            buffer.setPaint(Color.YELLOW);break;
+          case RED:
+            buffer.setPaint(Color.RED);break;
+          default:
+            throw new RuntimeException("Unknown traffic signals.\n");
           }
+          // Now create the shape we will use to draw the light
+          // For some reason, Java's angles increase to the right instead of to the left
+          Arc2D lightShape = new Arc2D.Double(im.getIntersection().getEntryPoint(entryLane).getX()
+              - TRAFFIC_LIGHT_RADIUS, // x
+              im.getIntersection().getEntryPoint(entryLane).getY()
+              - TRAFFIC_LIGHT_RADIUS, // y
+              TRAFFIC_LIGHT_RADIUS * 2, // width
+              TRAFFIC_LIGHT_RADIUS * 2, // height
+              90 - // start
+              Math.toDegrees(im.getIntersection().getEntryHeading(entryLane)), 180.0, // extent
+              Arc2D.PIE); // type
+          // Now draw it!
+          buffer.fill(lightShape);
         }
       }
     }
@@ -57,16 +57,14 @@ public class SimSetupPanel extends JPanel implements ItemListener {
   private CardLayout cardLayout;
   /** The simulation setup panel */
   private BasicSimSetup simSetup;
-  private Viewer viewer;
 
   /**
    * Create a simulation setup panel
    *
    * @param initSimSetup  the initial simulation setup
    */
-  public SimSetupPanel(BasicSimSetup initSimSetup, Viewer viewer) {
+  public SimSetupPanel(BasicSimSetup initSimSetup) {
     this.simSetup = initSimSetup;
-    this.viewer = viewer;
     // create the combo box pane
     JPanel comboBoxPane = new JPanel(); //use FlowLayout
     comboBoxPane.setBackground(Color.WHITE);
@@ -91,9 +89,7 @@ public class SimSetupPanel extends JPanel implements ItemListener {
    * @return the simulation setup object
    */
   public SimSetup getSimSetup() {
-      TrafficSignalSimSetup simSetup2 =
-        new TrafficSignalSimSetup(simSetup,
-                viewer);
+      TrafficSignalSimSetup simSetup2 = new TrafficSignalSimSetup(simSetup);
       simSetup2.setTrafficVolume();
       simSetup2.setLanesPerRoad(3);
       simSetup2.setStopDistBeforeIntersection(1.0);
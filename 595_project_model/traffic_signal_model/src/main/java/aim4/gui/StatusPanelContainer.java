@@ -70,7 +70,7 @@ public class StatusPanelContainer extends JTabbedPane implements ChangeListener
     add("Control", controlPanel);
     statPanel = new StatPanel(viewer);
     add("Statistics", statPanel);
-    vehicleInfoPanel = new VehicleInfoPanel();
+    vehicleInfoPanel = new VehicleInfoPanel(viewer);
     add("Vehicle", vehicleInfoPanel);
 
 
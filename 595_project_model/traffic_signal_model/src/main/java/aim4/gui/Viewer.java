@@ -63,13 +63,13 @@ import aim4.gui.frame.VehicleInfoFrame;
 import aim4.im.IntersectionManager;
 import aim4.map.Road;
 import aim4.map.lane.Lane;
+import aim4.sim.SimContext;
 import aim4.sim.Simulator;
 import aim4.sim.Simulator.SimStepResult;
 import aim4.sim.setup.BasicSimSetup;
 import aim4.sim.setup.SimSetup;
 import aim4.util.Util;
 import aim4.vehicle.VehicleSimView;
-import aim4.vehicle.VinRegistry;
 
 /**
  * The viewer is a Graphical User Interface (GUI) that allows a user to run the
@@ -144,11 +144,6 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
   private static final int SIM_SETUP_PANE_GAP = 5;
 
 
-  public boolean threadflag = true;
-
-  public int time = 0;
-
-
 
   /////////////////////////////////
   // NESTED CLASSES
@@ -279,7 +274,7 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
     public void run() {
       Thread thisThread = Thread.currentThread();
       while (blinker == thisThread) {
-        if (isStopped || !threadflag) {
+        if (isStopped) {
           try {
             Thread.sleep(10L); // just sleep for a very short moment
           } catch (InterruptedException e) {
@@ -534,7 +529,7 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
   private void createComponents() {
     mainPanel = new JPanel();
     canvas = new Canvas(this);
-    simSetupPanel = new SimSetupPanel(initSimSetup, this);
+    simSetupPanel = new SimSetupPanel(initSimSetup);
     statusPanel = new StatusPanelContainer(this);
     startButton = new JButton("Start");
     startButton.addActionListener(this);
@@ -642,7 +637,6 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
     canvas.cleanUp();
     statusPanel.clear();
     resetButtonMenuItem();
-    time = 0;
   }
 
   /** Reset the button menu items.*/
@@ -694,9 +688,7 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
   private void startSimProcess(SimSetup initSimSetup) throws IOException {
     assert sim == null;
     // create the simulator
-    VinRegistry.reset();   // TODO: should make it part of the simulator
-    System.gc();
-    sim = initSimSetup.getSimulator(this);
+    sim = initSimSetup.getSimulator(new SimContext(Util.random.nextLong()));
     createSimThread(); // create the simulation thread
     setSimStartGUIsetting(); // initialize the GUI
     nextFrameTime = System.currentTimeMillis(); // start the thread
@@ -748,6 +740,11 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
       simThread.resume();
     }
     simThread = null;
+    try {
+      sim.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
     sim = null;
 
 
@@ -38,10 +38,11 @@ import javax.swing.JPanel;
 import aim4.config.Constants;
 import aim4.config.Debug;
 import aim4.gui.StatusPanelInterface;
+import aim4.gui.Viewer;
 import aim4.gui.component.FormattedLabel;
+import aim4.sim.Simulator;
 import aim4.vehicle.AutoVehicleSimView;
 import aim4.vehicle.VehicleSimView;
-import aim4.vehicle.VinRegistry;
 
 /**
  * The Vehicle Information Panel
@@ -55,6 +56,8 @@ public class VehicleInfoPanel extends JPanel
   // PRIVATE FIELDS
   // ///////////////////////////////
 
+  /** The viewer object */
+  private Viewer viewer;
   /** The selected vehicle's ID number. */
   private FormattedLabel vehicleVINLabel =
     new FormattedLabel("VIN: ", "%6d", 6);
@@ -85,8 +88,12 @@ public class VehicleInfoPanel extends JPanel
 
   /**
    * Create a vehicle information panel.
+   *
+   * @param viewer  the viewer object
    */
-  public VehicleInfoPanel() {
+  public VehicleInfoPanel(Viewer viewer) {
+    this.viewer = viewer;
+
     GridBagLayout gridbag = new GridBagLayout();
     setLayout(gridbag);
 
@@ -130,7 +137,12 @@ public class VehicleInfoPanel extends JPanel
    */
   @Override
   public void update() {
-    VehicleSimView v = VinRegistry.getVehicleFromVIN(Debug.getTargetVIN());
+    Simulator sim = viewer.getSimulator();
+    VehicleSimView v = null;
+    if (sim != null) {
+      v = sim.getContext().getVinRegistry().getVehicleFromVIN(
+        Debug.getTargetVIN());
+    }
     if (v != null) {
       // Vehicle ID Number
       vehicleVINLabel.update(v.getVIN());
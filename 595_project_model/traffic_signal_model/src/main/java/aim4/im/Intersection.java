@@ -83,6 +83,24 @@ public interface Intersection {
    */
   List<Lane> getLanes();
 
+  /**
+   * Get the Lane with the given ID among the Lanes incident to this
+   * intersection.
+   *
+   * @param laneId  the ID of the Lane
+   * @return  the Lane; <code>null</code> if no incident Lane has the ID
+   */
+  Lane getLane(int laneId);
+
+  /**
+   * Get the Road to which a Lane incident to this intersection belongs.
+   *
+   * @param l the Lane
+   * @return  the Road of the Lane; <code>null</code> if the Lane is not
+   *          incident to this intersection
+   */
+  Road getRoad(Lane l);
+
 
   // entry points
 
@@ -33,8 +33,14 @@ package aim4.im;
 import java.awt.Shape;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import aim4.map.Road;
 import aim4.map.lane.Lane;
 import aim4.util.Registry;
@@ -65,6 +71,14 @@ public class IntersectionManager {
    * The path model of the intersection.
    */
   private TrackModel trackModel;
+  /**
+   * The memoized maximum turn velocities through the intersection, by the
+   * name of the vehicle specification; see
+   * {@link aim4.vehicle.VehicleUtil#maxTurnVelocity}.
+   */
+  private final ConcurrentMap<String,ConcurrentMap<List<Integer>,Double>>
+    maxTurnVelocityMemo =
+      new ConcurrentHashMap<String,ConcurrentMap<List<Integer>,Double>>();
 
 
   /////////////////////////////////
@@ -115,6 +129,66 @@ public class IntersectionManager {
     currentTime += timeStep;
   }
 
+  /**
+   * Forget everything about the vehicles and restart the clock of the
+   * intersection manager.  The intersection and its track model are kept.
+   *
+   * @param currentTime  the current time
+   */
+  public void reset(double currentTime) {
+    this.currentTime = currentTime;
+  }
+
+  /**
+   * Get the memoized maximum turn velocities through the intersection of a
+   * vehicle specification.  The memo depends only on the geometry of the
+   * intersection, so it is kept when the intersection manager is reset.
+   * The drivers may read and fill it in parallel.
+   *
+   * @param specName  the name of the vehicle specification
+   * @return the maximum turn velocities by the IDs of the arrival and
+   *         departure lanes
+   */
+  public ConcurrentMap<List<Integer>,Double> getMaxTurnVelocityMemo(
+                                                          String specName) {
+    ConcurrentMap<List<Integer>,Double> memo =
+      maxTurnVelocityMemo.get(specName);
+    if (memo == null) {
+      memo = new ConcurrentHashMap<List<Integer>,Double>();
+      ConcurrentMap<List<Integer>,Double> oldMemo =
+        maxTurnVelocityMemo.putIfAbsent(specName, memo);
+      if (oldMemo != null) {
+        memo = oldMemo;
+      }
+    }
+    return memo;
+  }
+
+  /**
+   * Write the mutable state of the intersection manager.  The intersection
+   * and its track model are not written.
+   *
+   * @param out  the output stream
+   * @throws IOException if the stream fails
+   */
+  public void writeState(ObjectOutputStream out) throws IOException {
+    out.writeDouble(currentTime);
+  }
+
+  /**
+   * Read the mutable state of the intersection manager written by
+   * {@link #writeState(ObjectOutputStream)}.
+   *
+   * @param in  the input stream
+   * @throws IOException if the stream fails
+   * @throws ClassNotFoundException if the class of an object in the stream
+   *                                cannot be found
+   */
+  public void readState(ObjectInputStream in)
+    throws IOException, ClassNotFoundException {
+    currentTime = in.readDouble();
+  }
+
   /**
    * Get the unique ID number of this IntersectionManager.
    *
@@ -47,7 +47,6 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
-import aim4.config.Debug;
 import aim4.config.Constants.TurnDirection;
 import aim4.map.Road;
 import aim4.map.lane.Lane;
@@ -123,6 +122,10 @@ public class RoadBasedIntersection implements Intersection {
 
   /** The lanes incident to this intersection. */
   private List<Lane> lanes = new ArrayList<Lane>();
+  /** A map from the IDs of the incident lanes to the lanes. */
+  private Map<Integer,Lane> idToLane = new HashMap<Integer,Lane>();
+  /** A map from the incident lanes to their roads. */
+  private Map<Lane,Road> laneToRoad = new HashMap<Lane,Road>();
 
   // points
 
@@ -210,6 +213,8 @@ public class RoadBasedIntersection implements Intersection {
     for(Road road : roads) {
       for(Lane lane : road.getLanes()) {
         lanes.add(lane);
+        idToLane.put(lane.getId(), lane);
+        laneToRoad.put(lane, road);
       }
     }
   }
@@ -458,6 +463,22 @@ public class RoadBasedIntersection implements Intersection {
     return lanes;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Lane getLane(int laneId) {
+    return idToLane.get(laneId);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Road getRoad(Lane l) {
+    return laneToRoad.get(l);
+  }
+
   /**
    * Get the Area controlled by this intersection manager.
    *
@@ -505,8 +526,8 @@ public class RoadBasedIntersection implements Intersection {
    */
   private void calcEntryRoads() {
     for(Lane lane : getEntryLanes()) {
-      if (!entryRoads.contains(Debug.currentMap.getRoad(lane))) {
-        entryRoads.add(Debug.currentMap.getRoad(lane));
+      if (!entryRoads.contains(getRoad(lane))) {
+        entryRoads.add(getRoad(lane));
       }
     }
   }
@@ -570,8 +591,8 @@ public class RoadBasedIntersection implements Intersection {
 
   private void calcExitRoads() {
     for(Lane lane : getExitLanes()) {
-      if (!exitRoads.contains(Debug.currentMap.getRoad(lane))) {
-        exitRoads.add(Debug.currentMap.getRoad(lane));
+      if (!exitRoads.contains(getRoad(lane))) {
+        exitRoads.add(getRoad(lane));
       }
     }
   }
@@ -630,8 +651,8 @@ public class RoadBasedIntersection implements Intersection {
    */
   @Override
   public TurnDirection calcTurnDirection(Lane currentLane, Lane departureLane) {
-    Road currentRoad = Debug.currentMap.getRoad(currentLane);
-    Road departureRoad = Debug.currentMap.getRoad(departureLane);
+    Road currentRoad = getRoad(currentLane);
+    Road departureRoad = getRoad(departureLane);
     if(departureRoad == currentRoad) {
       return TurnDirection.STRAIGHT;
     } else if(departureRoad == currentRoad.getDual()) {
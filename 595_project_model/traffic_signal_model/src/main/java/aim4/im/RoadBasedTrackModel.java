@@ -41,8 +41,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import aim4.config.Debug;
 import aim4.map.Road;
 import aim4.map.lane.Lane;
 import aim4.util.GeomMath;
@@ -140,8 +141,8 @@ public class RoadBasedTrackModel implements TrackModel {
    * Memoization cache for {@link #traversalDistance(Road arrival, Road
    * departure)}.
    */
-  private Map<List<Integer>, Double> memoTraversalDistance =
-    new HashMap<List<Integer>, Double>();
+  private ConcurrentMap<List<Integer>, Double> memoTraversalDistance =
+    new ConcurrentHashMap<List<Integer>, Double>();
 
   // TODO: remove this variable
   /**
@@ -388,7 +389,9 @@ public class RoadBasedTrackModel implements TrackModel {
   public double traversalDistance(Lane arrival, Lane departure) {
     List<Integer> key = Arrays.asList(arrival.getId(),
                                       departure.getId());
-    if(!memoTraversalDistance.containsKey(key)) {
+    // the cache is shared by the drivers, which may act in parallel
+    Double distance = memoTraversalDistance.get(key);
+    if (distance == null) {
       double totalDistance = 0;
       List<Line2D> segments =
         inIntersectionSegments(arrival, departure);
@@ -396,9 +399,13 @@ public class RoadBasedTrackModel implements TrackModel {
       for(Line2D line : segments) {
         totalDistance += line.getP1().distance(line.getP2());
       }
-      memoTraversalDistance.put(key, totalDistance);
+      distance = totalDistance;
+      Double oldDistance = memoTraversalDistance.putIfAbsent(key, distance);
+      if (oldDistance != null) {
+        distance = oldDistance;
+      }
     }
-    return memoTraversalDistance.get(key);
+    return distance;
   }
 
   /**
@@ -413,8 +420,8 @@ public class RoadBasedTrackModel implements TrackModel {
    */
   @Override
   public double traversalDistance(int arrivalID, int departureID) {
-    Lane arrival = Debug.currentMap.getLaneRegistry().get(arrivalID);
-    Lane departure = Debug.currentMap.getLaneRegistry().get(departureID);
+    Lane arrival = intersection.getLane(arrivalID);
+    Lane departure = intersection.getLane(departureID);
     return traversalDistance(arrival, departure);
   }
 
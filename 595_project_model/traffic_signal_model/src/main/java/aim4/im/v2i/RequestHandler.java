@@ -32,11 +32,13 @@ package aim4.im.v2i;
 
 import aim4.config.SimConfig;
 import aim4.config.TrafficSignal;
+import aim4.config.TrafficSignalPlan;
 
-import java.io.*;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
 
-import aim4.gui.Viewer;
+import aim4.im.Intersection;
 import aim4.im.v2i.policy.BasePolicy;
 import aim4.im.v2i.policy.BasePolicyCallback;
 import aim4.im.v2i.policy.BasePolicy.ProposalFilterResult;
@@ -46,13 +48,12 @@ import aim4.map.lane.Lane;
 import aim4.msg.i2v.Reject;
 import aim4.msg.v2i.Request;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * The approximate N-Phases traffic signal request handler.
  */
-public class RequestHandler {
+public class RequestHandler implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /////////////////////////////////
   // NESTED CLASSES
@@ -64,178 +65,234 @@ public class RequestHandler {
   public interface SignalController {
 
     /**
-     * Get the signal at the given time
+     * Advance the signal controller by a time step.
+     *
+     * @param timeStep  the size of the time step
+     */
+    void act(double timeStep);
+
+    /**
+     * Bring the signal controller back to its state at time zero.
+     */
+    void reset();
+
+    /**
+     * Get the signal of a lane at the given time
      *
-     * @param time  the given time
+     * @param laneId  the ID of the lane
+     * @param time    the given time
      * @return the signal
      */
-    TrafficSignal getSignal(double time);
+    TrafficSignal getSignal(int laneId, double time);
   }
 
   /**
-   * The cyclic signal controller.
+   * The signal controller that follows a traffic signal plan.  There is one
+   * controller per intersection, and it is advanced by the intersection
+   * manager in every time step, so the signals change exactly at the step
+   * boundaries of the simulation.
    */
-  public static class pythonSignalController implements SignalController, Runnable{
-
-    /** The durations of the signals */
-    private long duration;
-    /** The list of signals */
-    public TrafficSignal signal;
-    public Road road;
-    public Lane lane;
-    private Viewer viewer;
-    private String EastSignal;
-    private String WestSignal;
-    private String NorthSignal;
-    private String SouthSignal;
-
-    /** Create a cyclic signal controller.*/
-    public pythonSignalController (Road road, Lane lane, Viewer viewer){
-      this.duration = 1000;
-      this.signal = TrafficSignal.RED;
-      this.road = road;
-      this.lane = lane;
-      this.viewer = viewer;
+  public static class PlanSignalController implements SignalController, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The traffic signal plan */
+    private TrafficSignalPlan plan;
+    /**
+     * A mapping from lane IDs to the columns of the plan; -1 if the lane is
+     * not in the plan.
+     */
+    private int[] laneIdToColumn;
+    /** The current step */
+    private long currentStep;
+    /** The signals at the current step */
+    private TrafficSignal[] currentSignals;
+
+    /**
+     * Create a plan signal controller.
+     *
+     * @param plan          the traffic signal plan
+     * @param intersection  the intersection controlled by this controller
+     */
+    public PlanSignalController(TrafficSignalPlan plan,
+                                Intersection intersection) {
+      this.plan = plan;
+      this.laneIdToColumn = makeLaneIdToColumn(plan, intersection);
+      this.currentStep = 0;
+      this.currentSignals = plan.getSignals(0);
     }
 
-    public TrafficSignal getSignal(double time) {
-          return signal;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void act(double timeStep) {
+      currentStep += Math.round(timeStep / SimConfig.TIME_STEP);
+      currentSignals = plan.getSignals(currentStep);
     }
 
+    /**
+     * {@inheritDoc}
+     */
     @Override
-    public void run() {
-          double time = 0;
-        if (road.getName().equals("E")){
-          while(true) {
-            try {
-               time = readFromFile(time);
-            } catch (IOException e) {e.printStackTrace();}
-              if(duration>0){
-                char c = EastSignal.charAt(road.getSpecificLaneIndex(lane));
-                signal = charToTrafficSignal(c);
-                    try {
-                      Thread.sleep((long) SimConfig.TIME_STEP_IN_MILI*duration);
-                    } catch (InterruptedException e) {e.printStackTrace();}
-              }else {
-                try {
-                  Thread.sleep(10L);
-                } catch (InterruptedException e) {e.printStackTrace();}
-              }
-          }
-        }else if (road.getName().equals("W")){
-          while(true) {
-            try {
-              time = readFromFile(time);
-            } catch (IOException e) {e.printStackTrace();}
-            if(duration>0){
-              char c = WestSignal.charAt(road.getSpecificLaneIndex(lane));
-              signal = charToTrafficSignal(c);
-                  try {
-                    Thread.sleep((long) SimConfig.TIME_STEP_IN_MILI*duration);
-                  } catch (InterruptedException e) {e.printStackTrace();}
-            }else {
-              try {
-                Thread.sleep(10L);
-              } catch (InterruptedException e) {e.printStackTrace();}
-            }
-          }
-        }else if (road.getName().equals("N")){
-          while(true) {
-            try {
-              time = readFromFile(time);
-            } catch (IOException e) {e.printStackTrace();}
-            if(duration>0){
-              char c = NorthSignal.charAt(road.getSpecificLaneIndex(lane));
-              signal = charToTrafficSignal(c);
-                  try {
-                    Thread.sleep((long) SimConfig.TIME_STEP_IN_MILI*duration);
-                  } catch (InterruptedException e) {e.printStackTrace();}
-
-            }else {
-              try {
-                Thread.sleep(10L);
-              } catch (InterruptedException e) {e.printStackTrace();}
-            }
-          }
-        }else if (road.getName().equals("S")){
-          while(true) {
-            try {
-              time = readFromFile(time);
-            } catch (IOException e) {e.printStackTrace();}
-            if(duration>0){
-              char c = SouthSignal.charAt(road.getSpecificLaneIndex(lane));
-              signal = charToTrafficSignal(c);
-              for (int i = 0; i< duration; i++){
-                try {
-                  viewer.threadflag = true;
-                  if (road.getSpecificLaneIndex(lane)==0){
-                    viewer.time+=1;
-                  }
-                  Thread.sleep((long) SimConfig.TIME_STEP_IN_MILI);
-                } catch (InterruptedException e) {e.printStackTrace();}
-              }
-            }else {
-              try {
-                  Thread.sleep((long) SimConfig.TIME_STEP_IN_MILI);
-                  viewer.threadflag = false;
-                Thread.sleep(10L);
-              } catch (InterruptedException e) {e.printStackTrace();}
-            }
-          }
-        }else {
-          System.err.print("This lane was not valid");
-        }
+    public void reset() {
+      currentStep = 0;
+      currentSignals = plan.getSignals(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TrafficSignal getSignal(int laneId, double time) {
+      long step = Math.round(time / SimConfig.TIME_STEP);
+      TrafficSignal[] signals =
+        (step == currentStep) ? currentSignals : plan.getSignals(step);
+      return lookUpSignal(signals, laneIdToColumn, laneId);
+    }
+  }
+
+  /**
+   * The signal controller whose signals are set from outside the
+   * simulator, e.g. by a learning agent.  The signals stay the same until
+   * they are set again.
+   */
+  public static class ExternalSignalController implements SignalController, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A mapping from lane IDs to the columns of the signals; -1 if the lane
+     * is not controlled.
+     */
+    private int[] laneIdToColumn;
+    /** The initial signals, which must not be modified */
+    private TrafficSignal[] initialSignals;
+    /** The current signals */
+    private TrafficSignal[] signals;
+
+    /**
+     * Create an external signal controller.  The columns of the signals are
+     * laid out as in a plan entry, and the initial signals are the first
+     * signals of the plan.
+     *
+     * @param plan          the traffic signal plan
+     * @param intersection  the intersection controlled by this controller
+     */
+    public ExternalSignalController(TrafficSignalPlan plan,
+                                    Intersection intersection) {
+      this.laneIdToColumn = makeLaneIdToColumn(plan, intersection);
+      this.initialSignals = plan.getSignals(0);
+      this.signals = initialSignals.clone();
+    }
+
+    /**
+     * Get the number of columns of the signals.
+     *
+     * @return the number of columns of the signals
+     */
+    public int getNumOfColumns() {
+      return signals.length;
     }
 
-    private double readFromFile(double time) throws IOException {
-      FileInputStream inputStream = new FileInputStream("src/main/resources/SignalPhases/input.txt");
-      BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-      String readtime =  bufferedReader.readLine();
-      try {
-        Double.valueOf(readtime);
-      } catch (Exception ex) {
-        return time;
+    /**
+     * Set the signals of all columns.
+     *
+     * @param signals  the signals as a string of 'G', 'Y' and 'R', in the
+     *                 same format as an entry of a plan
+     */
+    public void setSignals(String signals) {
+      if (signals.length() != this.signals.length) {
+        throw new IllegalArgumentException("Invalid signal string: " +
+                                           signals);
       }
-      double timeFromFile = Double.parseDouble(readtime);
-      String signalFromFile = bufferedReader.readLine();
-      EastSignal = signalFromFile.substring(0,3);
-      WestSignal =signalFromFile.substring(3,6);
-      NorthSignal = signalFromFile.substring(6,9);
-      SouthSignal = signalFromFile.substring(9,12);
-      duration = (long) (timeFromFile-time);
-      if (timeFromFile>time){
-        return timeFromFile;
-      }{
-        return time;
+      for(int i = 0; i < this.signals.length; i++) {
+        this.signals[i] =
+          TrafficSignalPlan.charToTrafficSignal(signals.charAt(i));
       }
     }
 
-    private TrafficSignal charToTrafficSignal(char c){
-      TrafficSignal t = null;
-      if (c == 'R'){
-        t = TrafficSignal.RED;
-      }else if (c == 'G'){
-        t = TrafficSignal.GREEN;
-      }else if (c == 'Y'){
-        t = TrafficSignal.YELLOW;
-      }else {
-        System.err.print("Traffic signal read problem");
-      }
-      return t;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void act(double timeStep) {
+      // the signals only change when they are set
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+      System.arraycopy(initialSignals, 0, signals, 0, signals.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TrafficSignal getSignal(int laneId, double time) {
+      return lookUpSignal(signals, laneIdToColumn, laneId);
+    }
   }
 
+  /////////////////////////////////
+  // PUBLIC STATIC METHODS
+  /////////////////////////////////
 
+  /**
+   * Map the IDs of the entry lanes of an intersection to the columns of the
+   * entries of a traffic signal plan.
+   *
+   * @param plan          the traffic signal plan
+   * @param intersection  the intersection
+   * @return the column of each lane ID; -1 if the lane is not in the plan
+   */
+  public static int[] makeLaneIdToColumn(TrafficSignalPlan plan,
+                                         Intersection intersection) {
+    int maxLaneId = -1;
+    for(Lane lane : intersection.getEntryLanes()) {
+      maxLaneId = Math.max(maxLaneId, lane.getId());
+    }
+    int[] laneIdToColumn = new int[maxLaneId + 1];
+    Arrays.fill(laneIdToColumn, -1);
+    for(Road road : intersection.getEntryRoads()) {
+      for(Lane lane : road.getLanes()) {
+        laneIdToColumn[lane.getId()] =
+          plan.getColumn(road.getName(), road.getSpecificLaneIndex(lane));
+      }
+    }
+    return laneIdToColumn;
+  }
 
   /////////////////////////////////
-  // PRIVATE FIELDS
+  // PRIVATE STATIC METHODS
   /////////////////////////////////
 
   /**
-   * A mapping from lane ID to the traffic signal controllers on the lane.
+   * Look up the signal of a lane.
+   *
+   * @param signals         the signals of the columns
+   * @param laneIdToColumn  the mapping from lane IDs to columns
+   * @param laneId          the ID of the lane
+   * @return the signal of the lane; red if the lane is not controlled
    */
-  private Map<Integer,SignalController> signalControllers;
+  private static TrafficSignal lookUpSignal(TrafficSignal[] signals,
+                                            int[] laneIdToColumn,
+                                            int laneId) {
+    int column = (laneId < laneIdToColumn.length) ? laneIdToColumn[laneId]
+                                                  : -1;
+    return (column >= 0) ? signals[column] : TrafficSignal.RED;
+  }
+
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The traffic signal controller of the intersection */
+  private SignalController signalController;
   /** The base policy */
   private BasePolicyCallback basePolicy;
 
@@ -248,15 +305,26 @@ public class RequestHandler {
    * Create the approximate N-Phases traffic signal request handler.
    */
   public RequestHandler() {
-    signalControllers = new HashMap<Integer,SignalController>();
   }
 
   /////////////////////////////////
   // PUBLIC METHODS
   /////////////////////////////////
 
-  public void act() {
-    // do nothing
+  /**
+   * Advance the request handler by a time step.
+   *
+   * @param timeStep  the size of the time step
+   */
+  public void act(double timeStep) {
+    signalController.act(timeStep);
+  }
+
+  /**
+   * Bring the request handler back to its state at time zero.
+   */
+  public void reset() {
+    signalController.reset();
   }
 
 
@@ -265,40 +333,35 @@ public class RequestHandler {
   }
 
   /**
-   * Set the traffic signal controller of a lane
+   * Set the traffic signal controller of the intersection
    *
-   * @param laneId            the lane ID
    * @param signalController  the signal controller
    */
-  public void setSignalControllers(int laneId, SignalController signalController) {
-    signalControllers.put(laneId, signalController);
+  public void setSignalController(SignalController signalController) {
+    this.signalController = signalController;
+  }
+
+  /**
+   * Get the traffic signal controller of the intersection
+   *
+   * @return the signal controller
+   */
+  public SignalController getSignalController() {
+    return signalController;
   }
 
 
   public void processRequestMsg(Request msg) {
     int vin = msg.getVin();
 
-    // If the vehicle has got a reservation already, reject it.
-    if (basePolicy.hasReservation(vin)) {
-      basePolicy.sendRejectMsg(vin, msg.getRequestId(), Reject.Reason.CONFIRMED_ANOTHER_REQUEST);
-      return;
-    }
-    // filter the proposals
-    ProposalFilterResult filterResult =
-        BasePolicy.standardProposalsFilter(msg.getProposals(), basePolicy.getCurrentTime());
+    ProposalFilterResult filterResult = filterRequest(msg);
     if (filterResult.isNoProposalLeft()) {
       basePolicy.sendRejectMsg(vin, msg.getRequestId(), filterResult.getReason());
-    }
-
-    List<Request.Proposal> proposals = filterResult.getProposals();
-
-    // If cannot enter from lane according to canEnterFromLane(), reject it.
-    if (!canEnterFromLane(proposals.get(0).getArrivalLaneID())) {
-      basePolicy.sendRejectMsg(vin, msg.getRequestId(), Reject.Reason.NO_CLEAR_PATH);
       return;
     }
     // try to see if reservation is possible for the remaining proposals.
-    ReserveParam reserveParam = basePolicy.findReserveParam(msg, proposals);
+    ReserveParam reserveParam =
+      basePolicy.findReserveParam(msg, filterResult.getProposals());
     if (reserveParam != null) {
       basePolicy.sendComfirmMsg(msg.getRequestId(), reserveParam);
     } else {
@@ -306,10 +369,26 @@ public class RequestHandler {
     }
   }
 
-///add synchronized
-  public synchronized TrafficSignal getSignal(int laneId) {
-//    System.out.print(laneId);
-    return signalControllers.get(laneId).getSignal(basePolicy.getCurrentTime());
+  /**
+   * Get the proposals of a request for which {@link #processRequestMsg(Request)}
+   * would try to find a reservation, if the request were processed now.
+   *
+   * @param msg  the request message
+   * @return the proposals to try; null if the request would be rejected
+   *         before any proposal is tried
+   */
+  public List<Request.Proposal> getProposalsToTry(Request msg) {
+    return filterRequest(msg).getProposals();
+  }
+
+  /**
+   * Get the current signal of a lane.
+   *
+   * @param laneId  the ID of the lane
+   * @return the current signal of the lane
+   */
+  public TrafficSignal getSignal(int laneId) {
+    return signalController.getSignal(laneId, basePolicy.getCurrentTime());
   }
 
 
@@ -317,6 +396,32 @@ public class RequestHandler {
   // PRIVATE METHODS
   /////////////////////////////////
 
+  /**
+   * Check whether a request can have a reservation and remove its proposals
+   * that cannot be tried.
+   *
+   * @param msg  the request message
+   * @return the proposals to try, or the reason for rejecting the request
+   *         before any proposal is tried
+   */
+  private ProposalFilterResult filterRequest(Request msg) {
+    // If the vehicle has got a reservation already, reject it.
+    if (basePolicy.hasReservation(msg.getVin())) {
+      return new ProposalFilterResult(Reject.Reason.CONFIRMED_ANOTHER_REQUEST);
+    }
+    // filter the proposals
+    ProposalFilterResult filterResult =
+        BasePolicy.standardProposalsFilter(msg.getProposals(), basePolicy.getCurrentTime());
+    if (filterResult.isNoProposalLeft()) {
+      return filterResult;
+    }
+    // If cannot enter from lane according to canEnterFromLane(), reject it.
+    if (!canEnterFromLane(filterResult.getProposals().get(0).getArrivalLaneID())) {
+      return new ProposalFilterResult(Reject.Reason.NO_CLEAR_PATH);
+    }
+    return filterResult;
+  }
+
   /**
    * Check whether the vehicle can enter the intersection from a lane at
    * the current time.  This method is intended to be overridden by superclass.
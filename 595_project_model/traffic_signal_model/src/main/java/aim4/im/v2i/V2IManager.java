@@ -31,6 +31,9 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package aim4.im.v2i;
 
 import java.awt.Shape;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -41,6 +44,8 @@ import aim4.config.Debug;
 import aim4.im.Intersection;
 import aim4.im.IntersectionManager;
 import aim4.im.TrackModel;
+import aim4.im.v2i.batch.BatchPolicy;
+import aim4.im.v2i.policy.BasePolicy;
 import aim4.im.v2i.policy.Policy;
 import aim4.im.v2i.reservation.AczManager;
 import aim4.im.v2i.reservation.AdmissionControlZone;
@@ -49,6 +54,7 @@ import aim4.im.v2i.reservation.ReservationGridManager;
 import aim4.map.lane.Lane;
 import aim4.msg.i2v.I2VMessage;
 import aim4.msg.v2i.V2IMessage;
+import aim4.sim.StageExecutor;
 import aim4.util.Registry;
 import aim4.util.TiledArea;
 
@@ -125,6 +131,12 @@ public class V2IManager extends IntersectionManager implements V2IManagerCallbac
    */
   private Map<Integer,AczManager> aczManagers = new LinkedHashMap<Integer,AczManager>();
 
+  /**
+   * The executor on which the queries of the reservation grid may run in
+   * parallel; null if the queries run serially
+   */
+  private StageExecutor queryExecutor;
+
 
   /////////////////////////////////
   // CLASS CONSTRUCTORS
@@ -193,6 +205,38 @@ public class V2IManager extends IntersectionManager implements V2IManagerCallbac
     this.policy = policy;
   }
 
+  /**
+   * Get the request handler of the base policy, which may be wrapped in
+   * batch policies.
+   *
+   * @return the request handler; null if the policy does not end in a base
+   *         policy
+   */
+  public RequestHandler getRequestHandler() {
+    Policy p = policy;
+    while(p instanceof BatchPolicy) {
+      p = ((BatchPolicy)p).getPolicy();
+    }
+    if (p instanceof BasePolicy) {
+      return ((BasePolicy)p).getRequestHandler();
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Set the executor on which the policy may run the queries of the
+   * reservation grid in parallel.
+   *
+   * @param queryExecutor  the executor; null to run the queries serially
+   */
+  public void setQueryExecutor(StageExecutor queryExecutor) {
+    // The queries read the area of the intersection concurrently, so let
+    // the area compute its cached bounds now.
+    getIntersection().getAreaPlus().getBounds2D();
+    this.queryExecutor = queryExecutor;
+  }
+
 
   /////////////////////////////////
   // PUBLIC METHODS
@@ -215,8 +259,8 @@ public class V2IManager extends IntersectionManager implements V2IManagerCallbac
         System.err.printf("im %d process message of vin %d: %s\n",
                           getId(), msg.getVin(), msg);
       }
-      processV2IMessage(msg);
     }
+    policy.processV2IMessages(inbox);
     // Done processing, clear the inbox.
     clearInbox();
     // Second, allow the policy to act, and send outgoing messages.
@@ -228,6 +272,56 @@ public class V2IManager extends IntersectionManager implements V2IManagerCallbac
   }
 
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset(double currentTime) {
+    super.reset(currentTime);
+    clearInbox();
+    clearOutbox();
+    policy.reset();
+    reservationGridManager.reset(currentTime);
+    for(AdmissionControlZone acz : aczs.values()) {
+      acz.reset();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The policy, the messages, the reservation grid manager and the
+   * admission control zones are written as a whole and replaced by new
+   * copies when they are read.
+   */
+  @Override
+  public void writeState(ObjectOutputStream out) throws IOException {
+    super.writeState(out);
+    out.writeObject(policy);
+    out.writeObject(inbox);
+    out.writeObject(outbox);
+    out.writeObject(reservationGridManager);
+    out.writeObject(aczs);
+    out.writeObject(aczManagers);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public void readState(ObjectInputStream in)
+    throws IOException, ClassNotFoundException {
+    super.readState(in);
+    policy = (Policy)in.readObject();
+    inbox = (List<V2IMessage>)in.readObject();
+    outbox = (List<I2VMessage>)in.readObject();
+    reservationGridManager = (ReservationGridManager)in.readObject();
+    aczs = (Map<Integer,AdmissionControlZone>)in.readObject();
+    aczManagers = (Map<Integer,AczManager>)in.readObject();
+  }
+
+
   /////////////////////////////////
   // PUBLIC METHODS
   /////////////////////////////////
@@ -328,6 +422,14 @@ public class V2IManager extends IntersectionManager implements V2IManagerCallbac
     return aczManagers.get(laneId);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public StageExecutor getQueryExecutor() {
+    return queryExecutor;
+  }
+
 
   /**
    * Adds a message to the outgoing queue of messages to be delivered to a
@@ -345,22 +447,6 @@ public class V2IManager extends IntersectionManager implements V2IManagerCallbac
   }
 
 
-  /////////////////////////////////
-  // PRIVATE METHODS
-  /////////////////////////////////
-
-  // process V2I messages
-
-  /**
-   * Process a V2I message
-   *
-   * @param msg  the V2I message
-   */
-  private void processV2IMessage(V2IMessage msg) {
-    policy.processV2IMessage(msg);
-  }
-
-
   /////////////////////////////////
   // DEBUG
   /////////////////////////////////
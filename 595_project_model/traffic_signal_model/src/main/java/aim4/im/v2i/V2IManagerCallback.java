@@ -35,6 +35,7 @@ import aim4.im.v2i.reservation.AczManager;
 import aim4.im.v2i.reservation.AdmissionControlZone;
 import aim4.im.v2i.reservation.ReservationGridManager;
 import aim4.msg.i2v.I2VMessage;
+import aim4.sim.StageExecutor;
 
 /**
  * An interface of the methods of V2IManager that are available for
@@ -91,4 +92,12 @@ public interface V2IManagerCallback {
    */
   AczManager getAczManager(int laneId);
 
+  /**
+   * Get the executor on which the policies may run the queries of the
+   * reservation grid in parallel.
+   *
+   * @return the executor; null if the queries run serially
+   */
+  StageExecutor getQueryExecutor();
+
 }
@@ -0,0 +1,81 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.im.v2i.batch;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import aim4.msg.v2i.Request;
+
+/**
+ * The reordering strategy that processes the requests of a batch in the
+ * order of the earliest arrival times of their proposals, so that the
+ * vehicles that reach the intersection first are served first no matter
+ * when their requests arrived.  Requests with the same arrival time keep
+ * the order of their arrival.
+ */
+public class ArrivalTimeReordering implements ReorderingStrategy, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /**
+   * The comparator of requests by the earliest arrival times of their
+   * proposals.
+   */
+  static final Comparator<Request> ARRIVAL_TIME_COMPARATOR =
+    new Comparator<Request>() {
+      @Override
+      public int compare(Request r1, Request r2) {
+        return Double.compare(BatchPolicy.calcEarliestArrivalTime(r1),
+                              BatchPolicy.calcEarliestArrivalTime(r2));
+      }
+    };
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reorder(List<Request> batch) {
+    // the sort is stable
+    Collections.sort(batch, ARRIVAL_TIME_COMPARATOR);
+  }
+
+}
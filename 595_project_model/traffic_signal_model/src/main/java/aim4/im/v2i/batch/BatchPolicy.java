@@ -0,0 +1,339 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.im.v2i.batch;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import aim4.config.SimConfig;
+import aim4.im.v2i.V2IManagerCallback;
+import aim4.im.v2i.policy.Policy;
+import aim4.msg.v2i.Request;
+import aim4.msg.v2i.V2IMessage;
+
+/**
+ * The batch policy.  It is wrapped around another policy, typically a
+ * {@link aim4.im.v2i.policy.BasePolicy}, and holds the request messages
+ * back for a processing interval instead of passing them on one at a time
+ * as they arrive.  At the end of each interval the held requests are
+ * ordered by a {@link ReorderingStrategy} and passed on together, so that
+ * the reservations are admitted in that order rather than first come first
+ * served.
+ * <p>
+ * A request is passed on before the end of the interval if one of its
+ * proposals arrives at the intersection before the next batch, since the
+ * proposal would be out of date by then.  A new request of a vehicle whose
+ * previous request is held replaces the previous one.  All other messages
+ * are passed on at once.
+ */
+public class BatchPolicy implements Policy, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The default processing interval in seconds ({@value}). */
+  public static final double DEFAULT_PROCESSING_INTERVAL = 1.0;
+
+  /////////////////////////////////
+  // PUBLIC STATIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the earliest arrival time of the proposals of a request.
+   *
+   * @param request  the request
+   * @return the earliest arrival time of the proposals of the request
+   */
+  public static double calcEarliestArrivalTime(Request request) {
+    double time = Double.MAX_VALUE;
+    for(Request.Proposal proposal : request.getProposals()) {
+      time = Math.min(time, proposal.getArrivalTime());
+    }
+    return time;
+  }
+
+  /**
+   * Make a reordering strategy by its name.
+   *
+   * @param name  the name of the strategy: "arrival" for
+   *              {@link ArrivalTimeReordering} or "lane" for
+   *              {@link LaneBasedReordering}
+   * @return the reordering strategy
+   */
+  public static ReorderingStrategy makeReorderingStrategy(String name) {
+    if (name.equals("arrival")) {
+      return new ArrivalTimeReordering();
+    } else if (name.equals("lane")) {
+      return new LaneBasedReordering();
+    } else {
+      throw new IllegalArgumentException("Unknown reordering strategy: " +
+                                         name);
+    }
+  }
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /**
+   * The V2IManager of which this Policy is a part.
+   */
+  private V2IManagerCallback im;
+
+  /**
+   * The policy to which the messages are passed on.
+   */
+  private Policy policy;
+
+  /**
+   * The strategy that orders the requests of a batch.
+   */
+  private ReorderingStrategy reorderingStrategy;
+
+  /**
+   * The number of time steps between two batches.
+   */
+  private int stepsPerBatch;
+
+  /**
+   * The number of time steps since the last batch.
+   */
+  private int stepsSinceLastBatch;
+
+  /**
+   * The held requests by the VINs of their vehicles, in the order of their
+   * arrival.
+   */
+  private Map<Integer,Request> heldRequests =
+    new LinkedHashMap<Integer,Request>();
+
+  /**
+   * The number of batches passed on.
+   */
+  private long numOfBatches;
+
+  /**
+   * The number of requests passed on.
+   */
+  private long numOfPassedRequests;
+
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a batch policy.
+   *
+   * @param im                  the V2IManagerCallback for which this
+   *                            policy is being created
+   * @param policy              the policy to which the messages are passed
+   *                            on
+   * @param processingInterval  the time between two batches in seconds; it
+   *                            is rounded to a whole number of time steps
+   * @param reorderingStrategy  the strategy that orders the requests of a
+   *                            batch
+   */
+  public BatchPolicy(V2IManagerCallback im, Policy policy,
+                     double processingInterval,
+                     ReorderingStrategy reorderingStrategy) {
+    this.im = im;
+    this.policy = policy;
+    this.reorderingStrategy = reorderingStrategy;
+    this.stepsPerBatch =
+      Math.max(1, (int)Math.round(processingInterval / SimConfig.TIME_STEP));
+    this.stepsSinceLastBatch = 0;
+  }
+
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the policy to which the messages are passed on.
+   *
+   * @return the policy to which the messages are passed on
+   */
+  public Policy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Get the time between two batches.
+   *
+   * @return the time between two batches in seconds
+   */
+  public double getProcessingInterval() {
+    return stepsPerBatch * SimConfig.TIME_STEP;
+  }
+
+  /**
+   * Get the number of requests that are held.
+   *
+   * @return the number of requests that are held
+   */
+  public int getNumOfHeldRequests() {
+    return heldRequests.size();
+  }
+
+  /**
+   * Get the number of batches passed on.
+   *
+   * @return the number of batches passed on
+   */
+  public long getNumOfBatches() {
+    return numOfBatches;
+  }
+
+  /**
+   * Get the number of requests passed on.
+   *
+   * @return the number of requests passed on
+   */
+  public long getNumOfPassedRequests() {
+    return numOfPassedRequests;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The held requests that are due are passed on before the policy acts,
+   * so that they see the same traffic signals as the requests that the
+   * policy receives directly.
+   */
+  @Override
+  public void act(double timeStep) {
+    stepsSinceLastBatch++;
+    if (!heldRequests.isEmpty()) {
+      if (stepsSinceLastBatch >= stepsPerBatch) {
+        passOn(new ArrayList<Request>(heldRequests.values()));
+        heldRequests.clear();
+        numOfBatches++;
+      } else {
+        double nextBatchTime =
+          im.getCurrentTime()
+          + (stepsPerBatch - stepsSinceLastBatch) * timeStep;
+        passOn(removeDueRequests(nextBatchTime));
+      }
+    }
+    if (stepsSinceLastBatch >= stepsPerBatch) {
+      stepsSinceLastBatch = 0;
+    }
+    policy.act(timeStep);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset() {
+    heldRequests.clear();
+    stepsSinceLastBatch = 0;
+    numOfBatches = 0;
+    numOfPassedRequests = 0;
+    policy.reset();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void processV2IMessage(V2IMessage msg) {
+    if (msg instanceof Request) {
+      // the new request of a vehicle goes to the end of the queue
+      heldRequests.remove(msg.getVin());
+      heldRequests.put(msg.getVin(), (Request)msg);
+    } else {
+      policy.processV2IMessage(msg);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void processV2IMessages(List<? extends V2IMessage> msgs) {
+    for(V2IMessage msg : msgs) {
+      processV2IMessage(msg);
+    }
+  }
+
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Remove the held requests that have a proposal arriving at or before a
+   * given time.
+   *
+   * @param time  the time
+   * @return the removed requests, in the order of their arrival
+   */
+  private List<Request> removeDueRequests(double time) {
+    List<Request> dueRequests = null;
+    for(Iterator<Request> iter = heldRequests.values().iterator();
+        iter.hasNext();) {
+      Request request = iter.next();
+      if (calcEarliestArrivalTime(request) <= time) {
+        if (dueRequests == null) {
+          dueRequests = new ArrayList<Request>();
+        }
+        dueRequests.add(request);
+        iter.remove();
+      }
+    }
+    return dueRequests;
+  }
+
+  /**
+   * Order some requests and pass them on to the policy.
+   *
+   * @param requests  the requests in the order of their arrival; null if
+   *                  there is none
+   */
+  private void passOn(List<Request> requests) {
+    if (requests != null) {
+      reorderingStrategy.reorder(requests);
+      policy.processV2IMessages(requests);
+      numOfPassedRequests += requests.size();
+    }
+  }
+
+}
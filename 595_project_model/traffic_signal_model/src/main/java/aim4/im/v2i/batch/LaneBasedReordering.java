@@ -0,0 +1,86 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.im.v2i.batch;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import aim4.msg.v2i.Request;
+
+/**
+ * The reordering strategy that groups the requests of a batch by their
+ * arrival lanes.  The vehicles from the same lane follow each other along
+ * the same trajectories, so admitting the requests of a lane back to back
+ * lets the followers fit right behind the leader's reservation before the
+ * requests from the crossing lanes fill the gaps.  The lanes are served in
+ * the order of the earliest arrival times of their requests, and the
+ * requests of a lane in the order of their arrival times.
+ */
+public class LaneBasedReordering implements ReorderingStrategy, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reorder(List<Request> batch) {
+    if (batch.size() <= 1) {
+      return;
+    }
+    Collections.sort(batch, ArrivalTimeReordering.ARRIVAL_TIME_COMPARATOR);
+    // the groups are in the order of their first requests
+    Map<Integer,List<Request>> laneIdToRequests =
+      new LinkedHashMap<Integer,List<Request>>();
+    for(Request request : batch) {
+      int laneId = request.getProposals().get(0).getArrivalLaneID();
+      List<Request> requests = laneIdToRequests.get(laneId);
+      if (requests == null) {
+        requests = new ArrayList<Request>();
+        laneIdToRequests.put(laneId, requests);
+      }
+      requests.add(request);
+    }
+    batch.clear();
+    for(List<Request> requests : laneIdToRequests.values()) {
+      batch.addAll(requests);
+    }
+  }
+
+}
@@ -30,7 +30,10 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.im.v2i.policy;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -52,6 +55,7 @@ import aim4.msg.v2i.Done;
 import aim4.msg.v2i.Request;
 import aim4.msg.v2i.V2IMessage;
 import aim4.msg.v2i.Request.Proposal;
+import aim4.sim.StageExecutor;
 import aim4.sim.StatCollector;
 import aim4.util.HashMapRegistry;
 import aim4.util.Registry;
@@ -60,7 +64,9 @@ import aim4.vehicle.VehicleUtil;
 /**
  * The base policy.
  */
-public final class BasePolicy implements Policy, BasePolicyCallback{
+public final class BasePolicy implements Policy, BasePolicyCallback, Serializable {
+
+  private static final long serialVersionUID = 1L;
   /** The maximum amount of time, in seconds, to let a vehicle arrive early.*/
   private static final double EARLY_ERROR = 0.01;
   /** The maximum amount of time, in seconds to let a vehicle arrive late.*/
@@ -70,7 +76,9 @@ public final class BasePolicy implements Policy, BasePolicyCallback{
   /////////////////////////////////
 
   /** The record of a reservation. */
-  public static class ReservationRecord {
+  public static class ReservationRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
     /** The VIN of a vehicle */
     private int vin;
     /** The ACZ lane ID */
@@ -335,6 +343,14 @@ public final class BasePolicy implements Policy, BasePolicyCallback{
    */
   private StatCollector<BasePolicy> statCollector;
 
+  /**
+   * The plans of the reservation grid that are found in parallel for the
+   * proposals of the messages being processed, before the messages are
+   * processed one by one; null if no plan is found in advance.  A proposal
+   * maps to null if its query fails.
+   */
+  private transient Map<Request.Proposal,Plan> plansInAdvance;
+
 
   /////////////////////////////////
   // CLASS CONSTRUCTORS
@@ -403,9 +419,21 @@ public final class BasePolicy implements Policy, BasePolicyCallback{
    */
   @Override
   public void act(double timeStep) {
+    requestHandler.act(timeStep);
     if (statCollector != null) statCollector.collect(this);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset() {
+    plansInAdvance = null;
+    reservationRecordRegistry = new HashMapRegistry<ReservationRecord>();
+    vinToReservationId.clear();
+    requestHandler.reset();
+  }
+
 
   /////////////////////////////////
   // PUBLIC METHODS
@@ -490,16 +518,7 @@ public final class BasePolicy implements Policy, BasePolicyCallback{
     AczManager.Plan aczPlan = null;
 
     for(Request.Proposal proposal : proposals) {
-      ReservationGridManager.Query gridQuery =
-        new ReservationGridManager.Query(vin,
-                                         proposal.getArrivalTime(),
-                                         proposal.getArrivalVelocity(),
-                                         proposal.getArrivalLaneID(),
-                                         proposal.getDepartureLaneID(),
-                                         msg.getSpec(),
-                                         proposal.getMaximumTurnVelocity(),
-                                         true);
-      gridPlan = im.getReservationGridManager().query(gridQuery);
+      gridPlan = findGridPlan(msg, proposal);
       if (gridPlan != null) {
         double stopDist =
           VehicleUtil.calcDistanceToStop(gridPlan.getExitVelocity(),
@@ -577,6 +596,28 @@ public final class BasePolicy implements Policy, BasePolicyCallback{
   }
 
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * If the V2I manager has a query executor, the queries of the reservation
+   * grid for the proposals of the requests are run in parallel before the
+   * messages are processed one by one.  While the messages are processed,
+   * time-tiles are only reserved, never released, unless a reservation is
+   * cancelled.  A query that fails in advance therefore fails again, and a
+   * plan whose time-tiles are still free is the plan the query would make
+   * again, so the plans found in advance give the same reservations as
+   * processing the messages serially.
+   */
+  @Override
+  public void processV2IMessages(List<? extends V2IMessage> msgs) {
+    findGridPlansInAdvance(msgs);
+    for(V2IMessage msg : msgs) {
+      processV2IMessage(msg);
+    }
+    plansInAdvance = null;
+  }
+
+
   /**
    * Submit a cancel message to the policy.
    *
@@ -592,7 +633,8 @@ public final class BasePolicy implements Policy, BasePolicyCallback{
                 "The VIN of the message is different from the VIN " +
                 "on the record.\n");
       }
-      // release the resources
+      // release the resources; the failed queries may succeed now
+      plansInAdvance = null;
       im.getReservationGridManager().cancel(vin);
       im.getAczManager(r.getAczLaneId()).cancel(vin);
       // remove the reservation record
@@ -653,6 +695,98 @@ public final class BasePolicy implements Policy, BasePolicyCallback{
   }
 
 
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Run the queries of the reservation grid for the proposals of some
+   * messages in parallel, if the V2I manager has a query executor.  The
+   * queries are not run in parallel if the reservation grid manager caches
+   * the footprints, since the cache is changed by the queries.
+   *
+   * @param msgs  the V2I messages
+   */
+  private void findGridPlansInAdvance(List<? extends V2IMessage> msgs) {
+    StageExecutor executor = im.getQueryExecutor();
+    final ReservationGridManager rgm = im.getReservationGridManager();
+    if (executor == null || rgm.getTemplateCache() != null) {
+      return;
+    }
+    final List<Request> requests = new ArrayList<Request>();
+    final List<Request.Proposal> proposals = new ArrayList<Request.Proposal>();
+    for(V2IMessage msg : msgs) {
+      if (msg instanceof Request) {
+        Request request = (Request)msg;
+        List<Request.Proposal> proposalsToTry =
+          requestHandler.getProposalsToTry(request);
+        if (proposalsToTry != null) {
+          for(Request.Proposal proposal : proposalsToTry) {
+            requests.add(request);
+            proposals.add(proposal);
+          }
+        }
+      }
+    }
+    if (proposals.size() < 2) {
+      return;
+    }
+    final Plan[] plans = new Plan[proposals.size()];
+    executor.run(proposals.size(), new StageExecutor.Body() {
+      @Override
+      public void run(int chunk, int from, int to) {
+        for(int i = from; i < to; i++) {
+          plans[i] = rgm.query(makeGridQuery(requests.get(i),
+                                             proposals.get(i)));
+        }
+      }
+    });
+    plansInAdvance = new IdentityHashMap<Request.Proposal,Plan>();
+    for(int i = 0; i < plans.length; i++) {
+      plansInAdvance.put(proposals.get(i), plans[i]);
+    }
+  }
+
+  /**
+   * Find the plan of the reservation grid for a proposal, using the plan
+   * found in advance if it is still valid.
+   *
+   * @param msg       the request message
+   * @param proposal  the proposal
+   * @return the plan; null if the query fails
+   */
+  private Plan findGridPlan(Request msg, Request.Proposal proposal) {
+    ReservationGridManager rgm = im.getReservationGridManager();
+    if (plansInAdvance != null && plansInAdvance.containsKey(proposal)) {
+      Plan plan = plansInAdvance.get(proposal);
+      if (plan == null || rgm.isAcceptable(plan)) {
+        return plan;
+      }
+    }
+    return rgm.query(makeGridQuery(msg, proposal));
+  }
+
+  /**
+   * Make the query of the reservation grid for a proposal.
+   *
+   * @param msg       the request message
+   * @param proposal  the proposal
+   * @return the query
+   */
+  private static ReservationGridManager.Query makeGridQuery(
+                                                Request msg,
+                                                Request.Proposal proposal) {
+    return new ReservationGridManager.Query(msg.getVin(),
+                                            proposal.getArrivalTime(),
+                                            proposal.getArrivalVelocity(),
+                                            proposal.getArrivalLaneID(),
+                                            proposal.getDepartureLaneID(),
+                                            msg.getSpec(),
+                                            proposal.getMaximumTurnVelocity(),
+                                            true);
+  }
+
+
   /////////////////////////////////
   // PUBLIC METHODS
   /////////////////////////////////
@@ -30,6 +30,8 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.im.v2i.policy;
 
+import java.util.List;
+
 import aim4.im.v2i.V2IManagerCallback;
 import aim4.msg.v2i.V2IMessage;
 import aim4.sim.StatCollector;
@@ -48,6 +50,12 @@ public interface Policy {
    */
   void act(double timeStep);
 
+  /**
+   * Forget all reservations and bring the policy back to its state at time
+   * zero.
+   */
+  void reset();
+
   /**
    * Process a V2I message
    *
@@ -55,4 +63,12 @@ public interface Policy {
    */
   void processV2IMessage(V2IMessage msg);
 
+  /**
+   * Process the V2I messages received in a time step.  The result must be
+   * the same as processing the messages one by one in the given order.
+   *
+   * @param msgs  the V2I messages
+   */
+  void processV2IMessages(List<? extends V2IMessage> msgs);
+
 }
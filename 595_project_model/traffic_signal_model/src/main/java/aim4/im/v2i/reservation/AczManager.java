@@ -30,11 +30,15 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.im.v2i.reservation;
 
+import java.io.Serializable;
+
 /**
  * The ACZ manager.
  */
 public class AczManager implements
-  ReservationManager<AczManager.Query,AczManager.Plan,Integer> {
+  ReservationManager<AczManager.Query,AczManager.Plan,Integer>, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /////////////////////////////////
   // NESTED CLASSES
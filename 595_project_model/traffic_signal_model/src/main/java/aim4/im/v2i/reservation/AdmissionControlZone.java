@@ -30,6 +30,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.im.v2i.reservation;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -39,7 +40,9 @@ import java.util.Map;
  * a limited length's worth of vehicles and will only admit vehicles
  * if there is enough room.
  */
-public class AdmissionControlZone {
+public class AdmissionControlZone implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /////////////////////////////////
   // CONSTANTS
@@ -146,6 +149,14 @@ public class AdmissionControlZone {
     }
   }
 
+  /**
+   * Remove all vehicles from this AdmissionControlZone.
+   */
+  public void reset() {
+    currentSize = 0.0;
+    vinToReservationLength.clear();
+  }
+
   /**
    * Indicates that the vehicle with the given ID number no longer wants to
    * enter this AdmissionControlZone.
@@ -0,0 +1,560 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.im.v2i.reservation;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import aim4.msg.v2i.Request.VehicleSpecForRequestMsg;
+
+/**
+ * A cache of the footprints of the trajectories through an intersection.
+ * The footprint of a trajectory is the set of tiles the vehicle occupies at
+ * each grid time step, relative to its arrival.  It only depends on the
+ * arrival and departure lanes, the vehicle, the arrival velocity, the
+ * offset of the arrival time within a grid time step and whether the
+ * vehicle accelerates, so a query whose parameters round to those of an
+ * earlier query reuses its footprint: it is shifted by the arrival time and
+ * tested against the reservation grid without simulating the vehicle.
+ * <p>
+ * The arrival velocity and the offset of the arrival time are rounded to
+ * buckets, and the footprint of a bucket is always simulated with the
+ * rounded values rather than with those of the query that first used it.
+ * Therefore, the plans do not depend on the order of the queries or on the
+ * content of the cache, but they differ slightly from those found by
+ * simulating every query; the time buffers of the tiles are expected to
+ * cover the difference.  The least recently used footprints are dropped
+ * once the cache is full.
+ */
+public class FootprintTemplateCache implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The default width of the buckets of the arrival velocity ({@value}). */
+  public static final double DEFAULT_VELOCITY_QUANTUM = 0.1;
+
+  /**
+   * The default number of buckets of the offset of the arrival time within
+   * a grid time step ({@value}).
+   */
+  public static final int DEFAULT_NUM_OF_PHASES = 4;
+
+  /** The default maximum number of footprints in a cache ({@value}). */
+  public static final int DEFAULT_CAPACITY = 512;
+
+  /////////////////////////////////
+  // NESTED CLASSES
+  /////////////////////////////////
+
+  /**
+   * The rounded parameters of a query that determine its footprint.
+   */
+  public static final class Key {
+
+    /** The ID of the arrival lane */
+    private final int arrivalLaneId;
+    /** The ID of the departure lane */
+    private final int departureLaneId;
+    /** Whether the vehicle accelerates */
+    private final boolean accelerating;
+    /** The bucket of the arrival velocity */
+    private final long velocityBucket;
+    /** The bucket of the offset of the arrival time */
+    private final int phaseBucket;
+    /** The arrival velocity of the bucket */
+    private final double arrivalVelocity;
+    /** The offset of the arrival time of the bucket */
+    private final double phase;
+    /** The maximum turn velocity */
+    private final double maxTurnVelocity;
+    /** The specification of the vehicle */
+    private final VehicleSpecForRequestMsg spec;
+    /** The hash code */
+    private final int hashCode;
+
+    /**
+     * Create a key.
+     *
+     * @param arrivalLaneId    the ID of the arrival lane
+     * @param departureLaneId  the ID of the departure lane
+     * @param accelerating     whether the vehicle accelerates
+     * @param velocityBucket   the bucket of the arrival velocity
+     * @param phaseBucket      the bucket of the offset of the arrival time
+     * @param arrivalVelocity  the arrival velocity of the bucket
+     * @param phase            the offset of the arrival time of the bucket
+     * @param maxTurnVelocity  the maximum turn velocity
+     * @param spec             the specification of the vehicle
+     */
+    private Key(int arrivalLaneId, int departureLaneId, boolean accelerating,
+                long velocityBucket, int phaseBucket, double arrivalVelocity,
+                double phase, double maxTurnVelocity,
+                VehicleSpecForRequestMsg spec) {
+      this.arrivalLaneId = arrivalLaneId;
+      this.departureLaneId = departureLaneId;
+      this.accelerating = accelerating;
+      this.velocityBucket = velocityBucket;
+      this.phaseBucket = phaseBucket;
+      this.arrivalVelocity = arrivalVelocity;
+      this.phase = phase;
+      this.maxTurnVelocity = maxTurnVelocity;
+      this.spec = spec;
+      int h = arrivalLaneId;
+      h = 31 * h + departureLaneId;
+      h = 31 * h + (accelerating ? 1 : 0);
+      h = 31 * h + (int)(velocityBucket ^ (velocityBucket >>> 32));
+      h = 31 * h + phaseBucket;
+      h = 31 * h + hashDouble(maxTurnVelocity);
+      h = 31 * h + hashDouble(spec.getMaxAcceleration());
+      h = 31 * h + hashDouble(spec.getLength());
+      h = 31 * h + hashDouble(spec.getWidth());
+      this.hashCode = h;
+    }
+
+    /**
+     * Get the arrival velocity of the bucket.
+     *
+     * @return the arrival velocity of the bucket
+     */
+    public double getArrivalVelocity() {
+      return arrivalVelocity;
+    }
+
+    /**
+     * Get the offset of the arrival time within a grid time step of the
+     * bucket.
+     *
+     * @return the offset of the arrival time of the bucket
+     */
+    public double getPhase() {
+      return phase;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key k = (Key)obj;
+      return arrivalLaneId == k.arrivalLaneId
+          && departureLaneId == k.departureLaneId
+          && accelerating == k.accelerating
+          && velocityBucket == k.velocityBucket
+          && phaseBucket == k.phaseBucket
+          && maxTurnVelocity == k.maxTurnVelocity
+          && isSameSpec(spec, k.spec);
+    }
+
+    /**
+     * Get the hash code of a double.
+     *
+     * @param d  the double
+     * @return the hash code
+     */
+    private static int hashDouble(double d) {
+      long bits = Double.doubleToLongBits(d);
+      return (int)(bits ^ (bits >>> 32));
+    }
+
+    /**
+     * Whether two vehicle specifications have the same values.
+     *
+     * @param s1  a vehicle specification
+     * @param s2  another vehicle specification
+     * @return whether the specifications have the same values
+     */
+    private static boolean isSameSpec(VehicleSpecForRequestMsg s1,
+                                      VehicleSpecForRequestMsg s2) {
+      return s1.getMaxAcceleration() == s2.getMaxAcceleration()
+          && s1.getMaxDeceleration() == s2.getMaxDeceleration()
+          && s1.getMinVelocity() == s2.getMinVelocity()
+          && s1.getLength() == s2.getLength()
+          && s1.getWidth() == s2.getWidth()
+          && s1.getFrontAxleDisplacement() == s2.getFrontAxleDisplacement()
+          && s1.getRearAxleDisplacement() == s2.getRearAxleDisplacement()
+          && s1.getMaxSteeringAngle() == s2.getMaxSteeringAngle()
+          && s1.getMaxTurnPerSecond() == s2.getMaxTurnPerSecond();
+    }
+  }
+
+  /**
+   * The footprint of a trajectory, relative to the discrete arrival time.
+   */
+  public static final class Template {
+
+    /** The start of the tiles of each step in {@link #tileIds} */
+    private final int[] stepStarts;
+    /** The IDs of the occupied tiles of all steps */
+    private final int[] tileIds;
+    /** The time buffer, in grid time steps, of each occupied tile */
+    private final int[] buffers;
+    /** The offset of the first discrete time of {@link #masks} */
+    private final int firstOffset;
+    /**
+     * The bitmasks of the tiles, time buffers included, at each discrete
+     * time from the first offset on
+     */
+    private final long[][] masks;
+    /** The offset of the discrete time at which the vehicle exits */
+    private final int exitOffset;
+    /** The offset of the discrete time of the last time-tile */
+    private final int lastTileOffset;
+    /** The velocity at which the vehicle exits */
+    private final double exitVelocity;
+
+    /**
+     * Create a footprint.
+     *
+     * @param steps         the IDs of the occupied tiles at the end of
+     *                      each step of the trajectory; the first step
+     *                      ends at the first discrete time after the
+     *                      arrival
+     * @param buffers       the time buffer, in grid time steps, of each
+     *                      occupied tile, in the same order as the tiles
+     * @param grid          the reservation grid
+     * @param exitVelocity  the velocity at which the vehicle exits
+     */
+    Template(List<int[]> steps, List<Integer> buffers,
+             ReservationArray grid, double exitVelocity) {
+      int n = 0;
+      for(int[] tids : steps) {
+        n += tids.length;
+      }
+      this.stepStarts = new int[steps.size() + 1];
+      this.tileIds = new int[n];
+      this.buffers = new int[n];
+      int i = 0;
+      int first = 0;
+      int last = 0;
+      for(int k = 0; k < steps.size(); k++) {
+        stepStarts[k] = i;
+        for(int tid : steps.get(k)) {
+          tileIds[i] = tid;
+          this.buffers[i] = buffers.get(i);
+          first = Math.min(first, k + 1 - this.buffers[i]);
+          last = Math.max(last, k + 1 + this.buffers[i]);
+          i++;
+        }
+      }
+      stepStarts[steps.size()] = i;
+      this.firstOffset = first;
+      this.masks = new long[last - first + 1][];
+      for(int k = 0; k < steps.size(); k++) {
+        for(int j = stepStarts[k]; j < stepStarts[k + 1]; j++) {
+          int tid = tileIds[j];
+          for(int t = k + 1 - this.buffers[j]; t <= k + 1 + this.buffers[j];
+              t++) {
+            long[] mask = masks[t - first];
+            if (mask == null) {
+              mask = grid.newTileMask();
+              masks[t - first] = mask;
+            }
+            mask[tid >>> 6] |= 1L << tid;
+          }
+        }
+      }
+      this.exitOffset = steps.size();
+      this.lastTileOffset =
+        (n > 0) ? stepStarts.length - 1 - countTrailingEmptySteps()
+                  + this.buffers[n - 1]
+                : 0;
+      this.exitVelocity = exitVelocity;
+    }
+
+    /**
+     * Get the number of steps at the end of the trajectory in which no tile
+     * is occupied.
+     *
+     * @return the number of trailing steps without tiles
+     */
+    private int countTrailingEmptySteps() {
+      int k = stepStarts.length - 2;
+      int count = 0;
+      while(k >= 0 && stepStarts[k] == stepStarts[k + 1]) {
+        count++;
+        k--;
+      }
+      return count;
+    }
+
+    /**
+     * Whether any time-tile of the footprint has been reserved.
+     *
+     * @param grid         the reservation grid
+     * @param arrivalTime  the discrete arrival time
+     * @return whether any time-tile of the footprint has been reserved
+     */
+    public boolean isAnyReserved(ReservationArray grid, int arrivalTime) {
+      for(int i = 0; i < masks.length; i++) {
+        if (masks[i] != null
+            && grid.isAnyReserved(arrivalTime + firstOffset + i, masks[i])) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Add the time-tiles of the footprint to a list, in the same order as
+     * the simulation finds them.
+     *
+     * @param grid         the reservation grid
+     * @param arrivalTime  the discrete arrival time
+     * @param workingList  the list to which the time-tiles are added
+     */
+    public void addTimeTiles(ReservationGrid grid, int arrivalTime,
+                             List<? super ReservationGrid.TimeTile>
+                               workingList) {
+      for(int k = 0; k + 1 < stepStarts.length; k++) {
+        int t0 = arrivalTime + k + 1;
+        for(int j = stepStarts[k]; j < stepStarts[k + 1]; j++) {
+          for(int t = t0 - buffers[j]; t <= t0 + buffers[j]; t++) {
+            workingList.add(grid.new TimeTile(t, tileIds[j]));
+          }
+        }
+      }
+    }
+
+    /**
+     * Get the offset of the discrete time at which the vehicle exits.
+     *
+     * @return the offset of the exit time
+     */
+    public int getExitOffset() {
+      return exitOffset;
+    }
+
+    /**
+     * Get the offset of the discrete time of the last time-tile.
+     *
+     * @return the offset of the discrete time of the last time-tile
+     */
+    public int getLastTileOffset() {
+      return lastTileOffset;
+    }
+
+    /**
+     * Get the velocity at which the vehicle exits.
+     *
+     * @return the exit velocity
+     */
+    public double getExitVelocity() {
+      return exitVelocity;
+    }
+  }
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The width of the buckets of the arrival velocity */
+  private final double velocityQuantum;
+  /** The number of buckets of the offset of the arrival time */
+  private final int numOfPhases;
+  /** The maximum number of footprints */
+  private final int capacity;
+  /** The footprints, from the least to the most recently used */
+  private transient Map<Key,Template> templates;
+  /** The number of queries that found their footprint in the cache */
+  private long numOfHits;
+  /** The number of queries whose footprint was simulated */
+  private long numOfMisses;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a cache of footprints with the default parameters.
+   */
+  public FootprintTemplateCache() {
+    this(DEFAULT_VELOCITY_QUANTUM, DEFAULT_NUM_OF_PHASES, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Create a cache of footprints.
+   *
+   * @param velocityQuantum  the width of the buckets of the arrival velocity
+   * @param numOfPhases      the number of buckets of the offset of the
+   *                         arrival time within a grid time step
+   * @param capacity         the maximum number of footprints
+   */
+  public FootprintTemplateCache(double velocityQuantum, int numOfPhases,
+                                int capacity) {
+    assert velocityQuantum > 0.0 && numOfPhases > 0 && capacity > 0;
+    this.velocityQuantum = velocityQuantum;
+    this.numOfPhases = numOfPhases;
+    this.capacity = capacity;
+    this.templates = newTemplateMap();
+    this.numOfHits = 0;
+    this.numOfMisses = 0;
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the key of the footprint of a query.
+   *
+   * @param q             the query
+   * @param phase         the offset of the arrival time within a grid time
+   *                      step
+   * @param gridTimeStep  the grid time step
+   * @return the key of the footprint
+   */
+  public Key makeKey(ReservationGridManager.Query q, double phase,
+                     double gridTimeStep) {
+    long velocityBucket = Math.round(q.getArrivalVelocity() / velocityQuantum);
+    int phaseBucket = Math.min((int)(phase / gridTimeStep * numOfPhases),
+                               numOfPhases - 1);
+    return new Key(q.getArrivalLaneId(), q.getDepartureLaneId(),
+                   q.isAccelerating(), velocityBucket, phaseBucket,
+                   velocityBucket * velocityQuantum,
+                   (phaseBucket + 0.5) * gridTimeStep / numOfPhases,
+                   q.getMaxTurnVelocity(), q.getSpec());
+  }
+
+  /**
+   * Get the footprint of a key.
+   *
+   * @param key  the key
+   * @return the footprint; null if it is not in the cache
+   */
+  public synchronized Template get(Key key) {
+    Template template = templates.get(key);
+    if (template != null) {
+      numOfHits++;
+    } else {
+      numOfMisses++;
+    }
+    return template;
+  }
+
+  /**
+   * Put a footprint into the cache.
+   *
+   * @param key       the key
+   * @param template  the footprint
+   */
+  public synchronized void put(Key key, Template template) {
+    templates.put(key, template);
+  }
+
+  /**
+   * Remove all footprints.
+   */
+  public synchronized void clear() {
+    templates.clear();
+  }
+
+  /**
+   * Get the number of footprints in the cache.
+   *
+   * @return the number of footprints
+   */
+  public synchronized int size() {
+    return templates.size();
+  }
+
+  /**
+   * Get the number of queries that found their footprint in the cache.
+   *
+   * @return the number of hits
+   */
+  public synchronized long getNumOfHits() {
+    return numOfHits;
+  }
+
+  /**
+   * Get the number of queries whose footprint was simulated.
+   *
+   * @return the number of misses
+   */
+  public synchronized long getNumOfMisses() {
+    return numOfMisses;
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Create an empty map of footprints that drops the least recently used
+   * footprint when it is full.
+   *
+   * @return the map
+   */
+  private Map<Key,Template> newTemplateMap() {
+    return new LinkedHashMap<Key,Template>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key,Template> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Read the cache.  The footprints are not written, so the cache starts
+   * empty.
+   *
+   * @param in  the input stream
+   * @throws IOException if the cache cannot be read
+   * @throws ClassNotFoundException never
+   */
+  private void readObject(ObjectInputStream in)
+    throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    templates = newTemplateMap();
+  }
+}
@@ -30,22 +30,41 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.im.v2i.reservation;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.NavigableMap;
-import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.TreeMap;
 
 /**
  * The Reservation Array.
+ * <p>
+ * The array is a ring of time slices indexed by the discrete time modulo
+ * the size of the ring.  Each slice remembers the discrete time it holds
+ * and consists of an occupancy bitmask, one bit per tile, and an array of
+ * the reservation IDs of the tiles whose bits are set.  Each reservation
+ * keeps the list of its time-tiles, packed into longs, so that it can be
+ * cancelled without searching, and a min-heap of the last discrete times
+ * of the reservations, so that a clean up only visits the reservations
+ * that expire.  Checking and making reservations are bit
+ * operations that do not allocate, except when a slice is used for the
+ * first time.  The ring grows if the reservations span more discrete
+ * times than it can hold.
+ * <p>
+ * A slice exists from the first time a time-tile in it is reserved until
+ * the slice is cleaned up, even if all its reservations are cancelled.
+ * Time-tiles before the first existing slice are not reserved.
  */
-public class ReservationArray {
+public class ReservationArray implements Serializable {
+
+  private static final long serialVersionUID = 2L;
 
   /////////////////////////////////
   // CONSTANTS
@@ -53,6 +72,18 @@ public class ReservationArray {
 
   private static final boolean SHOULD_CHECK_CONSISTENCY = false;
 
+  /**
+   * The initial number of slices in the ring.  It is rounded up to a power
+   * of two.
+   */
+  private static final int INITIAL_NUM_OF_SLICES = 256;
+
+  /**
+   * The discrete time of a free slice.  It is not -1, which is a valid
+   * discrete time.
+   */
+  private static final int FREE = Integer.MIN_VALUE;
+
   /////////////////////////////////
   // PUBLIC NESTED CLASSES
   /////////////////////////////////
@@ -121,6 +152,138 @@ public class ReservationArray {
   }
 
 
+
+  /////////////////////////////////
+  // PRIVATE NESTED CLASSES
+  /////////////////////////////////
+
+  /**
+   * The time-tiles of a reservation, each packed into a long with the
+   * discrete time in the upper 32 bits and the tile ID in the lower 32 bits.
+   */
+  private static class TimeTileList {
+    /** The packed time-tiles */
+    private long[] timeTiles;
+    /** The number of time-tiles */
+    private int size;
+    /** The last discrete time of the time-tiles */
+    private int lastTime;
+
+    /**
+     * Create an empty list of time-tiles.
+     */
+    TimeTileList() {
+      timeTiles = new long[16];
+      size = 0;
+      lastTime = FREE;
+    }
+
+    /**
+     * Add a time-tile to the list.
+     *
+     * @param dt   the discrete time
+     * @param tid  the tile ID
+     */
+    void add(int dt, int tid) {
+      if (size == timeTiles.length) {
+        timeTiles = Arrays.copyOf(timeTiles, size * 2);
+      }
+      timeTiles[size++] = pack(dt, tid);
+      if (dt > lastTime) {
+        lastTime = dt;
+      }
+    }
+  }
+
+  /**
+   * A binary min-heap of longs.
+   */
+  private static class LongHeap {
+    /** The elements */
+    private long[] elements;
+    /** The number of elements */
+    private int size;
+
+    /**
+     * Create an empty heap.
+     */
+    LongHeap() {
+      elements = new long[64];
+      size = 0;
+    }
+
+    /**
+     * Whether the heap is empty.
+     *
+     * @return whether the heap is empty
+     */
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    /**
+     * Get the smallest element without removing it.
+     *
+     * @return the smallest element
+     */
+    long peek() {
+      return elements[0];
+    }
+
+    /**
+     * Add an element to the heap.
+     *
+     * @param e  the element
+     */
+    void add(long e) {
+      if (size == elements.length) {
+        elements = Arrays.copyOf(elements, size * 2);
+      }
+      int i = size++;
+      while(i > 0) {
+        int parent = (i - 1) >>> 1;
+        if (elements[parent] <= e) {
+          break;
+        }
+        elements[i] = elements[parent];
+        i = parent;
+      }
+      elements[i] = e;
+    }
+
+    /**
+     * Remove the smallest element from the heap.
+     *
+     * @return the smallest element
+     */
+    long poll() {
+      long top = elements[0];
+      long e = elements[--size];
+      int i = 0;
+      int half = size >>> 1;
+      while(i < half) {
+        int child = 2 * i + 1;
+        if (child + 1 < size && elements[child + 1] < elements[child]) {
+          child++;
+        }
+        if (e <= elements[child]) {
+          break;
+        }
+        elements[i] = elements[child];
+        i = child;
+      }
+      elements[i] = e;
+      return top;
+    }
+
+    /**
+     * Remove all elements from the heap.
+     */
+    void clear() {
+      size = 0;
+    }
+  }
+
   /////////////////////////////////
   // PRIVATE FIELDS
   /////////////////////////////////
@@ -131,21 +294,56 @@ public class ReservationArray {
   private final int numOfTiles;
 
   /**
-   * The grid table, a mapping from discrete times to grids.
+   * The number of words of the occupancy bitmask of a slice.
+   */
+  private final int numOfWords;
+
+  /**
+   * The discrete time held by each slice of the ring; {@link #FREE} if the
+   * slice does not exist.
    */
-  private NavigableMap<Integer, int[]> grids;
+  private transient int[] sliceTimes;
 
   /**
-   * A mapping from discrete times to mappings from reservation IDs to
-   * the tile IDs that is reserved by the vehicle at the time.
+   * The occupancy bitmask of each slice of the ring; null if the slice has
+   * never been used.
    */
-  private NavigableMap<Integer,Map<Integer,Set<Integer>>> timeToRidToTid;
+  private transient long[][] occupancy;
 
   /**
-   * A mapping from reservation IDs to mappings from discrete times to
-   * the tile IDs that is reserved by the vehicle at the time.
+   * The reservation IDs of the tiles of each slice of the ring.  The entry
+   * of a tile is only valid if its bit in the occupancy bitmask is set.
    */
-  private Map<Integer,NavigableMap<Integer,Set<Integer>>> ridToTimeToTid;
+  private transient int[][] owners;
+
+  /**
+   * The mask that maps a discrete time to its slice in the ring.
+   */
+  private transient int sliceMask;
+
+  /**
+   * The discrete time of the first existing slice; {@link #FREE} if there
+   * is none.
+   */
+  private transient int firstTime;
+
+  /**
+   * The discrete time of the last existing slice; {@link #FREE} if there
+   * is none.
+   */
+  private transient int lastTime;
+
+  /**
+   * A mapping from reservation IDs to the time-tiles of the reservations.
+   */
+  private transient Map<Integer,TimeTileList> ridToTimeTiles;
+
+  /**
+   * The expiry queue: the last discrete time of each reservation packed
+   * with its reservation ID.  An entry is stale if the reservation has been
+   * cancelled or extended since the entry was added.
+   */
+  private transient LongHeap expiryQueue;
 
 
   /////////////////////////////////
@@ -159,9 +357,8 @@ public class ReservationArray {
    */
   public ReservationArray(int numOfTiles) {
     this.numOfTiles = numOfTiles;
-    grids = new TreeMap<Integer, int[]>();
-    timeToRidToTid = new TreeMap<Integer,Map<Integer,Set<Integer>>>();
-    ridToTimeToTid = new HashMap<Integer,NavigableMap<Integer,Set<Integer>>>();
+    this.numOfWords = (numOfTiles + 63) >>> 6;
+    init(INITIAL_NUM_OF_SLICES);
   }
 
 
@@ -176,6 +373,22 @@ public class ReservationArray {
     return numOfTiles;
   }
 
+  /**
+   * Remove all reservations.
+   */
+  public void reset() {
+    Arrays.fill(sliceTimes, FREE);
+    for(long[] bits : occupancy) {
+      if (bits != null) {
+        Arrays.fill(bits, 0L);
+      }
+    }
+    firstTime = FREE;
+    lastTime = FREE;
+    ridToTimeTiles.clear();
+    expiryQueue.clear();
+  }
+
   /**
    * Whether the time-tile has been reserved.
    *
@@ -183,11 +396,43 @@ public class ReservationArray {
    * @param tid  the tile ID
    */
   public boolean isReserved(int dt, int tid) {
-    if (grids.containsKey(dt)) {
-      return grids.get(dt)[tid] >= 0;
-    } else {
+    int slice = dt & sliceMask;
+    return sliceTimes[slice] == dt
+           && (occupancy[slice][tid >>> 6] & (1L << tid)) != 0;
+  }
+
+  /**
+   * Whether any of the tiles in a bitmask has been reserved at a given
+   * discrete time.
+   *
+   * @param dt        the discrete time
+   * @param tileMask  the bitmask of the tiles, one bit per tile ID, with
+   *                  the same layout as {@link #newTileMask()}
+   * @return whether any of the tiles has been reserved
+   */
+  public boolean isAnyReserved(int dt, long[] tileMask) {
+    int slice = dt & sliceMask;
+    if (sliceTimes[slice] != dt) {
       return false;
     }
+    long[] bits = occupancy[slice];
+    for(int w = 0; w < numOfWords; w++) {
+      if ((bits[w] & tileMask[w]) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Create an empty bitmask of tiles for {@link #isAnyReserved(int, long[])}.
+   * The bit of tile <code>tid</code> is bit <code>tid % 64</code> of word
+   * <code>tid / 64</code>.
+   *
+   * @return an empty bitmask of tiles
+   */
+  public long[] newTileMask() {
+    return new long[numOfWords];
   }
 
   /**
@@ -197,11 +442,7 @@ public class ReservationArray {
    *         -1 if there is currently no reservation.
    */
   public int getLastReservedDiscreteTime() {
-    try {
-      return grids.lastKey();
-    } catch(NoSuchElementException e) {
-      return -1;
-    }
+    return (lastTime == FREE) ? -1 : lastTime;
   }
 
   /**
@@ -216,64 +457,42 @@ public class ReservationArray {
   public boolean reserve(int rid, Collection<? extends TimeTile> workingList) {
     // check to see if any time-tile is reserved in the past
     for(TimeTile tt : workingList) {
-      int dt = tt.getDiscreteTime();
-      if (grids.containsKey(dt) && grids.get(dt)[tt.getTileId()] >= 0) {
+      if (isReserved(tt.getDiscreteTime(), tt.getTileId())) {
         return false; // the time-tile has been reserved.
       }
     }
 
     // actually make the reservation
-    int timeBegin = 0;
-    try {
-      timeBegin = grids.firstKey();
-    } catch(NoSuchElementException e) {
-      // It means the grid is empty. All time-tiles are acceptable.
-    }
-
+    // If the array is empty, all time-tiles are acceptable.
+    int timeBegin = (firstTime == FREE) ? 0 : firstTime;
+    TimeTileList timeTiles = null;
+    int oldLastTime = FREE;
     for(TimeTile tt : workingList) {
       int dt = tt.getDiscreteTime();
       int tid = tt.getTileId();
 
       if (dt >= timeBegin) {
-        // update grids;
-        int[] grid = grids.get(dt);
-        if (grid == null) {
-          grid = new int[numOfTiles];
-          for(int i=0; i<numOfTiles; i++) { // initialize the grid
-            grid[i] = -1;
+        int slice = useSlice(dt);
+        long bit = 1L << tid;
+        long[] bits = occupancy[slice];
+        if ((bits[tid >>> 6] & bit) == 0) {
+          bits[tid >>> 6] |= bit;
+          owners[slice][tid] = rid;
+          if (timeTiles == null) {
+            timeTiles = ridToTimeTiles.get(rid);
+            if (timeTiles == null) {
+              timeTiles = new TimeTileList();
+              ridToTimeTiles.put(rid, timeTiles);
+            }
+            oldLastTime = timeTiles.lastTime;
           }
-          grids.put(dt, grid);
-        }
-        grid[tid] = rid;
-
-        // update timeToRidToTid
-        Map<Integer,Set<Integer>> ridToTid = timeToRidToTid.get(dt);
-        if (ridToTid == null) {
-          ridToTid = new HashMap<Integer,Set<Integer>>();
-          timeToRidToTid.put(dt, ridToTid);
-        }
-        Set<Integer> tidSet = ridToTid.get(rid);
-        if (tidSet == null) {
-          tidSet = new HashSet<Integer>();
-          ridToTid.put(rid, tidSet);
-        }
-        tidSet.add(tid);
-
-        // update ridToTimeToTid
-        NavigableMap<Integer,Set<Integer>> timeToTid =
-          ridToTimeToTid.get(rid);
-        if (timeToTid == null) {
-          timeToTid = new TreeMap<Integer,Set<Integer>>();
-          ridToTimeToTid.put(rid, timeToTid);
-        }
-        tidSet = timeToTid.get(dt);
-        if (tidSet == null) {
-          tidSet = new HashSet<Integer>();
-          timeToTid.put(dt, tidSet);
-        }
-        tidSet.add(tid);
+          timeTiles.add(dt, tid);
+        }  // else the time-tile is already in the working list
       }  // else ignore timetile that is before timeBegin
     }
+    if (timeTiles != null && timeTiles.lastTime != oldLastTime) {
+      expiryQueue.add(pack(timeTiles.lastTime, rid));
+    }
     assert (!SHOULD_CHECK_CONSISTENCY) || checkConsistency();
     return true;
   }
@@ -284,20 +503,16 @@ public class ReservationArray {
    * @param rid  the reservation ID
    */
   public void cancel(int rid) {
-    // remove elements in ridToTimeToTid
-    NavigableMap<Integer,Set<Integer>> timeToTid = ridToTimeToTid.remove(rid);
-    if (timeToTid != null) {
-      for(int dt : timeToTid.keySet()) {
-        // remove elements in timeToRidToTid
-        if (timeToRidToTid.containsKey(dt)) {
-          timeToRidToTid.get(dt).remove(rid);
-        }
-        // remove time-tiles in grids
-        if (grids.containsKey(dt)) {
-          int[] grid = grids.get(dt);
-          for(int tid : timeToTid.get(dt)) {
-            grid[tid] = -1;
-          }
+    TimeTileList timeTiles = ridToTimeTiles.remove(rid);
+    if (timeTiles != null) {
+      for(int i = 0; i < timeTiles.size; i++) {
+        long tt = timeTiles.timeTiles[i];
+        int dt = unpackTime(tt);
+        int tid = unpackTileId(tt);
+        int slice = dt & sliceMask;
+        // the slice may have been cleaned up and reused since
+        if (sliceTimes[slice] == dt && owners[slice][tid] == rid) {
+          occupancy[slice][tid >>> 6] &= ~(1L << tid);
         }
       }
       assert (!SHOULD_CHECK_CONSISTENCY) || checkConsistency();
@@ -310,34 +525,32 @@ public class ReservationArray {
    * @param dt  the discrete time before which the reservations will be removed.
    */
   public void cleanUp(int dt) {
-    // clean up grids and timeToRidToTid
-    try {
-      while(grids.firstKey() < dt) {
-        int dt1 = grids.firstKey();
-        grids.remove(dt1);
-        timeToRidToTid.remove(dt1);
-      }
-    } catch(NoSuchElementException e) {
-      // do nothing
+    if (firstTime == FREE) {
+      return;
     }
-
-    List<Integer> removeRid = new LinkedList<Integer>();
-    for(int rid : ridToTimeToTid.keySet()){
-      NavigableMap<Integer,Set<Integer>> timeToTid = ridToTimeToTid.get(rid);
-      try {
-        while(timeToTid.firstKey() < dt) {
-          timeToTid.remove(timeToTid.firstKey());
-        }
-      } catch(NoSuchElementException e) {
-        // do nothing
-      }
-      if (timeToTid.isEmpty()) {
-        removeRid.add(rid);
+    // free the slices before dt
+    int end = Math.min(dt, lastTime + 1);
+    for(int t = firstTime; t < end; t++) {
+      freeSlice(t);
+    }
+    if (lastTime < dt) {
+      firstTime = FREE;
+      lastTime = FREE;
+    } else if (firstTime < dt) {
+      firstTime = dt;
+      while(sliceTimes[firstTime & sliceMask] != firstTime) {
+        firstTime++;
       }
     }
 
-    for(int rid : removeRid) {
-      ridToTimeToTid.remove(rid);
+    // remove the reservations that have no time-tile at or after dt
+    while(!expiryQueue.isEmpty() && unpackTime(expiryQueue.peek()) < dt) {
+      long entry = expiryQueue.poll();
+      int rid = unpackTileId(entry);
+      TimeTileList timeTiles = ridToTimeTiles.get(rid);
+      if (timeTiles != null && timeTiles.lastTime == unpackTime(entry)) {
+        ridToTimeTiles.remove(rid);
+      }  // else the entry is stale
     }
 
     assert (!SHOULD_CHECK_CONSISTENCY) || checkConsistency();
@@ -350,16 +563,17 @@ public class ReservationArray {
    * @return the list of tile IDs that are reserved at the given discrete time.
    */
   public List<Integer> getReservedTilesAtTime(int dt) {
-    Map<Integer,Set<Integer>> ridToTid = timeToRidToTid.get(dt);
-    if (ridToTid != null) {
-      List<Integer> dts = new LinkedList<Integer>();
-      for(int rid : ridToTid.keySet()) {
-        dts.addAll(ridToTid.get(rid));
+    List<Integer> tids = new LinkedList<Integer>();
+    int slice = dt & sliceMask;
+    if (sliceTimes[slice] == dt) {
+      long[] bits = occupancy[slice];
+      for(int w = 0; w < numOfWords; w++) {
+        for(long word = bits[w]; word != 0; word &= word - 1) {
+          tids.add((w << 6) + Long.numberOfTrailingZeros(word));
+        }
       }
-      return dts;
-    } else {
-      return new LinkedList<Integer>(); // return an empty list
     }
+    return tids;
   }
 
   /**
@@ -369,70 +583,268 @@ public class ReservationArray {
    * @return a set of reservation IDs.
    */
   public Set<Integer> getVinOfReservedTilesAtTime(int dt) {
-    Map<Integer,Set<Integer>> ridToTid = timeToRidToTid.get(dt);
-    if (ridToTid != null) {
-      return Collections.unmodifiableSet(ridToTid.keySet());
-    } else {
-      return new HashSet<Integer>(); // return an empty list
+    Set<Integer> rids = new HashSet<Integer>();
+    int slice = dt & sliceMask;
+    if (sliceTimes[slice] == dt) {
+      long[] bits = occupancy[slice];
+      for(int w = 0; w < numOfWords; w++) {
+        for(long word = bits[w]; word != 0; word &= word - 1) {
+          int tid = (w << 6) + Long.numberOfTrailingZeros(word);
+          rids.add(owners[slice][tid]);
+        }
+      }
     }
+    return rids;
   }
 
 
   /////////////////////////////////
-  // DEBUG
+  // PRIVATE METHODS
   /////////////////////////////////
 
   /**
-   * Check whether the array are consistent
+   * Pack a time-tile into a long.
+   *
+   * @param dt   the discrete time
+   * @param tid  the tile ID
+   * @return the packed time-tile
    */
-  private boolean checkConsistency() {
-    for(int dt : grids.keySet()) {
-      int[] tids = grids.get(dt);
-      for(int tid=0; tid < numOfTiles; tid++) {
-        int rid = tids[tid];
-        if (rid >= 0) {
-          assert timeToRidToTid.get(dt) != null;
-          assert timeToRidToTid.get(dt).get(rid) != null;
-          if (!timeToRidToTid.get(dt).get(rid).contains(tid)) {
-            throw new RuntimeException("ReservationArray::checkConsistency():" +
-                                       "grids > timeToRidToTid");
-          }
-          assert ridToTimeToTid.get(rid) != null;
-          assert ridToTimeToTid.get(rid).get(dt) != null;
-          if (!ridToTimeToTid.get(rid).get(dt).contains(tid)) {
-            throw new RuntimeException("ReservationArray::checkConsistency():" +
-                                       "grids > ridToTimeToTid");
-          }
-        }
+  private static long pack(int dt, int tid) {
+    return ((long)dt << 32) | (tid & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Get the discrete time of a packed time-tile.
+   *
+   * @param tt  the packed time-tile
+   * @return the discrete time
+   */
+  private static int unpackTime(long tt) {
+    return (int)(tt >> 32);
+  }
+
+  /**
+   * Get the tile ID of a packed time-tile.
+   *
+   * @param tt  the packed time-tile
+   * @return the tile ID
+   */
+  private static int unpackTileId(long tt) {
+    return (int)tt;
+  }
+
+  /**
+   * Create an empty ring.
+   *
+   * @param numOfSlices  the minimum number of slices of the ring
+   */
+  private void init(int numOfSlices) {
+    int n = Integer.highestOneBit(Math.max(numOfSlices - 1, 1)) << 1;
+    sliceTimes = new int[n];
+    Arrays.fill(sliceTimes, FREE);
+    occupancy = new long[n][];
+    owners = new int[n][];
+    sliceMask = n - 1;
+    firstTime = FREE;
+    lastTime = FREE;
+    ridToTimeTiles = new HashMap<Integer,TimeTileList>();
+    expiryQueue = new LongHeap();
+  }
+
+  /**
+   * Get the slice of a discrete time, creating the slice if it does not
+   * exist yet.  The ring grows if the slice is held by another discrete
+   * time.
+   *
+   * @param dt  the discrete time
+   * @return the index of the slice in the ring
+   */
+  private int useSlice(int dt) {
+    int slice = dt & sliceMask;
+    if (sliceTimes[slice] == dt) {
+      return slice;
+    }
+    if (sliceTimes[slice] != FREE) {
+      grow(Math.max(lastTime, dt) - Math.min(firstTime, dt) + 1);
+      slice = dt & sliceMask;
+    }
+    sliceTimes[slice] = dt;
+    if (occupancy[slice] == null) {
+      occupancy[slice] = new long[numOfWords];
+      owners[slice] = new int[numOfTiles];
+    }
+    if (firstTime == FREE || dt < firstTime) {
+      firstTime = dt;
+    }
+    if (dt > lastTime) {
+      lastTime = dt;
+    }
+    return slice;
+  }
+
+  /**
+   * Free the slice of a discrete time, if it exists.
+   *
+   * @param dt  the discrete time
+   */
+  private void freeSlice(int dt) {
+    int slice = dt & sliceMask;
+    if (sliceTimes[slice] == dt) {
+      sliceTimes[slice] = FREE;
+      Arrays.fill(occupancy[slice], 0L);
+    }
+  }
+
+  /**
+   * Move the existing slices to a larger ring.
+   *
+   * @param span  the number of discrete times the ring must hold
+   */
+  private void grow(int span) {
+    int n = sliceTimes.length;
+    while(n < span) {
+      n *= 2;
+    }
+    if (n == sliceTimes.length) {
+      n *= 2;
+    }
+    int[] oldSliceTimes = sliceTimes;
+    long[][] oldOccupancy = occupancy;
+    int[][] oldOwners = owners;
+    sliceTimes = new int[n];
+    Arrays.fill(sliceTimes, FREE);
+    occupancy = new long[n][];
+    owners = new int[n][];
+    sliceMask = n - 1;
+    for(int i = 0; i < oldSliceTimes.length; i++) {
+      if (oldSliceTimes[i] != FREE) {
+        int slice = oldSliceTimes[i] & sliceMask;
+        sliceTimes[slice] = oldSliceTimes[i];
+        occupancy[slice] = oldOccupancy[i];
+        owners[slice] = oldOwners[i];
       }
     }
+  }
 
-    for(int dt : timeToRidToTid.keySet()) {
-      Map<Integer,Set<Integer>> ridToTid = timeToRidToTid.get(dt);
-      for(int rid : ridToTid.keySet()) {
-        for(int tid : ridToTid.get(rid)) {
-          if (grids.get(dt)[tid] != rid) {
-            throw new RuntimeException("ReservationArray::checkConsistency():" +
-                                        "timeToRidToTid > grids");
+  /**
+   * Write the existing slices and the reservations.
+   *
+   * @param out  the output stream
+   * @throws IOException if the array cannot be written
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeInt(sliceTimes.length);
+    // the existing slices in order, so that the empty ones are kept
+    int numOfSlices = 0;
+    for(int t : sliceTimes) {
+      if (t != FREE) {
+        numOfSlices++;
+      }
+    }
+    out.writeInt(numOfSlices);
+    for(int i = 0; i < sliceTimes.length; i++) {
+      if (sliceTimes[i] != FREE) {
+        out.writeInt(sliceTimes[i]);
+      }
+    }
+    // the reservations
+    out.writeInt(ridToTimeTiles.size());
+    for(Map.Entry<Integer,TimeTileList> entry : ridToTimeTiles.entrySet()) {
+      int rid = entry.getKey();
+      TimeTileList timeTiles = entry.getValue();
+      out.writeInt(rid);
+      out.writeInt(timeTiles.size);
+      for(int i = 0; i < timeTiles.size; i++) {
+        long tt = timeTiles.timeTiles[i];
+        int dt = unpackTime(tt);
+        int tid = unpackTileId(tt);
+        out.writeLong(tt);
+        // whether the time-tile is still held by the reservation
+        out.writeBoolean(isReserved(dt, tid)
+                         && owners[dt & sliceMask][tid] == rid);
+      }
+    }
+  }
 
-          }
+  /**
+   * Read the slices and the reservations written by
+   * {@link #writeObject(ObjectOutputStream)}.
+   *
+   * @param in  the input stream
+   * @throws IOException if the array cannot be read
+   * @throws ClassNotFoundException never
+   */
+  private void readObject(ObjectInputStream in)
+    throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    init(in.readInt());
+    int numOfSlices = in.readInt();
+    for(int i = 0; i < numOfSlices; i++) {
+      useSlice(in.readInt());
+    }
+    int numOfReservations = in.readInt();
+    for(int i = 0; i < numOfReservations; i++) {
+      int rid = in.readInt();
+      int size = in.readInt();
+      TimeTileList timeTiles = new TimeTileList();
+      for(int j = 0; j < size; j++) {
+        long tt = in.readLong();
+        int dt = unpackTime(tt);
+        int tid = unpackTileId(tt);
+        timeTiles.add(dt, tid);
+        if (in.readBoolean()) {
+          int slice = dt & sliceMask;
+          occupancy[slice][tid >>> 6] |= 1L << tid;
+          owners[slice][tid] = rid;
         }
       }
+      ridToTimeTiles.put(rid, timeTiles);
+      expiryQueue.add(pack(timeTiles.lastTime, rid));
     }
+  }
 
-    for(int rid : ridToTimeToTid.keySet()) {
-      NavigableMap<Integer,Set<Integer>> timeToTid = ridToTimeToTid.get(rid);
-      for(int dt : timeToTid.keySet()) {
-        for(int tid : timeToTid.get(dt)) {
-          if (grids.get(dt)[tid] != rid) {
-            throw new RuntimeException("ReservationArray::checkConsistency():" +
-                                        "ridToTimeToTid > grids");
 
+  /////////////////////////////////
+  // DEBUG
+  /////////////////////////////////
+
+  /**
+   * Check whether the array are consistent
+   */
+  private boolean checkConsistency() {
+    // every reserved time-tile belongs to its reservation
+    for(int slice = 0; slice < sliceTimes.length; slice++) {
+      int dt = sliceTimes[slice];
+      if (dt == FREE) {
+        continue;
+      }
+      if (dt < firstTime || dt > lastTime) {
+        throw new RuntimeException("ReservationArray::checkConsistency():" +
+                                   "slice out of range");
+      }
+      for(int tid = 0; tid < numOfTiles; tid++) {
+        if (isReserved(dt, tid)) {
+          TimeTileList timeTiles = ridToTimeTiles.get(owners[slice][tid]);
+          boolean isFound = false;
+          for(int i = 0; timeTiles != null && i < timeTiles.size; i++) {
+            if (timeTiles.timeTiles[i] == pack(dt, tid)) {
+              isFound = true;
+            }
+          }
+          if (!isFound) {
+            throw new RuntimeException("ReservationArray::checkConsistency():" +
+                                       "grids > ridToTimeTiles");
           }
         }
       }
     }
+    if (firstTime != FREE
+        && (sliceTimes[firstTime & sliceMask] != firstTime
+            || sliceTimes[lastTime & sliceMask] != lastTime)) {
+      throw new RuntimeException("ReservationArray::checkConsistency():" +
+                                 "first or last slice missing");
+    }
     return true;
   }
 }
-
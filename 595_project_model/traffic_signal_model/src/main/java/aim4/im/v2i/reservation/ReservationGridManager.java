@@ -34,16 +34,19 @@ import java.awt.Shape;
 import java.awt.geom.Area;
 import java.awt.geom.Rectangle2D;
 import java.io.PrintStream;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import aim4.config.Constants;
-import aim4.config.Debug;
 import aim4.driver.CrashTestDummy;
 import aim4.driver.Driver;
 import aim4.im.Intersection;
@@ -53,7 +56,6 @@ import aim4.msg.v2i.Request;
 import aim4.msg.v2i.Request.VehicleSpecForRequestMsg;
 import aim4.sim.StatCollector;
 import aim4.util.TiledArea;
-import aim4.util.TiledArea.Tile;
 import aim4.vehicle.BasicAutoVehicle;
 import aim4.vehicle.VehicleSpec;
 import aim4.vehicle.VehicleUtil;
@@ -64,7 +66,9 @@ import aim4.vehicle.VehicleUtil;
 public class ReservationGridManager implements
     ReservationManager<ReservationGridManager.Query,
                        ReservationGridManager.Plan,
-                       Integer> {
+                       Integer>, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /////////////////////////////////
   // NESTED CLASSES
@@ -73,7 +77,9 @@ public class ReservationGridManager implements
   /**
    * The configuration of the reservation grid manager.
    */
-  public static class Config {
+  public static class Config implements Serializable {
+
+    private static final long serialVersionUID = 1L;
     /**
      * The simulation time step.
      */
@@ -400,7 +406,9 @@ public class ReservationGridManager implements
    * The statistic collector for VIN history.
    */
   public static class VinHistoryStatCollector
-                  implements StatCollector<ReservationGridManager> {
+                  implements StatCollector<ReservationGridManager>, Serializable {
+
+    private static final long serialVersionUID = 1L;
     /**
      * A list of the VINs of all reserved tiles at every time step.
      */
@@ -433,7 +441,8 @@ public class ReservationGridManager implements
       }
       if (!s.equals(lasts)) {
         vinHistoryTime.add(manager.currentTime);
-        vinHistory.put(manager.currentTime, s);
+        // keep a copy; s is a view of the reservation grid
+        vinHistory.put(manager.currentTime, new HashSet<Integer>(s));
       }
     }
 
@@ -502,6 +511,16 @@ public class ReservationGridManager implements
    * The statistic collector
    */
   private StatCollector<ReservationGridManager> statCollector;
+  /**
+   * The number of queries made to the manager so far; the queries may be
+   * made by several threads at the same time
+   */
+  private final AtomicLong numOfQueries;
+  /**
+   * The cache of the footprints of the trajectories; null if the footprint
+   * of every query is simulated
+   */
+  private FootprintTemplateCache templateCache;
 
 
   /////////////////////////////////
@@ -550,6 +569,8 @@ public class ReservationGridManager implements
     this.tiledArea = tiledArea;
     this.reservationGrid = reservationGrid;
     this.statCollector = new VinHistoryStatCollector();
+    this.numOfQueries = new AtomicLong();
+    this.templateCache = null;
   }
 
 
@@ -568,6 +589,19 @@ public class ReservationGridManager implements
     currentTime += timeStep;
   }
 
+  /**
+   * Remove all reservations and restart the clock of the manager.
+   *
+   * @param currentTime  the current time
+   */
+  public void reset(double currentTime) {
+    this.currentTime = currentTime;
+    reservationGrid.reset();
+    if (statCollector != null) {
+      statCollector = new VinHistoryStatCollector();
+    }
+  }
+
   /**
    * Get the configuration.
    *
@@ -595,6 +629,37 @@ public class ReservationGridManager implements
     return statCollector;
   }
 
+  /**
+   * Get the number of queries made to the manager so far.  The count is
+   * not cleared by {@link #reset(double)}.
+   *
+   * @return the number of queries
+   */
+  public long getNumOfQueries() {
+    return numOfQueries.get();
+  }
+
+  /**
+   * Set the cache of the footprints of the trajectories.  With a cache, the
+   * footprints of similar queries are simulated only once; see
+   * {@link FootprintTemplateCache} for how this changes the plans.
+   *
+   * @param templateCache  the cache; null to simulate the footprint of
+   *                       every query
+   */
+  public void setTemplateCache(FootprintTemplateCache templateCache) {
+    this.templateCache = templateCache;
+  }
+
+  /**
+   * Get the cache of the footprints of the trajectories.
+   *
+   * @return the cache; null if there is none
+   */
+  public FootprintTemplateCache getTemplateCache() {
+    return templateCache;
+  }
+
   /////////////////////////////////
   // PUBLIC METHODS
   /////////////////////////////////
@@ -611,12 +676,15 @@ public class ReservationGridManager implements
    */
   @Override
   public Plan query(Query q) {
+    numOfQueries.incrementAndGet();
+
+    if (templateCache != null) {
+      return queryByTemplate(q);
+    }
 
     // Position the Vehicle to be ready to start the simulation
-    Lane arrivalLane =
-      Debug.currentMap.getLaneRegistry().get(q.getArrivalLaneId());
-    Lane departureLane =
-      Debug.currentMap.getLaneRegistry().get(q.getDepartureLaneId());
+    Lane arrivalLane = intersection.getLane(q.getArrivalLaneId());
+    Lane departureLane = intersection.getLane(q.getDepartureLaneId());
 
     // Create a test vehicle to use in the internal simulation
     BasicAutoVehicle testVehicle =
@@ -626,7 +694,8 @@ public class ReservationGridManager implements
                         arrivalLane);
 
     // Create a dummy driver to steer it
-    Driver dummy = new CrashTestDummy(testVehicle, arrivalLane, departureLane);
+    Driver dummy = new CrashTestDummy(testVehicle, arrivalLane, departureLane,
+                                      intersection);
 
     // assign the drive to the vehicle
     // testVehicle.setDriver(dummy);  // TODO fix this later.
@@ -679,11 +748,122 @@ public class ReservationGridManager implements
     reservationGrid.cancel(reservationId);  // reservationId == vin
   }
 
+  /**
+   * Whether a plan can still be accepted, i.e. none of its time-tiles has
+   * been reserved since the plan was made.  A query would then make the
+   * same plan again, since the trajectory of the test vehicle does not
+   * depend on the reservations.
+   *
+   * @param plan  the plan
+   * @return whether the plan can still be accepted
+   */
+  public boolean isAcceptable(Plan plan) {
+    for(TimeTile tt : plan.getWorkingList()) {
+      if (reservationGrid.isReserved(tt.getDiscreteTime(), tt.getTileId())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
 
   /////////////////////////////////
   // PRIVATE FIELDS
   /////////////////////////////////
 
+  /**
+   * Find a set of space-time tiles for a query by shifting the footprint of
+   * its trajectory, which is taken from the template cache or simulated and
+   * put into the cache.
+   *
+   * @param q  the query object
+   * @return a plan if the reservation is successful; otherwise null
+   */
+  private Plan queryByTemplate(Query q) {
+    double gridTimeStep = reservationGrid.getGridTimeStep();
+    FootprintTemplateCache.Key key =
+      templateCache.makeKey(q,
+                            reservationGrid.calcRemainingTime(
+                              q.getArrivalTime()),
+                            gridTimeStep);
+    FootprintTemplateCache.Template template = templateCache.get(key);
+    if (template == null) {
+      template = makeTemplate(q, key);
+      templateCache.put(key, template);
+    }
+
+    int arrivalTime = reservationGrid.calcDiscreteTime(q.getArrivalTime());
+    if (template.isAnyReserved(reservationGrid, arrivalTime)) {
+      return null;
+    }
+    List<TimeTile> workingList = new ArrayList<TimeTile>();
+    template.addTimeTiles(reservationGrid, arrivalTime, workingList);
+
+    Queue<double[]> accelerationProfile =
+      calcAccelerationProfile(q.getArrivalTime(),
+                              q.getArrivalVelocity(),
+                              q.getMaxTurnVelocity(),
+                              q.getSpec().getMaxAcceleration(),
+                              reservationGrid.calcTime(
+                                arrivalTime + template.getExitOffset()),
+                              q.isAccelerating());
+
+    return new Plan(q.getVin(),
+                    reservationGrid.calcTime(
+                      arrivalTime + template.getLastTileOffset()),
+                    template.getExitVelocity(),
+                    workingList,
+                    accelerationProfile);
+  }
+
+  /**
+   * Simulate the footprint of the trajectory of a key of the template
+   * cache.  The test vehicle arrives at the velocity and the offset of the
+   * arrival time of the key.
+   *
+   * @param q    a query with the key
+   * @param key  the key
+   * @return the footprint
+   */
+  private FootprintTemplateCache.Template makeTemplate(
+                                            Query q,
+                                            FootprintTemplateCache.Key key) {
+    Lane arrivalLane = intersection.getLane(q.getArrivalLaneId());
+    Lane departureLane = intersection.getLane(q.getDepartureLaneId());
+    BasicAutoVehicle testVehicle =
+      createTestVehicle(q.getSpec(),
+                        key.getArrivalVelocity(),
+                        q.getMaxTurnVelocity(),
+                        arrivalLane);
+    Driver dummy = new CrashTestDummy(testVehicle, arrivalLane, departureLane,
+                                      intersection);
+
+    Area areaPlus = intersection.getAreaPlus();
+    List<int[]> steps = new ArrayList<int[]>();
+    List<Integer> buffers = new ArrayList<Integer>();
+    float[] corners = new float[8];
+    int[] occupied = new int[tiledArea.getNumberOfTiles()];
+    double currentDuration = key.getPhase();
+    while(VehicleUtil.intersects(testVehicle, areaPlus)) {
+      moveTestVehicle(testVehicle, dummy, currentDuration, q.isAccelerating());
+      testVehicle.getCornerCoords(staticBufferSize, corners);
+      int numOfOccupied = tiledArea.findOccupiedTiles(corners, occupied);
+      for(int i = 0; i < numOfOccupied; i++) {
+        if (isEdgeTileTimeBufferEnabled
+            && tiledArea.getTileById(occupied[i]).isEdgeTile()) {
+          buffers.add(edgeTileTimeBufferSteps);
+        } else {
+          buffers.add(internalTileTimeBufferSteps);
+        }
+      }
+      steps.add(Arrays.copyOf(occupied, numOfOccupied));
+      currentDuration = reservationGrid.getGridTimeStep();
+    }
+    return new FootprintTemplateCache.Template(steps, buffers,
+                                               reservationGrid,
+                                               testVehicle.gaugeVelocity());
+  }
+
   /**
    * Create a test vehicle to use in the internal simulation.
    *
@@ -806,30 +986,35 @@ public class ReservationGridManager implements
     // The duration in the current time interval
     double currentDuration = reservationGrid.calcRemainingTime(arrivalTime);
 
+    // The corners of the test vehicle and the tiles they occupy
+    float[] corners = new float[8];
+    int[] occupied = new int[tiledArea.getNumberOfTiles()];
+
     // drive the test vehicle until it leaves the intersection
     while(VehicleUtil.intersects(testVehicle, areaPlus)) {
       moveTestVehicle(testVehicle, dummy, currentDuration, accelerating);
       // Find out which tiles are occupied by the vehicle
       currentIntTime++;  // Record that we've moved forward one time step
-      List<Tile> occupied =
-        tiledArea.findOccupiedTiles(testVehicle.getShape(staticBufferSize));
+      testVehicle.getCornerCoords(staticBufferSize, corners);
+      int numOfOccupied = tiledArea.findOccupiedTiles(corners, occupied);
 
       // Make sure none of these tiles are reserved by someone else already
-      for(Tile tile : occupied) {
+      for(int i = 0; i < numOfOccupied; i++) {
+        int tileId = occupied[i];
 
         // Figure out how large of a time buffer to use, based on whether or
         // not this is an edge tile
         int buffer;
-        if (isEdgeTileTimeBufferEnabled && tile.isEdgeTile()) {
+        if (isEdgeTileTimeBufferEnabled
+            && tiledArea.getTileById(tileId).isEdgeTile()) {
           buffer = edgeTileTimeBufferSteps;
         } else {
           buffer = internalTileTimeBufferSteps;
         }
-        int tileId = tile.getId();
         for(int t = currentIntTime - buffer; t <= currentIntTime + buffer; t++){
           // If the tile is already reserved and it isn't by us, we've failed
           if (!reservationGrid.isReserved(t, tileId)) {
-            workingList.add(reservationGrid.new TimeTile(t, tile.getId()));
+            workingList.add(reservationGrid.new TimeTile(t, tileId));
           } else {
             return null; // Failure! Just bail!
           }
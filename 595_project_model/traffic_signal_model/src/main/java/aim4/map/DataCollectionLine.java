@@ -33,6 +33,10 @@ package aim4.map;
 import java.awt.Shape;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -53,6 +57,42 @@ public class DataCollectionLine {
   /** The no repeat time period */
   private static final double NO_REPEAT_TIME_PERIOD = 1.0; // seconds
 
+  /////////////////////////////////
+  // NESTED CLASSES
+  /////////////////////////////////
+
+  /**
+   * The record of a vehicle passing through the line: the times of the
+   * crossings and a description of the vehicle, taken when it first passed
+   * through the line.  The line keeps the description so that the collected
+   * data can be printed after the vehicle has left the map.
+   */
+  private static class VehicleRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The name of the specification of the vehicle */
+    private final String specName;
+    /** The ID of the lane in which the vehicle was spawned */
+    private final int spawnLaneId;
+    /** The name of the destination road of the vehicle */
+    private final String destRoadName;
+    /** The times of the crossings */
+    private final List<Double> times;
+
+    /**
+     * Create a record of a vehicle without crossings.
+     *
+     * @param v  the vehicle
+     */
+    public VehicleRecord(VehicleSimView v) {
+      specName = v.getSpec().getName();
+      spawnLaneId = v.getDriver().getSpawnPoint().getLane().getId();
+      destRoadName = v.getDriver().getDestination().getName();
+      times = new LinkedList<Double>();
+    }
+  }
+
   /////////////////////////////////
   // PRIVATE FIELDS
   /////////////////////////////////
@@ -63,8 +103,8 @@ public class DataCollectionLine {
   private int id;
   /** The line */
   private Line2D line;
-  /** The record of the times of the vehicle passing through the line */
-  private Map<Integer,List<Double>> vinToTime;
+  /** The records of the vehicles passing through the line */
+  private Map<Integer,VehicleRecord> vinToRecord;
   /**
    * Whether vehicles should not be counted more than once when it passes
    * through the line more than once within the NO_REPEAT_TIME_PERIOD.
@@ -90,7 +130,7 @@ public class DataCollectionLine {
                             boolean isNoRepeat) {
     this.name = name;
     this.id = id;
-    this.vinToTime = new HashMap<Integer,List<Double>>();
+    this.vinToRecord = new HashMap<Integer,VehicleRecord>();
     this.line = new Line2D.Double(p1, p2);
     this.isNoRepeat = isNoRepeat;
   }
@@ -109,7 +149,8 @@ public class DataCollectionLine {
   }
 
   /**
-   * Whether the vehicle intersects the line.
+   * Whether the vehicle intersects the line.  If it does, the crossing is
+   * recorded.
    *
    * @param v     the vehicle
    * @param time  the current time
@@ -119,29 +160,85 @@ public class DataCollectionLine {
    */
   public boolean intersect(VehicleSimView v, double time,
                            Point2D p1, Point2D p2) {
-    int vin = v.getVIN();
+    if (isCrossing(v.getVIN(), time, p1, p2)) {
+      recordCrossing(v, time);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Whether the vehicle intersects the line, without recording the
+   * crossing.  This method does not modify the line, so it can be called
+   * concurrently as long as no crossing is being recorded at the same time.
+   *
+   * @param vin   the VIN of the vehicle
+   * @param time  the current time
+   * @param p1    the first point of the vehicle
+   * @param p2    the second point of the vehicle
+   * @return whether the vehicle intersects the line
+   */
+  public boolean isCrossing(int vin, double time, Point2D p1, Point2D p2) {
+    VehicleRecord record = vinToRecord.get(vin);
     if (!isNoRepeat
-      || !vinToTime.containsKey(vin)
-      || vinToTime.get(vin).get(vinToTime.get(vin).size()-1)
-        + NO_REPEAT_TIME_PERIOD < time) {
-      if (line.intersectsLine(p1.getX(), p1.getY(), p2.getX(), p2.getY())) {
-        if (!vinToTime.containsKey(vin)) {
-          List<Double> times = new LinkedList<Double>();
-          times.add(time);
-          vinToTime.put(vin, times);
-        } else {
-          vinToTime.get(vin).add(time);
-        }
-        return true;
-      } else {
-        return false;
-      }
+      || record == null
+      || record.times.get(record.times.size()-1) + NO_REPEAT_TIME_PERIOD
+         < time) {
+      return line.intersectsLine(p1.getX(), p1.getY(), p2.getX(), p2.getY());
     } else {  // the vehicle passed through this data collection line
               // twice or more within last NO_REPEAT_TIME_PERIOD seconds
       return false;
     }
   }
 
+  /**
+   * Record that a vehicle crossed the line.
+   *
+   * @param v     the vehicle
+   * @param time  the time of the crossing
+   */
+  public void recordCrossing(VehicleSimView v, double time) {
+    VehicleRecord record = vinToRecord.get(v.getVIN());
+    if (record == null) {
+      record = new VehicleRecord(v);
+      vinToRecord.put(v.getVIN(), record);
+    }
+    record.times.add(time);
+  }
+
+  /**
+   * Forget all recorded crossings.
+   */
+  public void reset() {
+    vinToRecord.clear();
+  }
+
+  /**
+   * Write the recorded crossings.
+   *
+   * @param out  the output stream
+   * @throws IOException if the stream fails
+   */
+  public void writeState(ObjectOutputStream out) throws IOException {
+    out.writeObject(vinToRecord);
+  }
+
+  /**
+   * Read the recorded crossings written by
+   * {@link #writeState(ObjectOutputStream)}.
+   *
+   * @param in  the input stream
+   * @throws IOException if the stream fails
+   * @throws ClassNotFoundException if the class of an object in the stream
+   *                                cannot be found
+   */
+  @SuppressWarnings("unchecked")
+  public void readState(ObjectInputStream in)
+    throws IOException, ClassNotFoundException {
+    vinToRecord = (Map<Integer,VehicleRecord>)in.readObject();
+  }
+
   /**
    * Get the name of the line.
    *
@@ -166,17 +263,52 @@ public class DataCollectionLine {
    * @return the VINs of all vehicles
    */
   public Set<Integer> getAllVIN() {
-    return vinToTime.keySet();
+    return vinToRecord.keySet();
   }
 
   /**
    * Get the time a vehicle passing through the line.
    *
    * @param vin  the VIN of the vehicle
-   * @return the time the vehicle passing through the line
+   * @return the time the vehicle passing through the line; null if the
+   *         vehicle has not passed through the line
    */
   public List<Double> getTimes(int vin) {
-    return vinToTime.get(vin);
+    VehicleRecord record = vinToRecord.get(vin);
+    return (record != null) ? record.times : null;
+  }
+
+  /**
+   * Get the name of the specification of a vehicle that passed through the
+   * line.
+   *
+   * @param vin  the VIN of the vehicle
+   * @return the name of the specification of the vehicle
+   */
+  public String getVehicleSpecName(int vin) {
+    return vinToRecord.get(vin).specName;
+  }
+
+  /**
+   * Get the ID of the lane in which a vehicle that passed through the line
+   * was spawned.
+   *
+   * @param vin  the VIN of the vehicle
+   * @return the ID of the spawn lane of the vehicle
+   */
+  public int getSpawnLaneId(int vin) {
+    return vinToRecord.get(vin).spawnLaneId;
+  }
+
+  /**
+   * Get the name of the destination road of a vehicle that passed through
+   * the line.
+   *
+   * @param vin  the VIN of the vehicle
+   * @return the name of the destination road of the vehicle
+   */
+  public String getDestRoadName(int vin) {
+    return vinToRecord.get(vin).destRoadName;
   }
 
 }
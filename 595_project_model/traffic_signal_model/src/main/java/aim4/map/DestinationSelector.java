@@ -32,7 +32,6 @@ package aim4.map;
 
 import java.util.List;
 
-import aim4.config.Debug;
 import aim4.map.BasicMap;
 import aim4.map.Road;
 import aim4.map.lane.Lane;
@@ -49,6 +48,9 @@ public class DestinationSelector {
   // PRIVATE FIELDS
   /////////////////////////////////
 
+  /** The layout */
+  private BasicMap layout;
+
   /////////////////////////////////
   // CLASS CONSTRUCTORS
   /////////////////////////////////
@@ -60,7 +62,7 @@ public class DestinationSelector {
    *               RandomDestinationSelector
    */
   public DestinationSelector(BasicMap layout) {
-    layout.getDestinationRoads();
+    this.layout = layout;
   }
 
   /////////////////////////////////
@@ -69,51 +71,51 @@ public class DestinationSelector {
 
   public Road selectDestination(Lane currentLane) {
 
-    Road currentRoad = Debug.currentMap.getRoad(currentLane);
+    Road currentRoad = layout.getRoad(currentLane);
 
     if (currentRoad.getName().equals("E")){
       if(1==currentRoad.getSpecificLaneIndex(currentLane)){
-        return Debug.currentMap.getRoad("E");
+        return layout.getRoad("E");
       } else if(2==currentRoad.getSpecificLaneIndex(currentLane)){
-        return Debug.currentMap.getRoad("N");
+        return layout.getRoad("N");
       } else if(0==currentRoad.getSpecificLaneIndex(currentLane)){
-        return Debug.currentMap.getRoad("S");
+        return layout.getRoad("S");
       } else {
         System.err.print("E destination selected failed, keep forward");
-        return Debug.currentMap.getRoad("E");
+        return layout.getRoad("E");
       }
     } else if (currentRoad.getName().equals("W")){
       if(1==currentRoad.getSpecificLaneIndex(currentLane)){
-        return Debug.currentMap.getRoad("W");
+        return layout.getRoad("W");
       } else if(2==currentRoad.getSpecificLaneIndex(currentLane)){
-        return Debug.currentMap.getRoad("S");
+        return layout.getRoad("S");
       } else if(0==currentRoad.getSpecificLaneIndex(currentLane)){
-        return Debug.currentMap.getRoad("N");
+        return layout.getRoad("N");
       } else {
         System.err.print("W destination selected failed, keep forward");
-        return Debug.currentMap.getRoad("W");
+        return layout.getRoad("W");
       }
     } else if (currentRoad.getName().equals("N")){
       if(1==currentRoad.getSpecificLaneIndex(currentLane)){
-        return Debug.currentMap.getRoad("N");
+        return layout.getRoad("N");
       } else if(2==currentRoad.getSpecificLaneIndex(currentLane)){
-        return Debug.currentMap.getRoad("W");
+        return layout.getRoad("W");
       } else if(0==currentRoad.getSpecificLaneIndex(currentLane)){
-        return Debug.currentMap.getRoad("E");
+        return layout.getRoad("E");
       } else {
         System.err.print("N destination selected failed, keep forward");
-        return Debug.currentMap.getRoad("N");
+        return layout.getRoad("N");
       }
     } else if (currentRoad.getName().equals("S")){
       if(1==currentRoad.getSpecificLaneIndex(currentLane)){
-        return Debug.currentMap.getRoad("S");
+        return layout.getRoad("S");
       } else if(2==currentRoad.getSpecificLaneIndex(currentLane)){
-        return Debug.currentMap.getRoad("E");
+        return layout.getRoad("E");
       } else if(0==currentRoad.getSpecificLaneIndex(currentLane)){
-        return Debug.currentMap.getRoad("W");
+        return layout.getRoad("W");
       } else {
         System.err.print("S destination selected failed, keep forward");
-        return Debug.currentMap.getRoad("S");
+        return layout.getRoad("S");
       }
     } else {
       System.err.print("destination selected failed, keep forward");
@@ -40,14 +40,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import aim4.config.Debug;
 import aim4.im.IntersectionManager;
 import aim4.map.lane.Lane;
 import aim4.map.lane.LineSegmentLane;
 import aim4.util.ArrayListRegistry;
 import aim4.util.GeomMath;
 import aim4.util.Registry;
-import aim4.vehicle.VinRegistry;
 
 
 /**
@@ -353,8 +351,6 @@ public class GridMap implements BasicMap {
 
     spawnPoints.addAll(horizontalSpawnPoints);
     spawnPoints.addAll(verticalSpawnPoints);
-
-    Debug.currentMap = this;
   }
 
   /**
@@ -578,9 +574,9 @@ public class GridMap implements BasicMap {
       for (int vin : line.getAllVIN()) {
         for(double time : line.getTimes(vin)) {
           outfile.printf("%d,%.4f,%s,%s,%d,%s\n", vin, time, line.getName(),
-                         VinRegistry.getVehicleSpecFromVIN(vin).getName(),
-                         VinRegistry.getSpawnPointFromVIN(vin).getLane().getId(),
-                         VinRegistry.getDestRoadFromVIN(vin).getName());
+                         line.getVehicleSpecName(vin),
+                         line.getSpawnLaneId(vin),
+                         line.getDestRoadName(vin));
         }
       }
     }
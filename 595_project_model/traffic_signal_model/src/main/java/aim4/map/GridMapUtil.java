@@ -31,21 +31,22 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package aim4.map;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import aim4.config.SimConfig;
-import aim4.gui.Viewer;
+import aim4.config.TrafficSignalPlan;
 import aim4.im.RoadBasedIntersection;
 import aim4.im.RoadBasedTrackModel;
 import aim4.im.v2i.RequestHandler;
 import aim4.im.v2i.V2IManager;
-import aim4.im.v2i.RequestHandler.pythonSignalController;
+import aim4.im.v2i.RequestHandler.PlanSignalController;
 import aim4.im.v2i.policy.BasePolicy;
 import aim4.im.v2i.reservation.ReservationGridManager;
 import aim4.map.SpawnPoint.SpawnSpec;
 import aim4.map.SpawnPoint.SpawnSpecGenerator;
-import aim4.map.lane.Lane;
 import aim4.util.Util;
 import aim4.vehicle.VehicleSpec;
 import aim4.vehicle.VehicleSpecDatabase;
@@ -69,15 +70,19 @@ public class GridMapUtil {
     private DestinationSelector destinationSelector;
     /** probability of generating a vehicle in each spawn time step */
     private double prob;
+    /** The random number generator */
+    private Random random;
 
     /**
      * Create an uniform spawn specification generator.
      *
      * @param trafficLevel         the traffic level
      * @param destinationSelector  the destination selector
+     * @param random               the random number generator
      */
     public UniformSpawnSpecGenerator(double trafficLevel,
-                                     DestinationSelector destinationSelector) {
+                                     DestinationSelector destinationSelector,
+                                     Random random) {
       int n = VehicleSpecDatabase.getNumOfSpec();
       proportion = new ArrayList<Double>(n);
       double p = 1.0 / n;
@@ -85,6 +90,7 @@ public class GridMapUtil {
         proportion.add(p);
       }
       this.destinationSelector = destinationSelector;
+      this.random = random;
 
       prob = trafficLevel * SimConfig.SPAWN_TIME_STEP;
       // Cannot generate more than one vehicle in each spawn time step
@@ -96,15 +102,19 @@ public class GridMapUtil {
      */
     @Override
     public List<SpawnSpec> act(SpawnPoint spawnPoint, double timeStep) {
-      List<SpawnSpec> result = new LinkedList<SpawnSpec>();
+      // most calls spawn nothing, so the list is only made when needed
+      List<SpawnSpec> result = Collections.emptyList();
 
       double initTime = spawnPoint.getCurrentTime();
       for(double time = initTime; time < initTime + timeStep;
           time += SimConfig.SPAWN_TIME_STEP) {
-        if (Util.random.nextDouble() < prob) {
-          int i = Util.randomIndex(proportion);
+        if (random.nextDouble() < prob) {
+          int i = Util.randomIndex(proportion, random);
           VehicleSpec vehicleSpec = VehicleSpecDatabase.getVehicleSpecById(i);
           Road destinationRoad = destinationSelector.selectDestination(spawnPoint.getLane());
+          if (result.isEmpty()) {
+            result = new LinkedList<SpawnSpec>();
+          }
           result.add(new SpawnSpec(spawnPoint.getCurrentTime(), vehicleSpec, destinationRoad));
         }
       }
@@ -121,17 +131,18 @@ public class GridMapUtil {
 
   /**
    * Set the approximate N phases traffic light managers at all intersections.
-   *  @param layout                      the map
+   *
+   * @param layout                      the map
    * @param currentTime                 the current time
    * @param config                      the reservation grid manager
- *                                    configuration
-   * @param viewer
+   *                                    configuration
+   * @param plan                        the traffic signal plan
    */
   public static void setApproxNPhasesTrafficLightManagers(
           GridMap layout,
           double currentTime,
           ReservationGridManager.Config config,
-       Viewer viewer) {
+          TrafficSignalPlan plan) {
     layout.removeAllManagers();
     for (int column = 0; column < layout.getColumns(); column++) {
       for (int row = 0; row < layout.getRows(); row++) {
@@ -140,14 +151,8 @@ public class GridMapUtil {
         RoadBasedTrackModel trajectoryModel = new RoadBasedTrackModel(intersection);
         V2IManager im = new V2IManager(intersection, trajectoryModel, currentTime, config, layout.getImRegistry());
         RequestHandler requestHandler = new RequestHandler();
-        for(Road road : im.getIntersection().getEntryRoads()) {
-          for(Lane lane : road.getLanes()) {
-            pythonSignalController controller = new RequestHandler.pythonSignalController(road, lane, viewer);
-            requestHandler.setSignalControllers(lane.getId(), controller);
-                Thread proxy = new Thread(controller);
-                proxy.start();
-          }
-        }
+        requestHandler.setSignalController(
+          new PlanSignalController(plan, intersection));
 
         im.setPolicy(new BasePolicy(im, requestHandler));
         layout.setManager(column, row, im);
@@ -160,11 +165,14 @@ public class GridMapUtil {
    *
    * @param map           the map
    * @param trafficLevel  the traffic level
+   * @param random        the random number generator
    */
-  public static void setUniformRandomSpawnPoints(GridMap map, double trafficLevel) {
+  public static void setUniformRandomSpawnPoints(GridMap map,
+                                                 double trafficLevel,
+                                                 Random random) {
     for(SpawnPoint sp : map.getSpawnPoints()) {
       sp.setVehicleSpecChooser(new UniformSpawnSpecGenerator(trafficLevel,
-              new DestinationSelector(map)));
+              new DestinationSelector(map), random));
     }
   }
 
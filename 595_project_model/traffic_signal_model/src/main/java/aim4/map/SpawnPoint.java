@@ -187,6 +187,15 @@ public class SpawnPoint {
     return spawnSpecs;
   }
 
+  /**
+   * Restart the clock of the spawn point.
+   *
+   * @param currentTime  the current time
+   */
+  public void reset(double currentTime) {
+    this.currentTime = currentTime;
+  }
+
   /////////////////////////////////
   // PUBLIC METHODS
   /////////////////////////////////
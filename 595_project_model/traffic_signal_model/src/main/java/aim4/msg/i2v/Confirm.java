@@ -40,6 +40,8 @@ import aim4.config.Constants;
  */
 public class Confirm extends I2VMessage {
 
+  private static final long serialVersionUID = 1L;
+
   /////////////////////////////////
   // PRIVATE FIELDS
   /////////////////////////////////
@@ -30,12 +30,16 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.msg.i2v;
 
+import java.io.Serializable;
+
 import aim4.config.Constants;
 
 /**
  * A message sent from an Intersection Manager to a Vehicle.
  */
-public abstract class I2VMessage {
+public abstract class I2VMessage implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /////////////////////////////////
   // NESTED CLASSES
@@ -38,6 +38,8 @@ import aim4.config.Constants;
  */
 public class Reject extends I2VMessage {
 
+  private static final long serialVersionUID = 1L;
+
   /////////////////////////////////
   // NESTED CLASSES
   /////////////////////////////////
@@ -39,6 +39,8 @@ import aim4.msg.v2i.V2IMessage.Type;
  */
 public class Away extends V2IMessage {
 
+  private static final long serialVersionUID = 1L;
+
   /////////////////////////////////
   // PRIVATE FIELDS
   /////////////////////////////////
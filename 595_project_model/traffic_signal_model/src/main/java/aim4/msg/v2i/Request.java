@@ -30,6 +30,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.msg.v2i;
 
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 import java.util.LinkedList;
@@ -43,6 +44,8 @@ import aim4.vehicle.VehicleSpec;
  */
 public class Request extends V2IMessage {
 
+  private static final long serialVersionUID = 1L;
+
   // ///////////////////////////////
   // NESTED CLASSES
   // ///////////////////////////////
@@ -50,7 +53,9 @@ public class Request extends V2IMessage {
   /**
    * A proposal
    */
-  public static class Proposal {
+  public static class Proposal implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     // ///////////////////////////////
     // PRIVATE FIELDS
@@ -186,7 +191,9 @@ public class Request extends V2IMessage {
   /**
    * The specification of the vehicle.
    */
-  public static class VehicleSpecForRequestMsg {
+  public static class VehicleSpecForRequestMsg implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * The highest acceleration of which the vehicle is capable, in meters per
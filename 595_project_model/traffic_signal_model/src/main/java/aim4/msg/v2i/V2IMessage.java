@@ -30,12 +30,16 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.msg.v2i;
 
+import java.io.Serializable;
+
 import aim4.config.Constants;
 
 /**
  * A message sent from a Vehicle to an Intersection Manager.
  */
-public abstract class V2IMessage {
+public abstract class V2IMessage implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /////////////////////////////////
   // NESTED CLASSES
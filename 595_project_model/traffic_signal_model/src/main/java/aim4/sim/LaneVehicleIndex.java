@@ -0,0 +1,429 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import aim4.im.IntersectionManager;
+import aim4.map.BasicMap;
+import aim4.map.Road;
+import aim4.map.lane.Lane;
+import aim4.vehicle.VehicleSimView;
+
+/**
+ * An index of the vehicles on the lanes, ordered by their distance along
+ * the lanes.  Lanes that feed into one another form a chain and share one
+ * ordered list.  Vehicles that are (partially or entirely) inside an
+ * intersection are left out.
+ * <p>
+ * The index is maintained incrementally: the lists of the previous step
+ * are kept, the distances are updated in place, vehicles that have left a
+ * lane are dropped and vehicles that have entered a lane are appended.
+ * Since vehicles rarely overtake one another, the lists are nearly sorted
+ * and re-sorting them takes linear time.  No object is allocated in a step
+ * unless a vehicle enters a new lane.
+ */
+public class LaneVehicleIndex {
+
+  /////////////////////////////////
+  // NESTED CLASSES
+  /////////////////////////////////
+
+  /**
+   * The ordered list of vehicles on a chain of lanes.
+   */
+  public static class LaneChain {
+
+    /** The entries, sorted by their distances */
+    private Entry[] entries = new Entry[16];
+    /** The distances of the entries */
+    private double[] keys = new double[16];
+    /** The number of entries */
+    private int size = 0;
+
+    /**
+     * Get the number of vehicles on the chain.
+     *
+     * @return the number of vehicles on the chain
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Get the distance along its lane of the i-th vehicle on the chain.
+     *
+     * @param i  the index of the vehicle
+     * @return the distance along the lane
+     */
+    public double getKey(int i) {
+      return keys[i];
+    }
+
+    /**
+     * Get the i-th vehicle on the chain.
+     *
+     * @param i  the index of the vehicle
+     * @return the vehicle
+     */
+    public VehicleSimView getVehicle(int i) {
+      return entries[i].record.vehicle;
+    }
+
+    /**
+     * Get the index of the first vehicle whose distance is larger than or
+     * equal to a given distance.
+     *
+     * @param key  the distance
+     * @return the index of the first vehicle whose distance is larger than
+     *         or equal to the given distance; size() if there is no such
+     *         vehicle
+     */
+    public int ceilingIndex(double key) {
+      int lo = 0;
+      int hi = size;
+      while(lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (keys[mid] < key) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    /**
+     * Append an entry to the end of the list.
+     *
+     * @param e  the entry
+     */
+    private void append(Entry e) {
+      if (size == entries.length) {
+        Entry[] newEntries = new Entry[size * 2];
+        System.arraycopy(entries, 0, newEntries, 0, size);
+        entries = newEntries;
+        keys = new double[size * 2];
+      }
+      entries[size++] = e;
+      e.isInChain = true;
+    }
+
+    /**
+     * Remove the entries that have not been updated in the given step, and
+     * sort the remaining entries by their distances.
+     *
+     * @param step  the step
+     */
+    private void compactAndSort(long step) {
+      int n = 0;
+      for(int i = 0; i < size; i++) {
+        Entry e = entries[i];
+        if (e.stamp == step) {
+          // insertion sort; the entries are nearly sorted already
+          int j = n - 1;
+          while(j >= 0 && entries[j].key > e.key) {
+            entries[j + 1] = entries[j];
+            j--;
+          }
+          entries[j + 1] = e;
+          n++;
+        } else {
+          e.isInChain = false;
+        }
+      }
+      for(int i = n; i < size; i++) {
+        entries[i] = null;
+      }
+      size = n;
+      for(int i = 0; i < n; i++) {
+        keys[i] = entries[i].key;
+      }
+    }
+  }
+
+  /**
+   * The record of a vehicle on a lane.
+   */
+  private static class Entry {
+    /** The record of the vehicle */
+    final VehicleRecord record;
+    /** The lane */
+    final Lane lane;
+    /** The chain of the lane */
+    final LaneChain chain;
+    /** The distance of the vehicle along the lane */
+    double key;
+    /** The step in which the entry was last updated */
+    long stamp = -1;
+    /** Whether the entry is in the list of its chain */
+    boolean isInChain = false;
+
+    /**
+     * Create an entry.
+     *
+     * @param record  the record of the vehicle
+     * @param lane    the lane
+     * @param chain   the chain of the lane
+     */
+    Entry(VehicleRecord record, Lane lane, LaneChain chain) {
+      this.record = record;
+      this.lane = lane;
+      this.chain = chain;
+    }
+  }
+
+  /**
+   * The record of a vehicle.
+   */
+  private static class VehicleRecord {
+    /** The vehicle */
+    final VehicleSimView vehicle;
+    /** The entries of the vehicle; usually there is only one */
+    Entry[] entries = new Entry[1];
+    /** The number of entries */
+    int numOfEntries = 0;
+    /** The next vehicle on the same chain of lanes */
+    VehicleSimView nextVehicle = null;
+
+    /**
+     * Create a record of a vehicle.
+     *
+     * @param vehicle  the vehicle
+     */
+    VehicleRecord(VehicleSimView vehicle) {
+      this.vehicle = vehicle;
+    }
+
+    /**
+     * Remove the entries that are no longer in the lists of their chains.
+     */
+    void pruneEntries() {
+      int n = 0;
+      for(int i = 0; i < numOfEntries; i++) {
+        if (entries[i].isInChain) {
+          entries[n++] = entries[i];
+        }
+      }
+      for(int i = n; i < numOfEntries; i++) {
+        entries[i] = null;
+      }
+      numOfEntries = n;
+    }
+
+    /**
+     * Get the entry of a lane, creating one if it does not exist.
+     *
+     * @param lane   the lane
+     * @param chain  the chain of the lane
+     * @return the entry of the lane
+     */
+    Entry getEntry(Lane lane, LaneChain chain) {
+      for(int i = 0; i < numOfEntries; i++) {
+        if (entries[i].lane == lane) {
+          return entries[i];
+        }
+      }
+      if (numOfEntries == entries.length) {
+        Entry[] newEntries = new Entry[numOfEntries * 2];
+        System.arraycopy(entries, 0, newEntries, 0, numOfEntries);
+        entries = newEntries;
+      }
+      Entry e = new Entry(this, lane, chain);
+      entries[numOfEntries++] = e;
+      return e;
+    }
+  }
+
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The chains of lanes */
+  private LaneChain[] chains;
+  /** A mapping from lane IDs to the chains of the lanes */
+  private LaneChain[] laneIdToChain;
+  /** A mapping from vehicles to their records */
+  private Map<VehicleSimView,VehicleRecord> records =
+    new HashMap<VehicleSimView,VehicleRecord>();
+  /** The number of updates so far */
+  private long step = 0;
+
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create an index of the vehicles on the lanes of a map.
+   *
+   * @param basicMap  the map
+   */
+  public LaneVehicleIndex(BasicMap basicMap) {
+    int maxLaneId = -1;
+    for(Road road : basicMap.getRoads()) {
+      for(Lane lane : road.getLanes()) {
+        maxLaneId = Math.max(maxLaneId, lane.getId());
+      }
+    }
+    laneIdToChain = new LaneChain[maxLaneId + 1];
+    int numOfChains = 0;
+    LaneChain[] allChains = new LaneChain[maxLaneId + 1];
+    for(Road road : basicMap.getRoads()) {
+      for(Lane lane : road.getLanes()) {
+        if (laneIdToChain[lane.getId()] == null) {
+          LaneChain chain = new LaneChain();
+          allChains[numOfChains++] = chain;
+          // the lane and all the lanes it runs into share the same chain
+          Lane currLane = lane;
+          laneIdToChain[currLane.getId()] = chain;
+          while(currLane.hasNextLane()) {
+            currLane = currLane.getNextLane();
+            laneIdToChain[currLane.getId()] = chain;
+          }
+        }
+      }
+    }
+    chains = new LaneChain[numOfChains];
+    System.arraycopy(allChains, 0, chains, 0, numOfChains);
+  }
+
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Update the index according to the current positions of the vehicles.
+   *
+   * @param vehicles  all the active vehicles
+   */
+  public void update(Collection<VehicleSimView> vehicles) {
+    step++;
+    for(VehicleSimView vehicle : vehicles) {
+      VehicleRecord record = records.get(vehicle);
+      if (record == null) {
+        record = new VehicleRecord(vehicle);
+        records.put(vehicle, record);
+      } else {
+        record.pruneEntries();
+      }
+      record.nextVehicle = null;
+      for(Lane lane : vehicle.getDriver().getCurrentlyOccupiedLanes()) {
+        if (isOnLane(vehicle, lane)) {
+          Entry e = record.getEntry(lane, laneIdToChain[lane.getId()]);
+          // Now find how far along the lane it is.
+          e.key = lane.distanceAlongLane(vehicle.getPosition());
+          e.stamp = step;
+          if (!e.isInChain) {
+            e.chain.append(e);
+          }
+        }
+      }
+    }
+    for(LaneChain chain : chains) {
+      chain.compactAndSort(step);
+      for(int i = 0; i + 1 < chain.size; i++) {
+        chain.entries[i].record.nextVehicle = chain.getVehicle(i + 1);
+      }
+    }
+  }
+
+  /**
+   * Remove all vehicles from the index.
+   */
+  public void clear() {
+    records.clear();
+    step++;
+    // no entry carries the new stamp, so all of them are dropped
+    for(LaneChain chain : chains) {
+      chain.compactAndSort(step);
+    }
+  }
+
+  /**
+   * Remove a vehicle from the index.
+   *
+   * @param vehicle  the vehicle
+   */
+  public void removeVehicle(VehicleSimView vehicle) {
+    // the entries of the vehicle are dropped from the chains in the next
+    // update since they are no longer updated.
+    records.remove(vehicle);
+  }
+
+  /**
+   * Get the next vehicle in front of a vehicle on the same chain of lanes.
+   *
+   * @param vehicle  the vehicle
+   * @return the next vehicle; null if there is none
+   */
+  public VehicleSimView getNextVehicle(VehicleSimView vehicle) {
+    VehicleRecord record = records.get(vehicle);
+    return (record != null) ? record.nextVehicle : null;
+  }
+
+  /**
+   * Get the ordered list of vehicles on the chain of a lane.
+   *
+   * @param lane  the lane
+   * @return the ordered list of vehicles on the chain of the lane
+   */
+  public LaneChain getChain(Lane lane) {
+    return laneIdToChain[lane.getId()];
+  }
+
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Whether a vehicle is on a lane and not in the intersection.
+   *
+   * @param vehicle  the vehicle
+   * @param lane     the lane
+   * @return whether the vehicle is on the lane and not in the intersection
+   */
+  private boolean isOnLane(VehicleSimView vehicle, Lane lane) {
+    if (lane.getLaneIM().distanceToNextIntersection(vehicle.getPosition())
+        > 0) {
+      return true;
+    }
+    // Find out what IntersectionManager is coming up for this vehicle
+    IntersectionManager im =
+      lane.getLaneIM().nextIntersectionManager(vehicle.getPosition());
+    return im == null || !im.intersects(vehicle.getShape().getBounds2D());
+  }
+}
@@ -0,0 +1,182 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import aim4.driver.pilot.V2IPilot;
+import aim4.util.RestorableRandom;
+import aim4.vehicle.VinRegistry;
+
+/**
+ * The per-simulation state that used to be global to the process: the
+ * registry of the VINs, the random number generator and the stopping
+ * distance of the drivers before intersections.  Every simulator
+ * owns its own context, so that several simulators can run independently
+ * in the same process, and a simulator that is built from a context with a
+ * given seed always produces the same run.
+ */
+public class SimContext {
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The random seed */
+  private long seed;
+  /** The random number generator */
+  private RestorableRandom random;
+  /** The registry of the VINs of the vehicles */
+  private VinRegistry vinRegistry;
+  /**
+   * The shortest distance before an intersection at which a vehicle stops if
+   * it can't enter the intersection immediately
+   */
+  private double stopDistBeforeIntersection;
+
+
+  /////////////////////////////////
+  // CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a simulation context.
+   *
+   * @param seed  the seed of the random number generator
+   */
+  public SimContext(long seed) {
+    this.seed = seed;
+    this.random = new RestorableRandom(seed);
+    this.vinRegistry = new VinRegistry();
+    this.stopDistBeforeIntersection =
+      V2IPilot.DEFAULT_STOP_DISTANCE_BEFORE_INTERSECTION;
+  }
+
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Bring the context back to its initial state with a new seed.  The
+   * random number generator and the registry stay the same objects, so
+   * whatever holds them sees the new state.
+   *
+   * @param seed  the new seed of the random number generator
+   */
+  public void reset(long seed) {
+    this.seed = seed;
+    random.setSeed(seed);
+    vinRegistry.reset();
+  }
+
+  /**
+   * Write the state of the context.
+   *
+   * @param out  the output stream
+   * @throws IOException if the stream fails
+   */
+  public void writeState(ObjectOutputStream out) throws IOException {
+    out.writeLong(seed);
+    random.writeState(out);
+    vinRegistry.writeState(out);
+  }
+
+  /**
+   * Read the state of the context written by
+   * {@link #writeState(ObjectOutputStream)}.  As with {@link #reset(long)},
+   * the random number generator and the registry stay the same objects.
+   *
+   * @param in  the input stream
+   * @throws IOException if the stream fails
+   * @throws ClassNotFoundException if the class of an object in the stream
+   *                                cannot be found
+   */
+  public void readState(ObjectInputStream in)
+    throws IOException, ClassNotFoundException {
+    seed = in.readLong();
+    random.readState(in);
+    vinRegistry.readState(in);
+  }
+
+  /**
+   * Get the seed of the random number generator.
+   *
+   * @return the seed of the random number generator
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Get the random number generator.
+   *
+   * @return the random number generator
+   */
+  public Random getRandom() {
+    return random;
+  }
+
+  /**
+   * Get the registry of the VINs of the vehicles.
+   *
+   * @return the registry of the VINs
+   */
+  public VinRegistry getVinRegistry() {
+    return vinRegistry;
+  }
+
+  /**
+   * Get the shortest distance before an intersection at which a vehicle
+   * stops if it can't enter the intersection immediately.
+   *
+   * @return the stopping distance before intersection
+   */
+  public double getStopDistBeforeIntersection() {
+    return stopDistBeforeIntersection;
+  }
+
+  /**
+   * Set the shortest distance before an intersection at which a vehicle
+   * stops if it can't enter the intersection immediately.  The distance is
+   * given to the drivers of the vehicles as they are spawned, and it is
+   * kept when the context is reset.
+   *
+   * @param stopDistBeforeIntersection  the stopping distance before
+   *                                    intersection
+   */
+  public void setStopDistBeforeIntersection(double stopDistBeforeIntersection) {
+    this.stopDistBeforeIntersection = stopDistBeforeIntersection;
+  }
+}
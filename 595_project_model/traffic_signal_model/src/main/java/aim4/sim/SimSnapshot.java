@@ -0,0 +1,291 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import aim4.config.TrafficSignalPlan;
+import aim4.im.Intersection;
+import aim4.im.IntersectionManager;
+import aim4.im.TrackModel;
+import aim4.map.BasicMap;
+import aim4.map.DataCollectionLine;
+import aim4.map.Road;
+import aim4.map.SpawnPoint;
+import aim4.map.lane.Lane;
+import aim4.map.lane.LaneIM;
+import aim4.util.TiledArea;
+import aim4.vehicle.VehicleSpec;
+
+/**
+ * A snapshot of the mutable state of a simulator, taken by
+ * {@link Simulator#snapshot()} and brought back by
+ * {@link Simulator#restore(SimSnapshot)}.
+ * <p>
+ * The mutable state (the vehicles and their drivers, the reservations, the
+ * admission control zones, the messages, the clocks and the random number
+ * generator) is serialized into a byte array.  The map and everything that
+ * does not change during a simulation (the roads, the lanes, the
+ * intersections, the track models, the tiled areas, the vehicle
+ * specifications and so on) is not copied; the snapshot refers to these
+ * objects instead, so that the restored vehicles share them with the rest
+ * of the simulator.  A snapshot is never changed after it is taken and can
+ * be restored any number of times.
+ */
+public class SimSnapshot {
+
+  /////////////////////////////////
+  // NESTED CLASSES
+  /////////////////////////////////
+
+  /**
+   * A reference to an object that is shared rather than copied.
+   */
+  private static class SharedRef implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The index of the object in the list of shared objects */
+    private final int index;
+
+    /**
+     * Create a reference to a shared object.
+     *
+     * @param index  the index of the object in the list of shared objects
+     */
+    public SharedRef(int index) {
+      this.index = index;
+    }
+  }
+
+  /**
+   * The output stream that writes the mutable state of a simulator and
+   * replaces the shared objects with references.
+   */
+  static class SnapshotOutputStream extends ObjectOutputStream {
+
+    /** The shared objects in the order of their indices */
+    private List<Object> sharedObjects = new ArrayList<Object>();
+    /** The mapping from the shared objects to their indices */
+    private Map<Object,Integer> sharedObjectToIndex =
+      new IdentityHashMap<Object,Integer>();
+
+    /**
+     * Create an output stream for a snapshot.
+     *
+     * @param out  the underlying output stream
+     * @throws IOException if the stream fails
+     */
+    public SnapshotOutputStream(OutputStream out) throws IOException {
+      super(out);
+      enableReplaceObject(true);
+    }
+
+    /**
+     * Get the shared objects that have been referred to so far.
+     *
+     * @return the shared objects in the order of their indices
+     */
+    public List<Object> getSharedObjects() {
+      return sharedObjects;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object replaceObject(Object obj) {
+      if (!isShared(obj)) {
+        return obj;
+      }
+      Integer index = sharedObjectToIndex.get(obj);
+      if (index == null) {
+        index = sharedObjects.size();
+        sharedObjects.add(obj);
+        sharedObjectToIndex.put(obj, index);
+      }
+      return new SharedRef(index);
+    }
+  }
+
+  /**
+   * The input stream that reads the mutable state of a simulator and
+   * resolves the references to the shared objects.
+   */
+  static class SnapshotInputStream extends ObjectInputStream {
+
+    /** The shared objects in the order of their indices */
+    private List<Object> sharedObjects;
+
+    /**
+     * Create an input stream for a snapshot.
+     *
+     * @param in             the underlying input stream
+     * @param sharedObjects  the shared objects in the order of their indices
+     * @throws IOException if the stream fails
+     */
+    public SnapshotInputStream(InputStream in, List<Object> sharedObjects)
+      throws IOException {
+      super(in);
+      this.sharedObjects = sharedObjects;
+      enableResolveObject(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object resolveObject(Object obj) {
+      if (obj instanceof SharedRef) {
+        return sharedObjects.get(((SharedRef)obj).index);
+      } else {
+        return obj;
+      }
+    }
+  }
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The simulator of which this is a snapshot */
+  private Simulator simulator;
+  /** The time, in seconds, at which the snapshot was taken */
+  private double time;
+  /** The shared objects referred to by the serialized state */
+  private List<Object> sharedObjects;
+  /** The serialized state */
+  private byte[] data;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a snapshot.
+   *
+   * @param simulator      the simulator
+   * @param time           the time, in seconds, of the snapshot
+   * @param sharedObjects  the shared objects referred to by the state
+   * @param data           the serialized state
+   */
+  SimSnapshot(Simulator simulator, double time,
+              List<Object> sharedObjects, byte[] data) {
+    this.simulator = simulator;
+    this.time = time;
+    this.sharedObjects = sharedObjects;
+    this.data = data;
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the time at which the snapshot was taken.
+   *
+   * @return the time, in seconds, at which the snapshot was taken
+   */
+  public double getTime() {
+    return time;
+  }
+
+  /**
+   * Get the size of the serialized state.
+   *
+   * @return the number of bytes of the serialized state
+   */
+  public int getSize() {
+    return data.length;
+  }
+
+  /////////////////////////////////
+  // PACKAGE METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the simulator of which this is a snapshot.
+   *
+   * @return the simulator
+   */
+  Simulator getSimulator() {
+    return simulator;
+  }
+
+  /**
+   * Open a stream that reads the serialized state.
+   *
+   * @return the input stream
+   * @throws IOException if the stream fails
+   */
+  SnapshotInputStream openInputStream() throws IOException {
+    return new SnapshotInputStream(new ByteArrayInputStream(data),
+                                   sharedObjects);
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Whether an object belongs to the structures that do not change during
+   * a simulation, or has its mutable state written separately.
+   *
+   * @param obj  the object
+   * @return whether the object is shared rather than copied
+   */
+  private static boolean isShared(Object obj) {
+    return obj instanceof BasicMap
+        || obj instanceof Road
+        || obj instanceof Lane
+        || obj instanceof LaneIM
+        || obj instanceof Intersection
+        || obj instanceof IntersectionManager
+        || obj instanceof TrackModel
+        || obj instanceof TiledArea
+        || obj instanceof SpawnPoint
+        || obj instanceof DataCollectionLine
+        || obj instanceof VehicleSpec
+        || obj instanceof TrafficSignalPlan
+        || obj instanceof Simulator
+        || obj instanceof SimContext;
+  }
+}
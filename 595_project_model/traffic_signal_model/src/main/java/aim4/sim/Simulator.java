@@ -31,33 +31,28 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package aim4.sim;
 
 import java.awt.Color;
-import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.text.DecimalFormat;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import aim4.config.Debug;
 import aim4.config.DebugPoint;
 import aim4.config.SimConfig;
 import aim4.driver.AutoDriver;
+import aim4.driver.Driver;
 import aim4.driver.DriverSimView;
-import aim4.gui.Viewer;
 import aim4.im.IntersectionManager;
 import aim4.im.v2i.V2IManager;
 import aim4.map.DataCollectionLine;
@@ -68,11 +63,13 @@ import aim4.map.SpawnPoint.SpawnSpec;
 import aim4.map.lane.Lane;
 import aim4.msg.i2v.I2VMessage;
 import aim4.msg.v2i.V2IMessage;
+import aim4.util.SpatialHashGrid;
 import aim4.vehicle.AutoVehicleSimView;
 import aim4.vehicle.BasicAutoVehicle;
+import aim4.vehicle.BasicVehicle;
 import aim4.vehicle.VehicleSpec;
-import aim4.vehicle.VinRegistry;
 import aim4.vehicle.VehicleSimView;
+import aim4.vehicle.VehicleStateStore;
 
 /**
  * The autonomous drivers only simulator.
@@ -110,14 +107,94 @@ public class Simulator {
     }
   }
 
+  /**
+   * The crossings of the data collection lines found by one chunk of the
+   * parallel move stage.  A crossing is stored as the index of the vehicle
+   * in the stage and the index of the line.
+   */
+  private static class CrossingBuffer {
+
+    /** The indices of the vehicles */
+    int[] vehicleIndices = new int[16];
+    /** The indices of the data collection lines */
+    int[] lineIndices = new int[16];
+    /** The number of crossings */
+    int size = 0;
+
+    /**
+     * Add a crossing.
+     *
+     * @param vehicleIndex  the index of the vehicle
+     * @param lineIndex     the index of the data collection line
+     */
+    void add(int vehicleIndex, int lineIndex) {
+      if (size == vehicleIndices.length) {
+        vehicleIndices = Arrays.copyOf(vehicleIndices, 2 * size);
+        lineIndices = Arrays.copyOf(lineIndices, 2 * size);
+      }
+      vehicleIndices[size] = vehicleIndex;
+      lineIndices[size] = lineIndex;
+      size++;
+    }
+  }
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /**
+   * The width and height of a cell of the spatial hash of the vehicles.
+   * {@value} meters.
+   */
+  private static final double VEHICLE_GRID_CELL_SIZE = 10.0;
+  /**
+   * The exported distances to the next intersection are capped at {@value}
+   * meters.
+   */
+  private static final double MAX_EXPORTED_DISTANCE = 146.0;
+  /** The exported distances below {@value} are rounded down to zero. */
+  private static final double MIN_EXPORTED_DISTANCE = 0.9;
+  /** The scale of the exported wait times */
+  private static final double WAIT_TIME_EXPORT_SCALE = 25.0;
+
   /////////////////////////////////
   // PRIVATE FIELDS
   /////////////////////////////////
 
   /** The map */
   private BasicMap basicMap;
+  /** The per-simulation state such as the VIN registry */
+  private SimContext context;
   /** All active vehicles, in form of a map from VINs to vehicle objects. */
   private Map<Integer,VehicleSimView> vinToVehicles;
+  /** The vehicles that have left the map, kept for reuse */
+  private VehiclePool vehiclePool;
+  /** The ordered lists of the vehicles on the lanes */
+  private LaneVehicleIndex laneVehicleIndex;
+  /**
+   * The spatial hash of the bounding boxes of the vehicles, rebuilt at the
+   * beginning of each step
+   */
+  private SpatialHashGrid<VehicleSimView> vehicleGrid;
+  /** A reusable buffer for the results of the queries on the vehicle grid */
+  private List<VehicleSimView> nearbyVehicles;
+  /**
+   * The executor of the parallel stages; null if the stages run serially
+   */
+  private StageExecutor stageExecutor;
+  /** A reusable buffer for the active vehicles of the parallel stages */
+  private List<VehicleSimView> stageVehicles;
+  /** The crossing buffers of the chunks of the parallel move stage */
+  private List<CrossingBuffer> crossingBuffers;
+  /**
+   * A reusable buffer for the positions of the active vehicles before they
+   * are moved by the state store
+   */
+  private List<Point2D> startPositions;
+  /** The writer of the snapshots of the vehicles; null if none */
+  private StateExporter stateExporter;
+  /** The profiler of the steps; null if the steps are not profiled */
+  private StepProfiler profiler;
   /** The current time */
   private double currentTime;
   /** The number of completed vehicles */
@@ -126,8 +203,10 @@ public class Simulator {
   private int totalBitsTransmittedByCompletedVehicles;
   /** The total number of bits received by the completed vehicles */
   private int totalBitsReceivedByCompletedVehicles;
-
-  private Viewer viewer;
+  /** The total delay of the completed vehicles in seconds */
+  private double totalDelayOfCompletedVehicles;
+  /** The number of steps in which there was no vehicle on the map */
+  private long numOfIdleSteps;
 
 
   /////////////////////////////////
@@ -138,15 +217,30 @@ public class Simulator {
    * Create an instance of the simulator.
    *
    * @param basicMap             the map of the simulation
+   * @param context              the context of the simulation
    */
-  public Simulator(BasicMap basicMap, Viewer viewer) {
+  public Simulator(BasicMap basicMap, SimContext context) {
     this.basicMap = basicMap;
+    this.context = context;
     this.vinToVehicles = new HashMap<Integer,VehicleSimView>();
+    this.vehiclePool = new VehiclePool(basicMap);
+    this.laneVehicleIndex = new LaneVehicleIndex(basicMap);
+    this.vehicleGrid =
+      new SpatialHashGrid<VehicleSimView>(basicMap.getDimensions(),
+                                          VEHICLE_GRID_CELL_SIZE);
+    this.nearbyVehicles = new ArrayList<VehicleSimView>();
+    this.stageExecutor = null;
+    this.stageVehicles = new ArrayList<VehicleSimView>();
+    this.crossingBuffers = new ArrayList<CrossingBuffer>();
+    this.startPositions = new ArrayList<Point2D>();
+    this.stateExporter = null;
+    this.profiler = null;
     currentTime = 0.0;
-    this.viewer = viewer;
     numOfCompletedVehicles = 0;
     totalBitsTransmittedByCompletedVehicles = 0;
     totalBitsReceivedByCompletedVehicles = 0;
+    totalDelayOfCompletedVehicles = 0.0;
+    numOfIdleSteps = 0;
   }
 
   /////////////////////////////////
@@ -156,20 +250,323 @@ public class Simulator {
   // the main loop
 
   public synchronized SimStepResult step(double timeStep) throws IOException {
+    // the stages are timed only if there is a profiler
+    StepProfiler p = profiler;
+    long t = (p != null) ? p.beginStep() : 0L;
     detectepisode();
+    updateVehicleGrid();
     spawnVehicles(timeStep);
-    provideSensorInput();
-    letDriversAct();
-    letIntersectionManagersAct(timeStep);
-    communication();
-    moveVehicles(timeStep);
-    List<Integer> completedVINs = cleanUpCompletedVehicles();
+    t = endStage(p, StepProfiler.Stage.SPAWN, t);
+    long numOfQueries = (p != null) ? getNumOfReservationQueries() : 0L;
+    List<Integer> completedVINs;
+    if (vinToVehicles.isEmpty()) {
+      // The map is empty, so the stages of the vehicles have nothing to do;
+      // only the intersection managers have to keep their clocks, signals
+      // and reservation grids going.  With empty inboxes this is too little
+      // work to be worth handing to the stage executor.
+      actIdleIntersectionManagers(timeStep);
+      t = endStage(p, StepProfiler.Stage.IMS, t);
+      communication();
+      t = endStage(p, StepProfiler.Stage.COMMUNICATION, t);
+      completedVINs = new LinkedList<Integer>();
+      numOfIdleSteps++;
+    } else {
+      provideSensorInput();
+      t = endStage(p, StepProfiler.Stage.SENSE, t);
+      letDriversAct();
+      t = endStage(p, StepProfiler.Stage.DRIVERS, t);
+      letIntersectionManagersAct(timeStep);
+      t = endStage(p, StepProfiler.Stage.IMS, t);
+      communication();
+      t = endStage(p, StepProfiler.Stage.COMMUNICATION, t);
+      moveVehicles(timeStep);
+      t = endStage(p, StepProfiler.Stage.MOVE, t);
+      completedVINs = cleanUpCompletedVehicles();
+      t = endStage(p, StepProfiler.Stage.CLEANUP, t);
+    }
+    if (p != null) {
+      p.countReservationQueries(getNumOfReservationQueries() - numOfQueries);
+    }
     currentTime += timeStep;
     checkClocks();     // debug
-    outputInfToFile(timeStep);
+    exportState(timeStep);
+    if (p != null) {
+      p.endStage(StepProfiler.Stage.EXPORT, t);
+      p.endStep(currentTime, vinToVehicles.size());
+    }
     return new SimStepResult(completedVINs);
   }
 
+  /**
+   * Start a new episode with a new random seed.  All vehicles, reservations
+   * and statistics are dropped and the clocks are set back to zero, but the
+   * map, the geometry of the intersections and the reservation grids are
+   * kept, so this is much cheaper than building a new simulator.  The run
+   * that follows is the same as that of a new simulator built by the same
+   * setup with a context of the same seed.
+   *
+   * @param seed  the random seed of the new episode
+   */
+  public synchronized void reset(long seed) {
+    context.reset(seed);
+    releaseVehicles();
+    laneVehicleIndex.clear();
+    vehicleGrid.clear();
+    for(SpawnPoint spawnPoint : basicMap.getSpawnPoints()) {
+      spawnPoint.reset(0.0);
+    }
+    for(IntersectionManager im : basicMap.getIntersectionManagers()) {
+      im.reset(0.0);
+    }
+    for(DataCollectionLine line : basicMap.getDataCollectionLines()) {
+      line.reset();
+    }
+    currentTime = 0.0;
+    numOfCompletedVehicles = 0;
+    totalBitsTransmittedByCompletedVehicles = 0;
+    totalBitsReceivedByCompletedVehicles = 0;
+    totalDelayOfCompletedVehicles = 0.0;
+    numOfIdleSteps = 0;
+  }
+
+  /**
+   * Take a snapshot of the mutable state of the simulator.  The simulator
+   * can be brought back to this state with {@link #restore(SimSnapshot)} as
+   * many times as needed, e.g. to try several actions from the same state.
+   * The map and the other structures that do not change during a
+   * simulation are shared with the snapshot rather than copied.
+   *
+   * @return the snapshot
+   */
+  public synchronized SimSnapshot snapshot() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      SimSnapshot.SnapshotOutputStream out =
+        new SimSnapshot.SnapshotOutputStream(bytes);
+      out.writeDouble(currentTime);
+      out.writeInt(numOfCompletedVehicles);
+      out.writeInt(totalBitsTransmittedByCompletedVehicles);
+      out.writeInt(totalBitsReceivedByCompletedVehicles);
+      out.writeDouble(totalDelayOfCompletedVehicles);
+      out.writeLong(numOfIdleSteps);
+      context.writeState(out);
+      out.writeObject(vinToVehicles);
+      for(IntersectionManager im : basicMap.getIntersectionManagers()) {
+        im.writeState(out);
+      }
+      for(SpawnPoint spawnPoint : basicMap.getSpawnPoints()) {
+        out.writeDouble(spawnPoint.getCurrentTime());
+      }
+      for(DataCollectionLine line : basicMap.getDataCollectionLines()) {
+        line.writeState(out);
+      }
+      out.close();
+      return new SimSnapshot(this, currentTime, out.getSharedObjects(),
+                             bytes.toByteArray());
+    } catch(IOException e) {
+      throw new RuntimeException("Simulator::snapshot(): cannot write the " +
+                                 "state of the simulator", e);
+    }
+  }
+
+  /**
+   * Bring the simulator back to the state of a snapshot.  The vehicles,
+   * the reservations and the other mutable objects are replaced by new
+   * copies, so the snapshot stays valid after the simulator moves on.
+   *
+   * @param snapshot  a snapshot taken by {@link #snapshot()} of this
+   *                  simulator
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized void restore(SimSnapshot snapshot) {
+    if (snapshot.getSimulator() != this) {
+      throw new IllegalArgumentException("The snapshot is taken from " +
+                                         "another simulator.");
+    }
+    try {
+      ObjectInputStream in = snapshot.openInputStream();
+      currentTime = in.readDouble();
+      numOfCompletedVehicles = in.readInt();
+      totalBitsTransmittedByCompletedVehicles = in.readInt();
+      totalBitsReceivedByCompletedVehicles = in.readInt();
+      totalDelayOfCompletedVehicles = in.readDouble();
+      numOfIdleSteps = in.readLong();
+      context.readState(in);
+      releaseVehicles();
+      vinToVehicles.putAll((Map<Integer,VehicleSimView>)in.readObject());
+      VehicleStateStore stateStore = vehiclePool.getStateStore();
+      if (stateStore != null) {
+        for(VehicleSimView vehicle : vinToVehicles.values()) {
+          ((BasicVehicle)vehicle).moveStateTo(stateStore);
+        }
+      }
+      for(IntersectionManager im : basicMap.getIntersectionManagers()) {
+        im.readState(in);
+      }
+      for(SpawnPoint spawnPoint : basicMap.getSpawnPoints()) {
+        spawnPoint.reset(in.readDouble());
+      }
+      for(DataCollectionLine line : basicMap.getDataCollectionLines()) {
+        line.readState(in);
+      }
+      in.close();
+    } catch(IOException e) {
+      throw new RuntimeException("Simulator::restore(): cannot read the " +
+                                 "state of the simulator", e);
+    } catch(ClassNotFoundException e) {
+      throw new RuntimeException("Simulator::restore(): cannot read the " +
+                                 "state of the simulator", e);
+    }
+    laneVehicleIndex.clear();
+    vehicleGrid.clear();
+  }
+
+
+  /**
+   * Put all active vehicles back into the pool and clear the map of the
+   * active vehicles.
+   */
+  private void releaseVehicles() {
+    for(VehicleSimView vehicle : vinToVehicles.values()) {
+      if (vehicle instanceof BasicAutoVehicle) {
+        vehiclePool.release((BasicAutoVehicle)vehicle);
+      }
+    }
+    vinToVehicles.clear();
+  }
+
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  // parallelism
+
+  /**
+   * Set the number of threads used by the parallel stages of a step.  With
+   * one thread (the default) every stage runs serially on the calling
+   * thread.  The intersection managers also use the threads to run the
+   * queries of their reservation grids.  The trajectories are the same for
+   * any number of threads.
+   *
+   * @param parallelism  the number of threads
+   */
+  public synchronized void setParallelism(int parallelism) {
+    if (stageExecutor != null) {
+      stageExecutor.shutdown();
+    }
+    if (parallelism > 1) {
+      stageExecutor = new StageExecutor(parallelism);
+    } else if (parallelism == 1) {
+      stageExecutor = null;
+    } else {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    for(IntersectionManager im : basicMap.getIntersectionManagers()) {
+      if (im instanceof V2IManager) {
+        ((V2IManager)im).setQueryExecutor(stageExecutor);
+      }
+    }
+  }
+
+  /**
+   * Get the number of threads used by the parallel stages of a step.
+   *
+   * @return the number of threads
+   */
+  public synchronized int getParallelism() {
+    return (stageExecutor == null) ? 1 : stageExecutor.getParallelism();
+  }
+
+
+  // vehicle states
+
+  /**
+   * Set whether the kinematic states of the vehicles are kept in one
+   * structure-of-arrays store shared by all vehicles, which the move stage
+   * advances in one pass over its arrays, rather than in a store per
+   * vehicle.  The trajectories are the same either way.  It must be set
+   * before the first vehicle is spawned.
+   *
+   * @param enabled  whether the states are kept in a shared store
+   */
+  public synchronized void setVehicleStateStoreEnabled(boolean enabled) {
+    vehiclePool.setStateStore(enabled ? new VehicleStateStore() : null);
+  }
+
+  /**
+   * Whether the kinematic states of the vehicles are kept in a shared
+   * store.
+   *
+   * @return whether the states are kept in a shared store
+   */
+  public synchronized boolean isVehicleStateStoreEnabled() {
+    return vehiclePool.getStateStore() != null;
+  }
+
+
+  // state export
+
+  /**
+   * Set the writer of the snapshots of the vehicles.  A snapshot is written
+   * at the end of every step.
+   *
+   * @param stateExporter  the state exporter; null to stop exporting
+   */
+  public synchronized void setStateExporter(StateExporter stateExporter) {
+    this.stateExporter = stateExporter;
+  }
+
+  /**
+   * Get the writer of the snapshots of the vehicles.
+   *
+   * @return the state exporter; null if there is none
+   */
+  public synchronized StateExporter getStateExporter() {
+    return stateExporter;
+  }
+
+
+  // lifecycle
+
+  /**
+   * Release the resources held by the simulator: the worker threads of the
+   * parallel stages and the file of the state exporter.  The simulator can
+   * still be stepped afterwards, but serially and without exporting the
+   * states.  Closing a closed simulator has no effect.
+   *
+   * @throws IOException if the state file cannot be closed
+   */
+  public synchronized void close() throws IOException {
+    setParallelism(1);
+    if (stateExporter != null) {
+      StateExporter exporter = stateExporter;
+      stateExporter = null;
+      exporter.close();
+    }
+  }
+
+
+  // profiling
+
+  /**
+   * Set the profiler of the steps.
+   *
+   * @param profiler  the profiler; null to stop profiling
+   */
+  public synchronized void setProfiler(StepProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  /**
+   * Get the profiler of the steps.
+   *
+   * @return the profiler; null if there is none
+   */
+  public synchronized StepProfiler getProfiler() {
+    return profiler;
+  }
+
 
   /////////////////////////////////
   // PUBLIC METHODS
@@ -182,6 +579,24 @@ public class Simulator {
     return basicMap;
   }
 
+  /**
+   * Get the context of the simulation.
+   *
+   * @return the context of the simulation
+   */
+  public synchronized SimContext getContext() {
+    return context;
+  }
+
+  /**
+   * Get the pool of the vehicles of the simulation.
+   *
+   * @return the pool of the vehicles
+   */
+  public synchronized VehiclePool getVehiclePool() {
+    return vehiclePool;
+  }
+
 
   public synchronized double getSimulationTime() {
     return (int)(currentTime * SimConfig.CYCLES_PER_SECOND);
@@ -192,6 +607,16 @@ public class Simulator {
     return numOfCompletedVehicles;
   }
 
+  /**
+   * Get the number of steps in which there was no vehicle on the map.  These
+   * steps only run the spawn points and the intersection managers.
+   *
+   * @return the number of idle steps since the start of the episode
+   */
+  public synchronized long getNumOfIdleSteps() {
+    return numOfIdleSteps;
+  }
+
 
   public synchronized double getAvgBitsTransmittedByCompletedVehicles() {
     if (numOfCompletedVehicles > 0) {
@@ -211,8 +636,31 @@ public class Simulator {
     }
   }
 
+  /**
+   * Get the average delay of the completed vehicles.  The delay of a
+   * vehicle is its travel time minus the time it would have taken to
+   * travel the same distance at the free-flow speed, i.e. the speed limit
+   * of its last lane or its maximum velocity, whichever is lower.
+   *
+   * @return the average delay in seconds
+   */
+  public synchronized double getAvgDelayOfCompletedVehicles() {
+    if (numOfCompletedVehicles > 0) {
+      return totalDelayOfCompletedVehicles / numOfCompletedVehicles;
+    } else {
+      return 0.0;
+    }
+  }
+
+  /**
+   * Get the active vehicles.  The vehicles are iterated in the same order
+   * as the simulator iterates them, which does not depend on their identity
+   * hash codes, so that sums over the vehicles are reproducible.
+   *
+   * @return the active vehicles
+   */
   public synchronized Set<VehicleSimView> getActiveVehicles() {
-    return new HashSet<VehicleSimView>(vinToVehicles.values());
+    return new LinkedHashSet<VehicleSimView>(vinToVehicles.values());
   }
 
   /////////////////////////////////
@@ -223,6 +671,16 @@ public class Simulator {
   // STEP 1
   /////////////////////////////////
 
+  /**
+   * Rebuild the spatial hash of the vehicles from their current positions.
+   */
+  private void updateVehicleGrid() {
+    vehicleGrid.clear();
+    for(VehicleSimView vehicle : vinToVehicles.values()) {
+      vehicleGrid.add(vehicle, vehicle.getShape().getBounds2D());
+    }
+  }
+
   /**
    * Spawn vehicles.
    *
@@ -236,8 +694,10 @@ public class Simulator {
         if (canSpawnVehicle(spawnPoint)) {
           for(SpawnSpec spawnSpec : spawnSpecs) {
             VehicleSimView vehicle = makeVehicle(spawnPoint, spawnSpec);
-            VinRegistry.registerVehicle(vehicle); // Get vehicle a VIN number
+            // Get vehicle a VIN number
+            context.getVinRegistry().registerVehicle(vehicle);
             vinToVehicles.put(vehicle.getVIN(), vehicle);
+            vehicleGrid.add(vehicle, vehicle.getShape().getBounds2D());
             break; // only handle the first spawn vehicle
                    // TODO: need to fix this
           }
@@ -254,9 +714,10 @@ public class Simulator {
    * @return Whether the spawn point can spawn any vehicle
    */
   private boolean canSpawnVehicle(SpawnPoint spawnPoint) {
-    // TODO: can be made much faster.
     Rectangle2D noVehicleZone = spawnPoint.getNoVehicleZone();
-    for(VehicleSimView vehicle : vinToVehicles.values()) {
+    nearbyVehicles.clear();
+    vehicleGrid.query(noVehicleZone, nearbyVehicles);
+    for(VehicleSimView vehicle : nearbyVehicles) {
       if (vehicle.getShape().intersects(noVehicleZone)) {
         return false;
       }
@@ -279,8 +740,8 @@ public class Simulator {
     // Now just take the minimum of the max velocity of the vehicle, and
     // the speed limit in the lane
     double initVelocity = Math.min(spec.getMaxVelocity(), lane.getSpeedLimit());
-    // Obtain a Vehicle
-    AutoVehicleSimView vehicle = new BasicAutoVehicle(spec,
+    // Obtain a Vehicle, with its driver, from the pool
+    AutoVehicleSimView vehicle = vehiclePool.obtain(spec,
                            spawnPoint.getPosition(),
                            spawnPoint.getHeading(),
                            spawnPoint.getSteeringAngle(),
@@ -288,13 +749,14 @@ public class Simulator {
                            initVelocity,  // target velocity
                            spawnPoint.getAcceleration(),
                            spawnSpec.getSpawnTime());
-    // Set the driver
-    AutoDriver driver = new AutoDriver(vehicle, basicMap);
+    // Set up the driver
+    AutoDriver driver = vehicle.getDriver();
     driver.setCurrentLane(lane);
     driver.setCurrentRoad(road);
     driver.setSpawnPoint(spawnPoint);
     driver.setDestination(spawnSpec.getDestinationRoad());
-    vehicle.setDriver(driver);
+    driver.setStopDistBeforeIntersection(
+      context.getStopDistBeforeIntersection());
 
     return vehicle;
   }
@@ -304,117 +766,26 @@ public class Simulator {
   // STEP 2
   /////////////////////////////////
 
-  /**
-   * Compute the lists of vehicles of all lanes.
-   *
-   * @return a mapping from lanes to lists of vehicles sorted by their
-   *         distance on their lanes
-   */
-  private Map<Lane,SortedMap<Double,VehicleSimView>> computeVehicleLists() {
-    // Set up the structure that will hold all the Vehicles as they are
-    // currently ordered in the Lanes
-    Map<Lane,SortedMap<Double,VehicleSimView>> vehicleLists = new HashMap<Lane,SortedMap<Double,VehicleSimView>>();
-    for(Road road : basicMap.getRoads()) {
-      for(Lane lane : road.getLanes()) {
-        vehicleLists.put(lane, new TreeMap<Double,VehicleSimView>());
-      }
-    }
-    // Now add each of the Vehicles, but make sure to exclude those that are
-    // already inside (partially or entirely) the intersection
-    for(VehicleSimView vehicle : vinToVehicles.values()) {
-      // Find out what lanes it is in.
-      Set<Lane> lanes = vehicle.getDriver().getCurrentlyOccupiedLanes();
-      for(Lane lane : lanes) {
-        // Find out what IntersectionManager is coming up for this vehicle
-        IntersectionManager im =
-          lane.getLaneIM().nextIntersectionManager(vehicle.getPosition());
-        // Only include this Vehicle if it is not in the intersection.
-        if(lane.getLaneIM().distanceToNextIntersection(vehicle.getPosition())>0
-            || im == null || !im.intersects(vehicle.getShape().getBounds2D())) {
-          // Now find how far along the lane it is.
-          double dst = lane.distanceAlongLane(vehicle.getPosition());
-          // Now add it to the map.
-          vehicleLists.get(lane).put(dst, vehicle);
-        }
-      }
-    }
-    // Now consolidate the lists based on lanes
-    for(Road road : basicMap.getRoads()) {
-      for(Lane lane : road.getLanes()) {
-        // We may have already removed this Lane from the map
-        if(vehicleLists.containsKey(lane)) {
-          Lane currLane = lane;
-          // Now run through the lanes
-          while(currLane.hasNextLane()) {
-            currLane = currLane.getNextLane();
-            // Put everything from the next lane into the original lane
-            // and remove the mapping for the next lane
-            vehicleLists.get(lane).putAll(vehicleLists.remove(currLane));
-          }
-        }
-      }
-    }
-
-    return vehicleLists;
-  }
-
-  /**
-   * Compute the next vehicles of all vehicles.
-   *
-   * @param vehicleLists  a mapping from lanes to lists of vehicles sorted by
-   *                      their distance on their lanes
-   * @return a mapping from vehicles to next vehicles
-   */
-  private Map<VehicleSimView, VehicleSimView> computeNextVehicle(
-    Map<Lane,SortedMap<Double,VehicleSimView>> vehicleLists) {
-    // At this point we should only have mappings for start Lanes, and they
-    // should include all the Lanes they run into.  Now we need to turn this
-    // into a hash map that maps Vehicles to the next vehicle in the Lane
-    // or any Lane the Lane runs into
-    Map<VehicleSimView, VehicleSimView> nextVehicle =
-      new HashMap<VehicleSimView,VehicleSimView>();
-    // For each of the ordered lists of vehicles
-    for(SortedMap<Double,VehicleSimView> vehicleList : vehicleLists.values()) {
-      VehicleSimView lastVehicle = null;
-      // Go through the Vehicles in order of their position in the Lane
-      for(VehicleSimView currVehicle : vehicleList.values()) {
-        if(lastVehicle != null) {
-          // Create the mapping from the previous Vehicle to the current one
-          nextVehicle.put(lastVehicle,currVehicle);
-        }
-        lastVehicle = currVehicle;
-      }
-    }
-
-    return nextVehicle;
-  }
-
   /**
    * Provide each vehicle with sensor information to allow it to make
-   * decisions.  This works first by making an ordered list for each Lane of
-   * all the vehicles in that Lane, in order from the start of the Lane to
+   * decisions.  This works first by updating the ordered list for each Lane
+   * of all the vehicles in that Lane, in order from the start of the Lane to
    * the end of the Lane.  We must make sure to leave out all vehicles that
-   * are in the intersection.  We must also concatenate the lists for lanes
-   * that feed into one another.  Then, for each vehicle, depending on the
-   * state of its sensors, we provide it with the appropriate sensor input.
+   * are in the intersection.  The lists for lanes that feed into one another
+   * are concatenated.  Then, for each vehicle, depending on the state of its
+   * sensors, we provide it with the appropriate sensor input.
    */
   private void provideSensorInput() {
-    Map<Lane,SortedMap<Double,VehicleSimView>> vehicleLists =
-      computeVehicleLists();
-    Map<VehicleSimView, VehicleSimView> nextVehicle =
-      computeNextVehicle(vehicleLists);
+    laneVehicleIndex.update(vinToVehicles.values());
 
-    provideIntervalInfo(nextVehicle);
-    provideVehicleTrackingInfo(vehicleLists);
+    provideIntervalInfo();
+    provideVehicleTrackingInfo();
   }
 
   /**
    * Provide sensing information to the intervalometers of all vehicles.
-   *
-   * @param nextVehicle  a mapping from vehicles to next vehicles
    */
-  private void provideIntervalInfo(
-    Map<VehicleSimView, VehicleSimView> nextVehicle) {
+  private void provideIntervalInfo() {
 
     // Now that we have this list set up, let's provide input to all the
     // Vehicles.
@@ -427,11 +798,13 @@ public class Simulator {
         case DISABLED:
           // Find the interval to the next vehicle
           double interval;
+          VehicleSimView nextVehicle =
+            laneVehicleIndex.getNextVehicle(autoVehicle);
           // If there is a next vehicle, then calculate it
-          if(nextVehicle.containsKey(autoVehicle)) {
+          if(nextVehicle != null) {
             // It's the distance from the front of this Vehicle to the point
             // at the rear of the Vehicle in front of it
-            interval = calcInterval(autoVehicle, nextVehicle.get(autoVehicle));
+            interval = calcInterval(autoVehicle, nextVehicle);
           } else { // Otherwise, just set it to the maximum possible value
             interval = Double.MAX_VALUE;
           }
@@ -458,12 +831,8 @@ public class Simulator {
 
   /**
    * Provide tracking information to vehicles.
-   *
-   * @param vehicleLists  a mapping from lanes to lists of vehicles sorted by
-   *                      their distance on their lanes
    */
-  private void provideVehicleTrackingInfo(
-    Map<Lane, SortedMap<Double, VehicleSimView>> vehicleLists) {
+  private void provideVehicleTrackingInfo() {
     // Vehicle Tracking
     for(VehicleSimView vehicle: vinToVehicles.values()) {
       // If the vehicle is autonomous
@@ -483,22 +852,20 @@ public class Simulator {
           VehicleSimView rearVehicle = null ;
 
           // only consider the vehicles on the target lane
-          SortedMap<Double,VehicleSimView> vehiclesOnTargetLane =
-            vehicleLists.get(targetLane);
+          LaneVehicleIndex.LaneChain vehiclesOnTargetLane =
+            laneVehicleIndex.getChain(targetLane);
 
           // compute the distances and the corresponding vehicles
-          try {
-            double d = vehiclesOnTargetLane.tailMap(dst).firstKey();
-            frontVehicle = vehiclesOnTargetLane.get(d);
+          int i = vehiclesOnTargetLane.ceilingIndex(dst);
+          if (i < vehiclesOnTargetLane.size()) {
+            double d = vehiclesOnTargetLane.getKey(i);
+            frontVehicle = vehiclesOnTargetLane.getVehicle(i);
             frontDst = (d-dst)-frontVehicle.getSpec().getLength();
-          } catch(NoSuchElementException e) {
-            frontVehicle = null;
           }
-          try {
-            double d = vehiclesOnTargetLane.headMap(dst).lastKey();
-            rearVehicle = vehiclesOnTargetLane.get(d);
+          if (i > 0) {
+            double d = vehiclesOnTargetLane.getKey(i - 1);
+            rearVehicle = vehiclesOnTargetLane.getVehicle(i - 1);
             rearDst = dst-d;
-          } catch(NoSuchElementException ignored) {
           }
 
           // assign the sensor readings
@@ -552,15 +919,7 @@ public class Simulator {
     if(nextVehicle.getShape().contains(pos)) {
       return 0.0;
     } else {
-      // TODO: make it more efficient
-      double interval = Double.MAX_VALUE ;
-      for(Line2D edge : nextVehicle.getEdges()) {
-        double dst = edge.ptSegDist(pos);
-        if(dst < interval){
-          interval = dst;
-        }
-      }
-      return interval;
+      return nextVehicle.getDistanceToEdges(pos);
     }
   }
 
@@ -573,9 +932,38 @@ public class Simulator {
    * Allow each driver to act.
    */
   private void letDriversAct() {
+    if (stageExecutor == null) {
+      for(VehicleSimView vehicle : vinToVehicles.values()) {
+        vehicle.getDriver().act();
+      }
+    } else {
+      // The drivers only change their own vehicles and put their messages
+      // in their own vehicles' outboxes, which are delivered afterwards by
+      // deliverV2IMessages() in the usual order of the vehicles.
+      final List<VehicleSimView> vehicles = getStageVehicles();
+      stageExecutor.run(vehicles.size(), new StageExecutor.Body() {
+        @Override
+        public void run(int chunk, int from, int to) {
+          for(int i = from; i < to; i++) {
+            vehicles.get(i).getDriver().act();
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Get the active vehicles in the same order as they are visited by the
+   * serial stages.
+   *
+   * @return the active vehicles
+   */
+  private List<VehicleSimView> getStageVehicles() {
+    stageVehicles.clear();
     for(VehicleSimView vehicle : vinToVehicles.values()) {
-      vehicle.getDriver().act();
+      stageVehicles.add(vehicle);
     }
+    return stageVehicles;
   }
 
   /////////////////////////////////
@@ -587,7 +975,34 @@ public class Simulator {
    *
    * @param timeStep  the time step
    */
-  private void letIntersectionManagersAct(double timeStep) {
+  private void letIntersectionManagersAct(final double timeStep) {
+    if (stageExecutor == null) {
+      for(IntersectionManager im : basicMap.getIntersectionManagers()) {
+        im.act(timeStep);
+      }
+    } else {
+      // Each intersection manager only processes its own inbox, policy and
+      // reservation grid, and writes to its own outbox.
+      final List<IntersectionManager> ims =
+        basicMap.getIntersectionManagers();
+      stageExecutor.run(ims.size(), new StageExecutor.Body() {
+        @Override
+        public void run(int chunk, int from, int to) {
+          for(int i = from; i < to; i++) {
+            ims.get(i).act(timeStep);
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Allow each intersection manager to act when there is no vehicle on the
+   * map.
+   *
+   * @param timeStep  the time step
+   */
+  private void actIdleIntersectionManagers(double timeStep) {
     for(IntersectionManager im : basicMap.getIntersectionManagers()) {
       im.act(timeStep);
     }
@@ -627,6 +1042,9 @@ public class Simulator {
           if(transmit(txDistance, sender.getTransmissionPower())) {
             // Actually deliver the message
             receiver.receive(msg);
+            if (profiler != null) {
+              profiler.countV2IMessage(msg);
+            }
             // Add the delivery to the debugging information
           }
           // Either way, we increment the number of transmitted messages
@@ -646,16 +1064,22 @@ public class Simulator {
           i2vIter.hasNext();) {
         I2VMessage msg = i2vIter.next();
         AutoVehicleSimView vehicle =
-          (AutoVehicleSimView)VinRegistry.getVehicleFromVIN(
+          (AutoVehicleSimView)context.getVinRegistry().getVehicleFromVIN(
             msg.getVin());
+        if (vehicle == null) {
+          // the vehicle has left the map and its VIN has been unregistered
+          continue;
+        }
         // Calculate the distance the message must travel
-        assert vehicle != null;
         double txDistance = senderIM.getIntersection().getCentroid().distance(
             vehicle.getPosition());
         // Find out if the message will make it that far
         if(transmit(txDistance, senderIM.getTransmissionPower())) {
           // Actually deliver the message
           vehicle.receive(msg);
+          if (profiler != null) {
+            profiler.countI2VMessage(msg);
+          }
         }
       }
       // Done delivering the IntersectionManager's messages, so clear the outbox.
@@ -688,66 +1112,163 @@ public class Simulator {
    * @param timeStep  the time step
    */
   private void moveVehicles(double timeStep) {
-    for(VehicleSimView vehicle : vinToVehicles.values()) {
-      Point2D p1 = vehicle.getPosition();
-      vehicle.move(timeStep);
-      Point2D p2 = vehicle.getPosition();
-      for(DataCollectionLine line : basicMap.getDataCollectionLines()) {
-        line.intersect(vehicle, currentTime, p1, p2);
+    if (vehiclePool.getStateStore() != null) {
+      moveVehiclesInStore(timeStep);
+    } else if (stageExecutor == null) {
+      for(VehicleSimView vehicle : vinToVehicles.values()) {
+        Point2D p1 = vehicle.getPosition();
+        vehicle.move(timeStep);
+        Point2D p2 = vehicle.getPosition();
+        for(DataCollectionLine line : basicMap.getDataCollectionLines()) {
+          line.intersect(vehicle, currentTime, p1, p2);
+        }
+        if (Debug.isPrintVehicleStateOfVIN(vehicle.getVIN())) {
+          vehicle.printState();
+        }
       }
-      if (Debug.isPrintVehicleStateOfVIN(vehicle.getVIN())) {
-        vehicle.printState();
+    } else {
+      moveVehiclesInParallel(getStageVehicles(), null, timeStep);
+    }
+  }
+
+  /**
+   * Move all the vehicles by advancing the shared state store in one pass
+   * over its arrays, and then bring the gauges of the vehicles up to date.
+   * The positions before the move are taken beforehand for the data
+   * collection lines.
+   *
+   * @param timeStep  the time step
+   */
+  private void moveVehiclesInStore(final double timeStep) {
+    final VehicleStateStore stateStore = vehiclePool.getStateStore();
+    List<VehicleSimView> vehicles = getStageVehicles();
+    startPositions.clear();
+    for(VehicleSimView vehicle : vehicles) {
+      startPositions.add(vehicle.getPosition());
+    }
+    if (stageExecutor == null) {
+      stateStore.moveAll(0, stateStore.size(), timeStep);
+      for(int i = 0; i < vehicles.size(); i++) {
+        VehicleSimView vehicle = vehicles.get(i);
+        vehicle.finishMove();
+        Point2D p1 = startPositions.get(i);
+        Point2D p2 = vehicle.getPosition();
+        for(DataCollectionLine line : basicMap.getDataCollectionLines()) {
+          line.intersect(vehicle, currentTime, p1, p2);
+        }
+        if (Debug.isPrintVehicleStateOfVIN(vehicle.getVIN())) {
+          vehicle.printState();
+        }
       }
+    } else {
+      stageExecutor.run(stateStore.size(), new StageExecutor.Body() {
+        @Override
+        public void run(int chunk, int from, int to) {
+          stateStore.moveAll(from, to, timeStep);
+        }
+      });
+      moveVehiclesInParallel(vehicles, startPositions, timeStep);
     }
   }
 
+  /**
+   * Move all the vehicles on the threads of the stage executor.  The
+   * crossings of the data collection lines are collected per chunk and
+   * recorded after all vehicles have moved, in chunk order, which is the
+   * order in which the serial stage records them.
+   *
+   * @param vehicles        the active vehicles
+   * @param startPositions  the positions of the vehicles before the state
+   *                        store moved them; null if the vehicles are not
+   *                        moved yet
+   * @param timeStep        the time step
+   */
+  private void moveVehiclesInParallel(final List<VehicleSimView> vehicles,
+                                      final List<Point2D> startPositions,
+                                      final double timeStep) {
+    final List<DataCollectionLine> lines = basicMap.getDataCollectionLines();
+    final double time = currentTime;
+    int numOfChunks = stageExecutor.getNumOfChunks(vehicles.size());
+    while(crossingBuffers.size() < numOfChunks) {
+      crossingBuffers.add(new CrossingBuffer());
+    }
 
-  //          System.out.print("VIN: ");
-//          System.out.println(vehicle.getVIN());
-//          System.out.print("distance: ");
-//          System.out.println(vehicle.getDriver().distanceToNextIntersection());
-//          System.out.print("time: ");
-//          System.out.println(vehicle.getWaitTime(timeStep, vehicle.getDriver().distanceToNextIntersection()));
-//          Road r = basicMap.getRoad(vehicle.getDriver().getCurrentLane());
-//          System.out.print("Road name: ");
-//          System.out.println(r.getName());
-//          System.out.print("Spawn name: ");
-//          System.out.println(vehicle.getDriver().getSpawnPoint().getRoad());
-//          System.out.print("destination name: ");
-//          System.out.println(vehicle.getDriver().getDestination());
-//          System.out.print("lane index: ");
-//          System.out.println(r.getSpecificLaneIndex(vehicle.getDriver().getCurrentLane()));
-  private void outputInfToFile(double timeStep) throws IOException {
-    DecimalFormat fnum = new DecimalFormat("##0.00");
-    File writename = new File("output.txt");
-    BufferedWriter out = new BufferedWriter(new FileWriter(writename, false));
-    int time = viewer.time;
-    out.write(time+"\n");
-    for (VehicleSimView vehicle : vinToVehicles.values()) {
-      try {
-        Road r = basicMap.getRoad(vehicle.getDriver().getCurrentLane());
-//        int time = (int)(currentTime * SimConfig.CYCLES_PER_SECOND);
-        String dist=fnum.format(vehicle.getDriver().distanceToNextIntersection());
-        if(vehicle.getDriver().distanceToNextIntersection()>146){
-          dist = "146.00";
-        } else if (vehicle.getDriver().distanceToNextIntersection()<0.9){
-          dist = "0.00";
+    stageExecutor.run(vehicles.size(), new StageExecutor.Body() {
+      @Override
+      public void run(int chunk, int from, int to) {
+        CrossingBuffer crossings = crossingBuffers.get(chunk);
+        crossings.size = 0;
+        for(int i = from; i < to; i++) {
+          VehicleSimView vehicle = vehicles.get(i);
+          Point2D p1;
+          if (startPositions == null) {
+            p1 = vehicle.getPosition();
+            vehicle.move(timeStep);
+          } else {
+            p1 = startPositions.get(i);
+            vehicle.finishMove();
+          }
+          Point2D p2 = vehicle.getPosition();
+          for(int j = 0; j < lines.size(); j++) {
+            if (lines.get(j).isCrossing(vehicle.getVIN(), time, p1, p2)) {
+              crossings.add(i, j);
+            }
+          }
+          if (Debug.isPrintVehicleStateOfVIN(vehicle.getVIN())) {
+            vehicle.printState();
+          }
         }
-        String beforeIntercetionTime = fnum.format(25*vehicle.getWaitTime(timeStep,
-                vehicle.getDriver().distanceToNextIntersection()));
-        out.write(time+"\t"+vehicle.getVIN()+"\t");
-        out.write(dist+"\t"+ beforeIntercetionTime +"\t");
-        out.write(vehicle.getDriver().getSpawnPoint().getRoad()+"\t");
-        out.write(vehicle.getDriver().getDestination()+"\t");
-        out.write(r.getSpecificLaneIndex(vehicle.getDriver().getCurrentLane())+"\n");
-        out.flush();
-//        out.close();
-      } catch (Exception e) {
-        e.printStackTrace();
+      }
+    });
+
+    for(int chunk = 0; chunk < numOfChunks; chunk++) {
+      CrossingBuffer crossings = crossingBuffers.get(chunk);
+      for(int k = 0; k < crossings.size; k++) {
+        lines.get(crossings.lineIndices[k]).recordCrossing(
+          vehicles.get(crossings.vehicleIndices[k]), time);
       }
     }
+  }
+
 
+  /**
+   * Update the wait times of all vehicles and, if there is a state exporter,
+   * write a snapshot of the states of the vehicles.  The exported distances
+   * and wait times are the ones the agents used to read from output.txt.
+   *
+   * @param timeStep  the time step
+   */
+  private void exportState(double timeStep) {
+    if (stateExporter != null) {
+      stateExporter.beginSnapshot(getEpisodeTime());
+    }
+    for(VehicleSimView vehicle : vinToVehicles.values()) {
+      Driver driver = vehicle.getDriver();
+      double distance = driver.distanceToNextIntersection();
+      // getWaitTime() also accumulates the wait time, so it must be called
+      // exactly once per step
+      double waitTime = vehicle.getWaitTime(timeStep, distance);
+      if (stateExporter != null) {
+        if (distance > MAX_EXPORTED_DISTANCE) {
+          distance = MAX_EXPORTED_DISTANCE;
+        } else if (distance < MIN_EXPORTED_DISTANCE) {
+          distance = 0.0;
+        }
+        Lane lane = driver.getCurrentLane();
+        Road road = basicMap.getRoad(lane);
+        stateExporter.addRecord(vehicle.getVIN(),
+                                distance,
+                                WAIT_TIME_EXPORT_SCALE * waitTime,
+                                driver.getSpawnPoint().getRoad(),
+                                driver.getDestination(),
+                                road.getSpecificLaneIndex(lane));
+      }
+    }
+    if (stateExporter != null) {
+      stateExporter.endSnapshot();
+    }
   }
+
   /////////////////////////////////
   // STEP 7
   /////////////////////////////////
@@ -774,12 +1295,18 @@ public class Simulator {
           totalBitsTransmittedByCompletedVehicles += v2.getBitsTransmitted();
           totalBitsReceivedByCompletedVehicles += v2.getBitsReceived();
         }
+        totalDelayOfCompletedVehicles += calcDelay(v);
         removedVINs.add(vin);
       }
     }
-    // Remove the marked vehicles
+    // Remove the marked vehicles and put them back into the pool
     for(int vin : removedVINs) {
-      vinToVehicles.remove(vin);
+      VehicleSimView v = vinToVehicles.remove(vin);
+      laneVehicleIndex.removeVehicle(v);
+      context.getVinRegistry().unregisterVehicle(vin);
+      if (v instanceof BasicAutoVehicle) {
+        vehiclePool.release((BasicAutoVehicle)v);
+      }
       completedVINs.add(vin);
       numOfCompletedVehicles++;
     }
@@ -787,6 +1314,54 @@ public class Simulator {
     return completedVINs;
   }
 
+  /**
+   * Calculate the delay of a vehicle that leaves the map.
+   *
+   * @param v  the vehicle
+   * @return the delay of the vehicle in seconds
+   */
+  private double calcDelay(VehicleSimView v) {
+    double freeFlowSpeed = v.getSpec().getMaxVelocity();
+    Lane lane = v.getDriver().getCurrentLane();
+    if (lane != null) {
+      freeFlowSpeed = Math.min(freeFlowSpeed, lane.getSpeedLimit());
+    }
+    double travelTime = currentTime - v.getSpawnTime();
+    return Math.max(0.0, travelTime - v.getDistanceTraveled() / freeFlowSpeed);
+  }
+
+  /////////////////////////////////
+  // PROFILING
+  /////////////////////////////////
+
+  /**
+   * Record the time of a stage of a step with a profiler.
+   *
+   * @param p          the profiler; null if the step is not profiled
+   * @param stage      the stage
+   * @param startTime  the time at which the stage started
+   * @return the time at which the stage ended, which is the start time of
+   *         the next stage
+   */
+  private static long endStage(StepProfiler p, StepProfiler.Stage stage,
+                               long startTime) {
+    return (p != null) ? p.endStage(stage, startTime) : startTime;
+  }
+
+  /**
+   * Get the total number of queries made to the reservation grids of the
+   * intersection managers.
+   *
+   * @return the total number of reservation queries
+   */
+  private long getNumOfReservationQueries() {
+    long n = 0;
+    for(IntersectionManager im : basicMap.getIntersectionManagers()) {
+      n += ((V2IManager)im).getReservationGridManager().getNumOfQueries();
+    }
+    return n;
+  }
+
   /////////////////////////////////
   // DEBUG
   /////////////////////////////////
@@ -806,10 +1381,20 @@ public class Simulator {
   }
 
 
+  /**
+   * Get the time of the current episode in number of steps.
+   *
+   * @return the time of the current episode
+   */
+  private int getEpisodeTime() {
+    return (int)getSimulationTime();
+  }
+
   private void detectepisode() throws IOException {
-    if(viewer.time == 3600){
-      VinRegistry.reset();   // TODO: should make it part of the simulator
-      System.gc();
+    // The VINs of the active vehicles must stay valid, so the registry can
+    // only be reset when no vehicle is on the map.
+    if(getEpisodeTime() == 3600 && vinToVehicles.isEmpty()){
+      context.getVinRegistry().reset();
     }
   }
 
@@ -0,0 +1,224 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An executor that runs a stage of a simulation step on a fork-join pool.
+ * The items of a stage are divided into a fixed number of contiguous
+ * chunks, which depends only on the number of items and the parallelism.
+ * A stage can therefore keep one buffer per chunk and merge the buffers in
+ * chunk order afterwards, which gives the same result as running the stage
+ * serially no matter how the chunks are scheduled on the threads.
+ */
+public class StageExecutor {
+
+  /////////////////////////////////
+  // NESTED CLASSES
+  /////////////////////////////////
+
+  /**
+   * The body of a stage.
+   */
+  public static interface Body {
+    /**
+     * Process a chunk of items.
+     *
+     * @param chunk  the index of the chunk
+     * @param from   the index of the first item in the chunk (inclusive)
+     * @param to     the index of the last item in the chunk (exclusive)
+     */
+    void run(int chunk, int from, int to);
+  }
+
+  /**
+   * The fork-join task that runs a range of chunks.
+   */
+  private static class ChunkAction extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The body of the stage */
+    private final Body body;
+    /** The number of items */
+    private final int size;
+    /** The number of chunks */
+    private final int numOfChunks;
+    /** The first chunk (inclusive) */
+    private final int lo;
+    /** The last chunk (exclusive) */
+    private final int hi;
+
+    /**
+     * Create a task that runs a range of chunks.
+     *
+     * @param body         the body of the stage
+     * @param size         the number of items
+     * @param numOfChunks  the number of chunks
+     * @param lo           the first chunk (inclusive)
+     * @param hi           the last chunk (exclusive)
+     */
+    ChunkAction(Body body, int size, int numOfChunks, int lo, int hi) {
+      this.body = body;
+      this.size = size;
+      this.numOfChunks = numOfChunks;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    protected void compute() {
+      if (hi - lo == 1) {
+        body.run(lo, chunkStart(size, numOfChunks, lo),
+                 chunkStart(size, numOfChunks, lo + 1));
+      } else {
+        int mid = (lo + hi) >>> 1;
+        invokeAll(new ChunkAction(body, size, numOfChunks, lo, mid),
+                  new ChunkAction(body, size, numOfChunks, mid, hi));
+      }
+    }
+  }
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /**
+   * The number of chunks per thread, so that the threads can balance uneven
+   * chunks among themselves.
+   */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The number of threads */
+  private final int parallelism;
+  /** The fork-join pool; null if the stages run on the calling thread */
+  private final ForkJoinPool pool;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a stage executor.
+   *
+   * @param parallelism  the number of threads; 1 to run the stages on the
+   *                     calling thread
+   */
+  public StageExecutor(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    this.parallelism = parallelism;
+    this.pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the number of threads.
+   *
+   * @return the number of threads
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Get the number of chunks into which a given number of items is divided.
+   *
+   * @param size  the number of items
+   * @return the number of chunks
+   */
+  public int getNumOfChunks(int size) {
+    return Math.max(1, Math.min(size, parallelism * CHUNKS_PER_THREAD));
+  }
+
+  /**
+   * Run a stage and wait for all chunks to finish.  Any exception thrown by
+   * the body is rethrown on the calling thread.  A stage may be run from
+   * within the body of another stage, in which case its chunks are shared
+   * among the threads that are already running.
+   *
+   * @param size  the number of items
+   * @param body  the body of the stage
+   */
+  public void run(int size, Body body) {
+    int numOfChunks = getNumOfChunks(size);
+    if (pool == null || numOfChunks == 1) {
+      for(int chunk = 0; chunk < numOfChunks; chunk++) {
+        body.run(chunk, chunkStart(size, numOfChunks, chunk),
+                 chunkStart(size, numOfChunks, chunk + 1));
+      }
+    } else {
+      ChunkAction action =
+        new ChunkAction(body, size, numOfChunks, 0, numOfChunks);
+      if (ForkJoinTask.getPool() == pool) {
+        action.invoke();
+      } else {
+        pool.invoke(action);
+      }
+    }
+  }
+
+  /**
+   * Shut down the threads of the executor.
+   */
+  public void shutdown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the index of the first item of a chunk.
+   *
+   * @param size         the number of items
+   * @param numOfChunks  the number of chunks
+   * @param chunk        the index of the chunk
+   * @return the index of the first item of the chunk
+   */
+  private static int chunkStart(int size, int numOfChunks, int chunk) {
+    return (int)((long)size * chunk / numOfChunks);
+  }
+}
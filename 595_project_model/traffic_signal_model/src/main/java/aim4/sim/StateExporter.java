@@ -0,0 +1,297 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import aim4.map.Road;
+
+/**
+ * A writer of the states of the vehicles to a memory-mapped ring file.
+ * Every step, the simulator writes one snapshot, which consists of one
+ * fixed-width binary record per active vehicle.  The records are appended
+ * to a ring of preallocated slots, and the header tells where the latest
+ * snapshot starts.  A consumer can map the same file and copy the latest
+ * snapshot at any time without parsing text or waiting for the simulator.
+ * <p>
+ * All numbers are little-endian.  The header has the following layout:
+ * <pre>
+ *   offset  type    field
+ *   0       int     magic number (0x41494D53, "AIMS")
+ *   4       int     format version
+ *   8       int     header size in bytes
+ *   12      int     record size in bytes
+ *   16      int     capacity of the ring in records
+ *   20      int     number of roads in the road table
+ *   24      long    sequence counter; odd while a snapshot is being written
+ *   32      long    index of the first record of the latest snapshot
+ *   40      int     number of records in the latest snapshot
+ *   44      int     time of the latest snapshot in steps
+ *   48      long    total number of records written so far
+ *   64      byte[]  road table: the names of the roads, 8 bytes each,
+ *                   padded with zeros
+ * </pre>
+ * Record <i>i</i> (counting from the beginning of the run) is stored at
+ * <code>headerSize + (i % capacity) * recordSize</code>:
+ * <pre>
+ *   offset  type    field
+ *   0       long    the (odd) sequence counter while the record was written
+ *   8       int     time in steps
+ *   12      int     VIN
+ *   16      float   distance to the next intersection
+ *   20      float   wait time
+ *   24      short   spawn road (an index into the road table)
+ *   26      short   destination road (an index into the road table)
+ *   28      short   lane index within the current road
+ *   30      short   reserved
+ * </pre>
+ * To read the latest snapshot, a consumer reads the sequence counter,
+ * retries if it is odd, copies the snapshot, and retries if the sequence
+ * counter has changed or any copied record does not carry the sequence
+ * counter minus one.  Snapshots larger than the ring are truncated to its
+ * capacity.
+ */
+public class StateExporter {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The magic number at the beginning of the file */
+  public static final int MAGIC = 0x41494D53;
+  /** The version of the format */
+  public static final int VERSION = 1;
+  /** The size of the header in bytes */
+  public static final int HEADER_SIZE = 4096;
+  /** The size of a record in bytes */
+  public static final int RECORD_SIZE = 32;
+  /** The default capacity of the ring in records */
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+  /** The offset of the road table in the header */
+  private static final int ROAD_TABLE_OFFSET = 64;
+  /** The size of an entry of the road table in bytes */
+  private static final int ROAD_NAME_SIZE = 8;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The file */
+  private RandomAccessFile file;
+  /** The mapped contents of the file */
+  private MappedByteBuffer buffer;
+  /** The capacity of the ring in records */
+  private int capacity;
+  /** The mapping from roads to their indices in the road table */
+  private Map<Road,Integer> roadToIndex;
+  /** The sequence counter */
+  private long seq;
+  /** The total number of records written so far */
+  private long numOfRecords;
+  /** The index of the first record of the current snapshot */
+  private long snapshotStart;
+  /** The number of records in the current snapshot */
+  private int snapshotCount;
+  /** The time of the current snapshot in steps */
+  private int snapshotTime;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a state exporter with the default capacity.
+   *
+   * @param fileName  the name of the ring file
+   * @param roads     the roads of the map
+   * @throws IOException if the file cannot be created or mapped
+   */
+  public StateExporter(String fileName, List<Road> roads) throws IOException {
+    this(fileName, roads, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Create a state exporter.  The ring file is created, or truncated if it
+   * already exists, and mapped into memory.
+   *
+   * @param fileName  the name of the ring file
+   * @param roads     the roads of the map
+   * @param capacity  the capacity of the ring in records
+   * @throws IOException if the file cannot be created or mapped
+   */
+  public StateExporter(String fileName, List<Road> roads, int capacity)
+    throws IOException {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive.");
+    }
+    if (ROAD_TABLE_OFFSET + roads.size() * ROAD_NAME_SIZE > HEADER_SIZE) {
+      throw new IllegalArgumentException("Too many roads: " + roads.size());
+    }
+    this.capacity = capacity;
+    this.roadToIndex = new IdentityHashMap<Road,Integer>();
+    long size = HEADER_SIZE + (long)capacity * RECORD_SIZE;
+
+    file = new RandomAccessFile(new File(fileName), "rw");
+    file.setLength(0);
+    file.setLength(size);
+    buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+    buffer.putInt(8, HEADER_SIZE);
+    buffer.putInt(12, RECORD_SIZE);
+    buffer.putInt(16, capacity);
+    buffer.putInt(20, roads.size());
+    Charset ascii = Charset.forName("US-ASCII");
+    for(int i = 0; i < roads.size(); i++) {
+      Road road = roads.get(i);
+      roadToIndex.put(road, i);
+      byte[] name = road.getName().getBytes(ascii);
+      int offset = ROAD_TABLE_OFFSET + i * ROAD_NAME_SIZE;
+      for(int j = 0; j < ROAD_NAME_SIZE; j++) {
+        buffer.put(offset + j, j < name.length ? name[j] : 0);
+      }
+    }
+    seq = 0;
+    numOfRecords = 0;
+    writeHeader();
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Start a new snapshot.
+   *
+   * @param time  the time of the snapshot in steps
+   */
+  public void beginSnapshot(int time) {
+    seq++;
+    buffer.putLong(24, seq);  // odd: a snapshot is being written
+    snapshotStart = numOfRecords;
+    snapshotCount = 0;
+    snapshotTime = time;
+  }
+
+  /**
+   * Add the record of a vehicle to the current snapshot.
+   *
+   * @param vin          the VIN of the vehicle
+   * @param distance     the distance to the next intersection
+   * @param waitTime     the wait time
+   * @param spawnRoad    the road on which the vehicle was spawned
+   * @param destination  the destination road of the vehicle
+   * @param laneIndex    the index of the current lane within its road
+   */
+  public void addRecord(int vin, double distance, double waitTime,
+                        Road spawnRoad, Road destination, int laneIndex) {
+    if (snapshotCount == capacity) {
+      return;  // truncate the snapshot
+    }
+    int offset = HEADER_SIZE + (int)(numOfRecords % capacity) * RECORD_SIZE;
+    buffer.putLong(offset, seq);
+    buffer.putInt(offset + 8, snapshotTime);
+    buffer.putInt(offset + 12, vin);
+    buffer.putFloat(offset + 16, (float)distance);
+    buffer.putFloat(offset + 20, (float)waitTime);
+    buffer.putShort(offset + 24, (short)getRoadIndex(spawnRoad));
+    buffer.putShort(offset + 26, (short)getRoadIndex(destination));
+    buffer.putShort(offset + 28, (short)laneIndex);
+    buffer.putShort(offset + 30, (short)0);
+    numOfRecords++;
+    snapshotCount++;
+  }
+
+  /**
+   * Finish the current snapshot and publish it.
+   */
+  public void endSnapshot() {
+    seq++;
+    writeHeader();
+  }
+
+  /**
+   * Get the number of snapshots written so far.
+   *
+   * @return the number of snapshots written so far
+   */
+  public long getNumOfSnapshots() {
+    return seq / 2;
+  }
+
+  /**
+   * Close the ring file.  The exporter cannot be used afterwards.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  public void close() throws IOException {
+    buffer.force();
+    file.close();
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the index of a road in the road table.
+   *
+   * @param road  the road
+   * @return the index of the road, or -1 if the road is unknown
+   */
+  private int getRoadIndex(Road road) {
+    Integer index = roadToIndex.get(road);
+    return (index == null) ? -1 : index;
+  }
+
+  /**
+   * Write the location of the latest snapshot and the sequence counter to
+   * the header.  The sequence counter is written last.
+   */
+  private void writeHeader() {
+    buffer.putLong(32, snapshotStart);
+    buffer.putInt(40, snapshotCount);
+    buffer.putInt(44, snapshotTime);
+    buffer.putLong(48, numOfRecords);
+    buffer.putLong(24, seq);
+  }
+}
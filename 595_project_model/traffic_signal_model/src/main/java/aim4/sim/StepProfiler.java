@@ -0,0 +1,486 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import aim4.config.SimConfig;
+import aim4.msg.i2v.I2VMessage;
+import aim4.msg.v2i.V2IMessage;
+
+/**
+ * A profiler of the steps of a simulator.  It accumulates the wall-clock
+ * time of each stage of a step, the number of messages delivered, the
+ * number of reservation queries, confirmations and rejections, and the
+ * number of vehicles on the map.  The totals can be read through JMX (see
+ * {@link #registerMBean(String)}) and, optionally, the changes since the
+ * last line can be written as one CSV line every given number of simulated
+ * seconds.
+ * <p>
+ * The simulator updates the counts of the step in progress without any
+ * locking; they are published to the readers once at the end of every
+ * step.
+ */
+public class StepProfiler implements StepProfilerMBean {
+
+  /////////////////////////////////
+  // NESTED CLASSES
+  /////////////////////////////////
+
+  /**
+   * The stages of a step.
+   */
+  public enum Stage {
+    /** Updating the vehicle index and spawning new vehicles */
+    SPAWN("spawn"),
+    /** Providing the sensor input to the vehicles */
+    SENSE("sense"),
+    /** Letting the drivers act */
+    DRIVERS("drivers"),
+    /** Letting the intersection managers act */
+    IMS("ims"),
+    /** Delivering the messages */
+    COMMUNICATION("communication"),
+    /** Moving the vehicles */
+    MOVE("move"),
+    /** Removing the completed vehicles */
+    CLEANUP("cleanup"),
+    /** Exporting the states of the vehicles */
+    EXPORT("export");
+
+    /** The name of the stage */
+    private final String name;
+
+    /**
+     * Create a stage.
+     *
+     * @param name  the name of the stage
+     */
+    private Stage(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Get the name of the stage.
+     *
+     * @return the name of the stage
+     */
+    public String getName() {
+      return name;
+    }
+  }
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The number of stages */
+  private static final int NUM_OF_STAGES = Stage.values().length;
+  /** The index of the number of steps in the count arrays */
+  private static final int STEPS = NUM_OF_STAGES;
+  /** The index of the number of V2I messages in the count arrays */
+  private static final int V2I_MESSAGES = NUM_OF_STAGES + 1;
+  /** The index of the number of I2V messages in the count arrays */
+  private static final int I2V_MESSAGES = NUM_OF_STAGES + 2;
+  /** The index of the number of requests in the count arrays */
+  private static final int REQUESTS = NUM_OF_STAGES + 3;
+  /** The index of the number of confirmations in the count arrays */
+  private static final int CONFIRMS = NUM_OF_STAGES + 4;
+  /** The index of the number of rejections in the count arrays */
+  private static final int REJECTS = NUM_OF_STAGES + 5;
+  /** The index of the number of reservation queries in the count arrays */
+  private static final int QUERIES = NUM_OF_STAGES + 6;
+  /** The length of the count arrays */
+  private static final int NUM_OF_COUNTS = NUM_OF_STAGES + 7;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /**
+   * The counts updated by the simulator; the first {@link #NUM_OF_STAGES}
+   * entries are the times of the stages in nanoseconds
+   */
+  private final long[] counts;
+  /** The number of vehicles on the map at the end of the last step */
+  private int numOfActiveVehicles;
+  /** The counts published at the end of the last step */
+  private final long[] publishedCounts;
+  /** The number of active vehicles published at the end of the last step */
+  private int publishedNumOfActiveVehicles;
+  /** The simulated time published at the end of the last step */
+  private double publishedSimulationTime;
+  /** Whether the counts should be cleared at the end of the step */
+  private volatile boolean isResetRequested;
+
+  /** The stream to which the CSV lines are written; null if none */
+  private PrintStream csvOutput;
+  /** The simulated time between two CSV lines in seconds */
+  private double csvInterval;
+  /** The simulated time at which the next CSV line is due */
+  private double nextCsvTime;
+  /** The counts at the time of the last CSV line */
+  private final long[] lastCsvCounts;
+
+  /** The name under which the profiler is registered; null if it is not */
+  private ObjectName objectName;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a step profiler.
+   */
+  public StepProfiler() {
+    counts = new long[NUM_OF_COUNTS];
+    publishedCounts = new long[NUM_OF_COUNTS];
+    lastCsvCounts = new long[NUM_OF_COUNTS];
+    numOfActiveVehicles = 0;
+    publishedNumOfActiveVehicles = 0;
+    publishedSimulationTime = 0.0;
+    isResetRequested = false;
+    csvOutput = null;
+    objectName = null;
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  // output
+
+  /**
+   * Write one CSV line with the changes of the counts every given number of
+   * simulated seconds.  The header line is written immediately.
+   *
+   * @param csvOutput    the stream to which the lines are written; null to
+   *                     stop writing
+   * @param csvInterval  the simulated time between two lines in seconds
+   */
+  public synchronized void setCsvOutput(PrintStream csvOutput,
+                                        double csvInterval) {
+    assert csvInterval > 0.0;
+    this.csvOutput = csvOutput;
+    this.csvInterval = csvInterval;
+    this.nextCsvTime = publishedSimulationTime + csvInterval;
+    System.arraycopy(counts, 0, lastCsvCounts, 0, NUM_OF_COUNTS);
+    if (csvOutput != null) {
+      csvOutput.print("time,steps,vehicles");
+      for(Stage stage : Stage.values()) {
+        csvOutput.print("," + stage.getName() + "_ms");
+      }
+      csvOutput.println(",v2i,i2v,requests,confirms,rejects,queries");
+      csvOutput.flush();
+    }
+  }
+
+  /**
+   * Register the profiler with the platform MBean server under the name
+   * <code>aim4:type=StepProfiler,name=<i>name</i></code>.
+   *
+   * @param name  the name of the profiler, e.g. the name of the run
+   * @throws JMException if the profiler cannot be registered
+   */
+  public synchronized void registerMBean(String name) throws JMException {
+    unregisterMBean();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName on =
+      new ObjectName("aim4:type=StepProfiler,name=" + ObjectName.quote(name));
+    server.registerMBean(this, on);
+    objectName = on;
+  }
+
+  /**
+   * Unregister the profiler from the platform MBean server, if it has been
+   * registered.
+   *
+   * @throws JMException if the profiler cannot be unregistered
+   */
+  public synchronized void unregisterMBean() throws JMException {
+    if (objectName != null) {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      objectName = null;
+    }
+  }
+
+  // recording; called by the simulator only
+
+  /**
+   * Start the timing of a step.
+   *
+   * @return the start time of the first stage
+   */
+  public long beginStep() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Record the end of a stage.
+   *
+   * @param stage      the stage
+   * @param startTime  the start time of the stage, as returned by
+   *                   {@link #beginStep()} or the previous call of this
+   *                   method
+   * @return the end time of the stage, which is the start time of the
+   *         next stage
+   */
+  public long endStage(Stage stage, long startTime) {
+    long now = System.nanoTime();
+    counts[stage.ordinal()] += now - startTime;
+    return now;
+  }
+
+  /**
+   * Record the delivery of a V2I message.
+   *
+   * @param msg  the message
+   */
+  public void countV2IMessage(V2IMessage msg) {
+    counts[V2I_MESSAGES]++;
+    if (msg.getMessageType() == V2IMessage.Type.REQUEST) {
+      counts[REQUESTS]++;
+    }
+  }
+
+  /**
+   * Record the delivery of an I2V message.
+   *
+   * @param msg  the message
+   */
+  public void countI2VMessage(I2VMessage msg) {
+    counts[I2V_MESSAGES]++;
+    if (msg.getMessageType() == I2VMessage.Type.CONFIRM) {
+      counts[CONFIRMS]++;
+    } else if (msg.getMessageType() == I2VMessage.Type.REJECT) {
+      counts[REJECTS]++;
+    }
+  }
+
+  /**
+   * Record queries made to the reservation grids.
+   *
+   * @param numOfQueries  the number of queries
+   */
+  public void countReservationQueries(long numOfQueries) {
+    counts[QUERIES] += numOfQueries;
+  }
+
+  /**
+   * Record the end of a step, publish the counts and write a CSV line if
+   * one is due.
+   *
+   * @param currentTime          the simulated time at the end of the step
+   * @param numOfActiveVehicles  the number of vehicles on the map
+   */
+  public synchronized void endStep(double currentTime,
+                                   int numOfActiveVehicles) {
+    counts[STEPS]++;
+    this.numOfActiveVehicles = numOfActiveVehicles;
+    if (isResetRequested) {
+      isResetRequested = false;
+      clearCounts();
+    }
+    if (currentTime < publishedSimulationTime) {
+      // the simulator has been reset or restored
+      nextCsvTime = currentTime + csvInterval;
+    }
+    System.arraycopy(counts, 0, publishedCounts, 0, NUM_OF_COUNTS);
+    publishedNumOfActiveVehicles = numOfActiveVehicles;
+    publishedSimulationTime = currentTime;
+    if (csvOutput != null
+        && currentTime >= nextCsvTime - SimConfig.TIME_STEP / 2) {
+      writeCsvLine(currentTime);
+      nextCsvTime += csvInterval;
+    }
+  }
+
+  // StepProfilerMBean
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String[] getStageNames() {
+    String[] names = new String[NUM_OF_STAGES];
+    for(Stage stage : Stage.values()) {
+      names[stage.ordinal()] = stage.getName();
+    }
+    return names;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized long[] getStageNanoTimes() {
+    long[] times = new long[NUM_OF_STAGES];
+    System.arraycopy(publishedCounts, 0, times, 0, NUM_OF_STAGES);
+    return times;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized double getMeanStepMicros() {
+    if (publishedCounts[STEPS] == 0) {
+      return 0.0;
+    }
+    long total = 0;
+    for(int i = 0; i < NUM_OF_STAGES; i++) {
+      total += publishedCounts[i];
+    }
+    return total / 1e3 / publishedCounts[STEPS];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized long getNumOfSteps() {
+    return publishedCounts[STEPS];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized long getNumOfV2IMessages() {
+    return publishedCounts[V2I_MESSAGES];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized long getNumOfI2VMessages() {
+    return publishedCounts[I2V_MESSAGES];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized long getNumOfRequests() {
+    return publishedCounts[REQUESTS];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized long getNumOfConfirms() {
+    return publishedCounts[CONFIRMS];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized long getNumOfRejects() {
+    return publishedCounts[REJECTS];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized long getNumOfReservationQueries() {
+    return publishedCounts[QUERIES];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized int getNumOfActiveVehicles() {
+    return publishedNumOfActiveVehicles;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized double getSimulationTime() {
+    return publishedSimulationTime;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset() {
+    isResetRequested = true;
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Clear the counts, including those of the last CSV line.
+   */
+  private void clearCounts() {
+    for(int i = 0; i < NUM_OF_COUNTS; i++) {
+      counts[i] = 0;
+      lastCsvCounts[i] = 0;
+    }
+  }
+
+  /**
+   * Write a CSV line with the changes of the counts since the last line.
+   *
+   * @param currentTime  the simulated time
+   */
+  private void writeCsvLine(double currentTime) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.US, "%.2f", currentTime));
+    sb.append(',').append(counts[STEPS] - lastCsvCounts[STEPS]);
+    sb.append(',').append(numOfActiveVehicles);
+    for(int i = 0; i < NUM_OF_STAGES; i++) {
+      sb.append(String.format(Locale.US, ",%.3f",
+                              (counts[i] - lastCsvCounts[i]) / 1e6));
+    }
+    for(int i = V2I_MESSAGES; i < NUM_OF_COUNTS; i++) {
+      sb.append(',').append(counts[i] - lastCsvCounts[i]);
+    }
+    csvOutput.println(sb.toString());
+    csvOutput.flush();
+    System.arraycopy(counts, 0, lastCsvCounts, 0, NUM_OF_COUNTS);
+  }
+}
@@ -0,0 +1,130 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim;
+
+/**
+ * The management interface of the {@link StepProfiler}.  All counts and
+ * times are totals since the profiler was created or last reset.
+ */
+public interface StepProfilerMBean {
+
+  /**
+   * Get the names of the stages of a step, in the order in which they run.
+   *
+   * @return the names of the stages
+   */
+  String[] getStageNames();
+
+  /**
+   * Get the total wall-clock time spent in each stage.
+   *
+   * @return the time of each stage in nanoseconds, in the same order as
+   *         {@link #getStageNames()}
+   */
+  long[] getStageNanoTimes();
+
+  /**
+   * Get the mean wall-clock time of a step.
+   *
+   * @return the mean time of a step in microseconds
+   */
+  double getMeanStepMicros();
+
+  /**
+   * Get the number of steps.
+   *
+   * @return the number of steps
+   */
+  long getNumOfSteps();
+
+  /**
+   * Get the number of V2I messages delivered to the intersection managers.
+   *
+   * @return the number of V2I messages delivered
+   */
+  long getNumOfV2IMessages();
+
+  /**
+   * Get the number of I2V messages delivered to the vehicles.
+   *
+   * @return the number of I2V messages delivered
+   */
+  long getNumOfI2VMessages();
+
+  /**
+   * Get the number of reservation requests delivered to the intersection
+   * managers.
+   *
+   * @return the number of requests
+   */
+  long getNumOfRequests();
+
+  /**
+   * Get the number of confirmations delivered to the vehicles.
+   *
+   * @return the number of confirmations
+   */
+  long getNumOfConfirms();
+
+  /**
+   * Get the number of rejections delivered to the vehicles.
+   *
+   * @return the number of rejections
+   */
+  long getNumOfRejects();
+
+  /**
+   * Get the number of queries made to the reservation grids.
+   *
+   * @return the number of reservation queries
+   */
+  long getNumOfReservationQueries();
+
+  /**
+   * Get the number of vehicles on the map at the end of the last step.
+   *
+   * @return the number of active vehicles
+   */
+  int getNumOfActiveVehicles();
+
+  /**
+   * Get the simulated time at the end of the last step.
+   *
+   * @return the simulated time in seconds
+   */
+  double getSimulationTime();
+
+  /**
+   * Clear all counts and times.  The counts are cleared at the end of the
+   * step in progress.
+   */
+  void reset();
+}
@@ -0,0 +1,207 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import aim4.driver.AutoDriver;
+import aim4.map.BasicMap;
+import aim4.vehicle.BasicAutoVehicle;
+import aim4.vehicle.VehicleSpec;
+import aim4.vehicle.VehicleStateStore;
+
+/**
+ * A pool of the vehicles of a simulator.  A vehicle that leaves the map is
+ * put back into the pool together with its driver, and the next vehicle of
+ * the same specification is made by resetting it rather than by building a
+ * new vehicle, a new driver and new coordinators.  Each simulator owns its
+ * own pool.  If the pool has a state store, the vehicles it builds keep
+ * their kinematic states in that store; otherwise each of them has a store
+ * of its own.
+ */
+public class VehiclePool {
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The map */
+  private BasicMap basicMap;
+  /** The store of the states of the vehicles; null if there is none */
+  private VehicleStateStore stateStore;
+  /** The free vehicles, grouped by their specifications */
+  private Map<VehicleSpec,List<BasicAutoVehicle>> freeVehicles;
+  /** The number of free vehicles */
+  private int numOfFreeVehicles;
+  /** The number of vehicles built by the pool */
+  private long numOfCreatedVehicles;
+  /** The number of vehicles obtained by resetting a free vehicle */
+  private long numOfReusedVehicles;
+
+  /////////////////////////////////
+  // CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create an empty pool.
+   *
+   * @param basicMap  the map on which the vehicles drive
+   */
+  public VehiclePool(BasicMap basicMap) {
+    this.basicMap = basicMap;
+    this.stateStore = null;
+    this.freeVehicles = new HashMap<VehicleSpec,List<BasicAutoVehicle>>();
+    this.numOfFreeVehicles = 0;
+    this.numOfCreatedVehicles = 0;
+    this.numOfReusedVehicles = 0;
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Set the store in which the vehicles built by the pool keep their
+   * states.  It must be set before the pool builds any vehicle.
+   *
+   * @param stateStore  the store; null if each vehicle has a store of its
+   *                    own
+   */
+  public void setStateStore(VehicleStateStore stateStore) {
+    if (numOfCreatedVehicles > 0) {
+      throw new IllegalStateException("The pool has built vehicles " +
+                                      "already.");
+    }
+    this.stateStore = stateStore;
+  }
+
+  /**
+   * Get the store in which the vehicles built by the pool keep their
+   * states.
+   *
+   * @return the store; null if each vehicle has a store of its own
+   */
+  public VehicleStateStore getStateStore() {
+    return stateStore;
+  }
+
+  /**
+   * Get a vehicle with a driver.  The vehicle is in the same state as a
+   * vehicle that is constructed with the given values, and its driver is in
+   * the same state as a new driver.
+   *
+   * @param spec            the vehicle's specification
+   * @param pos             the initial position of the Vehicle
+   * @param heading         the initial heading of the Vehicle
+   * @param steeringAngle   the initial steering angle of the Vehicle
+   * @param velocity        the initial velocity of the Vehicle
+   * @param targetVelocity  the initial target velocity
+   * @param acceleration    the initial acceleration of the Vehicle
+   * @param currentTime     the current time
+   * @return the vehicle
+   */
+  public BasicAutoVehicle obtain(VehicleSpec spec,
+                                 Point2D pos,
+                                 double heading,
+                                 double steeringAngle,
+                                 double velocity,
+                                 double targetVelocity,
+                                 double acceleration,
+                                 double currentTime) {
+    List<BasicAutoVehicle> vehicles = freeVehicles.get(spec);
+    if (vehicles != null && !vehicles.isEmpty()) {
+      BasicAutoVehicle vehicle = vehicles.remove(vehicles.size() - 1);
+      numOfFreeVehicles--;
+      vehicle.reset(pos, heading, steeringAngle, velocity, targetVelocity,
+                    acceleration, currentTime);
+      numOfReusedVehicles++;
+      return vehicle;
+    } else {
+      BasicAutoVehicle vehicle =
+        new BasicAutoVehicle(spec, pos, heading, steeringAngle, velocity,
+                             targetVelocity, acceleration, currentTime,
+                             stateStore);
+      vehicle.setDriver(new AutoDriver(vehicle, basicMap));
+      numOfCreatedVehicles++;
+      return vehicle;
+    }
+  }
+
+  /**
+   * Put a vehicle that is no longer on the map back into the pool.  Nothing
+   * else may hold on to the vehicle or its driver afterwards.
+   *
+   * @param vehicle  the vehicle
+   */
+  public void release(BasicAutoVehicle vehicle) {
+    vehicle.releaseState();
+    List<BasicAutoVehicle> vehicles = freeVehicles.get(vehicle.getSpec());
+    if (vehicles == null) {
+      vehicles = new ArrayList<BasicAutoVehicle>();
+      freeVehicles.put(vehicle.getSpec(), vehicles);
+    }
+    vehicles.add(vehicle);
+    numOfFreeVehicles++;
+  }
+
+  /**
+   * Get the number of vehicles in the pool.
+   *
+   * @return the number of vehicles in the pool
+   */
+  public int getNumOfFreeVehicles() {
+    return numOfFreeVehicles;
+  }
+
+  /**
+   * Get the number of vehicles built by the pool.  Each of them allocates a
+   * vehicle, its gauges, a driver and coordinators.
+   *
+   * @return the number of vehicles built by the pool
+   */
+  public long getNumOfCreatedVehicles() {
+    return numOfCreatedVehicles;
+  }
+
+  /**
+   * Get the number of vehicles obtained by resetting a vehicle in the pool.
+   *
+   * @return the number of reused vehicles
+   */
+  public long getNumOfReusedVehicles() {
+    return numOfReusedVehicles;
+  }
+
+}
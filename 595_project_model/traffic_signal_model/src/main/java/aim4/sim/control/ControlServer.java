@@ -0,0 +1,381 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim.control;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import aim4.config.TrafficSignalPlan;
+import aim4.sim.SimSnapshot;
+import aim4.sim.runner.CommandLineOptions;
+import aim4.sim.runner.SimSetupFactory;
+import aim4.sim.setup.TrafficSignalSimSetup;
+
+/**
+ * A localhost TCP server through which an external agent controls the
+ * simulator in lock step.  Every call is answered only after it has been
+ * carried out, so an agent decision costs one round trip instead of a
+ * file polling interval.  The signals of every intersection are set by the
+ * agent; they stay the same until they are set again.
+ * <p>
+ * The protocol is binary and big-endian.  A request starts with a one-byte
+ * opcode and a reply with a one-byte status, which is followed by a UTF
+ * error message (as written by <code>DataOutputStream.writeUTF</code>) if
+ * the status is {@link #STATUS_ERROR}.  The calls are:
+ * <pre>
+ *   opcode           request            reply (after the status)
+ *   OP_RESET (1)     long seed          int intersections, int columns
+ *   OP_STEP (2)      int steps          int time in steps,
+ *                                       int completed vehicles
+ *   OP_SET_PHASE (3) int intersection,  (nothing)
+ *                    UTF signals
+ *   OP_OBSERVE (4)   (nothing)          int intersections, int columns,
+ *                                       int[intersections * columns] queue
+ *                                       lengths, float[intersections *
+ *                                       columns] total wait times
+ *   OP_LATENCY (5)   (nothing)          for each opcode from 0 to 7: long
+ *                                       calls, double mean and double max
+ *                                       service time in microseconds
+ *   OP_SNAPSHOT (6)  (nothing)          int snapshot id
+ *   OP_RESTORE (7)   int snapshot id    int time in steps,
+ *                                       int completed vehicles
+ *   OP_CLOSE (0)     (nothing)          (the connection is closed)
+ * </pre>
+ * The signals, the numbering of the intersections and the observations
+ * are those of {@link ControlledSimulator}.  A snapshot can be restored any
+ * number of times until the next reset, which drops all snapshots.
+ * <p>
+ * The service time of every call, from reading its opcode to sending its
+ * reply, is recorded, and can be fetched with {@link #OP_LATENCY}.
+ */
+public class ControlServer {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The opcode that closes the connection */
+  public static final byte OP_CLOSE = 0;
+  /** The opcode that resets the simulator with a given random seed */
+  public static final byte OP_RESET = 1;
+  /** The opcode that advances the simulator by a number of steps */
+  public static final byte OP_STEP = 2;
+  /** The opcode that sets the signals of an intersection */
+  public static final byte OP_SET_PHASE = 3;
+  /** The opcode that fetches the per-lane observations */
+  public static final byte OP_OBSERVE = 4;
+  /** The opcode that fetches the service times of the calls */
+  public static final byte OP_LATENCY = 5;
+  /** The opcode that takes a snapshot of the simulator */
+  public static final byte OP_SNAPSHOT = 6;
+  /** The opcode that brings the simulator back to a snapshot */
+  public static final byte OP_RESTORE = 7;
+  /** The number of opcodes */
+  private static final int NUM_OF_OPCODES = 8;
+
+  /** The status of a successful call */
+  public static final byte STATUS_OK = 0;
+  /** The status of a failed call */
+  public static final byte STATUS_ERROR = 1;
+
+  /** The default port ({@value}). */
+  public static final int DEFAULT_PORT = 5599;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The simulator setup */
+  private TrafficSignalSimSetup simSetup;
+  /** The traffic signal plan that gives the layout and initial signals */
+  private TrafficSignalPlan plan;
+
+  /** The controlled simulator; null before the first reset */
+  private ControlledSimulator sim;
+  /** The snapshots taken since the last reset, indexed by their ids */
+  private List<SimSnapshot> snapshots = new ArrayList<SimSnapshot>();
+
+  /** The number of calls per opcode */
+  private long[] numOfCalls = new long[NUM_OF_OPCODES];
+  /** The total service time per opcode in nanoseconds */
+  private long[] totalServiceTime = new long[NUM_OF_OPCODES];
+  /** The maximum service time per opcode in nanoseconds */
+  private long[] maxServiceTime = new long[NUM_OF_OPCODES];
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a control server.  The simulator is built on the first reset.
+   *
+   * @param simSetup      the simulator setup
+   * @param planFileName  the traffic signal plan that gives the layout and
+   *                      the initial values of the signals
+   * @throws IOException if the plan cannot be read
+   */
+  public ControlServer(TrafficSignalSimSetup simSetup, String planFileName)
+    throws IOException {
+    this.simSetup = simSetup;
+    this.plan = TrafficSignalPlan.makeFromFile(planFileName);
+    simSetup.setTrafficSignalPlanFileName(planFileName);
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Start a new episode with a given random seed.  The simulator is built
+   * and the signals of all intersections are handed over to the agent on
+   * the first reset; the simulator is reset in place afterwards.
+   *
+   * @param seed  the random seed
+   * @throws IOException if the simulator cannot be built
+   */
+  public void reset(long seed) throws IOException {
+    snapshots.clear();
+    if (sim == null) {
+      sim = new ControlledSimulator(simSetup, plan, seed);
+    } else {
+      sim.reset(seed);
+    }
+  }
+
+  /**
+   * Get the controlled simulator.
+   *
+   * @return the controlled simulator; null before the first reset
+   */
+  public ControlledSimulator getControlledSimulator() {
+    return sim;
+  }
+
+  /**
+   * Accept connections on a localhost port and serve them one after
+   * another.  This method does not return unless an I/O error occurs.
+   *
+   * @param port  the port
+   * @throws IOException if the server socket fails
+   */
+  public void serve(int port) throws IOException {
+    ServerSocket serverSocket =
+      new ServerSocket(port, 1, InetAddress.getByName("127.0.0.1"));
+    try {
+      while(true) {
+        Socket socket = serverSocket.accept();
+        try {
+          socket.setTcpNoDelay(true);
+          serve(socket);
+        } catch(IOException e) {
+          System.err.printf("Connection failed: %s\n", e);
+        } finally {
+          socket.close();
+        }
+      }
+    } finally {
+      serverSocket.close();
+    }
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Serve the calls of a connection until it is closed.
+   *
+   * @param socket  the socket of the connection
+   * @throws IOException if the connection fails
+   */
+  private void serve(Socket socket) throws IOException {
+    DataInputStream in = new DataInputStream(
+      new BufferedInputStream(socket.getInputStream()));
+    DataOutputStream out = new DataOutputStream(
+      new BufferedOutputStream(socket.getOutputStream()));
+    while(true) {
+      int opcode;
+      try {
+        opcode = in.readByte();
+      } catch(EOFException e) {
+        return;
+      }
+      long startTime = System.nanoTime();
+      if (opcode == OP_CLOSE) {
+        return;
+      }
+      try {
+        handle(opcode, in, out);
+      } catch(RuntimeException e) {
+        out.writeByte(STATUS_ERROR);
+        out.writeUTF(String.valueOf(e.getMessage()));
+      }
+      out.flush();
+      if (opcode > 0 && opcode < NUM_OF_OPCODES) {
+        long serviceTime = System.nanoTime() - startTime;
+        numOfCalls[opcode]++;
+        totalServiceTime[opcode] += serviceTime;
+        maxServiceTime[opcode] = Math.max(maxServiceTime[opcode],
+                                          serviceTime);
+      }
+    }
+  }
+
+  /**
+   * Carry out a call and write its reply.
+   *
+   * @param opcode  the opcode of the call
+   * @param in      the input stream of the connection
+   * @param out     the output stream of the connection
+   * @throws IOException if the connection fails
+   */
+  private void handle(int opcode, DataInputStream in, DataOutputStream out)
+    throws IOException {
+    switch(opcode) {
+    case OP_RESET:
+      reset(in.readLong());
+      out.writeByte(STATUS_OK);
+      out.writeInt(sim.getNumOfIntersections());
+      out.writeInt(sim.getNumOfColumns());
+      break;
+    case OP_STEP:
+      int steps = in.readInt();
+      checkSimulator();
+      sim.step(steps);
+      out.writeByte(STATUS_OK);
+      out.writeInt((int)sim.getSimulator().getSimulationTime());
+      out.writeInt(sim.getSimulator().getNumCompletedVehicles());
+      break;
+    case OP_SET_PHASE:
+      int imIndex = in.readInt();
+      String signals = in.readUTF();
+      checkSimulator();
+      sim.setSignals(imIndex, signals);
+      out.writeByte(STATUS_OK);
+      break;
+    case OP_OBSERVE:
+      checkSimulator();
+      sim.observe();
+      out.writeByte(STATUS_OK);
+      out.writeInt(sim.getNumOfIntersections());
+      out.writeInt(sim.getNumOfColumns());
+      for(int queueLength : sim.getQueueLengths()) {
+        out.writeInt(queueLength);
+      }
+      for(float waitTime : sim.getWaitTimes()) {
+        out.writeFloat(waitTime);
+      }
+      break;
+    case OP_LATENCY:
+      out.writeByte(STATUS_OK);
+      for(int i = 0; i < NUM_OF_OPCODES; i++) {
+        out.writeLong(numOfCalls[i]);
+        out.writeDouble(numOfCalls[i] > 0 ?
+                        totalServiceTime[i] / 1e3 / numOfCalls[i] : 0.0);
+        out.writeDouble(maxServiceTime[i] / 1e3);
+      }
+      break;
+    case OP_SNAPSHOT:
+      checkSimulator();
+      snapshots.add(sim.snapshot());
+      out.writeByte(STATUS_OK);
+      out.writeInt(snapshots.size() - 1);
+      break;
+    case OP_RESTORE:
+      int snapshotId = in.readInt();
+      checkSimulator();
+      if (snapshotId < 0 || snapshotId >= snapshots.size()) {
+        throw new IllegalArgumentException("Invalid snapshot: " + snapshotId);
+      }
+      sim.restore(snapshots.get(snapshotId));
+      out.writeByte(STATUS_OK);
+      out.writeInt((int)sim.getSimulator().getSimulationTime());
+      out.writeInt(sim.getSimulator().getNumCompletedVehicles());
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown opcode: " + opcode);
+    }
+  }
+
+  /**
+   * Make sure that the simulator has been built.
+   */
+  private void checkSimulator() {
+    if (sim == null) {
+      throw new IllegalStateException("The simulator has not been reset.");
+    }
+  }
+
+  /////////////////////////////////
+  // THE MAIN FUNCTION
+  /////////////////////////////////
+
+  /**
+   * Run the control server.
+   *
+   * @param args  the command-line arguments; each option is a name followed
+   *              by a value.  Options: -columns, -rows, -lanes, -traffic,
+   *              -plan (the traffic signal plan that gives the initial
+   *              signals) and -port.
+   * @throws IOException if the server fails
+   */
+  public static void main(String[] args) throws IOException {
+    CommandLineOptions options =
+      CommandLineOptions.parseOrExit(args, "-columns", "-rows", "-lanes",
+                                     "-traffic", "-plan", "-port");
+    int columns = options.getInt("-columns", 1);
+    int rows = options.getInt("-rows", 1);
+    int lanesPerRoad =
+      options.getInt("-lanes", SimSetupFactory.DEFAULT_LANES_PER_ROAD);
+    double trafficLevel =
+      options.getDouble("-traffic", SimSetupFactory.DEFAULT_TRAFFIC_LEVEL);
+    String planFileName =
+      options.getString(
+        "-plan", TrafficSignalSimSetup.DEFAULT_TRAFFIC_SIGNAL_PLAN_FILE_NAME);
+    int port = options.getInt("-port", DEFAULT_PORT);
+
+    TrafficSignalSimSetup simSetup =
+      SimSetupFactory.makeSimSetup(columns, rows, lanesPerRoad, trafficLevel);
+    simSetup.setStateFileName(null);  // the agent observes through the API
+    ControlServer server = new ControlServer(simSetup, planFileName);
+    System.out.printf("Listening on 127.0.0.1:%d\n", port);
+    server.serve(port);
+  }
+}
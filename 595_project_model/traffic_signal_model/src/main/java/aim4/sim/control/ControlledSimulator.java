@@ -0,0 +1,297 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim.control;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import aim4.config.SimConfig;
+import aim4.config.TrafficSignalPlan;
+import aim4.driver.AutoDriver;
+import aim4.im.IntersectionManager;
+import aim4.im.v2i.RequestHandler;
+import aim4.im.v2i.RequestHandler.ExternalSignalController;
+import aim4.im.v2i.V2IManager;
+import aim4.sim.SimContext;
+import aim4.sim.SimSnapshot;
+import aim4.sim.Simulator;
+import aim4.sim.setup.SimSetup;
+import aim4.vehicle.AutoVehicleSimView;
+import aim4.vehicle.VehicleSimView;
+
+/**
+ * A simulator whose traffic signals are set by an external agent, together
+ * with the per-lane observations of the agent.  The signals of every
+ * intersection are given as a string of 'G', 'Y' and 'R' in the same format
+ * as an entry of a {@link TrafficSignalPlan}; they stay the same until they
+ * are set again.  The intersections are numbered in the order of
+ * {@link aim4.map.BasicMap#getIntersectionManagers()}, and the observations
+ * use the columns of the plan.
+ * <p>
+ * A vehicle is counted in the queue of a lane when it is on its way to the
+ * intersection and slower than {@value #QUEUE_VELOCITY_THRESHOLD} m/s; the
+ * wait time of a lane is the sum of the wait times of all vehicles on their
+ * way to the intersection on the lane.
+ */
+public class ControlledSimulator {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /**
+   * The velocity below which a vehicle is counted in a queue ({@value}
+   * m/s).
+   */
+  public static final double QUEUE_VELOCITY_THRESHOLD = 0.1;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The simulator */
+  private Simulator sim;
+  /** The intersection managers */
+  private List<IntersectionManager> ims;
+  /** The mapping from intersection managers to their indices */
+  private Map<IntersectionManager,Integer> imToIndex;
+  /** The signal controllers of the intersections */
+  private List<ExternalSignalController> controllers;
+  /** The mappings from lane IDs to columns of the intersections */
+  private List<int[]> laneIdToColumns;
+  /** The number of columns per intersection */
+  private int numOfColumns;
+
+  /** The queue lengths of the last observation */
+  private int[] queueLengths;
+  /** The total wait times of the last observation */
+  private float[] waitTimes;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Build a new simulator and hand the signals of all intersections over to
+   * the agent.
+   *
+   * @param simSetup  the simulator setup
+   * @param plan      the traffic signal plan that gives the layout and the
+   *                  initial values of the signals
+   * @param seed      the random seed
+   * @throws IOException if the simulator cannot be built
+   */
+  public ControlledSimulator(SimSetup simSetup, TrafficSignalPlan plan,
+                             long seed) throws IOException {
+    sim = simSetup.getSimulator(new SimContext(seed));
+    ims = sim.getMap().getIntersectionManagers();
+    imToIndex = new IdentityHashMap<IntersectionManager,Integer>();
+    controllers = new ArrayList<ExternalSignalController>(ims.size());
+    laneIdToColumns = new ArrayList<int[]>(ims.size());
+    for(IntersectionManager im : ims) {
+      ExternalSignalController controller =
+        new ExternalSignalController(plan, im.getIntersection());
+      getRequestHandler(im).setSignalController(controller);
+      imToIndex.put(im, controllers.size());
+      controllers.add(controller);
+      laneIdToColumns.add(
+        RequestHandler.makeLaneIdToColumn(plan, im.getIntersection()));
+    }
+    numOfColumns = plan.getLanesPerRoad() *
+                   TrafficSignalPlan.ROAD_NAMES.length;
+    queueLengths = new int[ims.size() * numOfColumns];
+    waitTimes = new float[ims.size() * numOfColumns];
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the simulator.
+   *
+   * @return the simulator
+   */
+  public Simulator getSimulator() {
+    return sim;
+  }
+
+  /**
+   * Get the number of intersections.
+   *
+   * @return the number of intersections
+   */
+  public int getNumOfIntersections() {
+    return ims.size();
+  }
+
+  /**
+   * Get the number of columns per intersection.
+   *
+   * @return the number of columns per intersection
+   */
+  public int getNumOfColumns() {
+    return numOfColumns;
+  }
+
+  /**
+   * Start a new episode with a new random seed.  The simulator is reset in
+   * place and the signals go back to their initial values in the plan.
+   *
+   * @param seed  the random seed
+   */
+  public void reset(long seed) {
+    sim.reset(seed);
+  }
+
+  /**
+   * Take a snapshot of the simulator, including the signals set by the
+   * agent.
+   *
+   * @return the snapshot
+   */
+  public SimSnapshot snapshot() {
+    return sim.snapshot();
+  }
+
+  /**
+   * Bring the simulator and the signals back to the state of a snapshot.
+   *
+   * @param snapshot  a snapshot taken by {@link #snapshot()}
+   */
+  public void restore(SimSnapshot snapshot) {
+    sim.restore(snapshot);
+    // the signal controllers are restored as new copies
+    for(int i = 0; i < ims.size(); i++) {
+      controllers.set(i, (ExternalSignalController)
+                         getRequestHandler(ims.get(i)).getSignalController());
+    }
+  }
+
+  /**
+   * Advance the simulator.
+   *
+   * @param steps  the number of steps
+   * @throws IOException if the simulator fails to write its output
+   */
+  public void step(int steps) throws IOException {
+    for(int i = 0; i < steps; i++) {
+      sim.step(SimConfig.TIME_STEP);
+    }
+  }
+
+  /**
+   * Set the signals of an intersection.
+   *
+   * @param imIndex  the index of the intersection
+   * @param signals  the signals as a string of 'G', 'Y' and 'R'
+   */
+  public void setSignals(int imIndex, String signals) {
+    if (imIndex < 0 || imIndex >= controllers.size()) {
+      throw new IllegalArgumentException("Invalid intersection: " + imIndex);
+    }
+    controllers.get(imIndex).setSignals(signals);
+  }
+
+  /**
+   * Compute the queue lengths and the total wait times of all lanes.  The
+   * results are available through {@link #getQueueLengths()} and
+   * {@link #getWaitTimes()}.
+   */
+  public void observe() {
+    for(int i = 0; i < queueLengths.length; i++) {
+      queueLengths[i] = 0;
+      waitTimes[i] = 0.0f;
+    }
+    for(VehicleSimView vehicle : sim.getActiveVehicles()) {
+      if (!(vehicle instanceof AutoVehicleSimView)) {
+        continue;
+      }
+      AutoDriver driver = ((AutoVehicleSimView)vehicle).getDriver();
+      if (driver.getCurrentIM() != null && driver.inCurrentIntersection()) {
+        continue;
+      }
+      Integer imIndex = imToIndex.get(driver.nextIntersectionManager());
+      if (imIndex == null) {
+        continue;
+      }
+      int[] laneIdToColumn = laneIdToColumns.get(imIndex);
+      int laneId = driver.getCurrentLane().getId();
+      int column = (laneId < laneIdToColumn.length) ? laneIdToColumn[laneId]
+                                                    : -1;
+      if (column < 0) {
+        continue;
+      }
+      int i = imIndex * numOfColumns + column;
+      if (vehicle.getVelocity() < QUEUE_VELOCITY_THRESHOLD) {
+        queueLengths[i]++;
+      }
+      waitTimes[i] += (float)vehicle.getWaitTime();
+    }
+  }
+
+  /**
+   * Get the queue lengths of the last observation, indexed by intersection
+   * and column.  The array is reused by the next observation.
+   *
+   * @return the queue lengths
+   */
+  public int[] getQueueLengths() {
+    return queueLengths;
+  }
+
+  /**
+   * Get the total wait times of the last observation, indexed by
+   * intersection and column.  The array is reused by the next observation.
+   *
+   * @return the total wait times
+   */
+  public float[] getWaitTimes() {
+    return waitTimes;
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the request handler of an intersection manager.
+   *
+   * @param im  the intersection manager
+   * @return the request handler
+   */
+  private static RequestHandler getRequestHandler(IntersectionManager im) {
+    return ((V2IManager)im).getRequestHandler();
+  }
+}
@@ -0,0 +1,584 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim.control;
+
+import java.io.IOException;
+import java.util.Random;
+
+import aim4.config.SimConfig;
+import aim4.config.TrafficSignalPlan;
+import aim4.sim.StageExecutor;
+import aim4.sim.runner.CommandLineOptions;
+import aim4.sim.runner.SimSetupFactory;
+import aim4.sim.setup.TrafficSignalSimSetup;
+
+/**
+ * A batch of independent simulators whose traffic signals are chosen by a
+ * reinforcement learning agent.  Every call to {@link #step(int[])} takes
+ * one action per intersection of every environment, advances all
+ * environments concurrently, and fills one packed array of observations and
+ * one of rewards.
+ * <p>
+ * An action is an index into a list of green phases, each a signal string
+ * in the format of a {@link TrafficSignalPlan} entry.  As in the SUMO
+ * training loop, an intersection whose action differs from its previous one
+ * first shows the yellow version of its previous phase for the yellow time,
+ * and every action then holds its phase for the green time.  The
+ * observation of an environment is the queue lengths of all lanes followed
+ * by their total wait times, as computed by {@link ControlledSimulator},
+ * and its reward is the decrease of the total wait time since the previous
+ * action.  An environment whose episode is over is marked as done and
+ * reset with a new seed; its observation is then the first observation of
+ * the new episode.
+ * <p>
+ * The seeds of the episodes of an environment depend only on the seed given
+ * to {@link #reset(long)} and the index of the environment, so a batch of
+ * runs gives the same results for any number of threads.
+ */
+public class VectorSimEnv {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /**
+   * The default green phases, one per action, for three lanes per road:
+   * the through and left lanes of each road in turn.
+   */
+  public static final String[] DEFAULT_PHASES = {
+    "RRRGGGRRRRRR",
+    "GGGRRRRRRRRR",
+    "RRRRRRRRRGGG",
+    "RRRRRRGGGRRR",
+  };
+
+  /** The default green time of an action in seconds ({@value}). */
+  public static final double DEFAULT_GREEN_TIME = 10.0;
+
+  /** The default yellow time between two actions in seconds ({@value}). */
+  public static final double DEFAULT_YELLOW_TIME = 4.0;
+
+  /** The default length of an episode in simulated seconds ({@value}). */
+  public static final double DEFAULT_EPISODE_TIME = 5400.0;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The simulator setup shared by all environments */
+  private TrafficSignalSimSetup simSetup;
+  /** The traffic signal plan that gives the layout and initial signals */
+  private TrafficSignalPlan plan;
+  /** The number of environments */
+  private int numOfEnvs;
+  /** The executor that steps the environments */
+  private StageExecutor executor;
+
+  /** The green phase of each action */
+  private String[] phases;
+  /** The yellow phase that follows each action */
+  private String[] yellowPhases;
+  /** The number of steps of the green phase of an action */
+  private int greenSteps;
+  /** The number of steps of the yellow phase between two actions */
+  private int yellowSteps;
+  /** The number of steps of an episode */
+  private int episodeSteps;
+
+  /** The environments */
+  private ControlledSimulator[] envs;
+  /** The random number generators of the seeds of the environments */
+  private Random[] seedGenerators;
+  /** The number of intersections per environment */
+  private int numOfIntersections;
+  /** The size of the observation of an environment */
+  private int observationSize;
+  /** The current action of every intersection; -1 if none */
+  private int[] currentActions;
+  /** The total wait time of every environment at its last observation */
+  private double[] lastTotalWaitTimes;
+  /** The number of simulator steps taken by every environment */
+  private long[] numOfSimSteps;
+  /** The failure of each environment in the current call; null if none */
+  private IOException[] failures;
+
+  /** The observations of all environments */
+  private float[] observations;
+  /** The rewards of all environments */
+  private float[] rewards;
+  /** Whether the episode of each environment ended in the last step */
+  private boolean[] dones;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a batch of environments.  The simulators are built by
+   * {@link #reset(long)}.
+   *
+   * @param simSetup      the simulator setup of every environment
+   * @param planFileName  the traffic signal plan that gives the layout and
+   *                      the initial values of the signals
+   * @param numOfEnvs     the number of environments
+   * @param parallelism   the number of threads that step the environments
+   * @throws IOException if the plan cannot be read
+   */
+  public VectorSimEnv(TrafficSignalSimSetup simSetup, String planFileName,
+                      int numOfEnvs, int parallelism) throws IOException {
+    if (numOfEnvs < 1) {
+      throw new IllegalArgumentException("Invalid number of environments: " +
+                                         numOfEnvs);
+    }
+    this.simSetup = simSetup;
+    this.plan = TrafficSignalPlan.makeFromFile(planFileName);
+    simSetup.setTrafficSignalPlanFileName(planFileName);
+    // the environments would overwrite each other's ring file
+    simSetup.setStateFileName(null);
+    this.numOfEnvs = numOfEnvs;
+    this.executor = new StageExecutor(parallelism);
+    setPhases(DEFAULT_PHASES);
+    setGreenTime(DEFAULT_GREEN_TIME);
+    setYellowTime(DEFAULT_YELLOW_TIME);
+    setEpisodeTime(DEFAULT_EPISODE_TIME);
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  // settings
+
+  /**
+   * Set the green phases of the actions.
+   *
+   * @param phases  the green phase of each action as a signal string
+   */
+  public void setPhases(String[] phases) {
+    this.phases = phases.clone();
+    this.yellowPhases = new String[phases.length];
+    for(int i = 0; i < phases.length; i++) {
+      yellowPhases[i] = phases[i].replace('G', 'Y');
+    }
+  }
+
+  /**
+   * Set the green time of an action.
+   *
+   * @param greenTime  the green time in seconds
+   */
+  public void setGreenTime(double greenTime) {
+    this.greenSteps = (int)Math.round(greenTime * SimConfig.CYCLES_PER_SECOND);
+  }
+
+  /**
+   * Set the yellow time between two different actions.
+   *
+   * @param yellowTime  the yellow time in seconds
+   */
+  public void setYellowTime(double yellowTime) {
+    this.yellowSteps =
+      (int)Math.round(yellowTime * SimConfig.CYCLES_PER_SECOND);
+  }
+
+  /**
+   * Set the length of an episode.
+   *
+   * @param episodeTime  the length of an episode in simulated seconds
+   */
+  public void setEpisodeTime(double episodeTime) {
+    this.episodeSteps =
+      (int)Math.round(episodeTime * SimConfig.CYCLES_PER_SECOND);
+  }
+
+  // information retrieval
+
+  /**
+   * Get the number of environments.
+   *
+   * @return the number of environments
+   */
+  public int getNumOfEnvs() {
+    return numOfEnvs;
+  }
+
+  /**
+   * Get the number of intersections per environment.
+   *
+   * @return the number of intersections per environment
+   */
+  public int getNumOfIntersections() {
+    return numOfIntersections;
+  }
+
+  /**
+   * Get the number of actions of an intersection.
+   *
+   * @return the number of actions
+   */
+  public int getNumOfActions() {
+    return phases.length;
+  }
+
+  /**
+   * Get the size of the observation of an environment.
+   *
+   * @return the size of the observation of an environment
+   */
+  public int getObservationSize() {
+    return observationSize;
+  }
+
+  /**
+   * Get the environments.
+   *
+   * @return the environments
+   */
+  public ControlledSimulator[] getEnvs() {
+    return envs;
+  }
+
+  /**
+   * Get the observations of all environments, one after another.  The
+   * array is reused by the next call.
+   *
+   * @return the observations
+   */
+  public float[] getObservations() {
+    return observations;
+  }
+
+  /**
+   * Get the rewards of the last step, one per environment.  The array is
+   * reused by the next call.
+   *
+   * @return the rewards
+   */
+  public float[] getRewards() {
+    return rewards;
+  }
+
+  /**
+   * Get whether the episode of each environment ended in the last step.
+   * The array is reused by the next call.
+   *
+   * @return whether the episode of each environment ended
+   */
+  public boolean[] getDones() {
+    return dones;
+  }
+
+  /**
+   * Get the total number of simulator steps taken by all environments since
+   * the last reset.
+   *
+   * @return the total number of simulator steps
+   */
+  public long getNumOfSimSteps() {
+    long total = 0;
+    for(long n : numOfSimSteps) {
+      total += n;
+    }
+    return total;
+  }
+
+  // control
+
+  /**
+   * Start a new episode in all environments.  The simulators are built on
+   * the first reset and reset in place afterwards.
+   *
+   * @param seed  the random seed of the batch
+   * @throws IOException if a simulator cannot be built
+   */
+  public void reset(long seed) throws IOException {
+    Random random = new Random(seed);
+    if (envs == null) {
+      envs = new ControlledSimulator[numOfEnvs];
+    }
+    seedGenerators = new Random[numOfEnvs];
+    for(int e = 0; e < numOfEnvs; e++) {
+      seedGenerators[e] = new Random(random.nextLong());
+    }
+    lastTotalWaitTimes = new double[numOfEnvs];
+    numOfSimSteps = new long[numOfEnvs];
+    failures = new IOException[numOfEnvs];
+    rewards = new float[numOfEnvs];
+    dones = new boolean[numOfEnvs];
+
+    // the first environment gives the sizes of the arrays
+    resetEnv(0);
+    numOfIntersections = envs[0].getNumOfIntersections();
+    observationSize = 2 * numOfIntersections * envs[0].getNumOfColumns();
+    currentActions = new int[numOfEnvs * numOfIntersections];
+    observations = new float[numOfEnvs * observationSize];
+    writeObservation(0);
+
+    executor.run(numOfEnvs - 1, new StageExecutor.Body() {
+      @Override
+      public void run(int chunk, int from, int to) {
+        for(int e = from; e < to; e++) {
+          try {
+            resetEnv(e + 1);
+            writeObservation(e + 1);
+          } catch(IOException ex) {
+            failures[e + 1] = ex;
+          }
+        }
+      }
+    });
+    throwFailure();
+  }
+
+  /**
+   * Take one action at every intersection of every environment and advance
+   * all environments until the end of the green phase of the actions.
+   *
+   * @param actions  the actions, indexed by environment and intersection
+   * @throws IOException if a simulator fails
+   */
+  public void step(final int[] actions) throws IOException {
+    if (envs == null) {
+      throw new IllegalStateException("The environments have not been reset.");
+    }
+    if (actions.length != currentActions.length) {
+      throw new IllegalArgumentException("Expected " + currentActions.length +
+                                         " actions but got " +
+                                         actions.length);
+    }
+    for(int action : actions) {
+      if (action < 0 || action >= phases.length) {
+        throw new IllegalArgumentException("Invalid action: " + action);
+      }
+    }
+    executor.run(numOfEnvs, new StageExecutor.Body() {
+      @Override
+      public void run(int chunk, int from, int to) {
+        for(int e = from; e < to; e++) {
+          try {
+            stepEnv(e, actions);
+          } catch(IOException ex) {
+            failures[e] = ex;
+          }
+        }
+      }
+    });
+    throwFailure();
+  }
+
+  /**
+   * Shut down the threads that step the environments.
+   */
+  public void close() {
+    executor.shutdown();
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Start a new episode in an environment with the next seed of the
+   * environment.
+   *
+   * @param e  the index of the environment
+   * @throws IOException if the simulator cannot be built
+   */
+  private void resetEnv(int e) throws IOException {
+    long seed = seedGenerators[e].nextLong();
+    if (envs[e] == null) {
+      envs[e] = new ControlledSimulator(simSetup, plan, seed);
+    } else {
+      envs[e].reset(seed);
+    }
+    for(int i = e * numOfIntersections;
+        i < (e + 1) * numOfIntersections; i++) {
+      currentActions[i] = -1;
+    }
+    lastTotalWaitTimes[e] = 0.0;
+  }
+
+  /**
+   * Take the actions of an environment and advance it.
+   *
+   * @param e        the index of the environment
+   * @param actions  the actions of all environments
+   * @throws IOException if the simulator fails
+   */
+  private void stepEnv(int e, int[] actions) throws IOException {
+    ControlledSimulator env = envs[e];
+    int offset = e * numOfIntersections;
+    boolean isChanged = false;
+    for(int im = 0; im < numOfIntersections; im++) {
+      int previous = currentActions[offset + im];
+      if (previous >= 0 && previous != actions[offset + im]) {
+        env.setSignals(im, yellowPhases[previous]);
+        isChanged = true;
+      }
+    }
+    if (isChanged) {
+      env.step(yellowSteps);
+      numOfSimSteps[e] += yellowSteps;
+    }
+    for(int im = 0; im < numOfIntersections; im++) {
+      int action = actions[offset + im];
+      if (currentActions[offset + im] != action) {
+        env.setSignals(im, phases[action]);
+        currentActions[offset + im] = action;
+      }
+    }
+    env.step(greenSteps);
+    numOfSimSteps[e] += greenSteps;
+
+    double totalWaitTime = writeObservation(e);
+    rewards[e] = (float)(lastTotalWaitTimes[e] - totalWaitTime);
+    lastTotalWaitTimes[e] = totalWaitTime;
+    dones[e] = env.getSimulator().getSimulationTime() >= episodeSteps;
+    if (dones[e]) {
+      resetEnv(e);
+      writeObservation(e);
+    }
+  }
+
+  /**
+   * Observe an environment and copy its observation to the packed array.
+   *
+   * @param e  the index of the environment
+   * @return the total wait time of the environment
+   */
+  private double writeObservation(int e) {
+    ControlledSimulator env = envs[e];
+    env.observe();
+    int[] queueLengths = env.getQueueLengths();
+    float[] waitTimes = env.getWaitTimes();
+    int offset = e * observationSize;
+    double totalWaitTime = 0.0;
+    for(int i = 0; i < queueLengths.length; i++) {
+      observations[offset + i] = queueLengths[i];
+      observations[offset + queueLengths.length + i] = waitTimes[i];
+      totalWaitTime += waitTimes[i];
+    }
+    return totalWaitTime;
+  }
+
+  /**
+   * Rethrow the first failure of the environments in the last call, if any.
+   *
+   * @throws IOException the first failure
+   */
+  private void throwFailure() throws IOException {
+    for(int e = 0; e < numOfEnvs; e++) {
+      if (failures[e] != null) {
+        IOException failure = failures[e];
+        for(int i = 0; i < numOfEnvs; i++) {
+          failures[i] = null;
+        }
+        throw failure;
+      }
+    }
+  }
+
+  /////////////////////////////////
+  // THE MAIN FUNCTION
+  /////////////////////////////////
+
+  /**
+   * Step a batch of environments with random actions and report the
+   * throughput.
+   *
+   * @param args  the command-line arguments; each option is a name followed
+   *              by a value.  Options: -envs, -threads, -columns, -rows,
+   *              -traffic, -plan, -steps (the number of batched steps),
+   *              -green, -yellow, -episode (in seconds) and -seed.
+   * @throws IOException if a simulator fails
+   */
+  public static void main(String[] args) throws IOException {
+    CommandLineOptions options =
+      CommandLineOptions.parseOrExit(args, "-envs", "-threads", "-columns",
+                                     "-rows", "-traffic", "-plan", "-steps",
+                                     "-green", "-yellow", "-episode",
+                                     "-seed");
+    int numOfEnvs =
+      options.getInt("-envs", Runtime.getRuntime().availableProcessors());
+    int threads = options.getInt("-threads", numOfEnvs);
+    int columns = options.getInt("-columns", 1);
+    int rows = options.getInt("-rows", 1);
+    double trafficLevel =
+      options.getDouble("-traffic", SimSetupFactory.DEFAULT_TRAFFIC_LEVEL);
+    String planFileName =
+      options.getString(
+        "-plan", TrafficSignalSimSetup.DEFAULT_TRAFFIC_SIGNAL_PLAN_FILE_NAME);
+    int steps = options.getInt("-steps", 100);
+    double greenTime = options.getDouble("-green", DEFAULT_GREEN_TIME);
+    double yellowTime = options.getDouble("-yellow", DEFAULT_YELLOW_TIME);
+    double episodeTime = options.getDouble("-episode", DEFAULT_EPISODE_TIME);
+    long seed = options.getLong("-seed", 1L);
+
+    TrafficSignalSimSetup simSetup =
+      SimSetupFactory.makeSimSetup(columns, rows,
+                                   SimSetupFactory.DEFAULT_LANES_PER_ROAD,
+                                   trafficLevel);
+    VectorSimEnv env =
+      new VectorSimEnv(simSetup, planFileName, numOfEnvs, threads);
+    env.setGreenTime(greenTime);
+    env.setYellowTime(yellowTime);
+    env.setEpisodeTime(episodeTime);
+    env.reset(seed);
+
+    Random random = new Random(seed);
+    int[] actions = new int[numOfEnvs * env.getNumOfIntersections()];
+    int numOfDones = 0;
+    double totalReward = 0.0;
+    long startTime = System.nanoTime();
+    for(int i = 0; i < steps; i++) {
+      for(int j = 0; j < actions.length; j++) {
+        actions[j] = random.nextInt(env.getNumOfActions());
+      }
+      env.step(actions);
+      for(int e = 0; e < numOfEnvs; e++) {
+        totalReward += env.getRewards()[e];
+        if (env.getDones()[e]) {
+          numOfDones++;
+        }
+      }
+    }
+    double elapsedTime = (System.nanoTime() - startTime) / 1e9;
+    env.close();
+
+    System.out.printf("environments: %d, threads: %d\n", numOfEnvs, threads);
+    System.out.printf("batched steps: %d in %.3f s (%.1f per second)\n",
+                      steps, elapsedTime, steps / elapsedTime);
+    System.out.printf("simulator steps per second: %.1f\n",
+                      env.getNumOfSimSteps() / elapsedTime);
+    System.out.printf("finished episodes: %d, total reward: %.1f\n",
+                      numOfDones, totalReward);
+  }
+}
@@ -0,0 +1,214 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim.runner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The options on the command line of a runner.  Each option is a name
+ * followed by a value, e.g. "-traffic 0.28".  The value of a list option is
+ * comma-separated, e.g. "-sizes 5,10".  An option given more than once
+ * takes its last value.
+ */
+public class CommandLineOptions {
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The values of the options on the command line, by name */
+  private Map<String,String> values;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Parse the command-line arguments.
+   *
+   * @param args   the command-line arguments
+   * @param names  the names of the options the runner accepts
+   * @throws IllegalArgumentException if an option is unknown or has no
+   *                                  value
+   */
+  public CommandLineOptions(String[] args, String... names) {
+    Set<String> knownNames = new HashSet<String>(Arrays.asList(names));
+    values = new HashMap<String,String>();
+    for(int i = 0; i < args.length; i += 2) {
+      String name = args[i];
+      if (!knownNames.contains(name)) {
+        throw new IllegalArgumentException("Unknown option: " + name);
+      }
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("Missing value of option: " +
+                                           name);
+      }
+      values.put(name, args[i + 1]);
+    }
+  }
+
+  /**
+   * Parse the command-line arguments of a main function.  If they are
+   * invalid, print the error and exit.
+   *
+   * @param args   the command-line arguments
+   * @param names  the names of the options the runner accepts
+   * @return the options
+   */
+  public static CommandLineOptions parseOrExit(String[] args,
+                                               String... names) {
+    try {
+      return new CommandLineOptions(args, names);
+    } catch(IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+      return null;  // never reached
+    }
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Whether an option is on the command line.
+   *
+   * @param name  the name of the option
+   * @return whether the option is on the command line
+   */
+  public boolean has(String name) {
+    return values.containsKey(name);
+  }
+
+  /**
+   * Get the value of an option.
+   *
+   * @param name          the name of the option
+   * @param defaultValue  the value if the option is not on the command line
+   * @return the value of the option
+   */
+  public String getString(String name, String defaultValue) {
+    String value = values.get(name);
+    return (value != null) ? value : defaultValue;
+  }
+
+  /**
+   * Get the value of an integer option.
+   *
+   * @param name          the name of the option
+   * @param defaultValue  the value if the option is not on the command line
+   * @return the value of the option
+   */
+  public int getInt(String name, int defaultValue) {
+    String value = values.get(name);
+    return (value != null) ? Integer.parseInt(value) : defaultValue;
+  }
+
+  /**
+   * Get the value of a long integer option.
+   *
+   * @param name          the name of the option
+   * @param defaultValue  the value if the option is not on the command line
+   * @return the value of the option
+   */
+  public long getLong(String name, long defaultValue) {
+    String value = values.get(name);
+    return (value != null) ? Long.parseLong(value) : defaultValue;
+  }
+
+  /**
+   * Get the value of a double option.
+   *
+   * @param name          the name of the option
+   * @param defaultValue  the value if the option is not on the command line
+   * @return the value of the option
+   */
+  public double getDouble(String name, double defaultValue) {
+    String value = values.get(name);
+    return (value != null) ? Double.parseDouble(value) : defaultValue;
+  }
+
+  /**
+   * Get the value of a list option.
+   *
+   * @param name          the name of the option
+   * @param defaultValue  the value if the option is not on the command line
+   * @return the value of the option
+   */
+  public String[] getStringList(String name, String[] defaultValue) {
+    String value = values.get(name);
+    return (value != null) ? value.split(",") : defaultValue;
+  }
+
+  /**
+   * Get the value of an integer list option.
+   *
+   * @param name          the name of the option
+   * @param defaultValue  the value if the option is not on the command line
+   * @return the value of the option
+   */
+  public int[] getIntList(String name, int[] defaultValue) {
+    String value = values.get(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    String[] tokens = value.split(",");
+    int[] ints = new int[tokens.length];
+    for(int i = 0; i < tokens.length; i++) {
+      ints[i] = Integer.parseInt(tokens[i].trim());
+    }
+    return ints;
+  }
+
+  /**
+   * Get the value of a double list option.
+   *
+   * @param name          the name of the option
+   * @param defaultValue  the value if the option is not on the command line
+   * @return the value of the option
+   */
+  public double[] getDoubleList(String name, double[] defaultValue) {
+    String value = values.get(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    String[] tokens = value.split(",");
+    double[] doubles = new double[tokens.length];
+    for(int i = 0; i < tokens.length; i++) {
+      doubles[i] = Double.parseDouble(tokens[i].trim());
+    }
+    return doubles;
+  }
+}
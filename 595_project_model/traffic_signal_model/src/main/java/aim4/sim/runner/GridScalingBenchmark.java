@@ -0,0 +1,169 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim.runner;
+
+import java.io.IOException;
+
+import aim4.sim.setup.TrafficSignalSimSetup;
+
+/**
+ * A benchmark that measures how the parallel stages of the simulator scale
+ * with the number of threads on large grid maps.  For every grid size and
+ * every number of threads, a fresh simulator with the same random seed is
+ * run headless, and the steps per second and the speedup over one thread
+ * are reported.
+ */
+public class GridScalingBenchmark {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The default grid sizes (columns and rows) */
+  private static final int[] DEFAULT_GRID_SIZES = { 5, 10 };
+  /** The default length of each run in simulated seconds ({@value}). */
+  private static final double DEFAULT_SIMULATION_TIME = 120.0;
+  /**
+   * The default length of the untimed warm-up run before the runs of each
+   * grid size, in simulated seconds ({@value}).
+   */
+  private static final double DEFAULT_WARMUP_TIME = 20.0;
+  /** The default random seed ({@value}). */
+  private static final long DEFAULT_SEED = 1;
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the default numbers of threads: the powers of two up to the number
+   * of available processors, and the number of processors itself.
+   *
+   * @return the default numbers of threads
+   */
+  private static int[] defaultThreadCounts() {
+    int cpus = Runtime.getRuntime().availableProcessors();
+    int n = 0;
+    for(int t = 1; t < cpus; t *= 2) {
+      n++;
+    }
+    int[] counts = new int[n + 1];
+    for(int i = 0, t = 1; i < n; i++, t *= 2) {
+      counts[i] = t;
+    }
+    counts[n] = cpus;
+    return counts;
+  }
+
+  /**
+   * Run a fresh simulator on a grid map.
+   *
+   * @param size          the number of columns and rows of the grid
+   * @param threads       the number of threads
+   * @param trafficLevel  the traffic level
+   * @param planFileName  the traffic signal plan file
+   * @param time          the length of the run in simulated seconds
+   * @param seed          the random seed
+   * @return the runner after the run
+   * @throws IOException if the simulator fails to write its output
+   */
+  private static HeadlessRunner runGrid(int size, int threads,
+                                        double trafficLevel,
+                                        String planFileName,
+                                        double time,
+                                        long seed) throws IOException {
+    TrafficSignalSimSetup simSetup =
+      SimSetupFactory.makeSimSetup(size, size,
+                                   SimSetupFactory.DEFAULT_LANES_PER_ROAD,
+                                   trafficLevel);
+    simSetup.setTrafficSignalPlanFileName(planFileName);
+    // time the simulation only, not the export of the states
+    simSetup.setStateFileName(null);
+    HeadlessRunner runner = new HeadlessRunner(simSetup, time);
+    runner.setParallelism(threads);
+    // every run sees the same spawn sequence
+    runner.setSeed(seed);
+    runner.run().close();  // release the worker threads
+    return runner;
+  }
+
+  /////////////////////////////////
+  // THE MAIN FUNCTION
+  /////////////////////////////////
+
+  /**
+   * Run the benchmark.
+   *
+   * @param args  the command-line arguments; each option is a name followed
+   *              by a value.  Options: -sizes (e.g. "5,10"), -threads (e.g.
+   *              "1,2,4,8"), -traffic, -plan (the traffic signal plan file),
+   *              -time (in simulated seconds per run), -warmup (in
+   *              simulated seconds, run once per grid size before the
+   *              measured runs) and -seed.
+   * @throws IOException if the simulator fails to write its output
+   */
+  public static void main(String[] args) throws IOException {
+    CommandLineOptions options =
+      CommandLineOptions.parseOrExit(args, "-sizes", "-threads", "-traffic",
+                                     "-plan", "-time", "-warmup", "-seed");
+    int[] sizes = options.getIntList("-sizes", DEFAULT_GRID_SIZES);
+    int[] threadCounts =
+      options.getIntList("-threads", defaultThreadCounts());
+    double trafficLevel =
+      options.getDouble("-traffic", SimSetupFactory.DEFAULT_TRAFFIC_LEVEL);
+    String planFileName =
+      options.getString(
+        "-plan", TrafficSignalSimSetup.DEFAULT_TRAFFIC_SIGNAL_PLAN_FILE_NAME);
+    double time = options.getDouble("-time", DEFAULT_SIMULATION_TIME);
+    double warmupTime = options.getDouble("-warmup", DEFAULT_WARMUP_TIME);
+    long seed = options.getLong("-seed", DEFAULT_SEED);
+
+    System.out.printf("%-6s %-8s %-12s %-8s %s\n",
+                      "grid", "threads", "steps/s", "speedup", "completed");
+    for(int size : sizes) {
+      double baseline = 0.0;
+      runGrid(size, threadCounts[threadCounts.length - 1], trafficLevel,
+              planFileName, warmupTime, seed);
+      for(int threads : threadCounts) {
+        HeadlessRunner runner =
+          runGrid(size, threads, trafficLevel, planFileName, time, seed);
+        double stepsPerSecond = runner.getStepsPerSecond();
+        if (baseline == 0.0) {
+          baseline = stepsPerSecond;
+        }
+        System.out.printf("%-6s %-8d %-12.1f %-8.2f %d\n",
+                          size + "x" + size, threads, stepsPerSecond,
+                          stepsPerSecond / baseline,
+                          runner.getNumCompletedVehicles());
+      }
+    }
+  }
+}
@@ -0,0 +1,329 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim.runner;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import javax.management.JMException;
+
+import aim4.config.SimConfig;
+import aim4.sim.SimContext;
+import aim4.sim.Simulator;
+import aim4.sim.StepProfiler;
+import aim4.sim.setup.BasicSimSetup;
+import aim4.sim.setup.SimSetup;
+import aim4.sim.setup.TrafficSignalSimSetup;
+import aim4.util.Util;
+
+/**
+ * The main class that runs the simulator without the GUI.  The simulator
+ * is stepped in a tight loop, as fast as the CPU allows, and the number of
+ * steps per second is reported at the end of the run.
+ */
+public class HeadlessRunner {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The default length of a run in simulated seconds ({@value}). */
+  public static final double DEFAULT_SIMULATION_TIME = 3600.0;
+
+  /**
+   * The default simulated time between two lines of the profile in seconds
+   * ({@value}).
+   */
+  public static final double DEFAULT_PROFILE_INTERVAL = 60.0;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The simulator setup */
+  private SimSetup simSetup;
+  /** The length of the run in simulated seconds */
+  private double simulationTime;
+  /** The number of threads used by the parallel stages of the simulator */
+  private int parallelism;
+  /** The random seed of the simulation */
+  private long seed;
+  /** The profiler of the steps; null if the steps are not profiled */
+  private StepProfiler profiler;
+
+  /** The number of steps taken in the last run */
+  private long numOfSteps;
+  /** The wall-clock duration of the last run in nanoseconds */
+  private long elapsedNanoTime;
+  /** The simulator of the last run */
+  private Simulator sim;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a headless runner.
+   *
+   * @param simSetup        the simulator setup
+   * @param simulationTime  the length of a run in simulated seconds
+   */
+  public HeadlessRunner(SimSetup simSetup, double simulationTime) {
+    this.simSetup = simSetup;
+    this.simulationTime = simulationTime;
+    this.parallelism = 1;
+    this.seed = Util.random.nextLong();
+    this.profiler = null;
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Set the number of threads used by the parallel stages of the simulator.
+   *
+   * @param parallelism  the number of threads; 1 to run serially
+   */
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Set the random seed of the simulation.
+   *
+   * @param seed  the random seed
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Set the profiler of the steps of the simulator.
+   *
+   * @param profiler  the profiler; null to not profile the steps
+   */
+  public void setProfiler(StepProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  /**
+   * Build a new simulator and run it for the given amount of simulated time.
+   * The run ends early if the thread is interrupted.
+   *
+   * @return the simulator after the run
+   * @throws IOException if the simulator fails to read its input or write
+   *                     its output
+   */
+  public Simulator run() throws IOException {
+    sim = simSetup.getSimulator(new SimContext(seed));
+    sim.setParallelism(parallelism);
+    sim.setProfiler(profiler);
+    long steps = Math.round(simulationTime / SimConfig.TIME_STEP);
+
+    long startTime = System.nanoTime();
+    long i = 0;
+    // an interrupted thread stops the run early
+    for(; i < steps && !Thread.currentThread().isInterrupted(); i++) {
+      sim.step(SimConfig.TIME_STEP);
+    }
+    elapsedNanoTime = System.nanoTime() - startTime;
+    numOfSteps = i;
+
+    return sim;
+  }
+
+  /**
+   * Get the number of steps taken in the last run.
+   *
+   * @return the number of steps taken in the last run
+   */
+  public long getNumOfSteps() {
+    return numOfSteps;
+  }
+
+  /**
+   * Get the wall-clock duration of the last run.
+   *
+   * @return the wall-clock duration of the last run in seconds
+   */
+  public double getElapsedTime() {
+    return elapsedNanoTime / 1e9;
+  }
+
+  /**
+   * Get the number of steps per wall-clock second in the last run.
+   *
+   * @return the number of steps per second
+   */
+  public double getStepsPerSecond() {
+    if (elapsedNanoTime > 0) {
+      return numOfSteps / getElapsedTime();
+    } else {
+      return 0.0;
+    }
+  }
+
+  /**
+   * Get the number of vehicles that completed their trips in the last run.
+   *
+   * @return the number of completed vehicles
+   */
+  public int getNumCompletedVehicles() {
+    return sim.getNumCompletedVehicles();
+  }
+
+  /**
+   * Print a summary of the last run.
+   */
+  public void printSummary() {
+    System.out.printf("steps: %d\n", numOfSteps);
+    System.out.printf("simulated time: %.2f s\n",
+                      numOfSteps * SimConfig.TIME_STEP);
+    System.out.printf("wall-clock time: %.3f s\n", getElapsedTime());
+    System.out.printf("steps per second: %.1f\n", getStepsPerSecond());
+    System.out.printf("completed vehicles: %d\n",
+                      sim.getNumCompletedVehicles());
+    System.out.printf("idle steps: %d\n", sim.getNumOfIdleSteps());
+    System.out.printf("vehicles created: %d, reused: %d\n",
+                      sim.getVehiclePool().getNumOfCreatedVehicles(),
+                      sim.getVehiclePool().getNumOfReusedVehicles());
+  }
+
+
+  /////////////////////////////////
+  // THE MAIN FUNCTION
+  /////////////////////////////////
+
+  /**
+   * Run the simulator without the GUI.
+   *
+   * @param args  the command-line arguments; each option is a name followed
+   *              by a value, e.g. "-traffic 0.28".  Options: -columns,
+   *              -rows, -lanewidth, -speed, -lanes, -median, -distance,
+   *              -traffic, -stopdist, -plan (the traffic signal plan file),
+   *              -time (in simulated seconds), -seed, -threads,
+   *              -state (the state ring file, or "none"), -profile (the
+   *              CSV file of the step profile, or "-" for the standard
+   *              output), -profileinterval (in simulated seconds) and
+   *              -footprints ("on" to cache the footprints of the
+   *              reservation queries), -statestore ("on" to keep the
+   *              states of the vehicles in one structure-of-arrays store)
+   *              and -policy ("base", or a reordering
+   *              strategy and a processing interval such as "lane:1.0" to
+   *              process the requests in batches).
+   *              The step profiler is also registered as an MBean when
+   *              -profile is given.
+   * @throws IOException if the simulator fails to write its output
+   * @throws JMException if the step profiler cannot be registered
+   */
+  public static void main(String[] args) throws IOException, JMException {
+    CommandLineOptions options =
+      CommandLineOptions.parseOrExit(args, "-columns", "-rows", "-lanewidth",
+                                     "-speed", "-lanes", "-median",
+                                     "-distance", "-traffic", "-stopdist",
+                                     "-plan", "-time", "-seed", "-threads",
+                                     "-state", "-profile", "-profileinterval",
+                                     "-footprints", "-statestore",
+                                     "-policy");
+    // the same defaults as aim4.Main
+    int columns = options.getInt("-columns", 1);
+    int rows = options.getInt("-rows", 1);
+    double laneWidth =
+      options.getDouble("-lanewidth", SimSetupFactory.DEFAULT_LANE_WIDTH);
+    double speedLimit =
+      options.getDouble("-speed", SimSetupFactory.DEFAULT_SPEED_LIMIT);
+    int lanesPerRoad =
+      options.getInt("-lanes", SimSetupFactory.DEFAULT_LANES_PER_ROAD);
+    double medianSize =
+      options.getDouble("-median", SimSetupFactory.DEFAULT_MEDIAN_SIZE);
+    double distanceBetween =
+      options.getDouble("-distance",
+                        SimSetupFactory.DEFAULT_DISTANCE_BETWEEN);
+    double trafficLevel =
+      options.getDouble("-traffic", SimSetupFactory.DEFAULT_TRAFFIC_LEVEL);
+    double stopDist =
+      options.getDouble("-stopdist", SimSetupFactory.DEFAULT_STOP_DISTANCE);
+    String planFileName =
+      options.getString(
+        "-plan", TrafficSignalSimSetup.DEFAULT_TRAFFIC_SIGNAL_PLAN_FILE_NAME);
+    double time = options.getDouble("-time", DEFAULT_SIMULATION_TIME);
+    int threads = options.getInt("-threads", 1);
+    String stateFileName =
+      options.getString("-state",
+                        TrafficSignalSimSetup.DEFAULT_STATE_FILE_NAME);
+    if (stateFileName.equals("none")) {
+      stateFileName = null;
+    }
+    String profileFileName = options.getString("-profile", null);
+    double profileInterval =
+      options.getDouble("-profileinterval", DEFAULT_PROFILE_INTERVAL);
+    boolean isFootprintTemplateCacheEnabled =
+      options.getString("-footprints", "off").equals("on");
+    boolean isVehicleStateStoreEnabled =
+      options.getString("-statestore", "off").equals("on");
+    String policyName = options.getString("-policy", "base");
+
+    BasicSimSetup basicSimSetup =
+      new BasicSimSetup(columns, rows, laneWidth, speedLimit, lanesPerRoad,
+                        medianSize, distanceBetween, trafficLevel, stopDist);
+    TrafficSignalSimSetup simSetup = new TrafficSignalSimSetup(basicSimSetup);
+    simSetup.setTrafficSignalPlanFileName(planFileName);
+    simSetup.setStateFileName(stateFileName);
+    simSetup.setFootprintTemplateCacheEnabled(isFootprintTemplateCacheEnabled);
+    simSetup.setVehicleStateStoreEnabled(isVehicleStateStoreEnabled);
+    simSetup.setPolicy(policyName);
+    HeadlessRunner runner = new HeadlessRunner(simSetup, time);
+    runner.setParallelism(threads);
+    if (options.has("-seed")) {
+      runner.setSeed(options.getLong("-seed", 0L));
+    }
+    PrintStream profileOutput = null;
+    if (profileFileName != null) {
+      StepProfiler profiler = new StepProfiler();
+      if (profileFileName.equals("-")) {
+        profiler.setCsvOutput(System.out, profileInterval);
+      } else {
+        profileOutput =
+          new PrintStream(new FileOutputStream(profileFileName), false);
+        profiler.setCsvOutput(profileOutput, profileInterval);
+      }
+      profiler.registerMBean("HeadlessRunner");
+      runner.setProfiler(profiler);
+    }
+    runner.run().close();
+    runner.printSummary();
+    if (profileOutput != null) {
+      profileOutput.close();
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim.runner;
+
+import aim4.sim.setup.BasicSimSetup;
+import aim4.sim.setup.TrafficSignalSimSetup;
+
+/**
+ * The factory of the setups of the runners: grid maps of signalized
+ * intersections with the road geometry of aim4.Main.
+ */
+public class SimSetupFactory {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The default width of the lanes in meters ({@value}). */
+  public static final double DEFAULT_LANE_WIDTH = 4;
+  /** The default speed limit of the roads in meters per second ({@value}). */
+  public static final double DEFAULT_SPEED_LIMIT = 25.0;
+  /** The default number of lanes per road ({@value}). */
+  public static final int DEFAULT_LANES_PER_ROAD = 3;
+  /**
+   * The default width of the area between the opposite directions of a
+   * road in meters ({@value}).
+   */
+  public static final double DEFAULT_MEDIAN_SIZE = 1;
+  /** The default distance between intersections in meters ({@value}). */
+  public static final double DEFAULT_DISTANCE_BETWEEN = 150;
+  /** The default traffic level ({@value}). */
+  public static final double DEFAULT_TRAFFIC_LEVEL = 0.28;
+  /**
+   * The default stopping distance before intersections in meters
+   * ({@value}).
+   */
+  public static final double DEFAULT_STOP_DISTANCE = 1.0;
+
+  /////////////////////////////////
+  // PUBLIC STATIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Create the setup of a grid map with the default speed limit and
+   * stopping distance.
+   *
+   * @param columns       the number of columns
+   * @param rows          the number of rows
+   * @param lanesPerRoad  the number of lanes per road
+   * @param trafficLevel  the traffic level
+   * @return the setup
+   */
+  public static TrafficSignalSimSetup makeSimSetup(int columns, int rows,
+                                                   int lanesPerRoad,
+                                                   double trafficLevel) {
+    return makeSimSetup(columns, rows, lanesPerRoad, DEFAULT_SPEED_LIMIT,
+                        trafficLevel, DEFAULT_STOP_DISTANCE);
+  }
+
+  /**
+   * Create the setup of a grid map.
+   *
+   * @param columns       the number of columns
+   * @param rows          the number of rows
+   * @param lanesPerRoad  the number of lanes per road
+   * @param speedLimit    the speed limit of the roads
+   * @param trafficLevel  the traffic level
+   * @param stopDist      the stopping distance before intersections
+   * @return the setup
+   */
+  public static TrafficSignalSimSetup makeSimSetup(int columns, int rows,
+                                                   int lanesPerRoad,
+                                                   double speedLimit,
+                                                   double trafficLevel,
+                                                   double stopDist) {
+    BasicSimSetup basicSimSetup =
+      new BasicSimSetup(columns, rows, DEFAULT_LANE_WIDTH, speedLimit,
+                        lanesPerRoad, DEFAULT_MEDIAN_SIZE,
+                        DEFAULT_DISTANCE_BETWEEN, trafficLevel, stopDist);
+    return new TrafficSignalSimSetup(basicSimSetup);
+  }
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /** This class should never be instantiated. */
+  private SimSetupFactory(){};
+}
@@ -0,0 +1,532 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.sim.runner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import aim4.config.SimConfig;
+import aim4.sim.Simulator;
+import aim4.sim.setup.TrafficSignalSimSetup;
+
+/**
+ * A runner of parameter sweeps on the local machine.  The runs of a sweep
+ * are the cross product of a grid of setup parameters and a list of random
+ * seeds.  They are run headless on a fixed number of worker threads, so
+ * that at most that many simulators are in memory at any time, and one
+ * summary row per run is appended to a CSV results file as soon as the run
+ * finishes.  The runs that already have a row in the results file are
+ * skipped, so an interrupted sweep can be resumed by running it again with
+ * the same results file.
+ */
+public class SweepRunner {
+
+  /////////////////////////////////
+  // NESTED CLASSES
+  /////////////////////////////////
+
+  /**
+   * The parameters of a run.
+   */
+  public static class Run {
+    /** The number of columns */
+    private final int columns;
+    /** The number of rows */
+    private final int rows;
+    /** The traffic level */
+    private final double trafficLevel;
+    /** The number of lanes per road */
+    private final int lanesPerRoad;
+    /** The speed limit of the roads */
+    private final double speedLimit;
+    /** The stopping distance before intersection */
+    private final double stopDist;
+    /** The traffic signal plan file */
+    private final String planFileName;
+    /** The name of the policy of the intersection managers */
+    private final String policyName;
+    /** The random seed */
+    private final long seed;
+
+    /**
+     * Create the parameters of a run.
+     *
+     * @param columns       the number of columns
+     * @param rows          the number of rows
+     * @param trafficLevel  the traffic level
+     * @param lanesPerRoad  the number of lanes per road
+     * @param speedLimit    the speed limit of the roads
+     * @param stopDist      the stopping distance before intersection
+     * @param planFileName  the traffic signal plan file; it must not
+     *                      contain commas
+     * @param policyName    the name of the policy of the intersection
+     *                      managers; see
+     *                      {@link TrafficSignalSimSetup#setPolicy(String)}
+     * @param seed          the random seed
+     */
+    public Run(int columns, int rows, double trafficLevel, int lanesPerRoad,
+               double speedLimit, double stopDist, String planFileName,
+               String policyName, long seed) {
+      if (planFileName.indexOf(',') >= 0) {
+        throw new IllegalArgumentException("The name of a plan file must " +
+                                           "not contain commas: " +
+                                           planFileName);
+      }
+      if (policyName.indexOf(',') >= 0) {
+        throw new IllegalArgumentException("The name of a policy must " +
+                                           "not contain commas: " +
+                                           policyName);
+      }
+      this.columns = columns;
+      this.rows = rows;
+      this.trafficLevel = trafficLevel;
+      this.lanesPerRoad = lanesPerRoad;
+      this.speedLimit = speedLimit;
+      this.stopDist = stopDist;
+      this.planFileName = planFileName;
+      this.policyName = policyName;
+      this.seed = seed;
+    }
+
+    /**
+     * Get the key of the run, which is the first {@link #NUM_OF_KEY_FIELDS}
+     * fields of its row in the results file.
+     *
+     * @return the key of the run
+     */
+    public String getKey() {
+      return columns + "," + rows + "," + trafficLevel + "," + lanesPerRoad
+             + "," + speedLimit + "," + stopDist + "," + planFileName + ","
+             + policyName + "," + seed;
+    }
+
+    /**
+     * Build the setup of the run.  The states of the vehicles are not
+     * exported.
+     *
+     * @return the setup of the run
+     */
+    public TrafficSignalSimSetup makeSimSetup() {
+      TrafficSignalSimSetup simSetup =
+        SimSetupFactory.makeSimSetup(columns, rows, lanesPerRoad, speedLimit,
+                                     trafficLevel, stopDist);
+      simSetup.setTrafficSignalPlanFileName(planFileName);
+      simSetup.setPolicy(policyName);
+      simSetup.setStateFileName(null);
+      return simSetup;
+    }
+  }
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The default length of each run in simulated seconds ({@value}). */
+  public static final double DEFAULT_SIMULATION_TIME = 3600.0;
+
+  /** The default name of the results file ({@value}). */
+  public static final String DEFAULT_RESULTS_FILE_NAME = "sweep.csv";
+
+  /** The header of the results file */
+  public static final String HEADER =
+    "columns,rows,traffic,lanes,speed,stopdist,plan,policy,seed,"
+    + "time,completed,throughput,mean_delay,avg_bits_transmitted,"
+    + "avg_bits_received,wall_time";
+
+  /** The number of leading fields of a row that identify its run */
+  private static final int NUM_OF_KEY_FIELDS = 9;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The name of the results file */
+  private String resultsFileName;
+  /** The length of each run in simulated seconds */
+  private double simulationTime;
+  /** The number of runs that are run at the same time */
+  private int numOfJobs;
+  /** The runs of the sweep */
+  private List<Run> runs;
+
+  /** The stream to which the rows are appended */
+  private PrintStream results;
+  /** The number of runs finished in the current call of run() */
+  private int numOfFinishedRuns;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a sweep runner.
+   *
+   * @param resultsFileName  the name of the results file
+   * @param simulationTime   the length of each run in simulated seconds
+   * @param numOfJobs        the number of runs that are run at the same
+   *                         time
+   */
+  public SweepRunner(String resultsFileName, double simulationTime,
+                     int numOfJobs) {
+    this.resultsFileName = resultsFileName;
+    this.simulationTime = simulationTime;
+    this.numOfJobs = numOfJobs;
+    this.runs = new ArrayList<Run>();
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Add a run to the sweep.
+   *
+   * @param run  the parameters of the run
+   */
+  public void addRun(Run run) {
+    runs.add(run);
+  }
+
+  /**
+   * Add the cross product of a grid of parameters and a list of seeds to
+   * the sweep.
+   *
+   * @param columns        the number of columns
+   * @param rows           the number of rows
+   * @param trafficLevels  the traffic levels
+   * @param lanesPerRoads  the numbers of lanes per road
+   * @param speedLimits    the speed limits
+   * @param stopDists      the stopping distances before intersection
+   * @param planFileNames  the traffic signal plan files
+   * @param policyNames    the names of the policies of the intersection
+   *                       managers
+   * @param seeds          the random seeds
+   */
+  public void addRuns(int columns, int rows, double[] trafficLevels,
+                      int[] lanesPerRoads, double[] speedLimits,
+                      double[] stopDists, String[] planFileNames,
+                      String[] policyNames, long[] seeds) {
+    for(double stopDist : stopDists) {
+      for(String planFileName : planFileNames) {
+        for(String policyName : policyNames) {
+          for(double speedLimit : speedLimits) {
+            for(int lanesPerRoad : lanesPerRoads) {
+              for(double trafficLevel : trafficLevels) {
+                for(long seed : seeds) {
+                  addRun(new Run(columns, rows, trafficLevel, lanesPerRoad,
+                                 speedLimit, stopDist, planFileName,
+                                 policyName, seed));
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the runs of the sweep.
+   *
+   * @return the runs of the sweep
+   */
+  public List<Run> getRuns() {
+    return runs;
+  }
+
+  /**
+   * Run all the runs of the sweep that have no row in the results file.
+   *
+   * @return the number of runs finished
+   * @throws IOException if the results file cannot be read or written
+   * @throws InterruptedException if the thread is interrupted while
+   *                              waiting for the runs
+   */
+  public int run() throws IOException, InterruptedException {
+    Set<String> doneKeys = openResults();
+    List<Callable<Void>> remainingRuns = new ArrayList<Callable<Void>>();
+    for(final Run run : runs) {
+      if (doneKeys.add(run.getKey())) {
+        remainingRuns.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            runOne(run);
+            return null;
+          }
+        });
+      }
+    }
+    System.err.printf("%d of %d runs to go\n", remainingRuns.size(),
+                      runs.size());
+
+    numOfFinishedRuns = 0;
+    ExecutorService executor = Executors.newFixedThreadPool(numOfJobs);
+    try {
+      executor.invokeAll(remainingRuns);
+    } finally {
+      // If the wait was interrupted, the workers are still running.  Stop
+      // them and let them finish before the results file is closed.
+      executor.shutdownNow();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } finally {
+        results.close();
+      }
+    }
+    return numOfFinishedRuns;
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Open the results file for appending.  A new file gets the header; an
+   * existing one is checked, a partial last row left by an interrupted
+   * sweep is cut off, and the keys of the finished runs are read.
+   *
+   * @return the keys of the runs that already have a row
+   * @throws IOException if the results file cannot be read or written
+   */
+  private Set<String> openResults() throws IOException {
+    Set<String> doneKeys = new HashSet<String>();
+    File file = new File(resultsFileName);
+    if (file.length() > 0) {
+      cutPartialRow(file);
+      BufferedReader reader = new BufferedReader(new FileReader(file));
+      try {
+        String header = reader.readLine();
+        if (!HEADER.equals(header)) {
+          throw new IOException("Not a results file of a sweep: " +
+                                resultsFileName);
+        }
+        String line;
+        while((line = reader.readLine()) != null) {
+          String[] fields = line.split(",", NUM_OF_KEY_FIELDS + 1);
+          if (fields.length > NUM_OF_KEY_FIELDS) {
+            doneKeys.add(line.substring(0, line.length()
+                                           - fields[NUM_OF_KEY_FIELDS].length()
+                                           - 1));
+          }
+        }
+      } finally {
+        reader.close();
+      }
+      results = new PrintStream(new FileOutputStream(file, true), false);
+    } else {
+      results = new PrintStream(new FileOutputStream(file), false);
+      results.println(HEADER);
+      results.flush();
+    }
+    return doneKeys;
+  }
+
+  /**
+   * Cut off the characters after the last line break of a file.
+   *
+   * @param file  the file
+   * @throws IOException if the file cannot be read or written
+   */
+  private static void cutPartialRow(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      long length = raf.length();
+      while(length > 0) {
+        raf.seek(length - 1);
+        if (raf.read() == '\n') {
+          break;
+        }
+        length--;
+      }
+      raf.setLength(length);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Run a run and append its row to the results file.  A failed run is
+   * reported and gets no row, so it is retried when the sweep is resumed.
+   *
+   * @param run  the parameters of the run
+   */
+  private void runOne(Run run) {
+    HeadlessRunner runner =
+      new HeadlessRunner(run.makeSimSetup(), simulationTime);
+    runner.setSeed(run.seed);
+    Simulator sim;
+    try {
+      sim = runner.run();
+      sim.close();
+    } catch(Exception e) {
+      System.err.printf("Run %s failed: %s\n", run.getKey(), e);
+      return;
+    }
+    if (Thread.currentThread().isInterrupted()) {
+      // the sweep was stopped; the run is incomplete
+      return;
+    }
+    double simulatedTime = runner.getNumOfSteps() * SimConfig.TIME_STEP;
+    // throughput in completed vehicles per simulated hour
+    double throughput = (simulatedTime > 0.0)
+      ? sim.getNumCompletedVehicles() * 3600.0 / simulatedTime
+      : 0.0;
+    writeRow(String.format(Locale.US, "%s,%.2f,%d,%.2f,%.3f,%.1f,%.1f,%.3f",
+                           run.getKey(), simulatedTime,
+                           sim.getNumCompletedVehicles(), throughput,
+                           sim.getAvgDelayOfCompletedVehicles(),
+                           sim.getAvgBitsTransmittedByCompletedVehicles(),
+                           sim.getAvgBitsReceivedByCompletedVehicles(),
+                           runner.getElapsedTime()));
+  }
+
+  /**
+   * Append a row to the results file.
+   *
+   * @param row  the row
+   */
+  private synchronized void writeRow(String row) {
+    results.println(row);
+    results.flush();
+    numOfFinishedRuns++;
+    System.err.printf("[%d] %s\n", numOfFinishedRuns, row);
+  }
+
+  /**
+   * Parse a list of seeds, which is either a comma-separated list or a
+   * range of the form "first..last".
+   *
+   * @param value  the list
+   * @return the seeds
+   */
+  private static long[] parseSeedList(String value) {
+    int i = value.indexOf("..");
+    if (i >= 0) {
+      long first = Long.parseLong(value.substring(0, i).trim());
+      long last = Long.parseLong(value.substring(i + 2).trim());
+      long[] seeds = new long[(int)(last - first + 1)];
+      for(int j = 0; j < seeds.length; j++) {
+        seeds[j] = first + j;
+      }
+      return seeds;
+    } else {
+      String[] tokens = value.split(",");
+      long[] seeds = new long[tokens.length];
+      for(int j = 0; j < tokens.length; j++) {
+        seeds[j] = Long.parseLong(tokens[j].trim());
+      }
+      return seeds;
+    }
+  }
+
+  /////////////////////////////////
+  // THE MAIN FUNCTION
+  /////////////////////////////////
+
+  /**
+   * Run a parameter sweep.
+   *
+   * @param args  the command-line arguments; each option is a name followed
+   *              by a value.  Options: -columns, -rows, -traffic, -lanes,
+   *              -speed and -stopdist (comma-separated lists, e.g.
+   *              "0.1,0.2,0.3"), -plans (a comma-separated list of traffic
+   *              signal plan files), -policies (a comma-separated list of
+   *              policies such as "base,lane:1.0"; see
+   *              {@link TrafficSignalSimSetup#setPolicy(String)}),
+   *              -seeds (a comma-separated list or a range such as
+   *              "1..10"), -time (in simulated seconds per run), -jobs (the
+   *              number of runs at the same time; the number of processors
+   *              by default) and -out (the results file; an existing one is
+   *              resumed).
+   * @throws IOException if the results file cannot be read or written
+   * @throws InterruptedException if the sweep is interrupted
+   */
+  public static void main(String[] args)
+    throws IOException, InterruptedException {
+    CommandLineOptions options =
+      CommandLineOptions.parseOrExit(args, "-columns", "-rows", "-traffic",
+                                     "-lanes", "-speed", "-stopdist",
+                                     "-plans", "-policies", "-seeds", "-time",
+                                     "-jobs", "-out");
+    int columns = options.getInt("-columns", 1);
+    int rows = options.getInt("-rows", 1);
+    double[] trafficLevels =
+      options.getDoubleList("-traffic",
+                            new double[] {
+                              SimSetupFactory.DEFAULT_TRAFFIC_LEVEL });
+    int[] lanesPerRoads =
+      options.getIntList("-lanes",
+                         new int[] { SimSetupFactory.DEFAULT_LANES_PER_ROAD });
+    double[] speedLimits =
+      options.getDoubleList("-speed",
+                            new double[] {
+                              SimSetupFactory.DEFAULT_SPEED_LIMIT });
+    double[] stopDists =
+      options.getDoubleList("-stopdist",
+                            new double[] {
+                              SimSetupFactory.DEFAULT_STOP_DISTANCE });
+    String[] planFileNames =
+      options.getStringList(
+        "-plans",
+        new String[] {
+          TrafficSignalSimSetup.DEFAULT_TRAFFIC_SIGNAL_PLAN_FILE_NAME });
+    String[] policyNames =
+      options.getStringList("-policies", new String[] { "base" });
+    long[] seeds = { 1 };
+    if (options.has("-seeds")) {
+      seeds = parseSeedList(options.getString("-seeds", null));
+    }
+    double time = options.getDouble("-time", DEFAULT_SIMULATION_TIME);
+    int jobs =
+      options.getInt("-jobs", Runtime.getRuntime().availableProcessors());
+    String resultsFileName =
+      options.getString("-out", DEFAULT_RESULTS_FILE_NAME);
+
+    SweepRunner sweep = new SweepRunner(resultsFileName, time, jobs);
+    sweep.addRuns(columns, rows, trafficLevels, lanesPerRoads, speedLimits,
+                  stopDists, planFileNames, policyNames, seeds);
+    sweep.run();
+  }
+}
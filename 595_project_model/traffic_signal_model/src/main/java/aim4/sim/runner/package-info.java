@@ -0,0 +1,5 @@
+/**
+ * This package contains the entry points that run the simulator without
+ * the GUI.
+ */
+package aim4.sim.runner;
@@ -30,7 +30,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.sim.setup;
 
-import aim4.gui.Viewer;
+import aim4.sim.SimContext;
 import aim4.sim.Simulator;
 
 import java.io.IOException;
@@ -119,7 +119,7 @@ public class BasicSimSetup implements SimSetup {
   }
 
   @Override
-  public Simulator getSimulator(Viewer viewer) throws IOException {
+  public Simulator getSimulator(SimContext context) throws IOException {
     assert false : ("Cannot instantiate BasicSimSetup");
     return null;
   }
@@ -30,7 +30,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.sim.setup;
 
-import aim4.gui.Viewer;
+import aim4.sim.SimContext;
 import aim4.sim.Simulator;
 
 import java.io.IOException;
@@ -48,9 +48,12 @@ public interface SimSetup {
   void setStopDistBeforeIntersection(double stopDistBeforeIntersection);
 
   /**
-   * Get the simulator.
+   * Get a new simulator.
    *
+   * @param context  the context of the simulation, which the simulator
+   *                 owns from then on
    * @return the simulator
+   * @throws IOException if the setup fails to read its input files
    */
-  Simulator getSimulator(Viewer viewer) throws IOException;
+  Simulator getSimulator(SimContext context) throws IOException;
 }
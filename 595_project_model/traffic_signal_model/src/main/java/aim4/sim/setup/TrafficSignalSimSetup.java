@@ -32,16 +32,19 @@ package aim4.sim.setup;
 
 import aim4.config.Debug;
 import aim4.config.SimConfig;
-import aim4.driver.pilot.V2IPilot;
-import aim4.gui.Viewer;
+import aim4.config.TrafficSignalPlan;
+import aim4.im.IntersectionManager;
+import aim4.im.v2i.V2IManager;
+import aim4.im.v2i.batch.BatchPolicy;
+import aim4.im.v2i.batch.ReorderingStrategy;
+import aim4.im.v2i.reservation.FootprintTemplateCache;
 import aim4.im.v2i.reservation.ReservationGridManager;
 import aim4.map.GridMap;
 import aim4.map.GridMapUtil;
+import aim4.sim.SimContext;
 import aim4.sim.Simulator;
+import aim4.sim.StateExporter;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 
 /**
@@ -50,8 +53,31 @@ import java.io.IOException;
  */
 public class TrafficSignalSimSetup extends BasicSimSetup implements SimSetup {
 
-  /** The name of the file containing the traffic signal phases */
-  private  Viewer viewer;
+  /** The default name of the file containing the traffic signal plan */
+  public static final String DEFAULT_TRAFFIC_SIGNAL_PLAN_FILE_NAME =
+    "/SignalPhases/input.txt";
+
+  /**
+   * The default name of the ring file to which the states of the vehicles
+   * are exported
+   */
+  public static final String DEFAULT_STATE_FILE_NAME = "state.bin";
+
+  /** The name of the file containing the traffic signal plan */
+  private String trafficSignalPlanFileName;
+  /** The name of the state ring file; null if the states are not exported */
+  private String stateFileName;
+  /** Whether the intersection managers cache the footprints of queries */
+  private boolean isFootprintTemplateCacheEnabled;
+  /** Whether the states of the vehicles are kept in a shared store */
+  private boolean isVehicleStateStoreEnabled;
+  /** The time between two batches of requests in seconds */
+  private double batchProcessingInterval;
+  /**
+   * The strategy that orders the batches of requests; null if the requests
+   * are not batched
+   */
+  private ReorderingStrategy batchReorderingStrategy;
 
   /////////////////////////////////
   // CONSTRUCTORS
@@ -63,9 +89,14 @@ public class TrafficSignalSimSetup extends BasicSimSetup implements SimSetup {
    *
    * @param basicSimSetup               the basic simulator setup
    */
-  public TrafficSignalSimSetup(BasicSimSetup basicSimSetup, Viewer viewer) {
+  public TrafficSignalSimSetup(BasicSimSetup basicSimSetup) {
     super(basicSimSetup);
-    this.viewer = viewer;
+    this.trafficSignalPlanFileName = DEFAULT_TRAFFIC_SIGNAL_PLAN_FILE_NAME;
+    this.stateFileName = DEFAULT_STATE_FILE_NAME;
+    this.isFootprintTemplateCacheEnabled = false;
+    this.isVehicleStateStoreEnabled = false;
+    this.batchProcessingInterval = BatchPolicy.DEFAULT_PROCESSING_INTERVAL;
+    this.batchReorderingStrategy = null;
   }
 
 
@@ -81,11 +112,99 @@ public class TrafficSignalSimSetup extends BasicSimSetup implements SimSetup {
   public void setTrafficVolume() {
   }
 
+  /**
+   * Set the name of the file containing the traffic signal plan.
+   *
+   * @param trafficSignalPlanFileName  the name of the file; it is looked up
+   *                                   in the file system first and then on
+   *                                   the class path
+   */
+  public void setTrafficSignalPlanFileName(String trafficSignalPlanFileName) {
+    this.trafficSignalPlanFileName = trafficSignalPlanFileName;
+  }
+
+  /**
+   * Set the name of the ring file to which the states of the vehicles are
+   * exported.
+   *
+   * @param stateFileName  the name of the file; null to not export the
+   *                       states
+   */
+  public void setStateFileName(String stateFileName) {
+    this.stateFileName = stateFileName;
+  }
+
+  /**
+   * Set whether the intersection managers cache the footprints of the
+   * trajectories of the queries.  This makes the queries faster but
+   * changes the plans slightly; see {@link FootprintTemplateCache}.
+   *
+   * @param isFootprintTemplateCacheEnabled  whether the footprints are
+   *                                         cached
+   */
+  public void setFootprintTemplateCacheEnabled(
+                                  boolean isFootprintTemplateCacheEnabled) {
+    this.isFootprintTemplateCacheEnabled = isFootprintTemplateCacheEnabled;
+  }
+
+  /**
+   * Set whether the kinematic states of the vehicles are kept in one
+   * structure-of-arrays store; see
+   * {@link Simulator#setVehicleStateStoreEnabled(boolean)}.
+   *
+   * @param isVehicleStateStoreEnabled  whether the states are kept in a
+   *                                    shared store
+   */
+  public void setVehicleStateStoreEnabled(boolean isVehicleStateStoreEnabled) {
+    this.isVehicleStateStoreEnabled = isVehicleStateStoreEnabled;
+  }
+
+  /**
+   * Set whether the intersection managers process the requests in batches;
+   * see {@link BatchPolicy}.
+   *
+   * @param processingInterval  the time between two batches in seconds
+   * @param reorderingStrategy  the strategy that orders the requests of a
+   *                            batch; null to process the requests one at
+   *                            a time as they arrive
+   */
+  public void setBatchPolicy(double processingInterval,
+                             ReorderingStrategy reorderingStrategy) {
+    this.batchProcessingInterval = processingInterval;
+    this.batchReorderingStrategy = reorderingStrategy;
+  }
+
+  /**
+   * Set the policy of the intersection managers by its name.
+   *
+   * @param policyName  "base" to process the requests one at a time as
+   *                    they arrive, or the name of a reordering strategy of
+   *                    {@link BatchPolicy#makeReorderingStrategy(String)},
+   *                    optionally followed by a colon and the processing
+   *                    interval in seconds, to process them in batches,
+   *                    e.g. "lane:1.0"
+   */
+  public void setPolicy(String policyName) {
+    if (policyName.equals("base")) {
+      setBatchPolicy(BatchPolicy.DEFAULT_PROCESSING_INTERVAL, null);
+    } else {
+      String strategyName = policyName;
+      double processingInterval = BatchPolicy.DEFAULT_PROCESSING_INTERVAL;
+      int i = policyName.indexOf(':');
+      if (i >= 0) {
+        strategyName = policyName.substring(0, i);
+        processingInterval = Double.parseDouble(policyName.substring(i + 1));
+      }
+      setBatchPolicy(processingInterval,
+                     BatchPolicy.makeReorderingStrategy(strategyName));
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
-  public Simulator getSimulator(Viewer viewer) throws IOException {
+  public Simulator getSimulator(SimContext context) throws IOException {
     double currentTime = 0.0;
     GridMap layout = new GridMap(currentTime, numOfColumns, numOfRows,
             laneWidth, speedLimit, lanesPerRoad, medianSize, distanceBetween);
@@ -99,15 +218,36 @@ public class TrafficSignalSimSetup extends BasicSimSetup implements SimSetup {
                                         1.0);
 
     Debug.SHOW_VEHICLE_COLOR_BY_MSG_STATE = false;
-//    GridMapUtil.setApproxNPhasesTrafficLightManagers(layout, currentTime, gridConfig, trafficSignalPhaseFileName, viewer);
-    GridMapUtil.setApproxNPhasesTrafficLightManagers(layout, currentTime, gridConfig, viewer);
-
-    GridMapUtil.setUniformRandomSpawnPoints(layout, trafficLevel);
-
-    V2IPilot.DEFAULT_STOP_DISTANCE_BEFORE_INTERSECTION = stopDistBeforeIntersection;
-      File writename = new File("./output.txt");
-      BufferedWriter out = new BufferedWriter(new FileWriter(writename, false));
-
-    return new Simulator(layout, viewer);
+    TrafficSignalPlan plan =
+      TrafficSignalPlan.makeFromFile(trafficSignalPlanFileName);
+    GridMapUtil.setApproxNPhasesTrafficLightManagers(layout, currentTime,
+                                                     gridConfig, plan);
+    if (isFootprintTemplateCacheEnabled) {
+      for(IntersectionManager im : layout.getIntersectionManagers()) {
+        ((V2IManager)im).getReservationGridManager().setTemplateCache(
+          new FootprintTemplateCache());
+      }
+    }
+    if (batchReorderingStrategy != null) {
+      for(IntersectionManager im : layout.getIntersectionManagers()) {
+        V2IManager v2iManager = (V2IManager)im;
+        v2iManager.setPolicy(new BatchPolicy(v2iManager,
+                                             v2iManager.getPolicy(),
+                                             batchProcessingInterval,
+                                             batchReorderingStrategy));
+      }
+    }
+
+    GridMapUtil.setUniformRandomSpawnPoints(layout, trafficLevel,
+                                            context.getRandom());
+
+    context.setStopDistBeforeIntersection(stopDistBeforeIntersection);
+
+    Simulator sim = new Simulator(layout, context);
+    sim.setVehicleStateStoreEnabled(isVehicleStateStoreEnabled);
+    if (stateFileName != null) {
+      sim.setStateExporter(new StateExporter(stateFileName, layout.getRoads()));
+    }
+    return sim;
   }
 }
@@ -0,0 +1,157 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+/**
+ * A random number generator whose state can be saved and restored in
+ * place.  It produces exactly the same numbers as {@link Random} with the
+ * same seed, but keeps the state of the generator in its own fields so that
+ * a simulator can rewind it to a snapshot without replacing the object that
+ * the spawn points hold.
+ */
+public class RestorableRandom extends Random {
+
+  private static final long serialVersionUID = 1L;
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The multiplier of the linear congruential generator */
+  private static final long MULTIPLIER = 0x5DEECE66DL;
+  /** The addend of the linear congruential generator */
+  private static final long ADDEND = 0xBL;
+  /** The mask of the 48-bit state */
+  private static final long MASK = (1L << 48) - 1;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The state of the generator */
+  private long state;
+  /** Whether the second of a pair of Gaussian numbers is pending */
+  private boolean haveNextNextGaussian;
+  /** The second of a pair of Gaussian numbers */
+  private double nextNextGaussian;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a random number generator with a given seed.
+   *
+   * @param seed  the seed
+   */
+  public RestorableRandom(long seed) {
+    super(seed);
+    setSeed(seed);
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setSeed(long seed) {
+    state = (seed ^ MULTIPLIER) & MASK;
+    haveNextNextGaussian = false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double nextGaussian() {
+    if (haveNextNextGaussian) {
+      haveNextNextGaussian = false;
+      return nextNextGaussian;
+    } else {
+      double v1, v2, s;
+      do {
+        v1 = 2 * nextDouble() - 1;
+        v2 = 2 * nextDouble() - 1;
+        s = v1 * v1 + v2 * v2;
+      } while (s >= 1 || s == 0);
+      double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+      nextNextGaussian = v2 * multiplier;
+      haveNextNextGaussian = true;
+      return v1 * multiplier;
+    }
+  }
+
+  /**
+   * Write the state of the generator.
+   *
+   * @param out  the output stream
+   * @throws IOException if the stream fails
+   */
+  public void writeState(ObjectOutputStream out) throws IOException {
+    out.writeLong(state);
+    out.writeBoolean(haveNextNextGaussian);
+    out.writeDouble(nextNextGaussian);
+  }
+
+  /**
+   * Read the state of the generator written by
+   * {@link #writeState(ObjectOutputStream)}.
+   *
+   * @param in  the input stream
+   * @throws IOException if the stream fails
+   */
+  public void readState(ObjectInputStream in) throws IOException {
+    state = in.readLong();
+    haveNextNextGaussian = in.readBoolean();
+    nextNextGaussian = in.readDouble();
+  }
+
+  /////////////////////////////////
+  // PROTECTED METHODS
+  /////////////////////////////////
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected int next(int bits) {
+    state = (state * MULTIPLIER + ADDEND) & MASK;
+    return (int)(state >>> (48 - bits));
+  }
+}
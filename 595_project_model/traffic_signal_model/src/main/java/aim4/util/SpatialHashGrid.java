@@ -0,0 +1,282 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.util;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A uniform-grid spatial hash of axis-aligned bounding boxes.  Each item is
+ * linked into every cell its bounding box overlaps, so a rectangle query
+ * only has to look at the items in the few cells that the rectangle covers.
+ * Bounding boxes lying partly or wholly outside the covered area are clamped
+ * to the border cells.
+ * <p>
+ * The grid is meant to be cleared and refilled once per simulation step.
+ * All bookkeeping is kept in primitive arrays that grow on demand and are
+ * reused across rebuilds, so that a warmed-up grid does not allocate.
+ *
+ * @param <T>  the type of the items
+ */
+public class SpatialHashGrid<T> {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The initial capacity of the item and node arrays */
+  private static final int INITIAL_CAPACITY = 64;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The x-coordinate of the lower left corner of the covered area */
+  private final double minX;
+  /** The y-coordinate of the lower left corner of the covered area */
+  private final double minY;
+  /** The width and height of a cell */
+  private final double cellSize;
+  /** The number of columns of cells */
+  private final int columns;
+  /** The number of rows of cells */
+  private final int rows;
+  /** The first node of each cell, or -1 if the cell is empty */
+  private final int[] cellHead;
+  /** The cells that are not empty */
+  private int[] usedCells;
+  /** The number of cells that are not empty */
+  private int numOfUsedCells;
+
+  /** The items */
+  private Object[] items;
+  /** The bounding boxes of the items, as (minX, minY, maxX, maxY) */
+  private double[] bounds;
+  /** The stamp of the last query that visited each item */
+  private int[] itemStamp;
+  /** The number of items */
+  private int numOfItems;
+
+  /** The item referred to by each node */
+  private int[] nodeItem;
+  /** The next node in the same cell, or -1 */
+  private int[] nodeNext;
+  /** The number of nodes */
+  private int numOfNodes;
+
+  /** The stamp of the current query */
+  private int queryStamp;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a spatial hash grid.
+   *
+   * @param area      the area covered by the grid
+   * @param cellSize  the width and height of a cell
+   */
+  public SpatialHashGrid(Rectangle2D area, double cellSize) {
+    assert cellSize > 0.0;
+    this.minX = area.getMinX();
+    this.minY = area.getMinY();
+    this.cellSize = cellSize;
+    this.columns = Math.max(1, (int)Math.ceil(area.getWidth() / cellSize));
+    this.rows = Math.max(1, (int)Math.ceil(area.getHeight() / cellSize));
+    this.cellHead = new int[columns * rows];
+    Arrays.fill(cellHead, -1);
+    this.usedCells = new int[INITIAL_CAPACITY];
+    this.items = new Object[INITIAL_CAPACITY];
+    this.bounds = new double[4 * INITIAL_CAPACITY];
+    this.itemStamp = new int[INITIAL_CAPACITY];
+    this.nodeItem = new int[INITIAL_CAPACITY];
+    this.nodeNext = new int[INITIAL_CAPACITY];
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Remove all items from the grid.
+   */
+  public void clear() {
+    for(int i = 0; i < numOfUsedCells; i++) {
+      cellHead[usedCells[i]] = -1;
+    }
+    Arrays.fill(items, 0, numOfItems, null);
+    numOfUsedCells = 0;
+    numOfItems = 0;
+    numOfNodes = 0;
+  }
+
+  /**
+   * Get the number of items in the grid.
+   *
+   * @return the number of items in the grid
+   */
+  public int size() {
+    return numOfItems;
+  }
+
+  /**
+   * Add an item to the grid.
+   *
+   * @param item  the item
+   * @param box   the bounding box of the item
+   */
+  public void add(T item, Rectangle2D box) {
+    int id = numOfItems++;
+    if (id == items.length) {
+      items = Arrays.copyOf(items, 2 * id);
+      bounds = Arrays.copyOf(bounds, 8 * id);
+      itemStamp = Arrays.copyOf(itemStamp, 2 * id);
+    }
+    items[id] = item;
+    bounds[4*id]   = box.getMinX();
+    bounds[4*id+1] = box.getMinY();
+    bounds[4*id+2] = box.getMaxX();
+    bounds[4*id+3] = box.getMaxY();
+    itemStamp[id] = queryStamp;
+
+    int c0 = column(box.getMinX());
+    int c1 = column(box.getMaxX());
+    int r0 = row(box.getMinY());
+    int r1 = row(box.getMaxY());
+    for(int r = r0; r <= r1; r++) {
+      for(int c = c0; c <= c1; c++) {
+        link(r * columns + c, id);
+      }
+    }
+  }
+
+  /**
+   * Find the items whose bounding boxes intersect a given rectangle.  Each
+   * item is reported at most once, in no particular order.  The caller
+   * still has to perform any exact geometric test on the candidates.
+   *
+   * @param rect    the query rectangle
+   * @param result  the list to which the items are appended
+   */
+  @SuppressWarnings("unchecked")
+  public void query(Rectangle2D rect, List<T> result) {
+    double x0 = rect.getMinX();
+    double y0 = rect.getMinY();
+    double x1 = rect.getMaxX();
+    double y1 = rect.getMaxY();
+    int stamp = nextQueryStamp();
+    int c0 = column(x0);
+    int c1 = column(x1);
+    int r0 = row(y0);
+    int r1 = row(y1);
+    for(int r = r0; r <= r1; r++) {
+      for(int c = c0; c <= c1; c++) {
+        for(int n = cellHead[r * columns + c]; n >= 0; n = nodeNext[n]) {
+          int id = nodeItem[n];
+          if (itemStamp[id] != stamp) {
+            itemStamp[id] = stamp;
+            if (bounds[4*id] <= x1 && x0 <= bounds[4*id+2]
+                && bounds[4*id+1] <= y1 && y0 <= bounds[4*id+3]) {
+              result.add((T)items[id]);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the column of the cell containing a given x-coordinate, clamped to
+   * the grid.
+   *
+   * @param x  the x-coordinate
+   * @return the column
+   */
+  private int column(double x) {
+    int c = (int)Math.floor((x - minX) / cellSize);
+    return c < 0 ? 0 : (c >= columns ? columns - 1 : c);
+  }
+
+  /**
+   * Get the row of the cell containing a given y-coordinate, clamped to
+   * the grid.
+   *
+   * @param y  the y-coordinate
+   * @return the row
+   */
+  private int row(double y) {
+    int r = (int)Math.floor((y - minY) / cellSize);
+    return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+  }
+
+  /**
+   * Link an item into a cell.
+   *
+   * @param cell  the index of the cell
+   * @param id    the index of the item
+   */
+  private void link(int cell, int id) {
+    if (cellHead[cell] < 0) {
+      if (numOfUsedCells == usedCells.length) {
+        usedCells = Arrays.copyOf(usedCells, 2 * numOfUsedCells);
+      }
+      usedCells[numOfUsedCells++] = cell;
+    }
+    int n = numOfNodes++;
+    if (n == nodeItem.length) {
+      nodeItem = Arrays.copyOf(nodeItem, 2 * n);
+      nodeNext = Arrays.copyOf(nodeNext, 2 * n);
+    }
+    nodeItem[n] = id;
+    nodeNext[n] = cellHead[cell];
+    cellHead[cell] = n;
+  }
+
+  /**
+   * Start a new query.
+   *
+   * @return the stamp of the new query
+   */
+  private int nextQueryStamp() {
+    if (++queryStamp == Integer.MAX_VALUE) {
+      // stamps wrapped around; make sure no item carries a stale stamp
+      Arrays.fill(itemStamp, 0);
+      queryStamp = 1;
+    }
+    return queryStamp;
+  }
+}
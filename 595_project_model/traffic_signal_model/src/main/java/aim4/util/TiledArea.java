@@ -128,6 +128,16 @@ public class TiledArea {
   private final double yLength;
   /** The tiles in this area. */
   private final Tile[][] tiles;
+  /**
+   * The x-coordinates of the sides of the columns of tiles: the left side
+   * of column c is at 2c and the right side at 2c+1.
+   */
+  private final double[] columnSides;
+  /**
+   * The y-coordinates of the sides of the rows of tiles: the lower side of
+   * row r is at 2r and the upper side at 2r+1.
+   */
+  private final double[] rowSides;
   /** A mapping from id to tiles */
   private final ArrayList<Tile> idToTiles;
   /** The number of tiles */
@@ -163,6 +173,8 @@ public class TiledArea {
     yNum = ((int)(rectangle.getHeight() / yLength)) + 1;
     tiles = new Tile[xNum][yNum];
     idToTiles = new ArrayList<Tile>(xNum*yNum) ;
+    columnSides = new double[2 * xNum];
+    rowSides = new double[2 * yNum];
     createTiles();
     identifyEdgeTiles();
   }
@@ -188,6 +200,10 @@ public class TiledArea {
           new Rectangle2D.Double(rectangle.getMinX() + xOffset,
                                  rectangle.getMinY() + yOffset,
                                  width, height);
+        columnSides[2 * x] = tileRect.getMinX();
+        columnSides[2 * x + 1] = tileRect.getMaxX();
+        rowSides[2 * y] = tileRect.getMinY();
+        rowSides[2 * y + 1] = tileRect.getMaxY();
         // Now that we have a rectangle for the tile, we can figure out
         // whether it is actually in the area
         if(area.intersects(tileRect)) {
@@ -338,4 +354,86 @@ public class TiledArea {
     return occupiedTiles;
   }
 
+  /**
+   * Find the tiles that are occupied by a convex polygon, such as a vehicle
+   * given by its corner points.  The result is the same as that of
+   * {@link #findOccupiedTiles(Shape)} on the polygon, in the same order,
+   * but no Shape is built and nothing is allocated: for each column of
+   * tiles that the polygon overlaps, the vertical extent of the polygon
+   * within the column is computed from its vertices and edges, and the
+   * tiles of the column that overlap the extent are occupied.
+   *
+   * @param polygon  the coordinates of the vertices of the convex polygon
+   *                 in order: x0, y0, x1, y1, ...
+   * @param tileIds  the array into which the IDs of the occupied tiles are
+   *                 written; it must be able to hold as many IDs as the
+   *                 number of tiles
+   * @return the number of occupied tiles
+   */
+  public int findOccupiedTiles(float[] polygon, int[] tileIds) {
+    int n = polygon.length;
+    // the bounding box of the polygon
+    double minX = polygon[0];
+    double maxX = polygon[0];
+    double minY = polygon[1];
+    double maxY = polygon[1];
+    for(int i = 2; i < n; i += 2) {
+      minX = Math.min(minX, polygon[i]);
+      maxX = Math.max(maxX, polygon[i]);
+      minY = Math.min(minY, polygon[i + 1]);
+      maxY = Math.max(maxY, polygon[i + 1]);
+    }
+    int firstColumn =
+      Math.max(0, (int)((minX - rectangle.getMinX()) / xLength));
+    int lastColumn =
+      Math.min(xNum - 1, (int)((maxX - rectangle.getMinX()) / xLength));
+
+    int numOfOccupiedTiles = 0;
+    for(int c = firstColumn; c <= lastColumn; c++) {
+      double left = columnSides[2 * c];
+      double right = columnSides[2 * c + 1];
+      if (maxX <= left || minX >= right) {
+        continue;  // the polygon at most touches the column
+      }
+      // The extent of the polygon within the column is spanned by the
+      // vertices in the column and the points where the edges cross the
+      // sides of the column.
+      double low = Double.MAX_VALUE;
+      double high = -Double.MAX_VALUE;
+      for(int i = 0; i < n; i += 2) {
+        int j = (i + 2) % n;
+        double x0 = polygon[i];
+        double y0 = polygon[i + 1];
+        double x1 = polygon[j];
+        double y1 = polygon[j + 1];
+        if (left <= x0 && x0 <= right) {
+          low = Math.min(low, y0);
+          high = Math.max(high, y0);
+        }
+        if ((x0 < left) != (x1 < left)) {
+          double y = y0 + (left - x0) * (y1 - y0) / (x1 - x0);
+          low = Math.min(low, y);
+          high = Math.max(high, y);
+        }
+        if ((x0 < right) != (x1 < right)) {
+          double y = y0 + (right - x0) * (y1 - y0) / (x1 - x0);
+          low = Math.min(low, y);
+          high = Math.max(high, y);
+        }
+      }
+      int firstRow =
+        Math.max(0, (int)((low - rectangle.getMinY()) / yLength));
+      int lastRow =
+        Math.min(yNum - 1, (int)((high - rectangle.getMinY()) / yLength));
+      for(int r = firstRow; r <= lastRow; r++) {
+        Tile tile = tiles[c][r];
+        if (tile != null && low < rowSides[2 * r + 1]
+            && high > rowSides[2 * r]) {
+          tileIds[numOfOccupiedTiles++] = tile.getId();
+        }
+      }
+    }
+    return numOfOccupiedTiles;
+  }
+
 }
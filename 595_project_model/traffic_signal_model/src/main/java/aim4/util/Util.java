@@ -34,7 +34,6 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
-import aim4.config.Condor;
 import aim4.config.Constants;
 import java.io.BufferedReader;
 import java.io.DataInputStream;
@@ -60,21 +59,6 @@ public class Util {
   /** The global random number generator */
   public static final Random random = new Random(randSeed);
 
-  static {
-    if (Condor.IS_CONDOR_EXIST) {
-      // To make sure different processes on Condor receives different random
-      // seeds, different processes sleep for a different time.
-      try{
-        Thread.sleep(Condor.CONDOR_ID * 10);
-      } catch(InterruptedException e){
-        // ignore the interruption by another thread
-      }
-      randSeed = Util.random.nextLong() + Condor.CONDOR_ID;
-      Util.random.setSeed(randSeed);
-    }
-
-  }
-
 
   /////////////////////////////////
   // PUBLIC METHODS
@@ -231,7 +215,19 @@ public class Util {
    *         to the distribution
    */
   public static int randomIndex(List<Double> distribution) {
-    double a = Util.random.nextDouble();
+    return randomIndex(distribution, Util.random);
+  }
+
+  /**
+   * Choose a number according to a finite probability distribution.
+   *
+   * @param distribution  the probability distribution
+   * @param random        the random number generator
+   * @return an index of the distribution that is randomly chosen according
+   *         to the distribution
+   */
+  public static int randomIndex(List<Double> distribution, Random random) {
+    double a = random.nextDouble();
     for(int i=0; i<distribution.size(); i++) {
       a -= distribution.get(i);
       if (a<0.0) {
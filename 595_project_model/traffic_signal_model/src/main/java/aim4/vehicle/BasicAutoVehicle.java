@@ -49,6 +49,8 @@ import aim4.msg.v2i.V2IMessage;
 public class BasicAutoVehicle extends BasicVehicle
                               implements AutoVehicleSimView {
 
+  private static final long serialVersionUID = 1L;
+
   /////////////////////////////////
   // CONSTANTS
   /////////////////////////////////
@@ -237,8 +239,76 @@ public class BasicAutoVehicle extends BasicVehicle
                           double targetVelocity,
                           double acceleration,
                           double currentTime) {
+    this(spec, pos, heading, steeringAngle, velocity, targetVelocity,
+         acceleration, currentTime, null);
+  }
+
+  /**
+   * Construct a vehicle whose state is kept in a given store.
+   *
+   * @param spec            the vehicle's specification
+   * @param pos             the initial position of the Vehicle
+   * @param heading         the initial heading of the Vehicle
+   * @param steeringAngle   the initial steering angle of the Vehicle
+   * @param velocity        the initial velocity of the Vehicle
+   * @param targetVelocity  the initial target velocity
+   * @param acceleration    the initial acceleration of the Vehicle
+   * @param currentTime     the current time
+   * @param stateStore      the store of the state of the vehicle; null if
+   *                        the vehicle keeps its state in a store of its own
+   */
+  public BasicAutoVehicle(VehicleSpec spec,
+                          Point2D pos,
+                          double heading,
+                          double steeringAngle,
+                          double velocity,
+                          double targetVelocity,
+                          double acceleration,
+                          double currentTime,
+                          VehicleStateStore stateStore) {
     super(spec, pos, heading, velocity, steeringAngle, acceleration,
-          targetVelocity, currentTime);
+          targetVelocity, currentTime, stateStore);
+  }
+
+  /**
+   * Reset the vehicle to the state it has right after it is constructed with
+   * the given values, such that the vehicle and its driver can be reused for
+   * a new trip.  The specification of the vehicle and the driver do not
+   * change.
+   *
+   * @param pos             the initial position of the Vehicle
+   * @param heading         the initial heading of the Vehicle
+   * @param steeringAngle   the initial steering angle of the Vehicle
+   * @param velocity        the initial velocity of the Vehicle
+   * @param targetVelocity  the initial target velocity
+   * @param acceleration    the initial acceleration of the Vehicle
+   * @param currentTime     the current time
+   */
+  public void reset(Point2D pos,
+                    double heading,
+                    double steeringAngle,
+                    double velocity,
+                    double targetVelocity,
+                    double acceleration,
+                    double currentTime) {
+    super.reset(pos, heading, velocity, steeringAngle, acceleration,
+                targetVelocity, currentTime);
+    v2iOutbox.clear();
+    i2vInbox.clear();
+    bitsReceived = 0;
+    bitsTransmitted = 0;
+    intervalometer.reset();
+    lrfMode = LRFMode.DISABLED;
+    lrfSensing = false;
+    lrfDistance.reset();
+    vehicleTracking = false;
+    vehicleTrackingTargetLane = null;
+    frontVehicleDistanceSensor.reset();
+    rearVehicleDistanceSensor.reset();
+    frontVehicleSpeedSensor.reset();
+    rearVehicleSpeedSensor.reset();
+    lastV2IMessage = null;
+    driver.reset();
   }
 
 
@@ -33,7 +33,10 @@ package aim4.vehicle;
 import java.awt.Shape;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
-import java.util.Iterator;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.List;
 
 import aim4.config.Constants;
@@ -44,940 +47,16 @@ import aim4.util.GeomUtil;
 import aim4.util.Util;
 
 /**
- * The most basic form of a vehicle.
+ * The most basic form of a vehicle.  The kinematic state of the vehicle is
+ * kept in a slot of a {@link VehicleStateStore}, which the vehicle either
+ * owns or shares with the other vehicles of a simulator, and the vehicle is
+ * a view over that slot.
  */
-public abstract class BasicVehicle implements VehicleSimView {
+public abstract class BasicVehicle implements VehicleSimView, Serializable {
 
-  /////////////////////////////////
-  // CONSTANTS
-  /////////////////////////////////
-
-  /**
-   * Constant used to determine what is "straight" for vehicles
-   * because floating point numbers are stupid and computers don't know
-   * how to do L'H&ocirc;pital's rule.
-   */
-  private static final double MIN_STEERING_THRESHOLD = 0.00001;
+  private static final long serialVersionUID = 1L;
 
   private double waitTime = 0;
-  /////////////////////////////////
-  // NESTED CLASSES
-  /////////////////////////////////
-
-  /**
-   * The movement of a vehicle.
-   */
-  public interface Movement {
-    /**
-     * Get the position of the vehicle.
-     *
-     * @return the position of the vehicle
-     */
-    Point2D getPosition();
-
-    /**
-     * Get the heading of the vehicle
-     *
-     * @return the heading of the vehicle
-     */
-    double getHeading();
-
-    /**
-     * Get the velocity of the vehicle
-     *
-     * @return the velocity of the vehicle
-     */
-    double getVelocity();
-
-    /**
-     * Move the vehicle for a given period of time.
-     *
-     * @param currentTime  the current time
-     * @param timeStep     the period of time for which the vehicle moves.
-     */
-    void move(double currentTime, double timeStep);
-  }
-
-
-  /**
-   * The non-acceleration movement
-   */
-  public static abstract class NonAccelMovement implements Movement {
-
-    /////////////////////////////////
-    // PROTECTED FIELDS
-    /////////////////////////////////
-
-    /**
-     * The specification of the vehicle
-     */
-    protected final VehicleSpec spec;
-    /**
-     * The position of the vehicle, represented by the point at
-     * the center of the front of the Vehicle.
-     */
-    protected Point2D position;
-    /** The direction of the vehicle */
-    protected double heading;
-    /** The velocity of the vehicle */
-    protected double velocity;
-
-    /////////////////////////////////
-    // CONSTRUCTOR
-    /////////////////////////////////
-
-    /**
-     * Create a non-acceleration movement.
-     *
-     * @param spec      the specification of the vehicle
-     * @param position  the position
-     * @param heading   the heading
-     * @param velocity  the velocity
-     */
-    public NonAccelMovement(VehicleSpec spec, Point2D position, double heading,
-                            double velocity) {
-      this.spec = spec;
-      this.position = position;
-      this.heading = heading;
-      this.velocity = velocity;
-    }
-
-
-    /////////////////////////////////
-    // PUBLIC METHODS
-    /////////////////////////////////
-
-    // there should be no setters for these fields.
-
-    /**
-     * Get the vehicle specification.
-     *
-     * @return the vehicle specification
-     */
-    public final VehicleSpec getVehicleSpec() {
-      return spec;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public Point2D getPosition() {
-      return position;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public double getHeading() {
-      return heading;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public double getVelocity() {
-      return velocity;
-    }
-
-    /////////////////////////////////
-    // PROTECTED METHODS
-    /////////////////////////////////
-
-    /**
-     * Set the velocity with respect to the physical limit of the vehicle.
-     *
-     * @param velocity  the velocity
-     */
-    protected void setVelocityWithBound(double velocity) {
-      this.velocity = Util.constrain(velocity,
-                                     spec.getMinVelocity(),
-                                     spec.getMaxVelocity());
-    }
-
-
-    /////////////////////////////////
-    // DEBUG
-    /////////////////////////////////
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public String toString() {
-      return "Pos=(" + Constants.ONE_DEC.format(position.getX()) + "," +
-             Constants.ONE_DEC.format(position.getY()) + ")," +
-             "Heading=" + Constants.TWO_DEC.format(heading) + "," +
-             "Velocity=" + Constants.TWO_DEC.format(velocity);
-    }
-  }
-
-
-  /**
-   * The steering movement.
-   */
-  public static class SteeringMovement extends NonAccelMovement {
-
-    /////////////////////////////////
-    // PROTECTED FIELDS
-    /////////////////////////////////
-
-    /** The steering angle */
-    private double steeringAngle;
-
-    /////////////////////////////////
-    // CONSTRUCTORS
-    /////////////////////////////////
-
-    /**
-     * Create a steering movement.
-     *
-     * @param spec           the vehicle specification
-     * @param position       the position
-     * @param heading        the heading
-     * @param velocity       the velocity
-     * @param steeringAngle  the steering angle
-     */
-    public SteeringMovement(VehicleSpec spec, Point2D position, double heading,
-                            double velocity, double steeringAngle) {
-      super(spec, position, heading, velocity);
-      this.steeringAngle = steeringAngle;
-    }
-
-    /////////////////////////////////
-    // PUBLIC METHODS
-    /////////////////////////////////
-
-    /**
-     * Get the steering angle.
-     *
-     * @return the steering angle
-     */
-    public double getSteeringAngle() {
-      return steeringAngle;
-    }
-
-    /////////////////////////////////
-    // PUBLIC METHODS
-    /////////////////////////////////
-
-    // control
-
-    /**
-     * Set the steering angle with respect to the physical limit of the vehicle.
-     *
-     * @param steeringAngle  the steering angle
-     */
-    public void setSteeringAngleWithBound(double steeringAngle) {
-      this.steeringAngle = Util.constrain(steeringAngle,
-                                          -1.0 * spec.getMaxSteeringAngle(),
-                                          spec.getMaxSteeringAngle());
-    }
-
-    /////////////////////////////////
-    // PROTECTED METHODS
-    /////////////////////////////////
-
-    /**
-     * Move the vehicle while holding all vehicle properties constant.
-     *
-     * @param timeStep the length of time for which to move the Vehicle
-     */
-    @Override
-    public void move(double currentTime, double timeStep) {
-      // If the steering angle is sufficiently small, taking its tangent will
-      // totally mess everything up.  Instead we assume the vehicle is moving
-      // straight.
-      if (Math.abs(steeringAngle) < MIN_STEERING_THRESHOLD) {
-        double endX = position.getX() + velocity * Math.cos(heading) *
-                                        timeStep;
-        double endY = position.getY() + velocity * Math.sin(heading) *
-                                        timeStep;
-        position = new Point2D.Double(endX, endY);
-        // no need to update the heading
-      } else {
-        // Things are more complicated now...
-        // Use the following differential equations:
-        // d(phi)/dt = v * tan(psi) / L
-        // dx/dt = v * cos(phi)
-        // dy/dt = v * sin(phi),
-        // where L is the wheelbase, (x,y) are the coordinates of the point
-        // between the back wheels, psi is the steering angle, phi is the
-        // heading of the vehicle, and v is the vehicle's velocity.
-
-        // First, calculate d(phi)/dt
-        double rotationRate =
-            velocity * (Math.tan(steeringAngle) / spec.getWheelbase());
-        // Now calculate the final heading of the vehicle
-        double endHeading =
-            GeomMath.canonicalAngle(heading + rotationRate * timeStep);
-
-        // We're going to move the point between the back wheels, so let's find
-        // out where it is.
-        Point2D p = spec.getPointBetweenRearWheels(position, heading);
-        // These are the solved forms of the differential equations
-        double endXdelta =
-            p.getX() - (spec.getWheelbase() / Math.tan(steeringAngle)) *
-                       (Math.sin(heading) - Math.sin(endHeading));
-        double endYdelta =
-            p.getY() - (spec.getWheelbase() / Math.tan(steeringAngle)) *
-                       (Math.cos(endHeading) - Math.cos(heading));
-        // Update the position and heading
-        double endX =
-            endXdelta + spec.getRearAxleDisplacement() * Math.cos(endHeading);
-        double endY =
-            endYdelta + spec.getRearAxleDisplacement() * Math.sin(endHeading);
-        position = new Point2D.Double(endX, endY);
-        heading = endHeading;
-      }
-    }
-
-    /////////////////////////////////
-    // DEBUG
-    /////////////////////////////////
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public String toString() {
-      return super.toString() + ", " +
-             "steeringAngle=" + Constants.TWO_DEC.format(steeringAngle);
-    }
-
-  }
-
-
-  /**
-   * The movement with acceleration interface
-   */
-  public interface MovementWithAccel extends Movement {
-
-    /**
-     * Get the acceleration of the vehicle
-     *
-     * @return the acceleration of the vehicle
-     */
-    double getAcceleration();
-
-    /**
-     * Set the acceleration with respect to the physical limit of the vehicle.
-     *
-     * @param acceleration  the acceleration
-     */
-    void setAccelerationWithBound(double acceleration);
-  }
-
-
-  /**
-   * The physical movement.
-   */
-  public static class PhysicalMovement implements MovementWithAccel {
-
-    /////////////////////////////////
-    // PROTECTED FIELDS
-    /////////////////////////////////
-
-    /** The specification of the vehicle */
-    protected final VehicleSpec spec;
-
-    /** The underlying basic movement */
-    private NonAccelMovement nonAccelMovement;
-
-    /** The acceleration of the vehicle */
-    private double acceleration;
-
-    /////////////////////////////////
-    // CONSTRUCTORS
-    /////////////////////////////////
-
-    /**
-     * Create the physical movement.
-     *
-     * @param nonAccelMovement  the non-acceleration movement
-     * @param acceleration      the acceleration
-     */
-    public PhysicalMovement(NonAccelMovement nonAccelMovement,
-                            double acceleration) {
-      this.spec = nonAccelMovement.getVehicleSpec();
-      this.nonAccelMovement = nonAccelMovement;
-      this.acceleration = acceleration;
-    }
-
-    /////////////////////////////////
-    // PUBLIC METHODS
-    /////////////////////////////////
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public Point2D getPosition() {
-      return nonAccelMovement.getPosition();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public double getHeading() {
-      return nonAccelMovement.getHeading();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public double getVelocity() {
-      return nonAccelMovement.getVelocity();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public double getAcceleration() {
-      return acceleration;
-    }
-
-    /**
-     * Get the non acceleration movement.
-     *
-     * @return the non acceleration movement
-     */
-    public NonAccelMovement getNonAccelMovement() {
-      return nonAccelMovement;
-    }
-
-    /////////////////////////////////
-    // PUBLIC METHODS
-    /////////////////////////////////
-
-    // control
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void setAccelerationWithBound(double acceleration) {
-      this.acceleration = Util.constrain(acceleration,
-                                         spec.getMaxDeceleration(),
-                                         spec.getMaxAcceleration());
-    }
-
-    /**
-     * Maintain the speed of the vehicle.
-     */
-    public void coast() {
-      setAccelerationWithBound(0.0);
-    }
-
-    /////////////////////////////////
-    // PUBLIC METHODS
-    /////////////////////////////////
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void move(double currentTime, double timeStep) {
-      if (Util.isDoubleZero(acceleration)) {
-        nonAccelMovement.move(currentTime, timeStep);
-      } else {
-        double maxChange = acceleration * timeStep;
-        double velocity = nonAccelMovement.getVelocity();
-        nonAccelMovement.setVelocityWithBound(velocity + maxChange / 2.0);
-        nonAccelMovement.move(currentTime, timeStep);
-        nonAccelMovement.setVelocityWithBound(velocity + maxChange);
-      }
-    }
-
-    /////////////////////////////////
-    // PROTECTED METHODS
-    /////////////////////////////////
-
-    /**
-     * Move the vehicle while holding all vehicle properties, including
-     * the acceleration, constant.
-     *
-     * @param currentTime  the current time
-     * @param timeStep     the length of time for which to move the Vehicle
-     */
-    protected void moveWithoutAcceleration(double currentTime, double timeStep) {
-      nonAccelMovement.move(currentTime, timeStep);
-    }
-
-    /**
-     * Set the velocity with respect to the physical limit of the vehicle.
-     *
-     * @param velocity  the velocity
-     */
-    protected void setVelocityWithBound(double velocity) {
-      nonAccelMovement.setVelocityWithBound(velocity);
-    }
-
-    /////////////////////////////////
-    // DEBUG
-    /////////////////////////////////
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public String toString() {
-      return nonAccelMovement.toString() + ", " +
-             "acceleration=" + Constants.TWO_DEC.format(acceleration);
-    }
-
-  }
-
-
-  /**
-   * A move-to-target-velocity movement.
-   */
-  public static class MoveToTargetVelocityMovement extends PhysicalMovement {
-
-    /////////////////////////////////
-    // PROTECTED FIELDS
-    /////////////////////////////////
-
-    /** The velocity at which the driver would like to be traveling. */
-    private double targetVelocity;
-
-
-    /////////////////////////////////
-    // CONSTRUCTORS
-    /////////////////////////////////
-
-    /**
-     * Create a move-to-target-velocity movement.
-     *
-     * @param spec            the vehicle specification
-     * @param position        the position
-     * @param heading         the heading
-     * @param velocity        the velocity
-     * @param steeringAngle   the steering angle
-     * @param acceleration    the acceleration
-     * @param targetVelocity  the target velocity
-     */
-    public MoveToTargetVelocityMovement(VehicleSpec spec, Point2D position,
-                                        double heading, double velocity,
-                                        double steeringAngle,
-                                        double acceleration,
-                                        double targetVelocity) {
-      this(new SteeringMovement(spec, position, heading, velocity,
-                                steeringAngle),
-           acceleration, targetVelocity);
-    }
-
-    /**
-     * Create a move-to-target-velocity movement.
-     *
-     * @param basicMovement   the basic movement
-     * @param acceleration
-     * @param targetVelocity
-     */
-    public MoveToTargetVelocityMovement(NonAccelMovement basicMovement,
-                                        double acceleration,
-                                        double targetVelocity) {
-      super(basicMovement, acceleration);
-      this.targetVelocity = targetVelocity;
-    }
-
-    /////////////////////////////////
-    // PUBLIC METHODS
-    /////////////////////////////////
-
-    // control
-
-    /**
-     * Set the target velocity of the velocity
-     *
-     * @param targetVelocity  the target velocity
-     */
-    public void setTargetVelocityWithBound(double targetVelocity) {
-      this.targetVelocity = Util.constrain(targetVelocity,
-                                           spec.getMinVelocity(),
-                                           spec.getMaxVelocity());
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void setAccelerationWithBound(double acceleration) {
-      super.setAccelerationWithBound(acceleration);
-      double acceleration2 = getAcceleration();
-      if (Util.isDoubleZero(acceleration2)) {
-        targetVelocity = getVelocity();
-      } else if (acceleration2 > 0.0) {
-        targetVelocity = spec.getMaxVelocity();
-      } else {  // this.acceleration < 0.0
-        targetVelocity = spec.getMinVelocity();
-      }
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void coast() {
-      setAccelerationWithBound(0.0);
-      setTargetVelocityWithBound(getVelocity());
-    }
-
-    /**
-     * Set the Vehicle's acceleration to its minimum value without going
-     * backward. Obeys limits on acceleration as well as disabilities.
-     */
-    public void slowToStop() {
-      if (getVelocity() > 0.0) {
-        setAccelerationWithBound(spec.getMaxDeceleration());
-      } else if (getVelocity() < 0.0) {
-        setAccelerationWithBound(spec.getMaxAcceleration());
-      } else {  // velocity == 0.0
-        setAccelerationWithBound(0.0);
-      }
-      setTargetVelocityWithBound(0.0);
-    }
-
-    /**
-     * Set the Vehicle's acceleration to its maximum value.  Obeys limits on
-     * setMaxAccelWithMaxTargetVelocity as well as disabilities.
-     */
-    public void setMaxAccelWithMaxTargetVelocity() {
-      setAccelerationWithBound(spec.getMaxAcceleration());
-      setTargetVelocityWithBound(spec.getMaxVelocity());
-    }
-
-    /**
-     * Set the target velocity (with maximum acceleration).
-     *
-     * @param targetVelocity  the target velocity
-     */
-    public void setTargetVelocityWithMaxAccel(double targetVelocity) {
-      if (getVelocity() < targetVelocity) {
-        setAccelerationWithBound(spec.getMaxAcceleration());
-        setTargetVelocityWithBound(targetVelocity);
-      } else if (getVelocity() > targetVelocity) {
-        setAccelerationWithBound(spec.getMaxDeceleration());
-        setTargetVelocityWithBound(targetVelocity);
-      } else { // m2.getVelocity() == targetVelocity
-        setAccelerationWithBound(0.0);
-      }
-    }
-
-    /**
-     * Set the acceleration with maximum target velocity.
-     *
-     * @param acceleration  the acceleration
-     */
-    public void setAccelWithMaxTargetVelocity(double acceleration) {
-      setAccelerationWithBound(acceleration);
-      if (acceleration > 0.0) {
-        setTargetVelocityWithBound(spec.getMaxVelocity());
-      } else if (acceleration < 0.0) {
-        setTargetVelocityWithBound(spec.getMinVelocity());
-      } else {  // acceleration == 0.0
-        setTargetVelocityWithBound(getVelocity());
-      }
-    }
-
-
-    /////////////////////////////////
-    // PUBLIC METHODS
-    /////////////////////////////////
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void move(double currentTime, double timeStep) {
-      double velocity = getVelocity();
-      double acceleration = getAcceleration();
-      // To be accurate, we may need to move this vehicle in two segments,
-      // depending on whether it is accelerating the whole time or not.
-      // First, determine which of these is the case.
-      if (Util.isDoubleZero(acceleration)) {
-        // no acceleration
-        moveWithoutAcceleration(currentTime, timeStep);
-      } else if (acceleration > 0.0) {
-        // If we're at or above our target velocity, we won't do any
-        // accelerating
-        if (velocity >= targetVelocity) {
-          moveWithoutAcceleration(currentTime, timeStep);
-        } else {
-          // Otherwise, we need to see if the vehicle will be accelerating the
-          // whole time.
-          double maxChange = acceleration * timeStep;
-          double requestedChange = targetVelocity - velocity;
-          // Yes, it is
-          if (requestedChange >= maxChange) {
-            // Set the velocity to half the change
-            setVelocityWithBound(velocity + maxChange / 2.0);
-            // Do the move
-            moveWithoutAcceleration(currentTime, timeStep);
-            // Set it the rest of the way
-            setVelocityWithBound(velocity + maxChange);
-          } else {
-            // Otherwise, this is a two-parter
-            // Find out how long it will take to make the change
-            double accelDuration = requestedChange / acceleration;
-            // Do the first part as above
-            setVelocityWithBound(velocity + requestedChange / 2.0);
-            moveWithoutAcceleration(currentTime, accelDuration);
-            setVelocityWithBound(velocity + requestedChange);
-            // Do the second part
-            moveWithoutAcceleration(currentTime + accelDuration,
-                                    timeStep - accelDuration);
-          }
-        }
-      } else {  // (acceleration  0.0)
-        // If we're at or above our target velocity, we won't do any
-        // accelerating
-        if (velocity <= targetVelocity) {
-          moveWithoutAcceleration(currentTime, timeStep);
-        } else {
-          // Otherwise, we need to see if the vehicle will be accelerating the
-          // whole time.
-          double maxChange = acceleration * timeStep;
-          double requestedChange = targetVelocity - velocity;
-          // Yes, it is
-          if (requestedChange <= maxChange) {
-            // Set the velocity to half the change
-            setVelocityWithBound(velocity + maxChange / 2.0);
-            // Do the move
-            moveWithoutAcceleration(currentTime, timeStep);
-            // Set it the rest of the way
-            setVelocityWithBound(velocity + maxChange);
-          } else {
-            // Otherwise, this is a two-parter
-            // Find out how long it will take to make the change
-            double accelDuration = requestedChange / acceleration;
-            // Do the first part as above
-            setVelocityWithBound(velocity + requestedChange / 2.0);
-            moveWithoutAcceleration(currentTime, accelDuration);
-            setVelocityWithBound(velocity + requestedChange);
-            // Do the second part
-            moveWithoutAcceleration(currentTime + accelDuration,
-                                    timeStep - accelDuration);
-          }
-        }
-      }
-    }
-
-    /////////////////////////////////
-    // DEBUG
-    /////////////////////////////////
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public String toString() {
-      return super.toString() + ", " +
-          "targetVelocity=" + Constants.TWO_DEC.format(targetVelocity);
-    }
-
-  }
-
-
-  /**
-   * The acceleration schedule movement.
-   */
-  public static class AccelScheduleMovement implements Movement {
-
-    /////////////////////////////////
-    // PRIVATE FIELDS
-    /////////////////////////////////
-
-    /** The underlying movement */
-    private MovementWithAccel baseMovement;
-
-    /** The acceleration schedule */
-    private AccelSchedule accelSchedule;
-
-
-    /////////////////////////////////
-    // CONSTRUCTORS
-    /////////////////////////////////
-
-
-    /**
-     * Create an acceleration schedule movement.
-     *
-     * @param baseMovement  the base movement
-     */
-    public AccelScheduleMovement(MovementWithAccel baseMovement) {
-      this(baseMovement, null);
-    }
-
-    /**
-     * Create an acceleration schedule movement.
-     *
-     * @param baseMovement   the base movement
-     * @param accelSchedule  the acceleration schedule
-     */
-    public AccelScheduleMovement(MovementWithAccel baseMovement,
-                                 AccelSchedule accelSchedule) {
-      this.baseMovement = baseMovement;
-      this.accelSchedule = accelSchedule;
-    }
-
-    /////////////////////////////////
-    // PUBLIC METHODS
-    /////////////////////////////////
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public Point2D getPosition() {
-      return baseMovement.getPosition();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public double getHeading() {
-      return baseMovement.getHeading();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public double getVelocity() {
-      return baseMovement.getVelocity();
-    }
-
-    /**
-     * Get the acceleration.
-     *
-     * @return the acceleration
-     */
-    public double getAcceleration() {
-      return baseMovement.getAcceleration();
-    }
-
-    /**
-     * Get the base movement.
-     *
-     * @return the base movement
-     */
-    public MovementWithAccel getBaseMovement() {
-      return baseMovement;
-    }
-
-    /**
-     * Get the acceleration schedule.
-     *
-     * @return the acceleration schedule
-     */
-    public AccelSchedule getAccelSchedule() {
-      return accelSchedule;
-    }
-
-
-    /////////////////////////////////
-    // PUBLIC METHODS
-    /////////////////////////////////
-
-    // control
-
-    /**
-     * Set the acceleration schedule.
-     *
-     * @param accelSchedule  the acceleration schedule
-     */
-    public void setAccelSchedule(AccelSchedule accelSchedule) {
-      this.accelSchedule = accelSchedule;
-    }
-
-
-    /////////////////////////////////
-    // PUBLIC METHODS
-    /////////////////////////////////
-
-    // TODO: rewrite the function to make it non-recursive.
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void move(double currentTime, double timeStep) {
-      if (accelSchedule != null) {
-        List<AccelSchedule.TimeAccel> tas = accelSchedule.getList();
-        Iterator<AccelSchedule.TimeAccel> iter = tas.iterator();
-
-        if (iter.hasNext()) {
-          AccelSchedule.TimeAccel ta = iter.next();
-
-          if (ta.getTime() > currentTime) {
-            // It means that the next acceleration update is in the future yet.
-            // keep using the existing acceleration
-            double dur = ta.getTime() - currentTime;
-            if (dur < timeStep) {
-              baseMovement.move(currentTime, dur);
-              move(currentTime + dur, timeStep - dur); // recursive call
-            } else {
-              baseMovement.move(currentTime, timeStep);  // and then exit
-            }
-          } else if (Util.isDoubleEqual(ta.getTime(), currentTime)) {
-            // update the acceleration
-            baseMovement.setAccelerationWithBound(ta.getAcceleration());
-            iter.remove();  // remove it since it has been consumed
-
-            // check to see if there is next acceleration update
-            if (iter.hasNext()) {
-              ta = iter.next();  // don't remove it, just look at the time.
-              double dur = ta.getTime() - currentTime;
-              if (dur < timeStep) {
-                baseMovement.move(currentTime, dur);
-                move(currentTime + dur, timeStep - dur); // recursive call
-              } else {
-                baseMovement.move(currentTime, timeStep);  // and then exit
-              }
-            } else {
-              // No more acceleration update, remove the acceleration profile
-              accelSchedule = null;
-              // continue with the base movement with the last acceleration
-              baseMovement.move(currentTime, timeStep);  // and then exit
-            }
-          } else {
-            iter.remove();  // remove it since the acceleration is in the past.
-            move(currentTime, timeStep);  // recursive call
-          }
-        } else {
-          // move without the acceleration schedule
-          accelSchedule = null;
-          baseMovement.move(currentTime, timeStep);
-        }
-      } else {
-        // move without the acceleration schedule
-        baseMovement.move(currentTime, timeStep);
-      }
-    }
-
-
-    /////////////////////////////////
-    // DEBUG
-    /////////////////////////////////
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public String toString() {
-      return baseMovement.toString() + ", " +
-             "accelSchedule=" + accelSchedule;
-    }
-
-  }
-
 
   /////////////////////////////////
   // PROTECTED FIELDS
@@ -992,16 +71,22 @@ public abstract class BasicVehicle implements VehicleSimView {
   /** The characteristics of the vehicle */
   protected VehicleSpec spec;
 
-  /** The movement mechanism */
-  protected Movement movement;
-
-  /** The current time */
-  protected double currentTime;
+  /** The time at which the vehicle was spawned */
+  private double spawnTime;
 
 
   /////////////////////////////////
   // PRIVATE FIELDS
   /////////////////////////////////
+
+  /**
+   * The store of the kinematic state of the vehicle.  It is not serialized;
+   * the state in the slot is written instead.
+   */
+  private transient VehicleStateStore stateStore;
+  /** The slot of the vehicle in the store; -1 if it has been released */
+  private transient int slot;
+
   /**
    * The basic gauges
    */
@@ -1045,7 +130,15 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   private Shape memoGetShape;
   /**
-   * Memoization cache for {@link #gaugeShape()}.
+   * The coordinates of the corners of {@link #getShape()}, as stored in the
+   * shape, i.e. in single precision: x0, y0, x1, y1, ...  The edges are
+   * measured against these, so that no segment objects are built.
+   */
+  private float[] memoShapeCoords = new float[8];
+  /**
+   * Memoization cache for {@link #gaugeShape()}; null until the shape is
+   * asked for after the last move.  Unlike the other memos it is filled
+   * lazily, since only the vehicle's own driver asks for it, and rarely.
    */
   private Shape memoGaugeShape;
 
@@ -1072,22 +165,115 @@ public abstract class BasicVehicle implements VehicleSimView {
                       double acceleration,
                       double targetVelocity,
                       double currentTime) {
+    this(spec, pos, heading, velocity, steeringAngle, acceleration,
+         targetVelocity, currentTime, null);
+  }
+
+  /**
+   * Construct a vehicle whose state is kept in a given store.
+   *
+   * @param spec            the vehicle's specification
+   * @param pos             the initial position of the Vehicle
+   * @param heading         the initial heading of the Vehicle
+   * @param steeringAngle   the initial steering angle of the Vehicle
+   * @param velocity        the initial velocity of the Vehicle
+   * @param targetVelocity  the initial target velocity
+   * @param acceleration    the initial acceleration of the Vehicle
+   * @param currentTime     the current time
+   * @param stateStore      the store of the state of the vehicle; null if
+   *                        the vehicle keeps its state in a store of its own
+   */
+  public BasicVehicle(VehicleSpec spec,
+                      Point2D pos,
+                      double heading,
+                      double velocity,
+                      double steeringAngle,
+                      double acceleration,
+                      double targetVelocity,
+                      double currentTime,
+                      VehicleStateStore stateStore) {
     this.vin = -1;    // no vin by default
     this.spec = spec;  // assume spec is a constant and will not change
 
-    movement = new MoveToTargetVelocityMovement(spec,
-                                                pos,
-                                                heading,
-                                                velocity,
-                                                steeringAngle,
-                                                acceleration,
-                                                targetVelocity);
+    this.stateStore =
+      (stateStore != null) ? stateStore : new VehicleStateStore(1);
+    this.slot = this.stateStore.acquire(spec);
+    this.stateStore.setState(slot, pos, heading, velocity, steeringAngle,
+                             acceleration, targetVelocity, currentTime);
+
+    // Update all the gauges and memos
+    updateGaugesAndMemos();
+
+    this.spawnTime = currentTime;
+  }
+
+  /**
+   * Reset the vehicle to the state it has right after it is constructed with
+   * the given values, such that the vehicle can be reused.  The
+   * specification of the vehicle does not change.
+   *
+   * @param pos             the initial position of the Vehicle
+   * @param heading         the initial heading of the Vehicle
+   * @param velocity        the initial velocity of the Vehicle
+   * @param steeringAngle   the initial steering angle of the Vehicle
+   * @param acceleration    the initial acceleration of the Vehicle
+   * @param targetVelocity  the initial target velocity
+   * @param currentTime     the current time
+   */
+  protected void reset(Point2D pos,
+                       double heading,
+                       double velocity,
+                       double steeringAngle,
+                       double acceleration,
+                       double targetVelocity,
+                       double currentTime) {
+    this.vin = -1;
+    waitTime = 0;
+
+    if (slot < 0) {
+      slot = stateStore.acquire(spec);
+    }
+    stateStore.setState(slot, pos, heading, velocity, steeringAngle,
+                        acceleration, targetVelocity, currentTime);
 
     // Update all the gauges and memos
     updateGaugesAndMemos();
 
-    this.currentTime = currentTime;
-    clock.record(currentTime);
+    this.spawnTime = currentTime;
+  }
+
+  /**
+   * Give the slot of the vehicle back to its state store.  The vehicle
+   * must be reset before it is used again.
+   */
+  public void releaseState() {
+    stateStore.release(slot);
+    slot = -1;
+  }
+
+  /**
+   * Move the state of the vehicle into another store, e.g. the store of
+   * the simulator after the vehicle is read from a snapshot.
+   *
+   * @param stateStore  the store
+   */
+  public void moveStateTo(VehicleStateStore stateStore) {
+    if (stateStore != this.stateStore) {
+      int newSlot = stateStore.acquire(spec);
+      stateStore.copyState(newSlot, this.stateStore, slot);
+      this.stateStore.release(slot);
+      this.stateStore = stateStore;
+      this.slot = newSlot;
+    }
+  }
+
+  /**
+   * Get the store of the state of the vehicle.
+   *
+   * @return the store of the state of the vehicle
+   */
+  public VehicleStateStore getStateStore() {
+    return stateStore;
   }
 
 
@@ -1127,6 +313,22 @@ public abstract class BasicVehicle implements VehicleSimView {
     return clock.read();
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getSpawnTime() {
+    return spawnTime;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getDistanceTraveled() {
+    return stateStore.getDistanceTraveled(slot);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -1144,7 +346,7 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public Point2D getPosition() {
-    return movement.getPosition();
+    return stateStore.getPosition(slot);
   }
 
   /**
@@ -1152,7 +354,7 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public double getHeading() {
-    return movement.getHeading();
+    return stateStore.getHeading(slot);
   }
 
   // TODO remove this after reorganizing getSteeringAngle
@@ -1163,17 +365,7 @@ public abstract class BasicVehicle implements VehicleSimView {
    * @return the steering angle of the vehicle
    */
   public double getSteeringAngle() {
-    if (movement instanceof PhysicalMovement) {
-      PhysicalMovement m2 = (PhysicalMovement)movement;
-      NonAccelMovement m3 = m2.getNonAccelMovement();
-      if (m3 instanceof SteeringMovement) {
-        return ((SteeringMovement)m3).getSteeringAngle();
-      } else {
-        throw new UnsupportedOperationException();
-      }
-    } else {
-      throw new UnsupportedOperationException();
-    }
+    return stateStore.getSteeringAngle(slot);
   }
 
   /**
@@ -1181,7 +373,7 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public double getVelocity() {
-    return movement.getVelocity();
+    return stateStore.getVelocity(slot);
   }
 
   /**
@@ -1189,13 +381,7 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public double getAcceleration() {
-    if (movement instanceof MovementWithAccel) {
-      return ((MovementWithAccel)movement).getAcceleration();
-    } else if (movement instanceof AccelScheduleMovement) {
-      return ((AccelScheduleMovement)movement).getAcceleration();
-    } else {
-      throw new UnsupportedOperationException();
-    }
+    return stateStore.getAcceleration(slot);
   }
 
   /**
@@ -1203,13 +389,7 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public AccelSchedule getAccelSchedule() {
-    if (movement instanceof AccelScheduleMovement) {
-      return ((AccelScheduleMovement)movement).getAccelSchedule();
-    } else {
-      // TODO: it should throw new UnsupportedOperationException()
-      // but for now, return null
-      return null;
-    }
+    return stateStore.getAccelSchedule(slot);
   }
 
 
@@ -1261,6 +441,9 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public Shape gaugeShape() {
+    if (memoGaugeShape == null) {
+      memoGaugeShape = GeomUtil.convertPointsToShape(gaugeCornerPoints());
+    }
     return memoGaugeShape;
   }
 
@@ -1269,12 +452,23 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public Shape getShape(double extra) {
-    Point2D[] points = spec.getCornerPoints(extra,
-                                            movement.getPosition(),
-                                            movement.getHeading());
+    Point2D[] points = spec.getCornerPoints(extra, getPosition(),
+                                            getHeading());
     return GeomUtil.convertPointsToShape(points);
   }
 
+  /**
+   * Get the coordinates of the corners of {@link #getShape(double)}
+   * without building the shape.
+   *
+   * @param extra   the fixed amount to add to each dimension of the vehicle
+   * @param coords  the array of length 8 into which the coordinates of the
+   *                corners are written: x0, y0, x1, y1, ...
+   */
+  public void getCornerCoords(double extra, float[] coords) {
+    spec.getCornerCoords(extra, getPosition(), getHeading(), coords);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -1283,16 +477,36 @@ public abstract class BasicVehicle implements VehicleSimView {
     return GeomMath.polygonalShapePerimeterSegments(getShape());
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getDistanceToEdges(Point2D p) {
+    double px = p.getX();
+    double py = p.getY();
+    double dist = Double.MAX_VALUE;
+    for(int i = 0; i < 8; i += 2) {
+      int j = (i + 2) % 8;
+      double d = Line2D.ptSegDist(memoShapeCoords[i], memoShapeCoords[i + 1],
+                                  memoShapeCoords[j], memoShapeCoords[j + 1],
+                                  px, py);
+      if (d < dist) {
+        dist = d;
+      }
+    }
+    return dist;
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public Point2D getPointAtMiddleFront(double delta) {
     Point2D p =
-        new Point2D.Double(movement.getPosition().getX()
-                               + delta * Math.cos(movement.getHeading()),
-                           movement.getPosition().getY()
-                               + delta * Math.sin(movement.getHeading()));
+        new Point2D.Double(stateStore.getX(slot)
+                               + delta * Math.cos(getHeading()),
+                           stateStore.getY(slot)
+                               + delta * Math.sin(getHeading()));
     return p;
   }
 
@@ -1321,7 +535,7 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public Point2D getCenterPoint() {
-    return spec.getCenterPoint(movement.getPosition(), movement.getHeading());
+    return spec.getCenterPoint(getPosition(), getHeading());
   }
 
   /**
@@ -1329,7 +543,7 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public Point2D[] getCornerPoints() {
-    return spec.getCornerPoints(movement.getPosition(), movement.getHeading());
+    return spec.getCornerPoints(getPosition(), getHeading());
   }
 
   /**
@@ -1349,8 +563,7 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public Point2D getPointAtRear() {
-    return spec.getPointAtRear(movement.getPosition(),
-                               movement.getHeading());
+    return spec.getPointAtRear(getPosition(), getHeading());
   }
 
   /**
@@ -1383,9 +596,7 @@ public abstract class BasicVehicle implements VehicleSimView {
   @Override
   public Shape[] getWheelShapes() {
     // assume the steering angle is 0
-    return spec.getWheelShapes(movement.getPosition(),
-                               movement.getHeading(),
-                               0.0);
+    return spec.getWheelShapes(getPosition(), getHeading(), 0.0);
   }
 
   /////////////////////////////////
@@ -1399,10 +610,16 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public void move(double timeStep) {
-    movement.move(currentTime, timeStep);
-    currentTime += timeStep;
+    stateStore.move(slot, timeStep);
     updateGaugesAndMemos();
+  }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void finishMove() {
+    updateGaugesAndMemos();
   }
 
   public double getWaitTime(double timeStep, double distance){
@@ -1414,6 +631,14 @@ public abstract class BasicVehicle implements VehicleSimView {
     return waitTime;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getWaitTime() {
+    return waitTime;
+  }
+
 
   /**
    * {@inheritDoc}
@@ -1428,26 +653,10 @@ public abstract class BasicVehicle implements VehicleSimView {
     double angle = GeomMath.angleToPoint(p, memoGaugePointBetweenFrontWheels);
     // Need to recenter this value to [-pi, pi]
     double newSteeringAngle =
-        Util.recenter(angle - movement.getHeading(), -1.0 * Math.PI, Math.PI);
-
+        Util.recenter(angle - getHeading(), -1.0 * Math.PI, Math.PI);
 
-    Movement m2 = movement;
-    if (m2 instanceof AccelScheduleMovement) {
-      m2 = ((AccelScheduleMovement) movement).getBaseMovement();
-    }
 
-    if (m2 instanceof PhysicalMovement) {
-      PhysicalMovement m3 = (PhysicalMovement) m2;
-      NonAccelMovement m4 = m3.getNonAccelMovement();
-      if (m4 instanceof SteeringMovement) {
-        SteeringMovement m5 = (SteeringMovement)m4;
-        m5.setSteeringAngleWithBound(newSteeringAngle);
-      } else {
-        throw new UnsupportedOperationException();
-      }
-    } else {
-      throw new UnsupportedOperationException();
-    }
+    stateStore.setSteeringAngleWithBound(slot, newSteeringAngle);
   }
 
   /**
@@ -1458,7 +667,8 @@ public abstract class BasicVehicle implements VehicleSimView {
     if (Debug.isPrintVehicleHighLevelControlOfVIN()) {
       System.err.printf("vin %d coast()\n", vin);
     }
-    switchToMoveToTargetVelocityMovement().coast();
+    stateStore.setAccelSchedule(slot, null);
+    stateStore.coast(slot);
   }
 
   /**
@@ -1469,7 +679,8 @@ public abstract class BasicVehicle implements VehicleSimView {
     if (Debug.isPrintVehicleHighLevelControlOfVIN()) {
       System.err.printf("vin %d slowToStop()\n", vin);
     }
-    switchToMoveToTargetVelocityMovement().slowToStop();
+    stateStore.setAccelSchedule(slot, null);
+    stateStore.slowToStop(slot);
   }
 
   /**
@@ -1480,7 +691,8 @@ public abstract class BasicVehicle implements VehicleSimView {
     if (Debug.isPrintVehicleHighLevelControlOfVIN()) {
       System.err.printf("vin %d accelerate()\n", vin);
     }
-    switchToMoveToTargetVelocityMovement().setMaxAccelWithMaxTargetVelocity();
+    stateStore.setAccelSchedule(slot, null);
+    stateStore.setMaxAccelWithMaxTargetVelocity(slot);
   }
 
   /**
@@ -1491,8 +703,8 @@ public abstract class BasicVehicle implements VehicleSimView {
     if (Debug.isPrintVehicleHighLevelControlOfVIN()) {
       System.err.printf("vin %d accelToTargetVelocity()\n", vin);
     }
-    switchToMoveToTargetVelocityMovement().setTargetVelocityWithMaxAccel(
-        targetVelocity);
+    stateStore.setAccelSchedule(slot, null);
+    stateStore.setTargetVelocityWithMaxAccel(slot, targetVelocity);
   }
 
   /**
@@ -1503,8 +715,8 @@ public abstract class BasicVehicle implements VehicleSimView {
     if (Debug.isPrintVehicleHighLevelControlOfVIN()) {
       System.err.printf("vin %d setAccelWithExtremeTargetVelocity()\n", vin);
     }
-    switchToMoveToTargetVelocityMovement().setAccelWithMaxTargetVelocity(
-        acceleration);
+    stateStore.setAccelSchedule(slot, null);
+    stateStore.setAccelWithMaxTargetVelocity(slot, acceleration);
   }
 
   /**
@@ -1515,7 +727,7 @@ public abstract class BasicVehicle implements VehicleSimView {
     if (Debug.isPrintVehicleHighLevelControlOfVIN()) {
       System.err.printf("vin %d set accelerate schedule = %s\n", vin, accelSchedule);
     }
-    switchToAccelScheduleMovement().setAccelSchedule(accelSchedule);
+    stateStore.setAccelSchedule(slot, accelSchedule);
   }
 
   /**
@@ -1526,7 +738,7 @@ public abstract class BasicVehicle implements VehicleSimView {
     if (Debug.isPrintVehicleHighLevelControlOfVIN()) {
       System.err.printf("vin %d removeAccelSchedule()\n", vin);
     }
-    switchToMoveToTargetVelocityMovement();
+    stateStore.setAccelSchedule(slot, null);
   }
 
 
@@ -1534,65 +746,79 @@ public abstract class BasicVehicle implements VehicleSimView {
   // PRIVATE METHODS
   /////////////////////////////////
 
-  /**
-   * Switch to acceleration schedule movement
-   *
-   * @return the acceleration schedule movement
-   */
-  private AccelScheduleMovement switchToAccelScheduleMovement() {
-    if (movement instanceof AccelScheduleMovement) {
-      return (AccelScheduleMovement) movement;
-    } else {
-      if (movement instanceof MovementWithAccel) {
-        AccelScheduleMovement m =
-            new AccelScheduleMovement((MovementWithAccel) movement);
-        movement = m;
-        return m;
-      } else {
-        throw new RuntimeException("Cannot switch to AccelScheduleMovement");
-      }
-    }
-  }
-
-  /**
-   * Swith to move-to-target-velocity movement.
-   *
-   * @return move-to-target-velocity movement
-   */
-  private MoveToTargetVelocityMovement switchToMoveToTargetVelocityMovement() {
-    if (movement instanceof MoveToTargetVelocityMovement) {
-      return (MoveToTargetVelocityMovement)movement;
-    } else {
-      if (movement instanceof AccelScheduleMovement) {
-        MovementWithAccel m =
-            ((AccelScheduleMovement) movement).getBaseMovement();
-        assert m != null;
-        movement = m;
-        return (MoveToTargetVelocityMovement)m;
-      } else {
-        throw new RuntimeException("Cannot switch to " +
-                                   "MoveToTargetVelocityMovement");
-      }
-    }
-  }
-
   /**
    * Update gauges and memoes.
    */
   private void updateGaugesAndMemos() {
-    clock.record(currentTime);
-    xometer.record(movement.getPosition().getX());
-    yometer.record(movement.getPosition().getY());
-    compass.record(movement.getHeading());
-    speedometer.record(movement.getVelocity());
+    clock.record(stateStore.getTime(slot));
+    xometer.record(stateStore.getX(slot));
+    yometer.record(stateStore.getY(slot));
+    compass.record(stateStore.getHeading(slot));
+    speedometer.record(stateStore.getVelocity(slot));
 
     memoGaugePosition = new Point2D.Double(xometer.read(), yometer.read());
-    memoGetShape = GeomUtil.convertPointsToShape(getCornerPoints());
-    memoGaugeShape = GeomUtil.convertPointsToShape(gaugeCornerPoints());
+    Point2D[] cornerPoints = getCornerPoints();
+    memoGetShape = GeomUtil.convertPointsToShape(cornerPoints);
+    for(int i = 0; i < cornerPoints.length; i++) {
+      memoShapeCoords[2 * i] = (float)cornerPoints[i].getX();
+      memoShapeCoords[2 * i + 1] = (float)cornerPoints[i].getY();
+    }
+    memoGaugeShape = null;
     memoGaugePointBetweenFrontWheels =
         spec.getPointBetweenFrontWheels(gaugePosition(), gaugeHeading());
   }
 
+  /**
+   * Write the vehicle together with the state in its slot.
+   *
+   * @param out  the output stream
+   * @throws IOException if the vehicle cannot be written
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeDouble(stateStore.getTime(slot));
+    out.writeDouble(stateStore.getX(slot));
+    out.writeDouble(stateStore.getY(slot));
+    out.writeDouble(stateStore.getHeading(slot));
+    out.writeDouble(stateStore.getVelocity(slot));
+    out.writeDouble(stateStore.getSteeringAngle(slot));
+    out.writeDouble(stateStore.getAcceleration(slot));
+    out.writeDouble(stateStore.getTargetVelocity(slot));
+    out.writeDouble(stateStore.getDistanceTraveled(slot));
+    out.writeObject(stateStore.getAccelSchedule(slot));
+  }
+
+  /**
+   * Read the vehicle written by {@link #writeObject(ObjectOutputStream)}.
+   * The state is put into a store of the vehicle's own, from which it can
+   * be moved with {@link #moveStateTo(VehicleStateStore)}.
+   *
+   * @param in  the input stream
+   * @throws IOException if the vehicle cannot be read
+   * @throws ClassNotFoundException if the class of the acceleration
+   *                                schedule cannot be found
+   */
+  private void readObject(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    double time = in.readDouble();
+    double x = in.readDouble();
+    double y = in.readDouble();
+    double heading = in.readDouble();
+    double velocity = in.readDouble();
+    double steeringAngle = in.readDouble();
+    double acceleration = in.readDouble();
+    double targetVelocity = in.readDouble();
+    double distanceTraveled = in.readDouble();
+    AccelSchedule accelSchedule = (AccelSchedule)in.readObject();
+    stateStore = new VehicleStateStore(1);
+    slot = stateStore.acquire(spec);
+    stateStore.setState(slot, new Point2D.Double(x, y), heading, velocity,
+                        steeringAngle, acceleration, targetVelocity, time);
+    stateStore.setDistanceTraveled(slot, distanceTraveled);
+    stateStore.setAccelSchedule(slot, accelSchedule);
+  }
+
   /////////////////////////////////
   // DEBUG
   /////////////////////////////////
@@ -1602,12 +828,13 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public void checkCurrentTime(double currentTime) {
-    if (!Util.isDoubleEqual(currentTime, this.currentTime,
+    double vehicleTime = stateStore.getTime(slot);
+    if (!Util.isDoubleEqual(currentTime, vehicleTime,
                             Constants.DOUBLE_EQUAL_WEAK_PRECISION)) {
       System.err.printf("currentTime = %.10f\n", currentTime);
-      System.err.printf("this.currentTime = %.10f\n", this.currentTime);
+      System.err.printf("this.currentTime = %.10f\n", vehicleTime);
     }
-    assert Util.isDoubleEqual(currentTime, this.currentTime,
+    assert Util.isDoubleEqual(currentTime, vehicleTime,
                               Constants.DOUBLE_EQUAL_WEAK_PRECISION);
   }
 
@@ -1616,6 +843,7 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public void printState() {
-    System.err.printf("State of vin %d: %s\n", vin, movement.toString());
+    System.err.printf("State of vin %d: %s\n", vin,
+                      stateStore.toString(slot));
   }
 }
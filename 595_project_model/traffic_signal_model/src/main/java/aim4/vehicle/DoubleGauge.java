@@ -30,13 +30,17 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.vehicle;
 
+import java.io.Serializable;
+
 import aim4.util.Util;
 
 /**
  * A gauge that holds doubles.  This gauge also can apply noise
  * functions to incoming data to simulate a noisy gauge.
  */
-public class DoubleGauge {
+public class DoubleGauge implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /**
    * The actual value being measured by the gauge.
@@ -71,4 +75,11 @@ public class DoubleGauge {
     double maxValue = Double.MAX_VALUE;
     value = Util.constrain(recValue, minValue, maxValue);
   }
+
+  /**
+   * Reset the gauge to the value it has when it is created.
+   */
+  public void reset() {
+    value = 0;
+  }
 }
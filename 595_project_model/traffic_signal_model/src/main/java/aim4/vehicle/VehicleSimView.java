@@ -99,6 +99,20 @@ public interface VehicleSimView extends VehicleDriverView {
    */
   double getAcceleration();
 
+  /**
+   * Get the time at which the vehicle was spawned.
+   *
+   * @return the spawn time in seconds
+   */
+  double getSpawnTime();
+
+  /**
+   * Get the distance the vehicle has traveled since it was spawned.
+   *
+   * @return the distance traveled in meters
+   */
+  double getDistanceTraveled();
+
 
   /////////////////////////////////
   // PUBLIC METHODS
@@ -132,6 +146,16 @@ public interface VehicleSimView extends VehicleDriverView {
    */
   List<Line2D> getEdges();
 
+  /**
+   * Get the distance from a point to the nearest edge of this Vehicle.  This
+   * is the same as the smallest distance from the point to the segments
+   * returned by {@link #getEdges()}, without building the segments.
+   *
+   * @param p  the point
+   * @return   the distance from the point to the nearest edge of the Vehicle
+   */
+  double getDistanceToEdges(Point2D p);
+
   /**
    * Get the Shapes of each of the wheels.
    *
@@ -201,5 +225,19 @@ public interface VehicleSimView extends VehicleDriverView {
    */
   void move(double timeStep);
 
+  /**
+   * Update the gauges of the vehicle after its state store has moved it,
+   * which is what is left of {@link #move(double)} when the simulator moves
+   * all vehicles of the store at once.
+   */
+  void finishMove();
+
   double getWaitTime(double timeStep, double distance);
+
+  /**
+   * Get the time the vehicle has been waiting so far, without updating it.
+   *
+   * @return the wait time in seconds
+   */
+  double getWaitTime();
 }
@@ -468,6 +468,48 @@ public class VehicleSpec {
     return result;
   }
 
+  /**
+   * Get the coordinates of the corners of the Vehicle, assuming it is
+   * larger in each dimension by a fixed amount, without allocating.  The
+   * corners are those of {@link #getCornerPoints(double, Point2D, double)},
+   * rounded to single precision.
+   *
+   * @param extra    the fixed amount to add to each dimension of the Vehicle.
+   * @param pos      the position of the vehicle
+   * @param heading  the heading of the vehicle
+   * @param coords   the array of length 8 into which the coordinates of the
+   *                 four corners are written: x0, y0, x1, y1, ...
+   */
+  public void getCornerCoords(double extra, Point2D pos, double heading,
+                              float[] coords) {
+    double x;
+    double y;
+    // First point, counterclockwise
+    x = pos.getX() + (extra/2) * Math.cos(heading) +
+        ((width + extra)/2) * Math.cos(heading + Math.PI/2);
+    y = pos.getY() + (extra/2) * Math.sin(heading) +
+        ((width + extra)/2) * Math.sin(heading + Math.PI/2);
+    coords[0] = (float)x;
+    coords[1] = (float)y;
+    // Second point
+    x = x + (length + extra) * Math.cos(heading + Math.PI);
+    y = y + (length + extra) * Math.sin(heading + Math.PI);
+    coords[2] = (float)x;
+    coords[3] = (float)y;
+    // Fourth point
+    x = pos.getX() + (extra/2) * Math.cos(heading) +
+        ((width + extra)/2) * Math.cos(heading - Math.PI/2);
+    y = pos.getY() + (extra/2) * Math.sin(heading) +
+        ((width + extra)/2) * Math.sin(heading - Math.PI/2);
+    coords[6] = (float)x;
+    coords[7] = (float)y;
+    // Third point
+    x = x + (length + extra) * Math.cos(heading - Math.PI);
+    y = y + (length + extra) * Math.sin(heading - Math.PI);
+    coords[4] = (float)x;
+    coords[5] = (float)y;
+  }
+
 
   /**
    * Get the point between the rear wheels.
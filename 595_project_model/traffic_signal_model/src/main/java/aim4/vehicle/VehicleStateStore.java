@@ -0,0 +1,766 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.vehicle;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import aim4.config.Constants;
+import aim4.util.GeomMath;
+import aim4.util.Util;
+
+/**
+ * The kinematic states of vehicles, stored as a structure of arrays.  Each
+ * vehicle owns a slot, and its time, position, heading, velocity,
+ * acceleration, steering angle, target velocity and distance traveled sit
+ * at the index of the slot in one array per property.  The vehicles read
+ * and write their state through the store.
+ * <p>
+ * The kinematics are those of a vehicle that moves toward a target
+ * velocity, optionally following an acceleration schedule.  A vehicle can
+ * be moved on its own with {@link #move(int, double)}, or all vehicles of
+ * the store can be moved in one pass over the arrays with
+ * {@link #moveAll(int, int, double)}; both give the same results.
+ * <p>
+ * Slots are only acquired and released by one thread at a time.  Moving
+ * and accessing distinct slots from different threads is safe.
+ */
+public class VehicleStateStore {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The default initial number of slots */
+  private static final int DEFAULT_INITIAL_CAPACITY = 64;
+
+  /**
+   * Constant used to determine what is "straight" for vehicles
+   * because floating point numbers are stupid and computers don't know
+   * how to do L'H&ocirc;pital's rule.
+   */
+  private static final double MIN_STEERING_THRESHOLD = 0.00001;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The specifications of the vehicles; null if the slot is free */
+  private VehicleSpec[] specs;
+  /** The current times of the vehicles */
+  private double[] times;
+  /**
+   * The x-coordinates of the positions of the vehicles, i.e. of the points
+   * at the center of the front of the vehicles
+   */
+  private double[] xs;
+  /** The y-coordinates of the positions of the vehicles */
+  private double[] ys;
+  /** The headings of the vehicles */
+  private double[] headings;
+  /** The velocities of the vehicles */
+  private double[] velocities;
+  /** The accelerations of the vehicles */
+  private double[] accelerations;
+  /** The steering angles of the vehicles */
+  private double[] steeringAngles;
+  /** The velocities at which the drivers would like to be traveling */
+  private double[] targetVelocities;
+  /** The distances the vehicles have traveled since they were spawned */
+  private double[] distancesTraveled;
+  /**
+   * The acceleration schedules of the vehicles; null if a vehicle has no
+   * schedule
+   */
+  private AccelSchedule[] accelSchedules;
+  /**
+   * The positions of the vehicles as points; null until the position is
+   * asked for after the last move.
+   */
+  private Point2D[] positions;
+  /** The number of slots that have ever been used */
+  private int size;
+  /** The free slots below {@link #size} */
+  private int[] freeSlots;
+  /** The number of free slots */
+  private int numOfFreeSlots;
+
+  /////////////////////////////////
+  // CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create an empty store.
+   */
+  public VehicleStateStore() {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  /**
+   * Create an empty store.
+   *
+   * @param initialCapacity  the number of slots before the store grows
+   */
+  public VehicleStateStore(int initialCapacity) {
+    specs = new VehicleSpec[initialCapacity];
+    times = new double[initialCapacity];
+    xs = new double[initialCapacity];
+    ys = new double[initialCapacity];
+    headings = new double[initialCapacity];
+    velocities = new double[initialCapacity];
+    accelerations = new double[initialCapacity];
+    steeringAngles = new double[initialCapacity];
+    targetVelocities = new double[initialCapacity];
+    distancesTraveled = new double[initialCapacity];
+    accelSchedules = new AccelSchedule[initialCapacity];
+    positions = new Point2D[initialCapacity];
+    size = 0;
+    freeSlots = new int[initialCapacity];
+    numOfFreeSlots = 0;
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  // slots
+
+  /**
+   * Acquire a free slot for a vehicle.  The state in the slot is undefined
+   * until it is set.
+   *
+   * @param spec  the specification of the vehicle
+   * @return the slot
+   */
+  public int acquire(VehicleSpec spec) {
+    int slot;
+    if (numOfFreeSlots > 0) {
+      slot = freeSlots[--numOfFreeSlots];
+    } else {
+      if (size == specs.length) {
+        grow();
+      }
+      slot = size++;
+    }
+    specs[slot] = spec;
+    return slot;
+  }
+
+  /**
+   * Give a slot back to the store.
+   *
+   * @param slot  the slot
+   */
+  public void release(int slot) {
+    specs[slot] = null;
+    accelSchedules[slot] = null;
+    positions[slot] = null;
+    freeSlots[numOfFreeSlots++] = slot;
+  }
+
+  /**
+   * Get the number of slots that have ever been used.  The used slots are
+   * below this number.
+   *
+   * @return the number of slots that have ever been used
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the number of slots in use.
+   *
+   * @return the number of slots in use
+   */
+  public int getNumOfVehicles() {
+    return size - numOfFreeSlots;
+  }
+
+  /**
+   * Set the state of a vehicle.
+   *
+   * @param slot            the slot of the vehicle
+   * @param pos             the position
+   * @param heading         the heading
+   * @param velocity        the velocity
+   * @param steeringAngle   the steering angle
+   * @param acceleration    the acceleration
+   * @param targetVelocity  the target velocity
+   * @param currentTime     the current time
+   */
+  public void setState(int slot, Point2D pos, double heading, double velocity,
+                       double steeringAngle, double acceleration,
+                       double targetVelocity, double currentTime) {
+    times[slot] = currentTime;
+    xs[slot] = pos.getX();
+    ys[slot] = pos.getY();
+    positions[slot] = pos;
+    headings[slot] = heading;
+    velocities[slot] = velocity;
+    accelerations[slot] = acceleration;
+    steeringAngles[slot] = steeringAngle;
+    targetVelocities[slot] = targetVelocity;
+    distancesTraveled[slot] = 0.0;
+    accelSchedules[slot] = null;
+  }
+
+  /**
+   * Copy the state of a vehicle from a slot of another store.
+   *
+   * @param slot       the slot of the vehicle in this store
+   * @param from       the other store
+   * @param fromSlot   the slot of the vehicle in the other store
+   */
+  public void copyState(int slot, VehicleStateStore from, int fromSlot) {
+    times[slot] = from.times[fromSlot];
+    xs[slot] = from.xs[fromSlot];
+    ys[slot] = from.ys[fromSlot];
+    positions[slot] = from.positions[fromSlot];
+    headings[slot] = from.headings[fromSlot];
+    velocities[slot] = from.velocities[fromSlot];
+    accelerations[slot] = from.accelerations[fromSlot];
+    steeringAngles[slot] = from.steeringAngles[fromSlot];
+    targetVelocities[slot] = from.targetVelocities[fromSlot];
+    distancesTraveled[slot] = from.distancesTraveled[fromSlot];
+    accelSchedules[slot] = from.accelSchedules[fromSlot];
+  }
+
+  // states
+
+  /**
+   * Get the current time of a vehicle.
+   *
+   * @param slot  the slot of the vehicle
+   * @return the current time of the vehicle
+   */
+  public double getTime(int slot) {
+    return times[slot];
+  }
+
+  /**
+   * Get the position of a vehicle.  The point is built at most once per
+   * move and must not be modified.
+   *
+   * @param slot  the slot of the vehicle
+   * @return the position of the vehicle
+   */
+  public Point2D getPosition(int slot) {
+    Point2D p = positions[slot];
+    if (p == null) {
+      p = new Point2D.Double(xs[slot], ys[slot]);
+      positions[slot] = p;
+    }
+    return p;
+  }
+
+  /**
+   * Get the x-coordinate of the position of a vehicle.
+   *
+   * @param slot  the slot of the vehicle
+   * @return the x-coordinate of the position of the vehicle
+   */
+  public double getX(int slot) {
+    return xs[slot];
+  }
+
+  /**
+   * Get the y-coordinate of the position of a vehicle.
+   *
+   * @param slot  the slot of the vehicle
+   * @return the y-coordinate of the position of the vehicle
+   */
+  public double getY(int slot) {
+    return ys[slot];
+  }
+
+  /**
+   * Get the heading of a vehicle.
+   *
+   * @param slot  the slot of the vehicle
+   * @return the heading of the vehicle
+   */
+  public double getHeading(int slot) {
+    return headings[slot];
+  }
+
+  /**
+   * Get the velocity of a vehicle.
+   *
+   * @param slot  the slot of the vehicle
+   * @return the velocity of the vehicle
+   */
+  public double getVelocity(int slot) {
+    return velocities[slot];
+  }
+
+  /**
+   * Get the acceleration of a vehicle.
+   *
+   * @param slot  the slot of the vehicle
+   * @return the acceleration of the vehicle
+   */
+  public double getAcceleration(int slot) {
+    return accelerations[slot];
+  }
+
+  /**
+   * Get the steering angle of a vehicle.
+   *
+   * @param slot  the slot of the vehicle
+   * @return the steering angle of the vehicle
+   */
+  public double getSteeringAngle(int slot) {
+    return steeringAngles[slot];
+  }
+
+  /**
+   * Get the target velocity of a vehicle.
+   *
+   * @param slot  the slot of the vehicle
+   * @return the target velocity of the vehicle
+   */
+  public double getTargetVelocity(int slot) {
+    return targetVelocities[slot];
+  }
+
+  /**
+   * Get the distance a vehicle has traveled since it was spawned.
+   *
+   * @param slot  the slot of the vehicle
+   * @return the distance traveled in meters
+   */
+  public double getDistanceTraveled(int slot) {
+    return distancesTraveled[slot];
+  }
+
+  /**
+   * Get the acceleration schedule of a vehicle.
+   *
+   * @param slot  the slot of the vehicle
+   * @return the acceleration schedule of the vehicle; null if there is none
+   */
+  public AccelSchedule getAccelSchedule(int slot) {
+    return accelSchedules[slot];
+  }
+
+  /**
+   * Set the distance a vehicle has traveled since it was spawned.
+   *
+   * @param slot              the slot of the vehicle
+   * @param distanceTraveled  the distance traveled in meters
+   */
+  public void setDistanceTraveled(int slot, double distanceTraveled) {
+    distancesTraveled[slot] = distanceTraveled;
+  }
+
+  // control
+
+  /**
+   * Set the acceleration schedule of a vehicle.  The vehicle follows the
+   * schedule until it runs out or is removed.
+   *
+   * @param slot           the slot of the vehicle
+   * @param accelSchedule  the acceleration schedule; null to remove it
+   */
+  public void setAccelSchedule(int slot, AccelSchedule accelSchedule) {
+    accelSchedules[slot] = accelSchedule;
+  }
+
+  /**
+   * Set the steering angle of a vehicle with respect to its physical limit.
+   *
+   * @param slot           the slot of the vehicle
+   * @param steeringAngle  the steering angle
+   */
+  public void setSteeringAngleWithBound(int slot, double steeringAngle) {
+    double maxSteeringAngle = specs[slot].getMaxSteeringAngle();
+    steeringAngles[slot] = Util.constrain(steeringAngle,
+                                          -1.0 * maxSteeringAngle,
+                                          maxSteeringAngle);
+  }
+
+  /**
+   * Set the acceleration of a vehicle with respect to its physical limit,
+   * and set the target velocity to the one the acceleration leads to.
+   *
+   * @param slot          the slot of the vehicle
+   * @param acceleration  the acceleration
+   */
+  public void setAccelerationWithBound(int slot, double acceleration) {
+    VehicleSpec spec = specs[slot];
+    double a = Util.constrain(acceleration,
+                              spec.getMaxDeceleration(),
+                              spec.getMaxAcceleration());
+    accelerations[slot] = a;
+    if (Util.isDoubleZero(a)) {
+      targetVelocities[slot] = velocities[slot];
+    } else if (a > 0.0) {
+      targetVelocities[slot] = spec.getMaxVelocity();
+    } else {  // a < 0.0
+      targetVelocities[slot] = spec.getMinVelocity();
+    }
+  }
+
+  /**
+   * Set the target velocity of a vehicle with respect to its physical
+   * limit.
+   *
+   * @param slot            the slot of the vehicle
+   * @param targetVelocity  the target velocity
+   */
+  public void setTargetVelocityWithBound(int slot, double targetVelocity) {
+    VehicleSpec spec = specs[slot];
+    targetVelocities[slot] = Util.constrain(targetVelocity,
+                                            spec.getMinVelocity(),
+                                            spec.getMaxVelocity());
+  }
+
+  /**
+   * Maintain the speed of a vehicle.
+   *
+   * @param slot  the slot of the vehicle
+   */
+  public void coast(int slot) {
+    setAccelerationWithBound(slot, 0.0);
+    setTargetVelocityWithBound(slot, velocities[slot]);
+  }
+
+  /**
+   * Set the acceleration of a vehicle to its minimum value without going
+   * backward.
+   *
+   * @param slot  the slot of the vehicle
+   */
+  public void slowToStop(int slot) {
+    VehicleSpec spec = specs[slot];
+    if (velocities[slot] > 0.0) {
+      setAccelerationWithBound(slot, spec.getMaxDeceleration());
+    } else if (velocities[slot] < 0.0) {
+      setAccelerationWithBound(slot, spec.getMaxAcceleration());
+    } else {  // velocity == 0.0
+      setAccelerationWithBound(slot, 0.0);
+    }
+    setTargetVelocityWithBound(slot, 0.0);
+  }
+
+  /**
+   * Set the acceleration of a vehicle to its maximum value.
+   *
+   * @param slot  the slot of the vehicle
+   */
+  public void setMaxAccelWithMaxTargetVelocity(int slot) {
+    VehicleSpec spec = specs[slot];
+    setAccelerationWithBound(slot, spec.getMaxAcceleration());
+    setTargetVelocityWithBound(slot, spec.getMaxVelocity());
+  }
+
+  /**
+   * Set the target velocity of a vehicle, with maximum acceleration.
+   *
+   * @param slot            the slot of the vehicle
+   * @param targetVelocity  the target velocity
+   */
+  public void setTargetVelocityWithMaxAccel(int slot, double targetVelocity) {
+    VehicleSpec spec = specs[slot];
+    if (velocities[slot] < targetVelocity) {
+      setAccelerationWithBound(slot, spec.getMaxAcceleration());
+      setTargetVelocityWithBound(slot, targetVelocity);
+    } else if (velocities[slot] > targetVelocity) {
+      setAccelerationWithBound(slot, spec.getMaxDeceleration());
+      setTargetVelocityWithBound(slot, targetVelocity);
+    } else { // velocity == targetVelocity
+      setAccelerationWithBound(slot, 0.0);
+    }
+  }
+
+  /**
+   * Set the acceleration of a vehicle, with maximum target velocity.
+   *
+   * @param slot          the slot of the vehicle
+   * @param acceleration  the acceleration
+   */
+  public void setAccelWithMaxTargetVelocity(int slot, double acceleration) {
+    VehicleSpec spec = specs[slot];
+    setAccelerationWithBound(slot, acceleration);
+    if (acceleration > 0.0) {
+      setTargetVelocityWithBound(slot, spec.getMaxVelocity());
+    } else if (acceleration < 0.0) {
+      setTargetVelocityWithBound(slot, spec.getMinVelocity());
+    } else {  // acceleration == 0.0
+      setTargetVelocityWithBound(slot, velocities[slot]);
+    }
+  }
+
+  // moves
+
+  /**
+   * Move a vehicle for a given period of time.
+   *
+   * @param slot      the slot of the vehicle
+   * @param timeStep  the period of time for which the vehicle moves
+   */
+  public void move(int slot, double timeStep) {
+    double v0 = velocities[slot];
+    if (accelSchedules[slot] == null) {
+      moveToTargetVelocity(slot, timeStep);
+    } else {
+      moveWithAccelSchedule(slot, times[slot], timeStep);
+    }
+    distancesTraveled[slot] += (v0 + velocities[slot]) / 2 * timeStep;
+    times[slot] += timeStep;
+  }
+
+  /**
+   * Move the vehicles in a range of slots for a given period of time.  Free
+   * slots are skipped.
+   *
+   * @param from      the first slot
+   * @param to        the slot after the last one
+   * @param timeStep  the period of time for which the vehicles move
+   */
+  public void moveAll(int from, int to, double timeStep) {
+    for(int slot = from; slot < to; slot++) {
+      if (specs[slot] != null) {
+        move(slot, timeStep);
+      }
+    }
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Double the number of slots.
+   */
+  private void grow() {
+    int n = Math.max(1, specs.length * 2);
+    specs = Arrays.copyOf(specs, n);
+    times = Arrays.copyOf(times, n);
+    xs = Arrays.copyOf(xs, n);
+    ys = Arrays.copyOf(ys, n);
+    headings = Arrays.copyOf(headings, n);
+    velocities = Arrays.copyOf(velocities, n);
+    accelerations = Arrays.copyOf(accelerations, n);
+    steeringAngles = Arrays.copyOf(steeringAngles, n);
+    targetVelocities = Arrays.copyOf(targetVelocities, n);
+    distancesTraveled = Arrays.copyOf(distancesTraveled, n);
+    accelSchedules = Arrays.copyOf(accelSchedules, n);
+    positions = Arrays.copyOf(positions, n);
+    freeSlots = Arrays.copyOf(freeSlots, n);
+  }
+
+  /**
+   * Set the velocity of a vehicle with respect to its physical limit.
+   *
+   * @param slot      the slot of the vehicle
+   * @param velocity  the velocity
+   */
+  private void setVelocityWithBound(int slot, double velocity) {
+    VehicleSpec spec = specs[slot];
+    velocities[slot] = Util.constrain(velocity,
+                                      spec.getMinVelocity(),
+                                      spec.getMaxVelocity());
+  }
+
+  /**
+   * Move a vehicle while holding its velocity and steering angle constant.
+   *
+   * @param slot      the slot of the vehicle
+   * @param timeStep  the period of time for which the vehicle moves
+   */
+  private void moveWithoutAcceleration(int slot, double timeStep) {
+    double x = xs[slot];
+    double y = ys[slot];
+    double heading = headings[slot];
+    double velocity = velocities[slot];
+    double steeringAngle = steeringAngles[slot];
+    // If the steering angle is sufficiently small, taking its tangent will
+    // totally mess everything up.  Instead we assume the vehicle is moving
+    // straight.
+    if (Math.abs(steeringAngle) < MIN_STEERING_THRESHOLD) {
+      xs[slot] = x + velocity * Math.cos(heading) * timeStep;
+      ys[slot] = y + velocity * Math.sin(heading) * timeStep;
+      // no need to update the heading
+    } else {
+      // Use the following differential equations:
+      // d(phi)/dt = v * tan(psi) / L
+      // dx/dt = v * cos(phi)
+      // dy/dt = v * sin(phi),
+      // where L is the wheelbase, (x,y) are the coordinates of the point
+      // between the back wheels, psi is the steering angle, phi is the
+      // heading of the vehicle, and v is the vehicle's velocity.
+      VehicleSpec spec = specs[slot];
+      double wheelbase = spec.getWheelbase();
+      double rearAxleDisplacement = spec.getRearAxleDisplacement();
+      double rotationRate =
+          velocity * (Math.tan(steeringAngle) / wheelbase);
+      double endHeading =
+          GeomMath.canonicalAngle(heading + rotationRate * timeStep);
+      // the point between the back wheels
+      double px = x - rearAxleDisplacement * Math.cos(heading);
+      double py = y - rearAxleDisplacement * Math.sin(heading);
+      // These are the solved forms of the differential equations
+      double endXdelta =
+          px - (wheelbase / Math.tan(steeringAngle)) *
+               (Math.sin(heading) - Math.sin(endHeading));
+      double endYdelta =
+          py - (wheelbase / Math.tan(steeringAngle)) *
+               (Math.cos(endHeading) - Math.cos(heading));
+      xs[slot] = endXdelta + rearAxleDisplacement * Math.cos(endHeading);
+      ys[slot] = endYdelta + rearAxleDisplacement * Math.sin(endHeading);
+      headings[slot] = endHeading;
+    }
+    positions[slot] = null;
+  }
+
+  /**
+   * Move a vehicle toward its target velocity with its acceleration.  The
+   * vehicle may have to move in two segments, depending on whether it
+   * reaches the target velocity within the period of time.
+   *
+   * @param slot      the slot of the vehicle
+   * @param timeStep  the period of time for which the vehicle moves
+   */
+  private void moveToTargetVelocity(int slot, double timeStep) {
+    double velocity = velocities[slot];
+    double acceleration = accelerations[slot];
+    double targetVelocity = targetVelocities[slot];
+    if (Util.isDoubleZero(acceleration)
+        || (acceleration > 0.0 && velocity >= targetVelocity)
+        || (acceleration < 0.0 && velocity <= targetVelocity)) {
+      // no acceleration, or already at the target velocity
+      moveWithoutAcceleration(slot, timeStep);
+    } else {
+      double maxChange = acceleration * timeStep;
+      double requestedChange = targetVelocity - velocity;
+      if ((acceleration > 0.0) ? (requestedChange >= maxChange)
+                               : (requestedChange <= maxChange)) {
+        // accelerating the whole time: move at the average velocity
+        setVelocityWithBound(slot, velocity + maxChange / 2.0);
+        moveWithoutAcceleration(slot, timeStep);
+        setVelocityWithBound(slot, velocity + maxChange);
+      } else {
+        // Otherwise, this is a two-parter
+        double accelDuration = requestedChange / acceleration;
+        setVelocityWithBound(slot, velocity + requestedChange / 2.0);
+        moveWithoutAcceleration(slot, accelDuration);
+        setVelocityWithBound(slot, velocity + requestedChange);
+        moveWithoutAcceleration(slot, timeStep - accelDuration);
+      }
+    }
+  }
+
+  /**
+   * Move a vehicle according to its acceleration schedule.  The schedule
+   * is consumed as the vehicle moves past the times of its accelerations.
+   *
+   * @param slot         the slot of the vehicle
+   * @param currentTime  the current time
+   * @param timeStep     the period of time for which the vehicle moves
+   */
+  private void moveWithAccelSchedule(int slot, double currentTime,
+                                     double timeStep) {
+    while(true) {
+      AccelSchedule accelSchedule = accelSchedules[slot];
+      if (accelSchedule == null) {
+        moveToTargetVelocity(slot, timeStep);
+        return;
+      }
+      Iterator<AccelSchedule.TimeAccel> iter =
+        accelSchedule.getList().iterator();
+      if (!iter.hasNext()) {
+        // move without the acceleration schedule
+        accelSchedules[slot] = null;
+        moveToTargetVelocity(slot, timeStep);
+        return;
+      }
+      AccelSchedule.TimeAccel ta = iter.next();
+      if (ta.getTime() <= currentTime) {
+        if (Util.isDoubleEqual(ta.getTime(), currentTime)) {
+          // update the acceleration
+          setAccelerationWithBound(slot, ta.getAcceleration());
+          iter.remove();  // remove it since it has been consumed
+          if (!iter.hasNext()) {
+            // No more acceleration update, remove the acceleration schedule
+            // and continue with the last acceleration
+            accelSchedules[slot] = null;
+            moveToTargetVelocity(slot, timeStep);
+            return;
+          }
+          ta = iter.next();  // don't remove it, just look at the time.
+        } else {
+          iter.remove();  // remove it since the acceleration is in the past.
+          continue;
+        }
+      }
+      // keep the current acceleration until the next update
+      double dur = ta.getTime() - currentTime;
+      if (dur < timeStep) {
+        moveToTargetVelocity(slot, dur);
+        currentTime += dur;
+        timeStep -= dur;
+      } else {
+        moveToTargetVelocity(slot, timeStep);
+        return;
+      }
+    }
+  }
+
+  /////////////////////////////////
+  // DEBUG
+  /////////////////////////////////
+
+  /**
+   * Get a string representation of the state of a vehicle.
+   *
+   * @param slot  the slot of the vehicle
+   * @return the string representation of the state of the vehicle
+   */
+  public String toString(int slot) {
+    String s = "Pos=(" + Constants.ONE_DEC.format(xs[slot]) + "," +
+               Constants.ONE_DEC.format(ys[slot]) + ")," +
+               "Heading=" + Constants.TWO_DEC.format(headings[slot]) + "," +
+               "Velocity=" + Constants.TWO_DEC.format(velocities[slot]) +
+               ", steeringAngle=" +
+               Constants.TWO_DEC.format(steeringAngles[slot]) +
+               ", acceleration=" +
+               Constants.TWO_DEC.format(accelerations[slot]) +
+               ", targetVelocity=" +
+               Constants.TWO_DEC.format(targetVelocities[slot]);
+    if (accelSchedules[slot] != null) {
+      s += ", accelSchedule=" + accelSchedules[slot];
+    }
+    return s;
+  }
+}
@@ -32,7 +32,6 @@ package aim4.vehicle;
 
 import java.awt.geom.Area;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -89,18 +88,6 @@ public class VehicleUtil {
   private static final double SAFE_TRAVERSAL_STEERING_DELTA = 0.08;
 
 
-  /////////////////////////////////
-  // PRIVATE FIELDS
-  /////////////////////////////////
-
-  /**
-   * Memoization caches for max turn velocities for various vehicle
-   * specification.
-   */
-  private static Map<String,Map<List<Integer>, Double>>
-    memoMaxTurnVelocity = new HashMap<String,Map<List<Integer>,Double>>();
-
-
   /////////////////////////////////
   // PUBLIC METHODS
   /////////////////////////////////
@@ -127,29 +114,20 @@ public class VehicleUtil {
                                        Lane departureLane,
                                        IntersectionManager im) {
 
-    // check to see if the spec has been seem before.
-    if (!memoMaxTurnVelocity.containsKey(spec.getName())) {
-      // if not, create a map for it
-      memoMaxTurnVelocity.put(spec.getName(),
-                              new HashMap<List<Integer>,Double>());
-    }
-
-    // check to see if the max turn velocity has been stored in the cache
-    Map<List<Integer>, Double> mmtvs = memoMaxTurnVelocity.get(spec.getName());
     List<Integer> key = Arrays.asList(arrivalLane.getId(),
-                                      departureLane.getId(),
-                                      im.getId());
-    if (!mmtvs.containsKey(key)) {
-      // if not, calculate it and store it in the cache
-      double mtv = calculateMaxTurnVelocity(spec,
-                                            arrivalLane,
-                                            departureLane,
-                                            im);
-      mmtvs.put(key, mtv);
+                                      departureLane.getId());
+    // the memo is kept by the intersection manager
+    Map<List<Integer>,Double> memo = im.getMaxTurnVelocityMemo(spec.getName());
+    Double mtv = memo.get(key);
+    if (mtv == null) {
+      // if not, calculate it and store it in the memo; drivers acting in
+      // parallel may calculate the same velocity at once, which is harmless
+      mtv = calculateMaxTurnVelocity(spec, arrivalLane, departureLane, im);
+      memo.put(key, mtv);
     }
 
     // FIXME try to see why we need this hack
-    return Math.max(mmtvs.get(key), MIN_MAX_TURN_VELOCITY);
+    return Math.max(mtv, MIN_MAX_TURN_VELOCITY);
   }
 
 
@@ -194,7 +172,8 @@ public class VehicleUtil {
       0.0);
 
     // Create a dummy driver to steer it
-    Driver dummy = new CrashTestDummy(testVehicle, arrivalLane, departureLane);
+    Driver dummy = new CrashTestDummy(testVehicle, arrivalLane, departureLane,
+                                      im.getIntersection());
     // Use this to ensure that we don't abort before we actually get into
     // the intersection
     boolean enteredIntersection = false;
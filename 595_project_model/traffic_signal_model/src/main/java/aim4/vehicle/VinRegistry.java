@@ -30,15 +30,18 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.vehicle;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-import aim4.map.Road;
-import aim4.map.SpawnPoint;
-
 /**
- * The Vehicle Registry, the class that issues VIN to vehicles.
+ * The Vehicle Registry, the class that issues VIN to vehicles.  Each
+ * simulator owns its own registry, such that the VINs of the vehicles in
+ * one simulator do not depend on the other simulators in the same process.
  */
 public class VinRegistry {
 
@@ -49,30 +52,24 @@ public class VinRegistry {
   /**
    * This generates a unique identifier for each vehicle, starting with 1000.
    */
-  private static int vinGenerator = 1000;
+  private int vinGenerator;
 
   /**
    * A map from VINs to Vehicles.
    */
-  private static Map<Integer,WeakReference<VehicleSimView>> vinToVehicle = new HashMap<Integer,WeakReference<VehicleSimView>>();
-
-  /**
-   * A map from VINs to VehicleSpec.
-   */
-  private static Map<Integer,VehicleSpec> vinToVehicleSpec = new HashMap<Integer,VehicleSpec>();
+  private Map<Integer,WeakReference<VehicleSimView>> vinToVehicle;
 
-  // TODO: remove the following in the future
 
-  /**
-   * A map from VINs to spawn points.
-   */
-  private static Map<Integer,SpawnPoint> vinToSpawnPoint = new HashMap<Integer,SpawnPoint>();
+  /////////////////////////////////
+  // CONSTRUCTORS
+  /////////////////////////////////
 
   /**
-   * A map from VINs to destination roads.
+   * Create an empty registry.
    */
-  private static Map<Integer,Road> vinToDestRoad =
-    new HashMap<Integer,Road>();
+  public VinRegistry() {
+    reset();
+  }
 
 
   /////////////////////////////////
@@ -82,12 +79,54 @@ public class VinRegistry {
   /**
    * Reset the registry.
    */
-  public static void reset() {
+  public void reset() {
     vinGenerator = 1000;
     vinToVehicle = new HashMap<Integer,WeakReference<VehicleSimView>>();
-    vinToVehicleSpec = new HashMap<Integer,VehicleSpec>();
-    vinToSpawnPoint = new HashMap<Integer,SpawnPoint>();
-    vinToDestRoad = new HashMap<Integer,Road>();
+  }
+
+  /**
+   * Write the state of the registry.  The vehicles that are still alive are
+   * written along with the rest of the state.  The registry forgets the
+   * vehicles that have left, so the size of the state does not grow with
+   * the number of vehicles spawned so far.
+   *
+   * @param out  the output stream
+   * @throws IOException if the stream fails
+   */
+  public void writeState(ObjectOutputStream out) throws IOException {
+    Map<Integer,VehicleSimView> liveVehicles =
+      new LinkedHashMap<Integer,VehicleSimView>();
+    for(Map.Entry<Integer,WeakReference<VehicleSimView>> entry :
+          vinToVehicle.entrySet()) {
+      VehicleSimView vehicle = entry.getValue().get();
+      if (vehicle != null) {
+        liveVehicles.put(entry.getKey(), vehicle);
+      }
+    }
+    out.writeInt(vinGenerator);
+    out.writeObject(liveVehicles);
+  }
+
+  /**
+   * Read the state of the registry written by
+   * {@link #writeState(ObjectOutputStream)}.
+   *
+   * @param in  the input stream
+   * @throws IOException if the stream fails
+   * @throws ClassNotFoundException if the class of an object in the stream
+   *                                cannot be found
+   */
+  @SuppressWarnings("unchecked")
+  public void readState(ObjectInputStream in)
+    throws IOException, ClassNotFoundException {
+    vinGenerator = in.readInt();
+    Map<Integer,VehicleSimView> liveVehicles =
+      (Map<Integer,VehicleSimView>)in.readObject();
+    vinToVehicle = new HashMap<Integer,WeakReference<VehicleSimView>>();
+    for(Map.Entry<Integer,VehicleSimView> entry : liveVehicles.entrySet()) {
+      vinToVehicle.put(entry.getKey(),
+                       new WeakReference<VehicleSimView>(entry.getValue()));
+    }
   }
 
   /**
@@ -95,13 +134,10 @@ public class VinRegistry {
    *
    * @param vehicle  the vehicle
    */
-  public static void registerVehicle(VehicleSimView vehicle) {
+  public void registerVehicle(VehicleSimView vehicle) {
     assert vinToVehicle.get(vinGenerator) == null;
     int vin = vinGenerator;
     vinToVehicle.put(vin, new WeakReference<VehicleSimView>(vehicle));
-    vinToVehicleSpec.put(vin, vehicle.getSpec());
-    vinToSpawnPoint.put(vin, vehicle.getDriver().getSpawnPoint());
-    vinToDestRoad.put(vin, vehicle.getDriver().getDestination());
     vehicle.setVIN(vin);
     vinGenerator++;
   }
@@ -112,7 +148,7 @@ public class VinRegistry {
    *
    * @param vin  the VIN of the vehicle
    */
-  public static void unregisterVehicle(int vin) {
+  public void unregisterVehicle(int vin) {
     if (vinToVehicle.containsKey(vin)) {
       vinToVehicle.remove(vin);
     } else {
@@ -128,7 +164,7 @@ public class VinRegistry {
    * @return the corresponding vehicle object; null if the vehicle object
    *         has been destroyed.
    */
-  public static VehicleSimView getVehicleFromVIN(int vin) {
+  public VehicleSimView getVehicleFromVIN(int vin) {
     WeakReference<VehicleSimView> wr = vinToVehicle.get(vin);
     if(wr == null) {
       return null;
@@ -142,43 +178,4 @@ public class VinRegistry {
     return v;
   }
 
-  /**
-   * Given a VIN, get the vehicle specification with that VIN.
-   *
-   * @param vin  the VIN of the desired vehicle
-   * @return the corresponding vehicle specification
-   */
-  public static VehicleSpec getVehicleSpecFromVIN(int vin) {
-    return vinToVehicleSpec.get(vin);
-  }
-
-  /**
-   * Get a spawn point from the VIN of a vehicle
-   *
-   * @param vin  the VIN of the vehicle
-   * @return the spawn point
-   */
-  public static SpawnPoint getSpawnPointFromVIN(int vin) {
-    return vinToSpawnPoint.get(vin);
-  }
-
-  /**
-   * Get the destination road from the VIN of a vehicle
-   *
-   * @param vin  the VIN of the vehicle
-   * @return the destination road
-   */
-  public static Road getDestRoadFromVIN(int vin) {
-    return vinToDestRoad.get(vin);
-  }
-
-  /////////////////////////////////
-  // CONSTRUCTORS
-  /////////////////////////////////
-
-  /**
-   * This class should never be instantiated.
-   */
-  private VinRegistry(){};
-
 }
@@ -0,0 +1,423 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.im.v2i.reservation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import aim4.im.v2i.reservation.ReservationArray.TimeTile;
+
+/**
+ * Test the reservation array against a reference model of the array before
+ * it became a ring of bitset time slices.
+ */
+public class ReservationArrayTest {
+
+  /////////////////////////////////
+  // NESTED CLASSES
+  /////////////////////////////////
+
+  /**
+   * The reference model: a grid of reservation IDs per discrete time and
+   * the time-tiles of each reservation, kept in sorted maps.
+   */
+  private static class ReferenceArray {
+    /** The number of tiles */
+    private final int numOfTiles;
+    /** The reservation ID of each tile at each discrete time; -1 if free */
+    private final TreeMap<Integer,int[]> grids =
+      new TreeMap<Integer,int[]>();
+    /** The time-tiles of each reservation */
+    private final Map<Integer,TreeMap<Integer,Set<Integer>>> ridToTimeToTid =
+      new HashMap<Integer,TreeMap<Integer,Set<Integer>>>();
+
+    ReferenceArray(int numOfTiles) {
+      this.numOfTiles = numOfTiles;
+    }
+
+    boolean isReserved(int dt, int tid) {
+      int[] grid = grids.get(dt);
+      return grid != null && grid[tid] >= 0;
+    }
+
+    int getLastReservedDiscreteTime() {
+      return grids.isEmpty() ? -1 : grids.lastKey();
+    }
+
+    boolean reserve(int rid, List<TimeTile> workingList) {
+      for(TimeTile tt : workingList) {
+        if (isReserved(tt.getDiscreteTime(), tt.getTileId())) {
+          return false;
+        }
+      }
+      int timeBegin = grids.isEmpty() ? 0 : grids.firstKey();
+      for(TimeTile tt : workingList) {
+        int dt = tt.getDiscreteTime();
+        int tid = tt.getTileId();
+        if (dt >= timeBegin) {
+          int[] grid = grids.get(dt);
+          if (grid == null) {
+            grid = new int[numOfTiles];
+            Arrays.fill(grid, -1);
+            grids.put(dt, grid);
+          }
+          grid[tid] = rid;
+          TreeMap<Integer,Set<Integer>> timeToTid = ridToTimeToTid.get(rid);
+          if (timeToTid == null) {
+            timeToTid = new TreeMap<Integer,Set<Integer>>();
+            ridToTimeToTid.put(rid, timeToTid);
+          }
+          Set<Integer> tids = timeToTid.get(dt);
+          if (tids == null) {
+            tids = new HashSet<Integer>();
+            timeToTid.put(dt, tids);
+          }
+          tids.add(tid);
+        }
+      }
+      return true;
+    }
+
+    void cancel(int rid) {
+      TreeMap<Integer,Set<Integer>> timeToTid = ridToTimeToTid.remove(rid);
+      if (timeToTid != null) {
+        for(Map.Entry<Integer,Set<Integer>> entry : timeToTid.entrySet()) {
+          int[] grid = grids.get(entry.getKey());
+          if (grid != null) {
+            for(int tid : entry.getValue()) {
+              grid[tid] = -1;
+            }
+          }
+        }
+      }
+    }
+
+    void cleanUp(int dt) {
+      grids.headMap(dt).clear();
+      Iterator<TreeMap<Integer,Set<Integer>>> iter =
+        ridToTimeToTid.values().iterator();
+      while(iter.hasNext()) {
+        TreeMap<Integer,Set<Integer>> timeToTid = iter.next();
+        timeToTid.headMap(dt).clear();
+        if (timeToTid.isEmpty()) {
+          iter.remove();
+        }
+      }
+    }
+
+    Set<Integer> getReservedTilesAtTime(int dt) {
+      Set<Integer> tids = new HashSet<Integer>();
+      int[] grid = grids.get(dt);
+      for(int tid = 0; grid != null && tid < numOfTiles; tid++) {
+        if (grid[tid] >= 0) {
+          tids.add(tid);
+        }
+      }
+      return tids;
+    }
+
+    Set<Integer> getVinOfReservedTilesAtTime(int dt) {
+      Set<Integer> rids = new HashSet<Integer>();
+      int[] grid = grids.get(dt);
+      for(int tid = 0; grid != null && tid < numOfTiles; tid++) {
+        if (grid[tid] >= 0) {
+          rids.add(grid[tid]);
+        }
+      }
+      return rids;
+    }
+  }
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The number of tiles; more than one word of the occupancy bitmask */
+  private static final int NUM_OF_TILES = 70;
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Create the time-tiles of a reservation: a few random tiles in each of
+   * a run of discrete times.
+   *
+   * @param random     the random number generator
+   * @param firstTime  the first discrete time
+   * @param duration   the number of discrete times
+   * @return the time-tiles
+   */
+  private static List<TimeTile> makeWorkingList(Random random, int firstTime,
+                                                int duration) {
+    List<TimeTile> workingList = new ArrayList<TimeTile>();
+    for(int dt = firstTime; dt < firstTime + duration; dt++) {
+      int n = 1 + random.nextInt(4);
+      for(int i = 0; i < n; i++) {
+        workingList.add(new TimeTile(dt, random.nextInt(NUM_OF_TILES)));
+      }
+    }
+    return workingList;
+  }
+
+  /**
+   * Check that the array and the reference model agree on the discrete
+   * times in a range.
+   *
+   * @param array      the array
+   * @param reference  the reference model
+   * @param fromTime   the first discrete time
+   * @param toTime     the last discrete time
+   */
+  private static void assertSame(ReservationArray array,
+                                 ReferenceArray reference,
+                                 int fromTime, int toTime) {
+    assertEquals(reference.getLastReservedDiscreteTime(),
+                 array.getLastReservedDiscreteTime());
+    for(int dt = fromTime; dt <= toTime; dt++) {
+      for(int tid = 0; tid < NUM_OF_TILES; tid++) {
+        assertEquals("tile " + tid + " at " + dt,
+                     reference.isReserved(dt, tid),
+                     array.isReserved(dt, tid));
+      }
+      assertEquals("tiles at " + dt,
+                   reference.getReservedTilesAtTime(dt),
+                   new HashSet<Integer>(array.getReservedTilesAtTime(dt)));
+      assertEquals("VINs at " + dt,
+                   reference.getVinOfReservedTilesAtTime(dt),
+                   array.getVinOfReservedTilesAtTime(dt));
+    }
+  }
+
+  /**
+   * Run random reservations, cancellations and clean ups on the array and
+   * the reference model, advancing the current time, and check that they
+   * agree after each operation.
+   *
+   * @param array        the array
+   * @param reference    the reference model
+   * @param random       the random number generator
+   * @param startTime    the current discrete time at the start
+   * @param numOfSteps   the number of operations
+   * @param maxDuration  the maximum number of discrete times of a
+   *                     reservation
+   * @return the current discrete time at the end
+   */
+  private static int runRandomOperations(ReservationArray array,
+                                         ReferenceArray reference,
+                                         Random random,
+                                         int startTime, int numOfSteps,
+                                         int maxDuration) {
+    int now = startTime;
+    int nextRid = 0;
+    List<Integer> rids = new ArrayList<Integer>();
+    for(int step = 0; step < numOfSteps; step++) {
+      int op = random.nextInt(10);
+      if (op < 6) {
+        // reserve, sometimes before the current time
+        int firstTime = now - 2 + random.nextInt(20);
+        int duration = 1 + random.nextInt(maxDuration);
+        // sometimes extend an existing reservation
+        int rid = (op == 0 && !rids.isEmpty())
+                  ? rids.get(random.nextInt(rids.size()))
+                  : nextRid++;
+        List<TimeTile> workingList =
+          makeWorkingList(random, firstTime, duration);
+        boolean isReserved = reference.reserve(rid, workingList);
+        assertEquals(isReserved, array.reserve(rid, workingList));
+        if (isReserved) {
+          rids.add(rid);
+        }
+      } else if (op < 8) {
+        if (!rids.isEmpty()) {
+          int rid = rids.remove(random.nextInt(rids.size()));
+          reference.cancel(rid);
+          array.cancel(rid);
+        }
+      } else {
+        now += random.nextInt(8);
+        reference.cleanUp(now);
+        array.cleanUp(now);
+      }
+      assertSame(array, reference, now - 5, now + maxDuration + 20);
+    }
+    return now;
+  }
+
+  /**
+   * Serialize and deserialize an array.
+   *
+   * @param array  the array
+   * @return the copy of the array
+   * @throws IOException if the array cannot be serialized
+   * @throws ClassNotFoundException never
+   */
+  private static ReservationArray copy(ReservationArray array)
+    throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(array);
+    out.close();
+    ObjectInputStream in =
+      new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    return (ReservationArray) in.readObject();
+  }
+
+  /////////////////////////////////
+  // TESTS
+  /////////////////////////////////
+
+  @Test
+  public void testReserveAndCancel() {
+    ReservationArray array = new ReservationArray(NUM_OF_TILES);
+    assertFalse(array.isReserved(-1, 0));
+    assertEquals(-1, array.getLastReservedDiscreteTime());
+    List<TimeTile> workingList =
+      Arrays.asList(new TimeTile(3, 0), new TimeTile(3, 65),
+                    new TimeTile(4, 1));
+    assertTrue(array.reserve(7, workingList));
+    assertTrue(array.isReserved(3, 65));
+    assertEquals(4, array.getLastReservedDiscreteTime());
+    assertEquals(new HashSet<Integer>(Arrays.asList(7)),
+                 array.getVinOfReservedTilesAtTime(3));
+    // a conflicting reservation reserves nothing
+    assertFalse(array.reserve(8, Arrays.asList(new TimeTile(5, 2),
+                                               new TimeTile(4, 1))));
+    assertFalse(array.isReserved(5, 2));
+    array.cancel(7);
+    assertFalse(array.isReserved(3, 65));
+    assertTrue(array.getReservedTilesAtTime(3).isEmpty());
+    // the cancelled slices still exist until they are cleaned up
+    assertEquals(4, array.getLastReservedDiscreteTime());
+    array.cleanUp(5);
+    assertEquals(-1, array.getLastReservedDiscreteTime());
+  }
+
+  @Test
+  public void testTimeTilesBeforeFirstSliceAreIgnored() {
+    ReservationArray array = new ReservationArray(NUM_OF_TILES);
+    ReferenceArray reference = new ReferenceArray(NUM_OF_TILES);
+    List<TimeTile> first = Arrays.asList(new TimeTile(10, 0));
+    List<TimeTile> second =
+      Arrays.asList(new TimeTile(8, 1), new TimeTile(12, 1));
+    assertTrue(array.reserve(1, first));
+    reference.reserve(1, first);
+    assertTrue(array.reserve(2, second));
+    reference.reserve(2, second);
+    assertSame(array, reference, 0, 20);
+  }
+
+  @Test
+  public void testRandomOperations() {
+    Random random = new Random(1);
+    ReservationArray array = new ReservationArray(NUM_OF_TILES);
+    ReferenceArray reference = new ReferenceArray(NUM_OF_TILES);
+    runRandomOperations(array, reference, random, 0, 3000, 30);
+  }
+
+  @Test
+  public void testWrapAround() {
+    // the current time passes the initial size of the ring many times
+    Random random = new Random(2);
+    ReservationArray array = new ReservationArray(NUM_OF_TILES);
+    ReferenceArray reference = new ReferenceArray(NUM_OF_TILES);
+    int now = runRandomOperations(array, reference, random, 1000, 5000, 10);
+    assertTrue(now > 1000 + 4 * 256);
+  }
+
+  @Test
+  public void testGrow() {
+    // the reservations span more discrete times than the initial ring
+    Random random = new Random(3);
+    ReservationArray array = new ReservationArray(NUM_OF_TILES);
+    ReferenceArray reference = new ReferenceArray(NUM_OF_TILES);
+    runRandomOperations(array, reference, random, 0, 300, 600);
+  }
+
+  @Test
+  public void testGrowWithCancelledSlices() {
+    ReservationArray array = new ReservationArray(NUM_OF_TILES);
+    ReferenceArray reference = new ReferenceArray(NUM_OF_TILES);
+    List<TimeTile> first = Arrays.asList(new TimeTile(5, 3));
+    List<TimeTile> far = Arrays.asList(new TimeTile(5 + 256, 3));
+    array.reserve(1, first);
+    reference.reserve(1, first);
+    array.cancel(1);
+    reference.cancel(1);
+    // the slice of time 5 still exists and collides with time 261
+    assertTrue(array.reserve(2, far));
+    reference.reserve(2, far);
+    assertSame(array, reference, 0, 600);
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    Random random = new Random(4);
+    ReservationArray array = new ReservationArray(NUM_OF_TILES);
+    ReferenceArray reference = new ReferenceArray(NUM_OF_TILES);
+    int now = runRandomOperations(array, reference, random, 500, 1000, 40);
+    ReservationArray restored = copy(array);
+    assertSame(restored, reference, now - 5, now + 100);
+    // the restored array carries on like the original one
+    runRandomOperations(restored, reference, random, now, 1000, 40);
+  }
+
+  @Test
+  public void testReset() {
+    Random random = new Random(5);
+    ReservationArray array = new ReservationArray(NUM_OF_TILES);
+    runRandomOperations(array, new ReferenceArray(NUM_OF_TILES), random,
+                        0, 500, 20);
+    array.reset();
+    ReferenceArray reference = new ReferenceArray(NUM_OF_TILES);
+    assertSame(array, reference, 0, 600);
+    runRandomOperations(array, reference, random, 0, 500, 20);
+  }
+}
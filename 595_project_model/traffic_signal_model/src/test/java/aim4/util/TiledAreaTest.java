@@ -0,0 +1,247 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.util;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the convex polygon rasterizer of the tiled area against the
+ * Shape-based search of occupied tiles.
+ */
+public class TiledAreaTest {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The left side of the area */
+  private static final double MIN_X = 10.0;
+  /** The top side of the area */
+  private static final double MIN_Y = 20.0;
+  /** The size of the area, which is not a multiple of the tile size */
+  private static final double SIZE = 31.5;
+  /** The size of a tile */
+  private static final double TILE_SIZE = 1.0;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The tiled area: a square with a round hole cut from a corner */
+  private final TiledArea tiledArea;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create the tiled area of the tests.
+   */
+  public TiledAreaTest() {
+    Area area =
+      new Area(new Rectangle2D.Double(MIN_X, MIN_Y, SIZE, SIZE));
+    area.subtract(new Area(new Ellipse2D.Double(MIN_X - 5, MIN_Y - 5,
+                                                12, 12)));
+    tiledArea = new TiledArea(area, TILE_SIZE);
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Check that the rasterizer finds the same tiles, in the same order, as
+   * the Shape-based search.
+   *
+   * @param polygon  the coordinates of the vertices of the polygon
+   */
+  private void assertSameTiles(float[] polygon) {
+    Point2D[] points = new Point2D[polygon.length / 2];
+    for(int i = 0; i < points.length; i++) {
+      points[i] = new Point2D.Double(polygon[2 * i], polygon[2 * i + 1]);
+    }
+    List<TiledArea.Tile> tiles =
+      tiledArea.findOccupiedTiles(GeomUtil.convertPointsToShape(points));
+    int[] expected = new int[tiles.size()];
+    for(int i = 0; i < expected.length; i++) {
+      expected[i] = tiles.get(i).getId();
+    }
+    int[] tileIds = new int[tiledArea.getNumberOfTiles()];
+    int n = tiledArea.findOccupiedTiles(polygon, tileIds);
+    assertArrayEquals(Arrays.toString(polygon), expected,
+                      Arrays.copyOf(tileIds, n));
+  }
+
+  /**
+   * Create an axis-aligned rectangle.
+   *
+   * @param x       the left side
+   * @param y       the top side
+   * @param width   the width
+   * @param height  the height
+   * @return the coordinates of the vertices of the rectangle
+   */
+  private static float[] rectangle(double x, double y,
+                                   double width, double height) {
+    return new float[] { (float)x, (float)y,
+                         (float)(x + width), (float)y,
+                         (float)(x + width), (float)(y + height),
+                         (float)x, (float)(y + height) };
+  }
+
+  /**
+   * Create a random convex quadrilateral: four points on an ellipse in
+   * the order of their angles, sometimes with two of them on top of each
+   * other.
+   *
+   * @param random  the random number generator
+   * @return the coordinates of the vertices of the quadrilateral
+   */
+  private static float[] randomQuad(Random random) {
+    double cx = MIN_X - 3 + random.nextDouble() * (SIZE + 6);
+    double cy = MIN_Y - 3 + random.nextDouble() * (SIZE + 6);
+    double rx = random.nextDouble() * 4;
+    double ry = random.nextDouble() * 4;
+    double[] angles = new double[4];
+    for(int i = 0; i < angles.length; i++) {
+      angles[i] = random.nextDouble() * 2 * Math.PI;
+    }
+    Arrays.sort(angles);
+    if (random.nextInt(10) == 0) {
+      angles[1] = angles[0];
+    }
+    float[] polygon = new float[8];
+    for(int i = 0; i < angles.length; i++) {
+      polygon[2 * i] = (float)(cx + rx * Math.cos(angles[i]));
+      polygon[2 * i + 1] = (float)(cy + ry * Math.sin(angles[i]));
+    }
+    return polygon;
+  }
+
+  /////////////////////////////////
+  // TESTS
+  /////////////////////////////////
+
+  @Test
+  public void testRandomQuads() {
+    Random random = new Random(1);
+    for(int i = 0; i < 20000; i++) {
+      assertSameTiles(randomQuad(random));
+    }
+  }
+
+  @Test
+  public void testRotatedVehicles() {
+    Random random = new Random(2);
+    for(int i = 0; i < 20000; i++) {
+      double x = MIN_X - 3 + random.nextDouble() * (SIZE + 6);
+      double y = MIN_Y - 3 + random.nextDouble() * (SIZE + 6);
+      double heading = (i % 4 == 0) ? random.nextInt(4) * Math.PI / 2
+                                     : random.nextDouble() * 2 * Math.PI;
+      double cos = Math.cos(heading);
+      double sin = Math.sin(heading);
+      double[][] corners = { { 0, -0.9 }, { 4.5, -0.9 },
+                             { 4.5, 0.9 }, { 0, 0.9 } };
+      float[] polygon = new float[8];
+      for(int j = 0; j < corners.length; j++) {
+        polygon[2 * j] =
+          (float)(x + corners[j][0] * cos - corners[j][1] * sin);
+        polygon[2 * j + 1] =
+          (float)(y + corners[j][0] * sin + corners[j][1] * cos);
+      }
+      assertSameTiles(polygon);
+    }
+  }
+
+  @Test
+  public void testAxisAlignedRectangles() {
+    Random random = new Random(3);
+    for(int i = 0; i < 5000; i++) {
+      assertSameTiles(rectangle(MIN_X - 2 + random.nextDouble() * SIZE,
+                                MIN_Y - 2 + random.nextDouble() * SIZE,
+                                random.nextDouble() * 5,
+                                random.nextDouble() * 5));
+    }
+  }
+
+  @Test
+  public void testRectanglesOnTileEdges() {
+    // rectangles whose sides are on the sides of the tiles
+    for(int x = -1; x < 33; x += 3) {
+      for(int y = -1; y < 33; y += 3) {
+        for(int w = 1; w <= 3; w++) {
+          assertSameTiles(rectangle(MIN_X + x, MIN_Y + y, w, 2));
+        }
+      }
+    }
+    // the last, narrower column and row
+    assertSameTiles(rectangle(MIN_X + 31, MIN_Y + 31, 0.5, 0.5));
+    assertSameTiles(rectangle(MIN_X + 30.5, MIN_Y + 30.5, 2, 2));
+    // a diamond whose vertices are on the corners of the tiles
+    assertSameTiles(new float[] { (float)MIN_X + 5, (float)MIN_Y + 4,
+                                  (float)MIN_X + 6, (float)MIN_Y + 5,
+                                  (float)MIN_X + 5, (float)MIN_Y + 6,
+                                  (float)MIN_X + 4, (float)MIN_Y + 5 });
+  }
+
+  @Test
+  public void testZeroWidthPolygons() {
+    // segments and points, inside tiles and on their sides
+    assertSameTiles(rectangle(MIN_X + 5.5, MIN_Y + 5.5, 0, 3));
+    assertSameTiles(rectangle(MIN_X + 5.5, MIN_Y + 5.5, 3, 0));
+    assertSameTiles(rectangle(MIN_X + 5, MIN_Y + 5.5, 0, 3));
+    assertSameTiles(rectangle(MIN_X + 5.5, MIN_Y + 5, 3, 0));
+    assertSameTiles(rectangle(MIN_X + 5.5, MIN_Y + 5.5, 0, 0));
+    assertSameTiles(new float[] { (float)MIN_X + 5.2f, (float)MIN_Y + 5.3f,
+                                  (float)MIN_X + 8.7f, (float)MIN_Y + 9.1f,
+                                  (float)MIN_X + 8.7f, (float)MIN_Y + 9.1f,
+                                  (float)MIN_X + 5.2f, (float)MIN_Y + 5.3f
+                                });
+  }
+
+  @Test
+  public void testOutsideTheArea() {
+    assertSameTiles(rectangle(MIN_X - 10, MIN_Y - 10, 5, 5));
+    assertSameTiles(rectangle(MIN_X + SIZE + 1, MIN_Y + 3, 5, 5));
+    // in the hole
+    assertSameTiles(rectangle(MIN_X + 0.1, MIN_Y + 0.1, 0.5, 0.5));
+  }
+}
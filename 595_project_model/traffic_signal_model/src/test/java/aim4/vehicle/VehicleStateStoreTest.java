@@ -0,0 +1,520 @@
+/*
+Copyright (c) 2011 Tsz-Chiu Au, Peter Stone
+University of Texas at Austin
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+3. Neither the name of the University of Texas at Austin nor the names of its
+contributors may be used to endorse or promote products derived from this
+software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package aim4.vehicle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import aim4.util.GeomMath;
+import aim4.util.Util;
+
+/**
+ * Test the vehicle state store against a reference model of the movements
+ * the vehicles had before their states were moved into the store.
+ */
+public class VehicleStateStoreTest {
+
+  /////////////////////////////////
+  // NESTED CLASSES
+  /////////////////////////////////
+
+  /**
+   * The reference model: a move-to-target-velocity movement with a
+   * steering angle, optionally following an acceleration schedule, moved
+   * as the nested movements of the vehicles used to.
+   */
+  private static class ReferenceMovement {
+    /** The specification of the vehicle */
+    private final VehicleSpec spec;
+    /** The position */
+    private Point2D position;
+    /** The heading */
+    private double heading;
+    /** The velocity */
+    private double velocity;
+    /** The steering angle */
+    private double steeringAngle;
+    /** The acceleration */
+    private double acceleration;
+    /** The target velocity */
+    private double targetVelocity;
+    /** The acceleration schedule; null if there is none */
+    private AccelSchedule accelSchedule;
+
+    ReferenceMovement(VehicleSpec spec, Point2D position, double heading,
+                      double velocity, double steeringAngle,
+                      double acceleration, double targetVelocity) {
+      this.spec = spec;
+      this.position = position;
+      this.heading = heading;
+      this.velocity = velocity;
+      this.steeringAngle = steeringAngle;
+      this.acceleration = acceleration;
+      this.targetVelocity = targetVelocity;
+    }
+
+    void setVelocityWithBound(double v) {
+      velocity = Util.constrain(v, spec.getMinVelocity(),
+                                spec.getMaxVelocity());
+    }
+
+    void setAccelerationWithBound(double a) {
+      acceleration = Util.constrain(a, spec.getMaxDeceleration(),
+                                    spec.getMaxAcceleration());
+      if (Util.isDoubleZero(acceleration)) {
+        targetVelocity = velocity;
+      } else if (acceleration > 0.0) {
+        targetVelocity = spec.getMaxVelocity();
+      } else {
+        targetVelocity = spec.getMinVelocity();
+      }
+    }
+
+    void moveWithoutAcceleration(double timeStep) {
+      if (Math.abs(steeringAngle) < 0.00001) {
+        position =
+          new Point2D.Double(
+            position.getX() + velocity * Math.cos(heading) * timeStep,
+            position.getY() + velocity * Math.sin(heading) * timeStep);
+      } else {
+        double rotationRate =
+          velocity * (Math.tan(steeringAngle) / spec.getWheelbase());
+        double endHeading =
+          GeomMath.canonicalAngle(heading + rotationRate * timeStep);
+        Point2D p = spec.getPointBetweenRearWheels(position, heading);
+        double endXdelta =
+          p.getX() - (spec.getWheelbase() / Math.tan(steeringAngle)) *
+                     (Math.sin(heading) - Math.sin(endHeading));
+        double endYdelta =
+          p.getY() - (spec.getWheelbase() / Math.tan(steeringAngle)) *
+                     (Math.cos(endHeading) - Math.cos(heading));
+        position = new Point2D.Double(
+          endXdelta + spec.getRearAxleDisplacement() * Math.cos(endHeading),
+          endYdelta + spec.getRearAxleDisplacement() * Math.sin(endHeading));
+        heading = endHeading;
+      }
+    }
+
+    void moveToTargetVelocity(double timeStep) {
+      double v = velocity;
+      if (Util.isDoubleZero(acceleration)
+          || (acceleration > 0.0 && v >= targetVelocity)
+          || (acceleration < 0.0 && v <= targetVelocity)) {
+        moveWithoutAcceleration(timeStep);
+      } else {
+        double maxChange = acceleration * timeStep;
+        double requestedChange = targetVelocity - v;
+        if ((acceleration > 0.0) ? (requestedChange >= maxChange)
+                                 : (requestedChange <= maxChange)) {
+          setVelocityWithBound(v + maxChange / 2.0);
+          moveWithoutAcceleration(timeStep);
+          setVelocityWithBound(v + maxChange);
+        } else {
+          double accelDuration = requestedChange / acceleration;
+          setVelocityWithBound(v + requestedChange / 2.0);
+          moveWithoutAcceleration(accelDuration);
+          setVelocityWithBound(v + requestedChange);
+          moveWithoutAcceleration(timeStep - accelDuration);
+        }
+      }
+    }
+
+    void move(double currentTime, double timeStep) {
+      if (accelSchedule == null) {
+        moveToTargetVelocity(timeStep);
+        return;
+      }
+      Iterator<AccelSchedule.TimeAccel> iter =
+        accelSchedule.getList().iterator();
+      if (!iter.hasNext()) {
+        accelSchedule = null;
+        moveToTargetVelocity(timeStep);
+        return;
+      }
+      AccelSchedule.TimeAccel ta = iter.next();
+      if (ta.getTime() > currentTime) {
+        double dur = ta.getTime() - currentTime;
+        if (dur < timeStep) {
+          moveToTargetVelocity(dur);
+          move(currentTime + dur, timeStep - dur);
+        } else {
+          moveToTargetVelocity(timeStep);
+        }
+      } else if (Util.isDoubleEqual(ta.getTime(), currentTime)) {
+        setAccelerationWithBound(ta.getAcceleration());
+        iter.remove();
+        if (iter.hasNext()) {
+          ta = iter.next();
+          double dur = ta.getTime() - currentTime;
+          if (dur < timeStep) {
+            moveToTargetVelocity(dur);
+            move(currentTime + dur, timeStep - dur);
+          } else {
+            moveToTargetVelocity(timeStep);
+          }
+        } else {
+          accelSchedule = null;
+          moveToTargetVelocity(timeStep);
+        }
+      } else {
+        iter.remove();
+        move(currentTime, timeStep);
+      }
+    }
+  }
+
+  /**
+   * An output stream that writes a marker in place of the vehicle
+   * specification, which is shared rather than serialized, as the streams
+   * of the snapshots of the simulator do.
+   */
+  private static class SpecSharingOutputStream extends ObjectOutputStream {
+    SpecSharingOutputStream(OutputStream out) throws IOException {
+      super(out);
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      return (obj instanceof VehicleSpec) ? SPEC_MARKER : obj;
+    }
+  }
+
+  /**
+   * An input stream that puts the vehicle specification back in place of
+   * the marker written by {@link SpecSharingOutputStream}.
+   */
+  private static class SpecSharingInputStream extends ObjectInputStream {
+    SpecSharingInputStream(InputStream in) throws IOException {
+      super(in);
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) {
+      return SPEC_MARKER.equals(obj) ? getSpec() : obj;
+    }
+  }
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The marker written in place of the vehicle specification */
+  private static final String SPEC_MARKER = "spec";
+
+  /** The time step */
+  private static final double TIME_STEP = 0.02;
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the specification of the vehicles.
+   *
+   * @return the specification of the vehicles
+   */
+  private static VehicleSpec getSpec() {
+    return VehicleSpecDatabase.getVehicleSpecById(0);
+  }
+
+  /**
+   * Make a random acceleration schedule that starts at about a given time.
+   *
+   * @param random  the random number generator
+   * @param time    the time
+   * @return the acceleration schedule
+   */
+  private static AccelSchedule makeAccelSchedule(Random random, double time) {
+    AccelSchedule accelSchedule = new AccelSchedule();
+    double t = time - TIME_STEP + 3 * TIME_STEP * random.nextDouble();
+    int n = random.nextInt(4);
+    for(int i = 0; i < n; i++) {
+      accelSchedule.add(t, -8.0 + 12.0 * random.nextDouble());
+      t += 2.5 * TIME_STEP * random.nextDouble();
+    }
+    return accelSchedule;
+  }
+
+  /**
+   * Make a copy of an acceleration schedule.
+   *
+   * @param accelSchedule  the acceleration schedule
+   * @return the copy
+   */
+  private static AccelSchedule copy(AccelSchedule accelSchedule) {
+    AccelSchedule copy = new AccelSchedule();
+    for(AccelSchedule.TimeAccel ta : accelSchedule.getList()) {
+      copy.add(ta.getTime(), ta.getAcceleration());
+    }
+    return copy;
+  }
+
+  /**
+   * Check that a slot of the store is in the state of a reference movement.
+   *
+   * @param m      the reference movement
+   * @param store  the store
+   * @param slot   the slot
+   */
+  private static void assertSameState(ReferenceMovement m,
+                                      VehicleStateStore store, int slot) {
+    assertEquals(m.position.getX(), store.getX(slot), 0.0);
+    assertEquals(m.position.getY(), store.getY(slot), 0.0);
+    assertEquals(m.position, store.getPosition(slot));
+    assertEquals(m.heading, store.getHeading(slot), 0.0);
+    assertEquals(m.velocity, store.getVelocity(slot), 0.0);
+    assertEquals(m.acceleration, store.getAcceleration(slot), 0.0);
+    assertEquals(m.steeringAngle, store.getSteeringAngle(slot), 0.0);
+    assertEquals(m.targetVelocity, store.getTargetVelocity(slot), 0.0);
+    assertEquals(m.accelSchedule == null,
+                 store.getAccelSchedule(slot) == null);
+  }
+
+  /////////////////////////////////
+  // TESTS
+  /////////////////////////////////
+
+  @Test
+  public void testMoveAllAgainstReference() {
+    Random random = new Random(1);
+    VehicleSpec spec = getSpec();
+    VehicleStateStore store = new VehicleStateStore(2);
+    List<ReferenceMovement> movements = new ArrayList<ReferenceMovement>();
+    List<Integer> slots = new ArrayList<Integer>();
+    double time = 0.0;
+    for(int step = 0; step < 2000; step++) {
+      // spawn and remove vehicles
+      if (random.nextInt(4) == 0) {
+        Point2D pos = new Point2D.Double(100 * random.nextDouble(),
+                                         100 * random.nextDouble());
+        double heading = 2 * Math.PI * random.nextDouble();
+        double velocity = 20 * random.nextDouble();
+        double steeringAngle =
+          (random.nextBoolean()) ? 0.0 : 0.4 * (random.nextDouble() - 0.5);
+        double acceleration = -5.0 + 8.0 * random.nextDouble();
+        double targetVelocity = 25 * random.nextDouble();
+        int slot = store.acquire(spec);
+        store.setState(slot, pos, heading, velocity, steeringAngle,
+                       acceleration, targetVelocity, time);
+        movements.add(new ReferenceMovement(spec, pos, heading, velocity,
+                                            steeringAngle, acceleration,
+                                            targetVelocity));
+        slots.add(slot);
+      }
+      if (!slots.isEmpty() && random.nextInt(6) == 0) {
+        int i = random.nextInt(slots.size());
+        store.release(slots.remove(i));
+        movements.remove(i);
+      }
+      // control the vehicles
+      for(int i = 0; i < slots.size(); i++) {
+        ReferenceMovement m = movements.get(i);
+        int slot = slots.get(i);
+        switch(random.nextInt(12)) {
+        case 0:
+          AccelSchedule accelSchedule = makeAccelSchedule(random, time);
+          m.accelSchedule = copy(accelSchedule);
+          store.setAccelSchedule(slot, accelSchedule);
+          break;
+        case 1:
+          double targetVelocity = 25 * random.nextDouble();
+          m.accelSchedule = null;
+          m.setAccelerationWithBound(
+            (m.velocity < targetVelocity) ? spec.getMaxAcceleration()
+                                          : spec.getMaxDeceleration());
+          m.targetVelocity = Util.constrain(targetVelocity,
+                                            spec.getMinVelocity(),
+                                            spec.getMaxVelocity());
+          store.setAccelSchedule(slot, null);
+          store.setTargetVelocityWithMaxAccel(slot, targetVelocity);
+          break;
+        case 2:
+          double steeringAngle = 2.0 * (random.nextDouble() - 0.5);
+          m.steeringAngle =
+            Util.constrain(steeringAngle, -spec.getMaxSteeringAngle(),
+                           spec.getMaxSteeringAngle());
+          store.setSteeringAngleWithBound(slot, steeringAngle);
+          break;
+        default:
+          break;
+        }
+      }
+      // move them
+      for(ReferenceMovement m : movements) {
+        m.move(time, TIME_STEP);
+      }
+      store.moveAll(0, store.size(), TIME_STEP);
+      time += TIME_STEP;
+      for(int i = 0; i < slots.size(); i++) {
+        assertSameState(movements.get(i), store, slots.get(i));
+        assertEquals(time, store.getTime(slots.get(i)), 1e-9);
+      }
+    }
+    assertEquals(slots.size(), store.getNumOfVehicles());
+  }
+
+  @Test
+  public void testSharedStoreMovesLikeOwnStores() {
+    Random random = new Random(2);
+    VehicleSpec spec = getSpec();
+    VehicleStateStore shared = new VehicleStateStore(1);
+    List<BasicAutoVehicle> own = new ArrayList<BasicAutoVehicle>();
+    List<BasicAutoVehicle> inShared = new ArrayList<BasicAutoVehicle>();
+    for(int i = 0; i < 20; i++) {
+      Point2D pos = new Point2D.Double(10 * i, 5 * i);
+      double heading = random.nextDouble();
+      double steeringAngle = 0.1 * (random.nextDouble() - 0.5);
+      double velocity = 10 * random.nextDouble();
+      own.add(new BasicAutoVehicle(spec, pos, heading, steeringAngle,
+                                   velocity, 15.0, 2.0, 0.0));
+      inShared.add(new BasicAutoVehicle(spec, pos, heading, steeringAngle,
+                                        velocity, 15.0, 2.0, 0.0, shared));
+    }
+    for(int step = 0; step < 500; step++) {
+      if (step % 50 == 0) {
+        for(int i = 0; i < own.size(); i++) {
+          double targetVelocity = 20 * random.nextDouble();
+          own.get(i).setTargetVelocityWithMaxAccel(targetVelocity);
+          inShared.get(i).setTargetVelocityWithMaxAccel(targetVelocity);
+        }
+      }
+      for(BasicAutoVehicle vehicle : own) {
+        vehicle.move(TIME_STEP);
+      }
+      shared.moveAll(0, shared.size(), TIME_STEP);
+      for(BasicAutoVehicle vehicle : inShared) {
+        vehicle.finishMove();
+      }
+      for(int i = 0; i < own.size(); i++) {
+        BasicAutoVehicle v1 = own.get(i);
+        BasicAutoVehicle v2 = inShared.get(i);
+        assertEquals(v1.getPosition(), v2.getPosition());
+        assertEquals(v1.getVelocity(), v2.getVelocity(), 0.0);
+        assertEquals(v1.getDistanceTraveled(), v2.getDistanceTraveled(), 0.0);
+        assertEquals(v1.gaugePosition(), v2.gaugePosition());
+        assertEquals(v1.gaugeTime(), v2.gaugeTime(), 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testReleaseAndGrow() {
+    VehicleSpec spec = getSpec();
+    VehicleStateStore store = new VehicleStateStore(1);
+    int[] slots = new int[10];
+    for(int i = 0; i < slots.length; i++) {
+      slots[i] = store.acquire(spec);
+      store.setState(slots[i], new Point2D.Double(i, 0.0), 0.0, i, 0.0, 0.0,
+                     i, 0.0);
+    }
+    assertEquals(10, store.size());
+    assertEquals(10, store.getNumOfVehicles());
+    store.release(slots[3]);
+    store.release(slots[7]);
+    assertEquals(8, store.getNumOfVehicles());
+    // the free slots are reused before the store grows
+    int s1 = store.acquire(spec);
+    int s2 = store.acquire(spec);
+    assertTrue((s1 == 3 && s2 == 7) || (s1 == 7 && s2 == 3));
+    assertEquals(10, store.size());
+    store.release(s1);
+    store.moveAll(0, store.size(), 1.0);
+    for(int i = 0; i < slots.length; i++) {
+      if (slots[i] != s1 && slots[i] != s2) {
+        assertEquals(2.0 * i, store.getX(slots[i]), 0.0);
+        assertEquals(i, store.getDistanceTraveled(slots[i]), 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testSerializationAndMoveStateTo()
+      throws IOException, ClassNotFoundException {
+    VehicleSpec spec = getSpec();
+    VehicleStateStore shared = new VehicleStateStore(1);
+    BasicAutoVehicle vehicle =
+      new BasicAutoVehicle(spec, new Point2D.Double(1.0, 2.0), 0.3, 0.05,
+                           12.0, 15.0, 1.0, 0.0, shared);
+    AccelSchedule accelSchedule = new AccelSchedule();
+    accelSchedule.add(0.1, -3.0);
+    accelSchedule.add(0.5, 2.0);
+    vehicle.setAccelSchedule(accelSchedule);
+    for(int i = 0; i < 10; i++) {
+      vehicle.move(TIME_STEP);
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new SpecSharingOutputStream(bytes);
+    out.writeObject(vehicle);
+    out.close();
+    ObjectInputStream in =
+      new SpecSharingInputStream(
+        new ByteArrayInputStream(bytes.toByteArray()));
+    BasicAutoVehicle copy = (BasicAutoVehicle)in.readObject();
+    in.close();
+
+    assertTrue(copy.getStateStore() != shared);
+    assertEquals(vehicle.getPosition(), copy.getPosition());
+    assertEquals(vehicle.getDistanceTraveled(), copy.getDistanceTraveled(),
+                 0.0);
+    assertEquals(vehicle.getAccelSchedule().size(),
+                 copy.getAccelSchedule().size());
+    copy.moveStateTo(shared);
+    assertTrue(copy.getStateStore() == shared);
+    assertEquals(2, shared.getNumOfVehicles());
+    for(int i = 0; i < 30; i++) {
+      vehicle.move(TIME_STEP);
+      copy.move(TIME_STEP);
+      assertEquals(vehicle.getPosition(), copy.getPosition());
+      assertEquals(vehicle.getVelocity(), copy.getVelocity(), 0.0);
+      assertEquals(vehicle.getAcceleration(), copy.getAcceleration(), 0.0);
+    }
+    copy.releaseState();
+    assertEquals(1, shared.getNumOfVehicles());
+  }
+}